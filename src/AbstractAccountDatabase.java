@@ -0,0 +1,404 @@
+/**
+ * AbstractAccountDatabase class is the base of every store the teller works on: the object store
+ * AccountDatabase and its concurrent extension, the columnar and off-heap stores, and the sharded router. It
+ * declares the operations and queries that the teller, the journal, the snapshot and the shard server use, and
+ * keeps only what every store shares: the listeners that are told about each change and the report writer that
+ * the print functions without a writer use. Modes that only the object store has, such as lazy accrual,
+ * parallel month-end, closed-account tiering and report views, are declared by AccountDatabase.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public abstract class AbstractAccountDatabase {
+    public static final int NOT_FOUND = -1;
+
+    private final CopyOnWriteArrayList<AccountDatabaseListener> listeners = new CopyOnWriteArrayList<>();
+    private final ReportWriter report = new ReportWriter();
+
+    /**
+     * @return number of accounts that the database is currently holding.
+     */
+    public abstract int getNumAcct();
+
+    /**
+     * @return true if the database only serves reads, such as a replication follower that is not promoted.
+     */
+    public boolean isReadOnly()
+    {
+        return false;
+    }
+
+    /**
+     * This function finds whether the passed in account exists in the database and returns that account.
+     * Stores that do not keep account objects return a copy or a view of it.
+     * @param account - account that holds the profile and type to look up.
+     * @return account if found, null if not found.
+     */
+    public abstract Account getAccountIfExists(Account account);
+
+    /**
+     * This function lets the database hold at least minCapacity accounts without growing again.
+     * @param minCapacity - number of accounts the database must be able to hold.
+     */
+    public abstract void ensureCapacity(int minCapacity);
+
+    /**
+     * This function calls the action with every account in the database, in the order they were opened.
+     * @param action - action to call with each account.
+     */
+    public abstract void forEach(Consumer<Account> action);
+
+    /**
+     * This function adds a new account.
+     * @param account - The account object that needs to be added.
+     * @return true if the account was added.
+     */
+    public abstract boolean open(Account account);
+
+    /**
+     * This function finds and reopens an account with the balance of the passed in account.
+     * @param account - account that holds the profile and the new balance.
+     * @return false if the account does not exist, true if it was reopened.
+     */
+    public abstract boolean reOpen(Account account);
+
+    /**
+     * This function finds and closes an account, setting its balance to 0.
+     * @param account - The account object that needs to be closed.
+     * @return false if the account does not exist, true if it was closed.
+     */
+    public abstract boolean close(Account account);
+
+    /**
+     * This function finds the account and adds in an amount to its balance.
+     * @param account - account object that holds the profile and the amount to deposit.
+     */
+    public abstract void deposit(Account account);
+
+    /**
+     * This function deducts an amount from the balance of the account if it is available.
+     * @param account - account object that holds the profile and the amount to withdraw.
+     * @return true if the amount was withdrawn, false if the account does not exist or has insufficient funds.
+     */
+    public abstract boolean withdraw(Account account);
+
+    /**
+     * This function moves an amount from one account to another if the source holds it.
+     * @param from - account object that holds the profile of the source and the amount to move.
+     * @param to - account object that holds the profile of the target.
+     * @return true if the amount was moved, false if either account does not exist or is closed, both are
+     *         the same account or the source has insufficient funds.
+     */
+    public abstract boolean transfer(Account from, Account to);
+
+    /**
+     * This function adds the accounts of a snapshot to an empty database that has no listeners. Stores that
+     * can append in bulk override it; this one opens the accounts one at a time.
+     * @param loaded - accounts to add, in the order they were opened.
+     */
+    protected void loadAccounts(List<Account> loaded)
+    {
+        for(Account account : loaded)
+        {
+            open(account);
+        }
+    }
+
+    /**
+     * This function takes out of the database up to limit accounts that match a filter, such as the accounts
+     * a shard hands over to another shard, in the order they were opened.
+     * @param filter - filter that selects the accounts to take.
+     * @param limit - largest number of accounts to take.
+     * @return the accounts taken, which are no longer in the database.
+     */
+    protected abstract List<Account> removeAccounts(Predicate<Account> filter, int limit);
+
+    /**
+     * This function prints all the accounts in the database to System.out.
+     */
+    public void print()
+    {
+        print(report);
+    }
+
+    /**
+     * This function prints all the accounts in the database in the order they were opened.
+     * @param report - writer the accounts are printed to.
+     */
+    public abstract void print(ReportWriter report);
+
+    /**
+     * This function prints all the accounts in the database by their account type to System.out.
+     */
+    public void printByAccountType()
+    {
+        printByAccountType(report);
+    }
+
+    /**
+     * This function prints all the accounts in the database by their account type, alphabetically, and
+     * accounts of the same type in the order they were opened.
+     * @param report - writer the accounts are printed to.
+     */
+    public abstract void printByAccountType(ReportWriter report);
+
+    /**
+     * This function prints the monthly fees and interests of all accounts in the database to System.out.
+     */
+    public void printFeeAndInterest()
+    {
+        printFeeAndInterest(report);
+    }
+
+    /**
+     * This function prints the monthly fees and interests of all accounts in the database.
+     * @param report - writer the lines are printed to.
+     */
+    public abstract void printFeeAndInterest(ReportWriter report);
+
+    /**
+     * @return the report writer that the print functions without a writer render into; it is reused by
+     * every such report and prints to System.out.
+     */
+    protected ReportWriter reportWriter()
+    {
+        return report;
+    }
+
+    /**
+     * This function prints all account types in the database with the updated balances after deposits, withdrawals, closures,
+     * fee and monthly interest.
+     */
+    public void printWithUpdatedBalance()
+    {
+        printWithUpdatedBalance(report);
+    }
+
+    /**
+     * This function updates the balances of all accounts and prints them, see printWithUpdatedBalance().
+     * @param report - writer the accounts are printed to.
+     */
+    public void printWithUpdatedBalance(ReportWriter report)
+    {
+        updateBalance();
+        print(report);
+    }
+
+    /**
+     * This function posts fee and monthly interest to every open account (UB).
+     */
+    protected abstract void updateBalance();
+
+    /**
+     * This function returns the book-wide totals.
+     * @return a snapshot of the totals.
+     */
+    public abstract BookSummary getSummary();
+
+    /**
+     * This function lists the open accounts of a type whose balance is in a range, lowest balance first.
+     * Equal balances are listed in the order the accounts were opened.
+     * @param type - account type.
+     * @param fromCents - lowest balance in cents, inclusive.
+     * @param toCents - highest balance in cents, exclusive.
+     * @return the accounts in the range.
+     */
+    public abstract List<Account> findByBalance(AccountType type, long fromCents, long toCents);
+
+    /**
+     * This function lists the open accounts of a type with the highest balances, highest first.
+     * @param type - account type.
+     * @param n - largest number of accounts to return.
+     * @return up to n accounts.
+     */
+    public abstract List<Account> topByBalance(AccountType type, int n);
+
+    /**
+     * This function counts the open accounts of a type whose balance is in a range.
+     * @param type - account type.
+     * @param fromCents - lowest balance in cents, inclusive.
+     * @param toCents - highest balance in cents, exclusive.
+     * @return the number of accounts in the range.
+     */
+    public abstract int countByBalance(AccountType type, long fromCents, long toCents);
+
+    /**
+     * This function lists the open accounts of a type that pay no monthly fee today but are close to the
+     * fee threshold: their balance is less than withinCents above it. Lowest balance first.
+     * @param type - account type; College Checking has no fee, so it never has accounts on the list.
+     * @param withinCents - distance above the fee threshold in cents, exclusive.
+     * @return the accounts near the threshold.
+     */
+    public abstract List<Account> findNearFeeThreshold(AccountType type, long withinCents);
+
+    /**
+     * This function lists the Money Market accounts that pay no monthly fee today but would after one more
+     * withdrawal. Lowest balance first.
+     * @return the accounts at the withdrawal limit.
+     */
+    public abstract List<Account> findAtWithdrawalLimit();
+
+    /**
+     * This function finds all the accounts of a holder, whatever their type.
+     * @param holder - profile of the account holder; names are matched ignoring case.
+     * @return the accounts of the holder in the order they were opened, or an empty list.
+     */
+    public abstract List<Account> getAccountsOf(Profile holder);
+
+    /**
+     * This function returns the net worth of a holder: the total balance of all of their accounts.
+     * Closed accounts have no balance, so they add nothing.
+     * @param holder - profile of the account holder; names are matched ignoring case.
+     * @return the total balance in cents, 0 if the holder has no accounts.
+     */
+    public long getNetWorthCents(Profile holder)
+    {
+        long total = 0;
+        for(Account account : getAccountsOf(holder))
+        {
+            total += account.getBalanceCents();
+        }
+        return total;
+    }
+
+    /**
+     * This function finds a page of holders by name and lists their accounts. A last name prefix alone matches
+     * every holder whose last name starts with it; with a first name prefix, the last name must match in full.
+     * Names are matched ignoring case, and holders are listed by last name, first name and date of birth.
+     * @param lastName - prefix of the last name, or the whole last name if firstName is given.
+     * @param firstName - prefix of the first name, or null to match any first name.
+     * @param page - page number, starting at 0.
+     * @param pageSize - number of holders per page.
+     * @return the accounts of the holders on the page, holder by holder.
+     */
+    public abstract List<Account> searchByName(String lastName, String firstName, int page, int pageSize);
+
+    /**
+     * This function finds a page of holders whose last name is the given name or one typo away from it,
+     * see NameIndex, and lists their accounts in the same order as searchByName().
+     * @param lastName - last name to look for.
+     * @param page - page number, starting at 0.
+     * @param pageSize - number of holders per page.
+     * @return the accounts of the holders on the page, holder by holder.
+     */
+    public abstract List<Account> searchByNameFuzzy(String lastName, int page, int pageSize);
+
+    /**
+     * This function registers a listener that is told about every change made to the database, see
+     * AccountDatabaseListener. Every store calls the fire functions once a change is checked and before it is
+     * applied, while holding the locks of the change.
+     * @param listener - the listener to add.
+     */
+    public void addListener(AccountDatabaseListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * This function unregisters a listener.
+     * @param listener - the listener to remove.
+     */
+    public void removeListener(AccountDatabaseListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * This function tells the listeners that an account is opened.
+     * @param account - the account that is added.
+     */
+    protected void fireOpened(Account account)
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.opened(account);
+        }
+    }
+
+    /**
+     * This function tells the listeners that an account is reopened.
+     * @param account - account holding the profile and the new balance.
+     */
+    protected void fireReopened(Account account)
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.reopened(account);
+        }
+    }
+
+    /**
+     * This function tells the listeners that an account is closed.
+     * @param account - account holding the profile of the closed account.
+     */
+    protected void fireClosed(Account account)
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.closed(account);
+        }
+    }
+
+    /**
+     * This function tells the listeners that an amount is deposited.
+     * @param account - account holding the profile and the amount.
+     */
+    protected void fireDeposited(Account account)
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.deposited(account);
+        }
+    }
+
+    /**
+     * This function tells the listeners that an amount is withdrawn.
+     * @param account - account holding the profile and the amount.
+     */
+    protected void fireWithdrew(Account account)
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.withdrew(account);
+        }
+    }
+
+    /**
+     * This function tells the listeners that an amount is moved from one account to another.
+     * @param from - account holding the profile of the source and the amount.
+     * @param to - account holding the profile of the target.
+     */
+    protected void fireTransferred(Account from, Account to)
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.transferred(from, to);
+        }
+    }
+
+    /**
+     * This function tells the listeners that an account is taken out of the database.
+     * @param account - the account that is taken out.
+     */
+    protected void fireRemoved(Account account)
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.removed(account);
+        }
+    }
+
+    /**
+     * This function tells the listeners that fee and monthly interest are applied to all accounts.
+     */
+    protected void fireBalancesUpdated()
+    {
+        for(AccountDatabaseListener listener : listeners)
+        {
+            listener.balancesUpdated();
+        }
+    }
+}
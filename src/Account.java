@@ -1,16 +1,25 @@
 /**
  * Account Class is an abstract class that defines the common data and operations for all account
  * type; each account has a profile that uniquely identifies the account holder. This is the superclass
- * of all account types, and it is an abstract class with 3 methods.
+ * of all account types, and it is an abstract class with 3 methods. Balances are kept as a long number
+ * of cents, so fee and interest posting is integer arithmetic; interest is rounded half-even when it is posted.
  * @author Sumanth Rajkumar, Shantanu Jain
  */
-import java.text.DecimalFormat;
+import java.util.Objects;
 
 public abstract class Account
 {
     protected Profile holder;
     protected boolean closed;
-    protected double balance;
+    protected long balance;
+    private HolderKey holderKey;
+    private int settledPeriod;
+    private int position = AccountDatabase.NOT_FOUND;
+
+    /**
+     * Basis points per percent times months per year: balance*basisPoints/InterestDivisor is the monthly interest.
+     */
+    static final int InterestDivisor = 120000;
 
     /**
      * @return boolean representing the closing status of the account
@@ -24,7 +33,7 @@ public abstract class Account
      * @param newAccount
      */
     public void reOpen(Account newAccount){
-        balance = newAccount.getBalance();
+        balance = newAccount.getBalanceCents();
         closed = false;
     }
 
@@ -32,14 +41,22 @@ public abstract class Account
      * This function sets the balance to 0 and sets the boolean closed variable to true.
      */
     public void close(){
-       balance = 0.0;
+       balance = 0;
        closed = true;
     }
 
     /**
-     * @return double containing balance of an account
+     * @return double containing balance of an account in dollars
      */
     public double getBalance()
+    {
+        return Money.toDollars(this.balance);
+    }
+
+    /**
+     * @return long containing balance of an account in cents
+     */
+    public long getBalanceCents()
     {
         return this.balance;
     }
@@ -56,20 +73,97 @@ public abstract class Account
         if(obj instanceof Account)
         {
             Account account = (Account) obj;
-            return account.holder.equals(holder);
+            return Objects.equals(account.getHolder(), getHolder());
         }
         return false;
     }
 
+    /**
+     * This function returns the class that lookups of this account type match against. It must agree
+     * with the equals() override of the account type: a Checking and a College Checking account of the
+     * same holder match each other, while Savings and Money Market accounts only match their own type.
+     * @return the lookup class of this account type.
+     */
+    protected Class<? extends Account> getLookupClass()
+    {
+        return Account.class;
+    }
+
+    /**
+     * @return the normalized key used to index this account in AccountDatabase, built once per holder.
+     */
+    public HolderKey getHolderKey()
+    {
+        if(holderKey == null)
+        {
+            holderKey = holder.getHolderKey(getLookupClass());
+        }
+        return holderKey;
+    }
+
     /**
      * This function updates the balance calculated with the fee and monthly interest.
      */
     public void updateBalanceWithFeeAndMonthlyInterest(){
         if(!this.closed) {
-            balance = balance - fee() + monthlyInterest();
+            balance = balance - feeCents() + monthlyInterestCents();
         }
     }
 
+    /**
+     * This function brings the account up to the given statement period by applying the fee and monthly
+     * interest of every period it has not been settled for yet, one period at a time, so the result is
+     * the same as calling updateBalanceWithFeeAndMonthlyInterest() once per period.
+     * @param period - statement period to settle up to.
+     */
+    public void settle(int period)
+    {
+        if(this.closed)
+        {
+            settledPeriod = Math.max(settledPeriod, period);
+            return;
+        }
+        while(settledPeriod < period)
+        {
+            updateBalanceWithFeeAndMonthlyInterest();
+            settledPeriod++;
+        }
+    }
+
+    /**
+     * @return the last statement period this account was settled for.
+     */
+    public int getSettledPeriod()
+    {
+        return this.settledPeriod;
+    }
+
+    /**
+     * This function sets the last statement period this account was settled for.
+     * @param settledPeriod - statement period.
+     */
+    public void setSettledPeriod(int settledPeriod)
+    {
+        this.settledPeriod = settledPeriod;
+    }
+
+    /**
+     * @return the position of this account in the array of its database, or NOT_FOUND before it is added.
+     */
+    public int getPosition()
+    {
+        return this.position;
+    }
+
+    /**
+     * This function sets the position of this account in the array of its database.
+     * @param position - index of the account in the array.
+     */
+    public void setPosition(int position)
+    {
+        this.position = position;
+    }
+
     /**
      *
      * @return a string that has profile information of account holder and the amount of balance in their account.
@@ -77,26 +171,37 @@ public abstract class Account
     @Override
     public String toString()
     {
-        DecimalFormat df = new DecimalFormat("$#,##0.00");
-        return holder.toString() + "::" + "Balance " + df.format(this.balance);
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * This function appends the text of toString() to a builder, so reports can render many accounts into
+     * one buffer. Account types override this function instead of toString().
+     * @param builder - builder to append to.
+     * @return the builder.
+     */
+    public StringBuilder appendTo(StringBuilder builder)
+    {
+        holder.appendTo(builder).append("::Balance ");
+        return Money.appendTo(builder, this.balance);
     }
 
     /**
      * This function deducts the balance from an account, the amount that should be deducted from the
      * balance is passed in as a parameter.
-     * @param amount - The amount that needs to be deducted or withdrawn from an account.
+     * @param amount - The amount in cents that needs to be deducted or withdrawn from an account.
      */
-    public void withdraw(double amount)
+    public void withdraw(long amount)
     {
         this.balance -= amount;
     }
 
     /**
      * This function checks if the requested amount can be withdrawn or not.
-     * @param amount - The amount requested by the user that needs to be withdrawn.
+     * @param amount - The amount in cents requested by the user that needs to be withdrawn.
      * @return true if amount is available in the user's account, else returns false.
      */
-    public boolean canBeWithdrawn(double amount)
+    public boolean canBeWithdrawn(long amount)
     {
         if(amount > this.balance)
         {
@@ -107,18 +212,26 @@ public abstract class Account
 
     /**
      * This function adds an amount to the current balance of the account
-     * @param amount - The amount that needs to be added in the current balance.
+     * @param amount - The amount in cents that needs to be added in the current balance.
      */
-    public void deposit(double amount)
+    public void deposit(long amount)
     {
         this.balance += amount;
     }
 
     /**
      * This function sets the balance of an account.
-     * @param balance - balance left in the account.
+     * @param balance - balance left in the account in dollars, rounded half-even to cents.
      */
     public void setBalance(double balance) {
+        this.balance = Money.toCents(balance);
+    }
+
+    /**
+     * This function sets the balance of an account.
+     * @param balance - balance left in the account in cents.
+     */
+    public void setBalanceCents(long balance) {
         this.balance = balance;
     }
 
@@ -130,21 +243,77 @@ public abstract class Account
      */
     public void setHolder(String fName, String lName, Date dob)
     {
-        this.holder = new Profile(fName,lName,dob);
+        setHolder(new Profile(fName,lName,dob));
     }
 
     /**
-     * This function returns a monthly interest depending on the type of the account.
-     * @return The monthly interest that a account holder gets on his account.
+     * This function sets the profile of an account holder.
+     * @param holder - profile of account holder.
      */
-    public abstract double monthlyInterest(); //return the monthly interest
+    public void setHolder(Profile holder)
+    {
+        this.holder = holder;
+        this.holderKey = null;
+    }
+
+    /**
+     * @return the profile of the account holder.
+     */
+    public Profile getHolder()
+    {
+        return this.holder;
+    }
+
+    /**
+     * This function returns the annual interest rate of the account in basis points (hundredths of a percent).
+     * @return the annual interest rate in basis points.
+     */
+    protected abstract int getAnnualInterestBasisPoints();
+
+    /**
+     * This function returns the monthly interest before rounding, which is balance*annualInterest/1200.
+     * @return The monthly interest in dollars that a account holder gets on his account.
+     */
+    public double monthlyInterest()
+    {
+        return (double) balance * getAnnualInterestBasisPoints() / InterestDivisor / Money.CentsPerDollar;
+    }
+
+    /**
+     * This function returns the monthly interest that is posted to the balance, rounded half-even to cents.
+     * @return The monthly interest in cents that a account holder gets on his account.
+     */
+    public long monthlyInterestCents()
+    {
+        return monthlyInterestCentsFor(balance, getAnnualInterestBasisPoints());
+    }
+
+    /**
+     * This function returns the monthly interest posted on a balance at the given annual rate, rounded
+     * half-even to cents. It is shared by the account objects and the batch kernels.
+     * @param balance - balance in cents.
+     * @param basisPoints - annual interest rate in basis points.
+     * @return The monthly interest in cents.
+     */
+    public static long monthlyInterestCentsFor(long balance, int basisPoints)
+    {
+        return Money.divide(balance * basisPoints, InterestDivisor);
+    }
 
     /**
      * This function returns a monthly fee that an account holder needs to pay on a monthly basis.
-     * @return - a double that has a monthly fee that an account holder needs to pay on a monthly basis
-     * depending on the account type.
+     * @return - a long that has the monthly fee in cents depending on the account type.
      */
-    public abstract double fee(); //return the monthly fee
+    public abstract long feeCents(); //return the monthly fee
+
+    /**
+     * This function returns a monthly fee that an account holder needs to pay on a monthly basis.
+     * @return - a double that has the monthly fee in dollars depending on the account type.
+     */
+    public double fee()
+    {
+        return Money.toDollars(feeCents());
+    }
 
     /**
      * @return a String, which is the name of the account type.
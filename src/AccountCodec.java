@@ -0,0 +1,109 @@
+/**
+ * AccountCodec class writes accounts to and reads them from binary buffers. An account is written as its
+ * type code, profile, balance in cents, closed and loyal flags, campus and Money Market withdrawal counter,
+ * which is everything needed to rebuild it. It is shared by the journal and the snapshot files.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class AccountCodec {
+    private static final int ClosedFlag = 1;
+    private static final int LoyalFlag = 2;
+    private static final int NoCollege = -1;
+    public static final int MaxStringBytes = 1 << 12;
+
+    /**
+     * This function writes a string as its UTF-8 length followed by its UTF-8 bytes.
+     * @param buffer - buffer to write to.
+     * @param value - string to write, at most MaxStringBytes bytes long in UTF-8.
+     * @throws IllegalArgumentException if the string is longer than MaxStringBytes in UTF-8.
+     */
+    public static void putString(ByteBuffer buffer, String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > MaxStringBytes)
+        {
+            throw new IllegalArgumentException("A string of " + bytes.length + " bytes is longer than " + MaxStringBytes + ".");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * This function reads a string written by putString().
+     * @param buffer - buffer to read from.
+     * @return the string that was read.
+     * @throws IllegalArgumentException if the length read is longer than MaxStringBytes or the buffer.
+     */
+    public static String getString(ByteBuffer buffer)
+    {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if(length > MaxStringBytes || length > buffer.remaining())
+        {
+            throw new IllegalArgumentException("A string of " + length + " bytes is not a string of the codec.");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This function writes an account.
+     * @param buffer - buffer to write to.
+     * @param account - account to write.
+     */
+    public static void write(ByteBuffer buffer, Account account)
+    {
+        buffer.put(AccountType.of(account).code());
+        account.getHolder().writeTo(buffer);
+        buffer.putLong(account.getBalanceCents());
+        int flags = 0;
+        if(account.isClosed())
+        {
+            flags |= ClosedFlag;
+        }
+        int withdrawals = 0;
+        if(account instanceof MoneyMarket)
+        {
+            withdrawals = ((MoneyMarket) account).getWithdrawCounter();
+        }
+        else if(account instanceof Savings && ((Savings) account).isLoyal())
+        {
+            flags |= LoyalFlag;
+        }
+        buffer.put((byte) flags);
+        College college = account instanceof CollegeChecking ? ((CollegeChecking) account).getCollege() : null;
+        buffer.put((byte) (college == null ? NoCollege : college.ordinal()));
+        buffer.putInt(withdrawals);
+    }
+
+    /**
+     * This function reads an account written by write().
+     * @param buffer - buffer to read from.
+     * @return a new account object of the type that was written.
+     */
+    public static Account read(ByteBuffer buffer)
+    {
+        AccountType type = AccountType.fromCode(buffer.get());
+        Profile holder = Profile.readFrom(buffer);
+        long balance = buffer.getLong();
+        int flags = buffer.get();
+        int college = buffer.get();
+        int withdrawals = buffer.getInt();
+
+        Account account = type.newAccount(college == NoCollege ? null : College.values()[college]);
+        account.setHolder(holder);
+        account.setBalanceCents(balance);
+        account.closed = (flags & ClosedFlag) != 0;
+        if(account instanceof MoneyMarket)
+        {
+            ((MoneyMarket) account).setWithdrawCounter(withdrawals);
+        }
+        else if(account instanceof Savings)
+        {
+            ((Savings) account).setLoyalty((flags & LoyalFlag) != 0);
+        }
+        return account;
+    }
+}
@@ -1,16 +1,54 @@
 /**
  * An instance of this AccountDatabase class is an array-based container that holds a list of
- * accounts with different types. The initial capacity of container will be 4. It will automatically
- * grow by the capacity of 4 if array is full.
+ * accounts with different types. The initial capacity of container will be 4 unless a capacity hint is
+ * given. It will automatically double its capacity if array is full, and new accounts are appended at
+ * the numAcct cursor, so opening N accounts takes linear time. Accounts are also kept in a hash index
+ * keyed by HolderKey so lookups do not scan the array, and in per-type buckets so printing by account
+ * type does not sort. Month-end (UB) can run in parallel over partitions of the array, or lazily, where
+ * UB only advances a statement period and each account is settled for the periods it missed when it is next used.
+ * With closed-account tiering, accounts that stay closed for a number of UBs move to a packed cold store and
+ * the array is compacted, so scans, prints and UB only visit the hot accounts; lookups read a copy of a cold
+ * account, and a change brings it back to the place it was opened at.
+ * The book summary and the balance, holder and name indexes are kept by IndexedAccountDatabase, with the
+ * position of an account in the array as its id.
  * @author Sumanth Rajkumar, Shantanu Jain
  */
-import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
 
-public class AccountDatabase {
+public class AccountDatabase extends IndexedAccountDatabase {
     private Account [] accounts;
     private int numAcct;
+    private Map<HolderKey, Account> index;
+    private TreeMap<String, ArrayList<Account>> typeBuckets;
+    private ForkJoinPool monthEndPool;
+    private int parallelThreshold;
+    private boolean lazyAccrual;
+    private volatile int statementPeriod;
+    private int sweepCursor;
+    private volatile ColdAccountStore coldStore;
+    private int coldAfterCycles;
+    private int[] closedAges;
+    private long[] openOrders;
+    private long nextOpenOrder;
+    private final CopyOnWriteArrayList<ReportView> views = new CopyOnWriteArrayList<>();
 
-    public static final int NOT_FOUND = -1;
+    private static final int DefaultCapacity = 4;
+    private static final int GrowthFactor = 2;
+    private static final int MinimumLeafSize = 1024;
+    private static final int PartitionsPerThread = 4;
+    public static final int DefaultParallelThreshold = 65536;
 
     /**
      * This is the constructor that creates an array-based data structure.
@@ -18,87 +56,324 @@ public class AccountDatabase {
      */
     public AccountDatabase ()
     {
-        this.accounts = new Account[4];
+        this(DefaultCapacity);
+    }
+
+    /**
+     * This is the constructor that creates an array-based data structure sized for a known number of
+     * accounts, so bulk loading does not need to grow the array. numAcct is set to 0.
+     * @param capacityHint - expected number of accounts, values below 4 use the default capacity.
+     */
+    public AccountDatabase (int capacityHint)
+    {
+        this(capacityHint, new HashMap<>(Math.max(capacityHint, DefaultCapacity) * 4 / 3 + 1));
+    }
+
+    /**
+     * This is the constructor used by subclasses that need a different hash index implementation.
+     * @param capacityHint - expected number of accounts, values below 4 use the default capacity.
+     * @param index - empty map used as the hash index.
+     */
+    protected AccountDatabase (int capacityHint, Map<HolderKey, Account> index)
+    {
+        this.accounts = new Account[Math.max(capacityHint, DefaultCapacity)];
         this.numAcct = 0;
+        this.index = index;
+        this.typeBuckets = new TreeMap<>();
     }
 
     /**
-     * @return number of accounts that AccountDatabase object is currently holding.
+     * @return number of accounts that AccountDatabase object is currently holding, cold accounts included.
      */
     public int getNumAcct()
     {
-        return numAcct;
+        return coldStore == null ? numAcct : numAcct + coldStore.size();
     }
 
     /**
      * This function finds whether the passed in account object exists in the AccountDatabase object or not.
+     * The lookup goes through the hash index, so it takes constant time. An account in the cold store is
+     * returned as a copy and stays there, see isCold().
      * @param account
-     * @return index at which the passed in account is found, otherwise returns NOT_FOUND.
+     * @return account if found, null if not found
+     */
+    private Account find(Account account)
+    {
+        Account existing = index.get(account.getHolderKey());
+        if(existing == null)
+        {
+            return coldStore == null ? null : coldStore.get(account.getHolderKey());
+        }
+        if(isBehind(existing))
+        {
+            settle(existing);
+        }
+        return existing;
+    }
+
+    /**
+     * This function tells whether an account returned by a lookup is a copy of an account in the cold store.
+     * Cold accounts are always closed.
+     * @param existing - account returned by getAccountIfExists().
+     * @return true if the account is a cold copy, false if it is in the array.
+     */
+    protected final boolean isCold(Account existing)
+    {
+        return existing.getPosition() == NOT_FOUND;
+    }
+
+    /**
+     * This function returns the account a change is made to. An account in the array is returned as it is;
+     * a cold copy is brought back from the cold store first, so only changes move accounts out of it.
+     * @param existing - account returned by getAccountIfExists().
+     * @return the account in the array.
      */
-    private int find(Account account)
+    protected Account toChange(Account existing)
     {
+        return isCold(existing) ? thaw(existing.getHolderKey()) : existing;
+    }
+
+    /**
+     * This function brings an account back from the cold store into the hash index and to the place in the
+     * array and in its type bucket that it had among the accounts opened before and after it, so the print
+     * order is the same as if it had never moved. The accounts after it slide up by one, so the balance,
+     * holder and name indexes are rebuilt by their next query. The account is still counted by the summary,
+     * so the summary does not change.
+     * @param key - holder key of the account.
+     * @return the account, or null if it is not in the cold store.
+     */
+    private Account thaw(HolderKey key)
+    {
+        long openOrder = coldStore.openOrderOf(key);
+        Account account = coldStore.take(key);
+        if(account == null)
+        {
+            return null;
+        }
+        for(ReportView view : views)
+        {
+            view.preserveAll();
+        }
+        if(numAcct == accounts.length)
+        {
+            this.grow();
+        }
+        ensureTieringCapacity();
         Account[] accounts = this.accounts;
-        for(int i = 0; i < this.numAcct; i++)
+        int at = openOrderPosition(openOrder);
+        System.arraycopy(accounts, at, accounts, at + 1, numAcct - at);
+        System.arraycopy(closedAges, at, closedAges, at + 1, numAcct - at);
+        System.arraycopy(openOrders, at, openOrders, at + 1, numAcct - at);
+        numAcct++;
+        accounts[at] = account;
+        closedAges[at] = 0;
+        openOrders[at] = openOrder;
+        for(int i = at; i < numAcct; i++)
+        {
+            accounts[i].setPosition(i);
+        }
+        account.setSettledPeriod(statementPeriod);
+        index.put(key, account);
+        ArrayList<Account> bucket = typeBuckets.computeIfAbsent(account.getType(), type -> new ArrayList<>());
+        int low = 0;
+        int high = bucket.size();
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(openOrders[bucket.get(middle).getPosition()] < openOrder)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        bucket.add(low, account);
+        balanceIndex().invalidate();
+        invalidateHolderIndexes();
+        return account;
+    }
+
+    /**
+     * This function is a helper that finds the first position in the array whose account was opened after
+     * the given open order. The open orders of the array are increasing.
+     * @param openOrder - open order of an account.
+     * @return the position the account goes to.
+     */
+    private int openOrderPosition(long openOrder)
+    {
+        int low = 0;
+        int high = numAcct;
+        while(low < high)
         {
-            if(account.equals(accounts[i]))
+            int middle = (low + high) >>> 1;
+            if(openOrders[middle] < openOrder)
+            {
+                low = middle + 1;
+            }
+            else
             {
-                return i;
+                high = middle;
             }
         }
-        return NOT_FOUND;
+        return low;
+    }
+
+    /**
+     * This function is a helper that keeps the closed ages and open orders of tiering as long as the array.
+     */
+    private void ensureTieringCapacity()
+    {
+        if(closedAges.length < accounts.length)
+        {
+            closedAges = Arrays.copyOf(closedAges, accounts.length);
+            openOrders = Arrays.copyOf(openOrders, accounts.length);
+        }
+    }
+
+    /**
+     * This function is a helper that gives the account at the end of the array the next open order, once
+     * closed-account tiering is selected.
+     */
+    private void assignOpenOrder()
+    {
+        if(openOrders != null)
+        {
+            ensureTieringCapacity();
+            openOrders[numAcct - 1] = nextOpenOrder++;
+        }
     }
 
     /**
-     * This function finds whether the passed in account object exists in the AccountDatabase and returns that account.
+     * This function finds whether the passed in account exists in the AccountDatabase and returns that account.
      * @param account
      * @return account if found, null if NOT_FOUND
      */
     public Account getAccountIfExists(Account account){
-        int index = find(account);
-        if(index == NOT_FOUND){
-            return null;
+        return find(account);
+    }
+
+    /**
+     * This function grows the array so it can hold at least minCapacity accounts without growing again.
+     * The array at least doubles, so calling it once per batch of accounts still copies in linear time.
+     * @param minCapacity - number of accounts the array must be able to hold.
+     */
+    public void ensureCapacity(int minCapacity)
+    {
+        if(minCapacity > accounts.length)
+        {
+            this.accounts = Arrays.copyOf(accounts, Math.max(minCapacity, accounts.length * GrowthFactor));
         }
-        return accounts[index];
     }
 
     /**
-     * This function grows the array-based container size by 4 when the array gets full, by creating
-     * a new array and copying all the elements from current array to the new array.
+     * This function calls the action with every account in the database, in the order they were opened,
+     * followed by copies of the accounts in the cold store.
+     * Accounts are settled first, so they show every UB that has been run.
+     * @param action - action to call with each account.
      */
-    private void grow()
+    public void forEach(Consumer<Account> action)
     {
-        Account[] currentAccounts = this.accounts;
-        int updatedLength = currentAccounts.length + 4;
-        Account[] newAccounts = new Account[updatedLength];
+        Account[] accounts = this.accounts;
+        for(int i = 0; i < numAcct; i++)
+        {
+            settle(accounts[i]);
+            action.accept(accounts[i]);
+        }
+        forEachCold(action);
+    }
 
-        for (int i = 0; i < currentAccounts.length; i++)
+    /**
+     * This function calls the action with a copy of every account in the cold store, if there is one.
+     * @param action - action to call with each copy.
+     */
+    protected void forEachCold(Consumer<Account> action)
+    {
+        if(coldStore != null)
         {
-            newAccounts[i] = currentAccounts[i];
+            coldStore.forEach(action);
         }
-        this.accounts = newAccounts;
     }
 
     /**
-     * This function adds a new account object to AccountDatabase array.
+     * @return true once closed-account tiering has been selected, even if no account is cold yet.
+     */
+    protected final boolean hasColdStore()
+    {
+        return coldStore != null;
+    }
+
+    /**
+     * This function doubles the array-based container size when the array gets full, by creating
+     * a new array and copying all the elements from current array to the new array.
+     */
+    private void grow()
+    {
+        Account[] currentAccounts = this.accounts;
+        this.accounts = Arrays.copyOf(currentAccounts, currentAccounts.length * GrowthFactor);
+    }
+
+    /**
+     * This function appends a new account object to AccountDatabase array at the numAcct cursor.
      * @param account - The account object that needs to be added.
      * @return true only after when the account gets added to array successfully.
      */
     public boolean open(Account account)
     {
+        fireOpened(account);
+        index.putIfAbsent(account.getHolderKey(), account);
+        append(account);
+        finishChange(new BookSummary(), account);
+        return true;
+    }
+
+    /**
+     * This function adds the accounts of a snapshot to an empty database in one pass. The array is sized
+     * once, the accounts are appended to the array, the hash index and their type buckets without telling
+     * the listeners, and the summary is merged once. The balance, holder and name indexes are built by their
+     * next query rather than one account at a time.
+     * @param loaded - accounts to add, in the order they were opened.
+     */
+    @Override
+    protected void loadAccounts(List<Account> loaded)
+    {
+        ensureCapacity(numAcct + loaded.size());
         Account[] accounts = this.accounts;
-        for(int i = 0; i < accounts.length; i++)
+        BookSummary delta = new BookSummary();
+        for(Account account : loaded)
         {
-            if(accounts[i] == null)
-            {
-                accounts[i] = account;
-                numAcct++;
-                return true;
-            }
+            index.putIfAbsent(account.getHolderKey(), account);
+            account.setSettledPeriod(statementPeriod);
+            account.setPosition(numAcct);
+            accounts[numAcct++] = account;
+            assignOpenOrder();
+            typeBuckets.computeIfAbsent(account.getType(), type -> new ArrayList<>()).add(account);
+            delta.add(account, 1);
         }
-        this.grow();
-        this.open(account);
-        return true;
+        summary().merge(delta);
+        balanceIndex().invalidate();
+        invalidateHolderIndexes();
+    }
 
+    /**
+     * This function is a helper that appends an account to the array and to its type bucket,
+     * without touching the hash index.
+     * @param account - The account object that needs to be added.
+     */
+    protected void append(Account account)
+    {
+        if(numAcct == accounts.length)
+        {
+            this.grow();
+        }
+        account.setSettledPeriod(statementPeriod);
+        account.setPosition(numAcct);
+        accounts[numAcct++] = account;
+        assignOpenOrder();
+        typeBuckets.computeIfAbsent(account.getType(), type -> new ArrayList<>()).add(account);
+        indexBalance(account);
+        indexHolder(account.getHolder(), account.getPosition());
     }
 
     /**
@@ -106,15 +381,18 @@ public class AccountDatabase {
      */
      public boolean reOpen(Account account)
     {
-        Account[] accounts = this.accounts;
-        int location = this.find(account);
-        if(location == NOT_FOUND)
+        Account existing = this.find(account);
+        if(existing == null)
         {
             return false;
         }
         else
         {
-            accounts[location].reOpen(account);
+            fireReopened(account);
+            existing = toChange(existing);
+            BookSummary delta = startChange(existing);
+            existing.reOpen(account);
+            finishChange(delta, existing);
             return true;
         }
     }
@@ -127,15 +405,22 @@ public class AccountDatabase {
      */
     public boolean close(Account account)
     {
-        Account[] accounts = this.accounts;
-        int location = this.find(account);
-        if(location == NOT_FOUND)
+        Account existing = this.find(account);
+        if(existing == null)
         {
             return false;
         }
+        else if(isCold(existing))
+        {
+            fireClosed(account);
+            return true;
+        }
         else
         {
-            accounts[location].close();
+            fireClosed(account);
+            BookSummary delta = startChange(existing);
+            existing.close();
+            finishChange(delta, existing);
             return true;
         }
     }
@@ -146,8 +431,12 @@ public class AccountDatabase {
      */
     public void deposit(Account account)
     {
-        int index = find(account);
-        accounts[index].deposit(account.getBalance());
+        Account existing = find(account);
+        fireDeposited(account);
+        existing = toChange(existing);
+        BookSummary delta = startChange(existing);
+        existing.deposit(account.getBalanceCents());
+        finishChange(delta, existing);
 
     }
 
@@ -161,9 +450,13 @@ public class AccountDatabase {
     public boolean withdraw(Account account)
     {
         Account existingAccount = getAccountIfExists(account);
-        if(existingAccount!=null && existingAccount.canBeWithdrawn(account.getBalance()))
+        if(existingAccount!=null && existingAccount.canBeWithdrawn(account.getBalanceCents()))
         {
-            existingAccount.withdraw(account.getBalance());
+            fireWithdrew(account);
+            existingAccount = toChange(existingAccount);
+            BookSummary delta = startChange(existingAccount);
+            existingAccount.withdraw(account.getBalanceCents());
+            finishChange(delta, existingAccount);
             return true;
         }
         return false;
@@ -171,81 +464,681 @@ public class AccountDatabase {
     }
 
     /**
-     * This function prints all the accounts in the database.
+     * This function moves an amount from one account to another as one change, such as from a holder's
+     * Checking to their Savings. The funds are checked with canBeWithdrawn() and taken with withdraw(), so
+     * a Money Market source counts the transfer as a withdrawal. Listeners are told once, with transferred().
+     * @param from - account object that holds the profile of the source and the amount to move.
+     * @param to - account object that holds the profile of the target.
+     * @return true if the amount was moved, false if either account does not exist or is closed, both are
+     *         the same account or the source has insufficient funds.
      */
-    public void print()
+    public boolean transfer(Account from, Account to)
+    {
+        Account source = find(from);
+        Account target = find(to);
+        if(source == null || target == null || source == target || source.isClosed() || target.isClosed()
+                || !source.canBeWithdrawn(from.getBalanceCents()))
+        {
+            return false;
+        }
+        moveFunds(source, target, from, to);
+        return true;
+    }
+
+    /**
+     * This function is a helper that tells the listeners about a checked transfer and moves the amount.
+     * @param source - account in the database the amount is taken from.
+     * @param target - account in the database the amount is added to.
+     * @param from - account object passed to transfer() for the source, holding the amount.
+     * @param to - account object passed to transfer() for the target.
+     */
+    protected void moveFunds(Account source, Account target, Account from, Account to)
+    {
+        fireTransferred(from, to);
+        long amount = from.getBalanceCents();
+        BookSummary delta = startChange(source);
+        source.withdraw(amount);
+        finishChange(delta, source);
+        delta = startChange(target);
+        target.deposit(amount);
+        finishChange(delta, target);
+    }
+
+    /**
+     * This function prints all the accounts in the database, except the accounts in the cold store.
+     * @param report - writer the accounts are printed to.
+     */
+    public void print(ReportWriter report)
     {
         for(int i = 0; i < numAcct; i++)
         {
-            System.out.println(accounts[i]);
+            settle(accounts[i]);
+            report.account(accounts[i]);
         }
+        report.flush();
     }
 
     /**
-     * This function prints all the accounts in the database by their account type.
+     * This function prints all the accounts in the database by their account type. Account types are
+     * printed alphabetically from the per-type buckets kept by open(), and accounts of the same type are
+     * printed in the order they were opened, so the database itself is never reordered.
+     * @param report - writer the accounts are printed to.
      */
-    public void printByAccountType()
+    public void printByAccountType(ReportWriter report)
     {
-       this.sortByAccountType();
-       this.print();
+        for(ArrayList<Account> bucket : typeBuckets.values())
+        {
+            for(Account account : bucket)
+            {
+                settle(account);
+                report.account(account);
+            }
+        }
+        report.flush();
     }
 
     /**
      * This function prints the monthly fees and interests of all account types in the database.
+     * In parallel month-end mode each partition builds its lines separately and the partitions are
+     * printed in order, so the report is the same as the sequential one.
+     * @param report - writer the lines are printed to.
      */
-    public void printFeeAndInterest()
+    public void printFeeAndInterest(ReportWriter report)
     {
         Account[] accounts = this.accounts;
-        DecimalFormat df = new DecimalFormat("$#,##0.00");
+        if(isParallelMonthEnd())
+        {
+            report.append(monthEndPool.invoke(new FeeAndInterestTask(accounts, 0, numAcct, leafSize())));
+            report.flush();
+            return;
+        }
         for(int i = 0; i < numAcct; i++)
         {
-            System.out.println(accounts[i] + "::fee " + df.format(accounts[i].fee()) + "::monthly interest " + df.format(accounts[i].monthlyInterest()));
+            settle(accounts[i]);
+            report.feeAndInterest(accounts[i]);
         }
+        report.flush();
     }
 
     /**
-     * This function prints all account types in the database with the updated balances after deposits, withdrawals, closures,
-     * fee and monthly interest.
+     * This function is a helper to update the balances after deposits, withdrawals, and closures, fee and monthly interest.
+     * In lazy accrual mode it only starts a new statement period; accounts are settled when they are next used.
      */
-    public void printWithUpdatedBalance()
+    protected void updateBalance()
     {
-        updateBalance();
-        print();
+        fireBalancesUpdated();
+        Account[] accounts = this.accounts;
+        if(lazyAccrual)
+        {
+            statementPeriod++;
+            summary().addPeriod();
+        }
+        else if(isParallelMonthEnd())
+        {
+            monthEndPool.invoke(new UpdateBalanceTask(accounts, 0, numAcct, leafSize()));
+        }
+        else
+        {
+            BookSummary delta = new BookSummary();
+            for(int i = 0; i < numAcct; i++)
+            {
+                updateBalance(accounts[i], delta);
+            }
+            summary().merge(delta);
+        }
+        if(coldAfterCycles > 0)
+        {
+            moveClosedAccountsToColdStore();
+        }
     }
 
     /**
-     * This function is a helper to sort all accounts by their type alphabetically.
+     * This function selects closed-account tiering. At each UB, an account that has been closed at the end of
+     * the given number of UBs in a row moves to the cold store and the array is compacted, keeping the order
+     * of the other accounts. Lookups still find cold accounts, as copies that stay in the cold store, and
+     * closing a cold account again changes nothing. A change such as reOpen brings the account back to the
+     * place in the array it was opened at. Cold accounts are not printed.
+     * The columnar and off-heap stores keep closed accounts in their packed rows and ignore this setting.
+     * @param cycles - number of UBs an account stays closed before it moves, or 0 to stop moving accounts.
      */
-    private void sortByAccountType()
+    public void setColdAfterCycles(int cycles)
     {
-        Account[] accounts = this.accounts;
-        Account temp;
+        this.coldAfterCycles = Math.max(cycles, 0);
+        if(coldAfterCycles > 0 && coldStore == null)
+        {
+            this.closedAges = new int[accounts.length];
+            this.openOrders = new long[accounts.length];
+            for(int i = 0; i < numAcct; i++)
+            {
+                openOrders[i] = i;
+            }
+            this.nextOpenOrder = numAcct;
+            this.coldStore = new ColdAccountStore();
+        }
+    }
 
-        for(int i = 0; i < this.numAcct; i++)
+    /**
+     * @return number of accounts in the cold store.
+     */
+    public int getColdAccounts()
+    {
+        return coldStore == null ? 0 : coldStore.size();
+    }
+
+    /**
+     * This function ages the closed accounts by one UB and moves the ones that reached coldAfterCycles to the
+     * cold store. The balance index is rebuilt after every UB anyway.
+     */
+    protected void moveClosedAccountsToColdStore()
+    {
+        Account[] accounts = this.accounts;
+        ensureTieringCapacity();
+        int[] closedAges = this.closedAges;
+        boolean moved = false;
+        for(int i = 0; i < numAcct; i++)
         {
-            for(int j = i + 1; j < numAcct; j++)
+            Account account = accounts[i];
+            closedAges[i] = account.isClosed() ? closedAges[i] + 1 : 0;
+            if(closedAges[i] >= coldAfterCycles)
             {
+                index.remove(account.getHolderKey());
+                coldStore.put(account, openOrders[i]);
+                account.setPosition(NOT_FOUND);
+                moved = true;
+            }
+        }
+        if(moved)
+        {
+            compact();
+        }
+    }
 
-                if(accounts[i].getType().compareTo(accounts[j].getType()) > 0)
+    /**
+     * This function takes out of the database up to limit accounts that match a filter, such as the accounts
+     * a shard hands over to another shard, and returns them settled. Accounts are taken in the order they were
+     * opened, then from the cold store. The summary no longer counts them and the balance index is rebuilt by
+     * its next query.
+     * @param filter - filter that selects the accounts to take.
+     * @param limit - largest number of accounts to take.
+     * @return the accounts taken, which are no longer in the database.
+     */
+    protected List<Account> removeAccounts(Predicate<Account> filter, int limit)
+    {
+        List<Account> hot = new ArrayList<>();
+        Account[] accounts = this.accounts;
+        for(int i = 0; i < numAcct && hot.size() < limit; i++)
+        {
+            if(filter.test(accounts[i]))
+            {
+                hot.add(accounts[i]);
+            }
+        }
+        List<Account> cold = new ArrayList<>();
+        if(coldStore != null && hot.size() < limit)
+        {
+            coldStore.forEach(account -> {
+                if(cold.size() < limit - hot.size() && filter.test(account))
                 {
-                    temp = accounts[i];
-                    accounts[i] = accounts[j];
-                    accounts[j] = temp;
+                    cold.add(account);
                 }
+            });
+        }
+        hot.forEach(this::fireRemoved);
+        cold.forEach(this::fireRemoved);
+        List<Account> removed = new ArrayList<>(hot.size() + cold.size());
+        for(Account account : hot)
+        {
+            settle(account);
+            index.remove(account.getHolderKey());
+            summary().merge(startChange(account));
+            account.setPosition(NOT_FOUND);
+            removed.add(account);
+        }
+        if(!removed.isEmpty())
+        {
+            compact();
+            balanceIndex().invalidate();
+        }
+        for(Account copy : cold)
+        {
+            Account account = coldStore.take(copy.getHolderKey());
+            summary().merge(startChange(account));
+            removed.add(account);
+        }
+        return removed;
+    }
+
+    /**
+     * This function drops the accounts whose position was set to NOT_FOUND, sliding the remaining accounts
+     * down so the array stays in the order accounts were opened. The per-type buckets drop them too, and the
+     * holder and name indexes are dropped and rebuilt by their next query since positions changed.
+     */
+    private void compact()
+    {
+        for(ReportView view : views)
+        {
+            view.preserveAll();
+        }
+        Account[] accounts = this.accounts;
+        if(closedAges != null)
+        {
+            ensureTieringCapacity();
+        }
+        int[] closedAges = this.closedAges;
+        long[] openOrders = this.openOrders;
+        int kept = 0;
+        for(int i = 0; i < numAcct; i++)
+        {
+            Account account = accounts[i];
+            if(account.getPosition() == NOT_FOUND)
+            {
+                continue;
+            }
+            account.setPosition(kept);
+            accounts[kept] = account;
+            if(closedAges != null)
+            {
+                closedAges[kept] = closedAges[i];
+                openOrders[kept] = openOrders[i];
             }
+            kept++;
+        }
+        Arrays.fill(accounts, kept, numAcct, null);
+        if(closedAges != null)
+        {
+            Arrays.fill(closedAges, kept, numAcct, 0);
+        }
+        numAcct = kept;
+        for(ArrayList<Account> bucket : typeBuckets.values())
+        {
+            bucket.removeIf(account -> account.getPosition() == NOT_FOUND);
         }
+        invalidateHolderIndexes();
     }
 
     /**
-     * This function is a helper to update the balances after deposits, withdrawals, and closures, fee and monthly interest.
+     * This function tells whether an account has missed statement periods in lazy accrual mode. It takes no
+     * lock: the settled period of an account only grows, so an account that looks settled is settled, and
+     * one that looks behind is checked again by settle(). The statement period is read first, since it is
+     * volatile and UB advances it after the mode was selected.
+     * @param account - account to check.
+     * @return true if the account may need settle().
+     */
+    protected final boolean isBehind(Account account)
+    {
+        int period = statementPeriod;
+        return account.getSettledPeriod() < period && lazyAccrual;
+    }
+
+    /**
+     * This function is a helper that applies the statement periods the account has missed in lazy accrual mode.
+     * @param account - account to settle.
+     */
+    protected void settle(Account account)
+    {
+        int period = statementPeriod;
+        if(account.getSettledPeriod() < period)
+        {
+            BookSummary delta = startChange(account);
+            delta.addAccrual(account, period - account.getSettledPeriod(), -1);
+            account.settle(period);
+            finishChange(delta, account);
+        }
+    }
+
+    /**
+     * This function opens a point-in-time view of the accounts for a report, see ReportView. It takes
+     * constant time; from then on each account of the view leaves a copy in it before its first change.
+     * Cold accounts are not in the view. Views are kept by the object store only: the columnar and off-heap
+     * stores change their rows in place without leaving a copy.
+     * @return the view, which the caller must close when the report is done.
+     */
+    public ReportView openView()
+    {
+        ReportView view = new ReportView(this, accounts, numAcct, statementPeriod);
+        views.add(view);
+        return view;
+    }
+
+    /**
+     * This function is called by ReportView.close() to stop copying accounts into the view.
+     * @param view - view to forget.
+     */
+    void closeView(ReportView view)
+    {
+        views.remove(view);
+    }
+
+    /**
+     * This function returns the lock that guards changes to an account. The base database is used by one
+     * thread, so it is the database itself.
+     * @param account - account to lock.
+     * @return the lock.
+     */
+    protected Object lockFor(Account account)
+    {
+        return this;
+    }
+
+    /**
+     * This function is a helper that lets every open view copy an account before it changes.
+     * @param account - account that is about to change.
+     */
+    private void preserve(Account account)
+    {
+        if(!views.isEmpty())
+        {
+            for(ReportView view : views)
+            {
+                view.preserve(account);
+            }
+        }
+    }
+
+    /**
+     * This function is a helper that starts the summary delta of a change to one account.
+     * @param account - account that is about to change.
+     * @return a delta holding the account's contribution before the change, removed.
+     */
+    protected BookSummary startChange(Account account)
+    {
+        preserve(account);
+        BookSummary delta = new BookSummary();
+        delta.add(account, -1);
+        return delta;
+    }
+
+    /**
+     * This function is a helper that finishes the summary delta of a change to one account and applies it.
+     * @param delta - delta returned by startChange(), or an empty summary for a new account.
+     * @param account - account after the change.
+     */
+    protected void finishChange(BookSummary delta, Account account)
+    {
+        delta.add(account, 1);
+        summary().merge(delta);
+        indexBalance(account);
+    }
+
+    /**
+     * This function is a helper that records the balance of an account in the balance index. Accounts that
+     * have not been given a position yet are indexed when they are appended.
+     * @param account - account after a change.
+     */
+    protected void indexBalance(Account account)
+    {
+        if(account.getPosition() != NOT_FOUND)
+        {
+            balanceIndex().update(account.getPosition(), AccountType.of(account), account.isClosed(),
+                    account.getBalanceCents(), withdrawalsOf(account));
+        }
+    }
+
+    /**
+     * @param account - an account object.
+     * @return the withdrawals made from a Money Market account, 0 for other types.
+     */
+    private static int withdrawalsOf(Account account)
+    {
+        return account instanceof MoneyMarket ? ((MoneyMarket) account).getWithdrawCounter() : 0;
+    }
+
+    /**
+     * This function finds all the accounts of a holder, whatever their type, with one lookup in the holder
+     * index. Accounts in the cold store are listed after the others.
+     * @param holder - profile of the account holder; names are matched ignoring case.
+     * @return the accounts of the holder in the order they were opened, or an empty list.
+     */
+    @Override
+    public List<Account> getAccountsOf(Profile holder)
+    {
+        List<Account> found = super.getAccountsOf(holder);
+        if(coldStore != null)
+        {
+            coldStore.copiesOf(holder, found);
+        }
+        return found;
+    }
+
+    /**
+     * This function builds the balance index if it has never been queried, or rebuilds it after a UB.
+     * In lazy accrual mode every account is settled first, so the index holds the current balances.
+     */
+    @Override
+    protected void refreshBalanceIndex()
+    {
+        if(lazyAccrual && balanceIndex().isStale())
+        {
+            settleAll();
+        }
+        super.refreshBalanceIndex();
+    }
+
+    /**
+     * This function calls the action with the holder and the position of every account in the array, to
+     * build the holder and name indexes.
+     * @param action - action to call with each holder and id.
+     */
+    @Override
+    protected void forEachHolder(ObjIntConsumer<Profile> action)
+    {
+        Account[] accounts = this.accounts;
+        for(int i = 0; i < numAcct; i++)
+        {
+            action.accept(accounts[i].getHolder(), i);
+        }
+    }
+
+    /**
+     * This function adds every account of the database to the balance index, with its position as id.
+     * @param balanceIndex - index being rebuilt.
+     */
+    @Override
+    protected void loadBalanceIndex(BalanceIndex balanceIndex)
+    {
+        Account[] accounts = this.accounts;
+        for(int i = 0; i < numAcct; i++)
+        {
+            Account account = accounts[i];
+            balanceIndex.add(i, AccountType.of(account), account.isClosed(), account.getBalanceCents(), withdrawalsOf(account));
+        }
+    }
+
+    /**
+     * This function finds the accounts of the ids returned by an index and settles them, so queries in lazy
+     * accrual mode show every UB that has been run.
+     * @param ids - positions of accounts in the array.
+     * @return the accounts, in the order of the ids.
+     */
+    @Override
+    protected List<Account> accountsAt(int[] ids)
+    {
+        List<Account> found = new ArrayList<>(ids.length);
+        for(int id : ids)
+        {
+            settle(accounts[id]);
+            found.add(accounts[id]);
+        }
+        return found;
+    }
+
+    /**
+     * This function settles every account for the periods it has missed in lazy accrual mode.
      */
-    private void updateBalance()
+    protected void settleAll()
     {
         Account[] accounts = this.accounts;
         for(int i = 0; i < numAcct; i++)
         {
-            accounts[i].updateBalanceWithFeeAndMonthlyInterest();
+            settle(accounts[i]);
         }
+    }
+
+    /**
+     * This function selects lazy accrual mode. In this mode UB only advances the statement period, and
+     * each account gets the fees and interest of the periods it missed on its next read or write, or when
+     * sweepAccrual() reaches it. Turning the mode off settles every account first. Lookups of settled
+     * accounts cost nothing more than in the eager mode. The UB command itself is still O(n), since it
+     * prints every account and so settles each of them. The book summary is not settled either: UB posts the
+     * projected fee and interest to its balance total, which is exact after one UB. The projected fee and
+     * interest, and the balance total after several UBs, count each account at its last settled state until
+     * the account is settled.
+     * @param lazyAccrual - true for lazy accrual, false to update every account on UB.
+     */
+    public void setLazyAccrual(boolean lazyAccrual)
+    {
+        if(!lazyAccrual)
+        {
+            settleAll();
+        }
+        this.lazyAccrual = lazyAccrual;
+    }
+
+    /**
+     * @return the current statement period, the number of UB commands run in lazy accrual mode.
+     */
+    public int getStatementPeriod()
+    {
+        return statementPeriod;
+    }
+
+    /**
+     * This function is the background sweep of lazy accrual mode. It settles up to budget accounts,
+     * continuing where the previous sweep stopped and wrapping around at the end of the array.
+     * @param budget - largest number of accounts to settle.
+     * @return the number of accounts settled.
+     */
+    public int sweepAccrual(int budget)
+    {
+        Account[] accounts = this.accounts;
+        int count = Math.min(budget, numAcct);
+        for(int i = 0; i < count; i++)
+        {
+            if(sweepCursor >= numAcct)
+            {
+                sweepCursor = 0;
+            }
+            settle(accounts[sweepCursor++]);
+        }
+        return count;
+    }
 
+    /**
+     * This function is a helper to update the balance of one account with its fee and monthly interest.
+     * @param account - account whose balance is updated.
+     * @param delta - summary delta that receives the change of the account.
+     */
+    protected void updateBalance(Account account, BookSummary delta)
+    {
+        preserve(account);
+        delta.add(account, -1);
+        account.updateBalanceWithFeeAndMonthlyInterest();
+        delta.add(account, 1);
+    }
+
+    /**
+     * This function selects the parallel month-end mode. UB and PI then split the accounts across the
+     * given pool whenever the database holds at least threshold accounts, and stay sequential below it.
+     * @param pool - pool that runs the partitions, or null to go back to sequential month-end.
+     * @param threshold - smallest number of accounts that is processed in parallel.
+     */
+    public void setParallelMonthEnd(ForkJoinPool pool, int threshold)
+    {
+        this.monthEndPool = pool;
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * @return true if the next month-end pass will run in parallel.
+     */
+    private boolean isParallelMonthEnd()
+    {
+        return monthEndPool != null && numAcct >= parallelThreshold && numAcct > 1;
+    }
+
+    /**
+     * @return the number of accounts a partition handles without splitting further.
+     */
+    private int leafSize()
+    {
+        return Math.max(MinimumLeafSize, numAcct / (monthEndPool.getParallelism() * PartitionsPerThread));
+    }
+
+    /**
+     * UpdateBalanceTask posts fee and monthly interest to a range of accounts, splitting the range in
+     * half until it is small enough.
+     */
+    private class UpdateBalanceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Account[] accounts;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        UpdateBalanceTask(Account[] accounts, int from, int to, int leafSize)
+        {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= leafSize)
+            {
+                BookSummary delta = new BookSummary();
+                for(int i = from; i < to; i++)
+                {
+                    updateBalance(accounts[i], delta);
+                }
+                summary().merge(delta);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new UpdateBalanceTask(accounts, from, middle, leafSize),
+                    new UpdateBalanceTask(accounts, middle, to, leafSize));
+        }
+    }
+
+    /**
+     * FeeAndInterestTask builds the fee and interest lines of a range of accounts, splitting the range in
+     * half until it is small enough and joining the halves in order.
+     */
+    private class FeeAndInterestTask extends RecursiveTask<StringBuilder> {
+        private static final long serialVersionUID = 1L;
+        private final Account[] accounts;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        FeeAndInterestTask(Account[] accounts, int from, int to, int leafSize)
+        {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected StringBuilder compute()
+        {
+            if(to - from <= leafSize)
+            {
+                StringBuilder lines = new StringBuilder();
+                for(int i = from; i < to; i++)
+                {
+                    settle(accounts[i]);
+                    ReportWriter.appendFeeAndInterest(lines, accounts[i]).append(System.lineSeparator());
+                }
+                return lines;
+            }
+            int middle = (from + to) >>> 1;
+            FeeAndInterestTask right = new FeeAndInterestTask(accounts, middle, to, leafSize);
+            right.fork();
+            StringBuilder left = new FeeAndInterestTask(accounts, from, middle, leafSize).compute();
+            return left.append(right.join());
+        }
     }
 }
@@ -0,0 +1,58 @@
+/**
+ * AccountDatabaseListener interface is implemented by classes that need to follow every change made to an
+ * AccountDatabase, such as the journal. The database calls the listener once it has checked that a change will
+ * succeed and before it applies it, with the account object that was passed to the database operation. The
+ * listener is called while the database holds the locks of the change, so it sees the changes in the order
+ * they are applied; if it throws, the change is not applied.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+public interface AccountDatabaseListener {
+
+    /**
+     * Called before an account is opened.
+     * @param account - the account that is added.
+     */
+    void opened(Account account);
+
+    /**
+     * Called before an account is reopened.
+     * @param account - account holding the profile, the new balance and, for College Checking, the campus.
+     */
+    void reopened(Account account);
+
+    /**
+     * Called before an account is closed.
+     * @param account - account holding the profile of the closed account.
+     */
+    void closed(Account account);
+
+    /**
+     * Called before an amount is deposited.
+     * @param account - account holding the profile and the amount in its balance.
+     */
+    void deposited(Account account);
+
+    /**
+     * Called before an amount is withdrawn.
+     * @param account - account holding the profile and the amount in its balance.
+     */
+    void withdrew(Account account);
+
+    /**
+     * Called before an amount is moved from one account to another.
+     * @param from - account holding the profile of the source and the amount in its balance.
+     * @param to - account holding the profile of the target.
+     */
+    void transferred(Account from, Account to);
+
+    /**
+     * Called before fee and monthly interest are applied to all accounts.
+     */
+    void balancesUpdated();
+
+    /**
+     * Called before an account is taken out of the database, such as when it moves to another shard.
+     * @param account - the account that is taken out.
+     */
+    void removed(Account account);
+}
@@ -5,6 +5,12 @@
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.junit.Assert.*;
 
 public class AccountDatabaseTest {
@@ -42,4 +48,398 @@ public class AccountDatabaseTest {
         assertTrue(accountDatabase.close(savings));
 
     }
-}
\ No newline at end of file
+
+    /**
+     * This Test method checks that getAccountIfExists() keeps the lookup rules of the equals() overrides:
+     * names are matched ignoring case, Checking and College Checking match each other, and Savings
+     * and Money Market only match their own type.
+     */
+    @Test
+    public void getAccountIfExists_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        CollegeChecking collegeChecking = new CollegeChecking(College.NEWARK);
+        collegeChecking.setHolder("Jane","Doe",new Date("10/1/1995"));
+        collegeChecking.setBalance(100);
+        assertTrue(accountDatabase.open(collegeChecking));
+        MoneyMarket moneyMarket = new MoneyMarket();
+        moneyMarket.setHolder("Jane","Doe",new Date("10/1/1995"));
+        moneyMarket.setBalance(3000);
+        assertTrue(accountDatabase.open(moneyMarket));
+
+        Checking checking = new Checking();
+        checking.setHolder("JANE","doe",new Date("10/01/1995"));
+        assertSame(collegeChecking, accountDatabase.getAccountIfExists(checking));
+
+        Savings savings = new Savings();
+        savings.setHolder("Jane","Doe",new Date("10/1/1995"));
+        assertNull(accountDatabase.getAccountIfExists(savings));
+
+        MoneyMarket probe = new MoneyMarket();
+        probe.setHolder("jane","DOE",new Date("10/1/1995"));
+        assertSame(moneyMarket, accountDatabase.getAccountIfExists(probe));
+    }
+
+    /**
+     * This Test method checks that open() keeps every account findable when the
+     * array has to grow past its initial capacity.
+     */
+    @Test
+    public void open_Grow_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase(2);
+        Checking[] opened = new Checking[100];
+        for(int i = 0; i < opened.length; i++) {
+            opened[i] = new Checking();
+            opened[i].setHolder("First" + i,"Last",new Date("1/1/1990"));
+            opened[i].setBalance(i + 1);
+            assertTrue(accountDatabase.open(opened[i]));
+        }
+        assertEquals(opened.length, accountDatabase.getNumAcct());
+        for(Checking checking : opened) {
+            assertSame(checking, accountDatabase.getAccountIfExists(checking));
+        }
+    }
+
+    /**
+     * This Test method checks that printByAccountType() lists the types alphabetically and the accounts of
+     * a type in the order they were opened, and that an account keeps its place in its bucket after it is
+     * closed and reopened.
+     */
+    @Test
+    public void printByAccountType_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        Date dob = new Date("6/6/1986");
+        Account[] opened = {new MoneyMarket(), new Checking(), new Savings(), new CollegeChecking(College.CAMDEN),
+                new Checking(), new MoneyMarket(), new Savings(), new Checking()};
+        for(int i = 0; i < opened.length; i++) {
+            opened[i].setHolder("First" + i, "Last", dob);
+            opened[i].setBalanceCents(2600 + i * 100L);
+            assertTrue(accountDatabase.open(opened[i]));
+        }
+        Checking closed = new Checking();
+        closed.setHolder("First1", "Last", dob);
+        assertTrue(accountDatabase.close(closed));
+        Savings reopened = new Savings();
+        reopened.setHolder("First2", "Last", dob);
+        assertTrue(accountDatabase.close(reopened));
+        reopened.setBalanceCents(9900);
+        assertTrue(accountDatabase.reOpen(reopened));
+
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(captured);
+        accountDatabase.printByAccountType(new ReportWriter(out));
+        out.flush();
+        int[] expected = {1, 4, 7, 3, 0, 5, 2, 6};
+        StringBuilder lines = new StringBuilder();
+        for(int i : expected) {
+            lines.append(opened[i]).append(System.lineSeparator());
+        }
+        assertEquals(lines.toString(), captured.toString());
+        assertTrue(opened[1].isClosed());
+        assertEquals(9900, opened[2].getBalanceCents());
+    }
+
+    /**
+     * This is a helper that opens a mix of accounts and returns what PI, UB and PI print.
+     */
+    private String monthEndReport(AccountDatabase accountDatabase) {
+        Date dob = new Date("1/1/1990");
+        for(int i = 0; i < 10000; i++) {
+            Account account = i % 2 == 0 ? new Checking() : new Savings();
+            account.setHolder("First" + i, "Last", dob);
+            account.setBalanceCents(i * 37L);
+            accountDatabase.open(account);
+        }
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        ReportWriter report = new ReportWriter(new PrintStream(captured));
+        accountDatabase.printFeeAndInterest(report);
+        accountDatabase.printWithUpdatedBalance(report);
+        accountDatabase.printFeeAndInterest(report);
+        return captured.toString();
+    }
+
+    /**
+     * This Test method checks that the parallel month-end mode prints the same reports, in the
+     * same order, as the sequential mode.
+     */
+    @Test
+    public void parallelMonthEnd_Test() {
+        AccountDatabase sequential = new AccountDatabase();
+        AccountDatabase parallel = new AccountDatabase();
+        parallel.setParallelMonthEnd(new ForkJoinPool(4), 0);
+        assertEquals(monthEndReport(sequential), monthEndReport(parallel));
+    }
+
+    /**
+     * This is a helper that runs three statement periods with deposits, Money Market withdrawals,
+     * a close and a reopen in between, and returns what the database printed.
+     */
+    private String accrualReport(AccountDatabase accountDatabase) {
+        Date dob = new Date("3/3/1973");
+        MoneyMarket moneyMarket = new MoneyMarket();
+        moneyMarket.setHolder("Mo", "Market", dob);
+        moneyMarket.setBalanceCents(300000);
+        accountDatabase.open(moneyMarket);
+        Savings savings = new Savings();
+        savings.setHolder("Sam", "Saver", dob);
+        savings.setBalanceCents(30000);
+        savings.setLoyalty(true);
+        accountDatabase.open(savings);
+        Checking checking = new Checking();
+        checking.setHolder("Cal", "Checker", dob);
+        checking.setBalanceCents(99999);
+        accountDatabase.open(checking);
+
+        MoneyMarket withdrawal = new MoneyMarket();
+        withdrawal.setHolder("mo", "market", dob);
+        withdrawal.setBalanceCents(20000);
+        Checking closing = new Checking();
+        closing.setHolder("Cal", "Checker", dob);
+        closing.setBalanceCents(5000);
+
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        ReportWriter report = new ReportWriter(new PrintStream(captured));
+        accountDatabase.printWithUpdatedBalance(report);
+        for(int i = 0; i < 4; i++) {
+            accountDatabase.withdraw(withdrawal);
+        }
+        accountDatabase.close(closing);
+        accountDatabase.updateBalance();
+        accountDatabase.updateBalance();
+        accountDatabase.reOpen(closing);
+        accountDatabase.deposit(withdrawal);
+        accountDatabase.printFeeAndInterest(report);
+        accountDatabase.printWithUpdatedBalance(report);
+        accountDatabase.printByAccountType(report);
+        return captured.toString();
+    }
+
+    /**
+     * This Test method checks that lazy accrual prints the same balances as updating every account
+     * on each UB, including the Money Market fee that depends on the withdrawal count.
+     */
+    @Test
+    public void lazyAccrual_Test() {
+        AccountDatabase eager = new AccountDatabase();
+        AccountDatabase lazy = new AccountDatabase();
+        lazy.setLazyAccrual(true);
+        assertEquals(accrualReport(eager), accrualReport(lazy));
+        assertEquals(4, lazy.getStatementPeriod());
+    }
+
+    /**
+     * This Test method checks that accounts closed for the configured number of UBs move to the cold store,
+     * are no longer printed, and are found again by lookups, reOpen, forEach and the summary, in the plain and
+     * concurrent stores.
+     */
+    @Test
+    public void closedAccountTiering_Test() {
+        for(AccountDatabase accountDatabase : new AccountDatabase[] {new AccountDatabase(), new ConcurrentAccountDatabase()}) {
+            accountDatabase.setColdAfterCycles(2);
+            Date dob = new Date("3/3/1973");
+            for(int i = 0; i < 100; i++) {
+                Checking checking = new Checking();
+                checking.setHolder("First" + i, "Last", dob);
+                checking.setBalanceCents(150000);
+                accountDatabase.open(checking);
+            }
+            for(int i = 0; i < 100; i += 2) {
+                Checking closing = new Checking();
+                closing.setHolder("First" + i, "Last", dob);
+                accountDatabase.close(closing);
+            }
+            BookSummary before = accountDatabase.getSummary();
+            accountDatabase.updateBalance();
+            assertEquals(0, accountDatabase.getColdAccounts());
+            accountDatabase.updateBalance();
+            assertEquals(50, accountDatabase.getColdAccounts());
+            assertEquals(100, accountDatabase.getNumAcct());
+            assertEquals(before.getTotalClosed(), accountDatabase.getSummary().getTotalClosed());
+
+            ByteArrayOutputStream captured = new ByteArrayOutputStream();
+            accountDatabase.print(new ReportWriter(new PrintStream(captured)));
+            assertFalse(captured.toString().contains("CLOSED"));
+            assertEquals(50, captured.toString().split(System.lineSeparator()).length);
+
+            for(int i = 0; i < 60; i += 2) {
+                Checking reopening = new Checking();
+                reopening.setHolder("first" + i, "LAST", dob);
+                reopening.setBalanceCents(1000);
+                assertTrue(accountDatabase.getAccountIfExists(reopening).isClosed());
+                assertTrue(accountDatabase.reOpen(reopening));
+            }
+            assertEquals(20, accountDatabase.getColdAccounts());
+            assertEquals(100, accountDatabase.getNumAcct());
+
+            BookSummary recount = new BookSummary();
+            HashSet<String> holders = new HashSet<>();
+            accountDatabase.forEach(account -> {
+                recount.add(account, 1);
+                holders.add(account.getHolder().toString());
+            });
+            assertEquals(100, holders.size());
+            assertEquals(recount.toString(), accountDatabase.getSummary().toString());
+            assertEquals(20, recount.getTotalClosed());
+        }
+    }
+
+    /**
+     * This Test method checks that transfer() moves the amount between two accounts of a holder in each
+     * store, refuses insufficient funds, missing or closed accounts and the same account, and counts a
+     * transfer out of a Money Market account as a withdrawal.
+     */
+    @Test
+    public void transfer_Test() {
+        Date dob = new Date("3/8/1991");
+        for(AbstractAccountDatabase accountDatabase : new AbstractAccountDatabase[] {new AccountDatabase(),
+                new ConcurrentAccountDatabase(), new ColumnarAccountDatabase(), new OffHeapAccountDatabase()}) {
+            Checking checking = new Checking();
+            checking.setHolder("Ida", "Wu", dob);
+            checking.setBalanceCents(10000);
+            assertTrue(accountDatabase.open(checking));
+            MoneyMarket moneyMarket = new MoneyMarket();
+            moneyMarket.setHolder("Ida", "Wu", dob);
+            moneyMarket.setBalanceCents(300000);
+            assertTrue(accountDatabase.open(moneyMarket));
+
+            Checking from = new Checking();
+            from.setHolder("ida", "WU", dob);
+            from.setBalanceCents(10001);
+            MoneyMarket to = new MoneyMarket();
+            to.setHolder("IDA", "wu", dob);
+            assertFalse(accountDatabase.transfer(from, to));
+            from.setBalanceCents(2500);
+            assertTrue(accountDatabase.transfer(from, to));
+            assertEquals(7500, accountDatabase.getAccountIfExists(from).getBalanceCents());
+            assertEquals(302500, accountDatabase.getAccountIfExists(to).getBalanceCents());
+
+            to.setBalanceCents(5000);
+            assertTrue(accountDatabase.transfer(to, from));
+            assertTrue(accountDatabase.getAccountIfExists(to).toString().endsWith("withdrawl: 1"));
+            assertEquals(12500, accountDatabase.getAccountIfExists(from).getBalanceCents());
+
+            Savings savings = new Savings();
+            savings.setHolder("Ida", "Wu", dob);
+            savings.setBalanceCents(100);
+            assertFalse(accountDatabase.transfer(from, savings));
+            assertFalse(accountDatabase.transfer(savings, from));
+            assertFalse(accountDatabase.transfer(from, from));
+            assertEquals(12500, accountDatabase.getAccountIfExists(from).getBalanceCents());
+
+            assertTrue(accountDatabase.close(to));
+            from.setBalanceCents(100);
+            assertFalse(accountDatabase.transfer(from, to));
+            assertFalse(accountDatabase.transfer(to, from));
+            assertEquals(12500, accountDatabase.getAccountIfExists(from).getBalanceCents());
+            assertEquals(0, accountDatabase.getAccountIfExists(to).getBalanceCents());
+        }
+    }
+
+    /**
+     * This is a helper that renders the P and PT reports of a database.
+     */
+    private static String reports(AbstractAccountDatabase accountDatabase) {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        ReportWriter report = new ReportWriter(new PrintStream(captured));
+        accountDatabase.print(report);
+        accountDatabase.printByAccountType(report);
+        return captured.toString();
+    }
+
+    /**
+     * This Test method checks that lookups and closes of cold accounts leave them in the cold store, and that
+     * reopening them puts them back in the place they were opened at, so P and PT print the same as a
+     * database without tiering, in the plain and concurrent stores.
+     */
+    @Test
+    public void closedAccountTiering_Order_Test() {
+        Date dob = new Date("5/5/1975");
+        AccountDatabase expected = new AccountDatabase();
+        for(AccountDatabase accountDatabase : new AccountDatabase[] {expected, new AccountDatabase(), new ConcurrentAccountDatabase()}) {
+            if(accountDatabase != expected) {
+                accountDatabase.setColdAfterCycles(1);
+            }
+            for(int i = 0; i < 30; i++) {
+                Account account = i % 3 == 0 ? new Savings() : new Checking();
+                account.setHolder("First" + i, "Last", dob);
+                account.setBalanceCents(300000 + i);
+                accountDatabase.open(account);
+            }
+            for(int i = 0; i < 30; i += 4) {
+                Account closing = i % 3 == 0 ? new Savings() : new Checking();
+                closing.setHolder("First" + i, "Last", dob);
+                assertTrue(accountDatabase.close(closing));
+            }
+            accountDatabase.updateBalance();
+            int cold = accountDatabase.getColdAccounts();
+            assertEquals(accountDatabase == expected ? 0 : 8, cold);
+            for(int i = 0; i < 30; i += 4) {
+                Account probe = i % 3 == 0 ? new Savings() : new Checking();
+                probe.setHolder("first" + i, "last", dob);
+                assertTrue(accountDatabase.getAccountIfExists(probe).isClosed());
+                assertTrue(accountDatabase.close(probe));
+                probe.setBalanceCents(100);
+                assertFalse(accountDatabase.withdraw(probe));
+            }
+            assertEquals(cold, accountDatabase.getColdAccounts());
+            for(int i = 28; i >= 0; i -= 4) {
+                Account reopening = i % 3 == 0 ? new Savings() : new Checking();
+                reopening.setHolder("First" + i, "Last", dob);
+                reopening.setBalanceCents(5000 + i);
+                assertTrue(accountDatabase.reOpen(reopening));
+            }
+            assertEquals(0, accountDatabase.getColdAccounts());
+            assertEquals(reports(expected), reports(accountDatabase));
+            assertEquals(expected.findByBalance(AccountType.CHECKING, 0, Long.MAX_VALUE).toString(),
+                    accountDatabase.findByBalance(AccountType.CHECKING, 0, Long.MAX_VALUE).toString());
+        }
+    }
+
+    /**
+     * This Test method checks that removeAccounts() takes the matching accounts out of each store, up to the
+     * limit and in the order they were opened, and leaves the other accounts, the summary, the per-type
+     * order and the indexes as if the accounts taken had never been opened.
+     */
+    @Test
+    public void removeAccounts_Test() {
+        Date dob = new Date("4/5/1985");
+        for(AbstractAccountDatabase accountDatabase : new AbstractAccountDatabase[] {new AccountDatabase(),
+                new ConcurrentAccountDatabase(), new ColumnarAccountDatabase(), new OffHeapAccountDatabase()}) {
+            AccountDatabase expected = new AccountDatabase();
+            for(int i = 0; i < 60; i++) {
+                for(AbstractAccountDatabase target : new AbstractAccountDatabase[] {accountDatabase, expected}) {
+                    Account account = AccountType.values()[i % 4].newAccount(College.CAMDEN);
+                    account.setHolder("First" + i, "Last" + i % 5, dob);
+                    account.setBalanceCents(100000 + i * 1000);
+                    target.open(account);
+                }
+            }
+            List<Account> removed = accountDatabase.removeAccounts(
+                    account -> account.getHolder().getLname().equals("Last2"), 8);
+            assertEquals(8, removed.size());
+            List<Account> removedExpected = expected.removeAccounts(
+                    account -> account.getHolder().getLname().equals("Last2"), 8);
+            assertEquals(removedExpected.toString(), removed.toString());
+            assertEquals(52, accountDatabase.getNumAcct());
+            for(Account account : removed) {
+                assertNull(accountDatabase.getAccountIfExists(account));
+            }
+            assertEquals(reports(expected), reports(accountDatabase));
+            assertEquals(expected.getSummary().toString(), accountDatabase.getSummary().toString());
+            for(AccountType type : AccountType.values()) {
+                assertEquals(expected.findByBalance(type, 0, 200000).toString(),
+                        accountDatabase.findByBalance(type, 0, 200000).toString());
+            }
+            assertEquals(expected.searchByName("last", null, 0, 100).toString(),
+                    accountDatabase.searchByName("last", null, 0, 100).toString());
+            assertTrue(accountDatabase.getAccountsOf(removed.get(0).getHolder()).isEmpty());
+
+            Account reopened = removed.get(0);
+            Account again = AccountType.of(reopened).newAccount(College.CAMDEN);
+            again.setHolder(reopened.getHolder());
+            again.setBalanceCents(5000);
+            assertTrue(accountDatabase.open(again));
+            assertEquals(5000, accountDatabase.getAccountIfExists(again).getBalanceCents());
+            assertEquals(53, accountDatabase.getNumAcct());
+        }
+    }
+}
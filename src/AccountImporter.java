@@ -0,0 +1,345 @@
+/**
+ * AccountImporter class opens accounts in bulk from a CSV file, for onboarding a whole branch at once.
+ * Each line is type,first name,last name,date of birth,initial deposit and, for College Checking and Savings,
+ * the campus code or loyalty code, with the same meaning and validation rules as the O command of BankTeller.
+ * The file is read in chunks of lines. The lines of a chunk are parsed and validated in parallel on a
+ * ForkJoinPool, then checked for duplicates against a hash set of the file and the database, and the accepted
+ * accounts are inserted in one pass. Every rejected line is reported with its line number and the message the
+ * teller would print, and the result carries the number of lines per second.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class AccountImporter {
+    public static final int DefaultChunkLines = 65536;
+    private static final int MinimumLeafSize = 1024;
+    private static final int ExpectedFields = 5;
+    private static final int FieldsWithCode = 6;
+    private static final char Separator = ',';
+
+    private final AbstractAccountDatabase accountDatabase;
+    private final ForkJoinPool pool;
+    private final int chunkLines;
+
+    /**
+     * Constructor of this class. Imports into a database using the common ForkJoinPool and the default chunk size.
+     * @param accountDatabase - database to open the accounts in.
+     */
+    public AccountImporter(AbstractAccountDatabase accountDatabase)
+    {
+        this(accountDatabase, ForkJoinPool.commonPool(), DefaultChunkLines);
+    }
+
+    /**
+     * Constructor of this class.
+     * @param accountDatabase - database to open the accounts in.
+     * @param pool - pool that parses the lines of a chunk.
+     * @param chunkLines - number of lines read, parsed and inserted at a time.
+     */
+    public AccountImporter(AbstractAccountDatabase accountDatabase, ForkJoinPool pool, int chunkLines)
+    {
+        this.accountDatabase = accountDatabase;
+        this.pool = pool;
+        this.chunkLines = Math.max(chunkLines, 1);
+    }
+
+    /**
+     * Result class holds the outcome of an import.
+     */
+    public static class Result {
+        private long lines;
+        private long imported;
+        private long nanos;
+        private final List<String> errors = new ArrayList<>();
+
+        /**
+         * @return number of non-blank lines read.
+         */
+        public long getLines()
+        {
+            return lines;
+        }
+
+        /**
+         * @return number of accounts opened or reopened.
+         */
+        public long getImported()
+        {
+            return imported;
+        }
+
+        /**
+         * @return one message per rejected line, starting with the line number, in file order.
+         */
+        public List<String> getErrors()
+        {
+            return errors;
+        }
+
+        /**
+         * @return lines imported per second.
+         */
+        public double getLinesPerSecond()
+        {
+            return nanos == 0 ? 0 : lines * 1e9 / nanos;
+        }
+
+        /**
+         * @return a one line summary of the import.
+         */
+        @Override
+        public String toString()
+        {
+            return "Imported " + imported + " of " + lines + " lines, " + errors.size() + " rejected, "
+                    + Math.round(getLinesPerSecond()) + " lines/sec.";
+        }
+    }
+
+    /**
+     * This function imports every line of a CSV file.
+     * @param file - CSV file to import.
+     * @return the result of the import.
+     * @throws IOException if the file cannot be read.
+     */
+    public Result importFile(Path file) throws IOException
+    {
+        try(BufferedReader reader = Files.newBufferedReader(file))
+        {
+            return importLines(reader);
+        }
+    }
+
+    /**
+     * This function imports every line read from a reader, one chunk at a time.
+     * @param reader - reader of CSV lines.
+     * @return the result of the import.
+     * @throws IOException if the reader fails.
+     */
+    public Result importLines(BufferedReader reader) throws IOException
+    {
+        Result result = new Result();
+        long start = System.nanoTime();
+        Date today = new Date();
+        HashSet<HolderKey> seen = new HashSet<>();
+        String[] lines = new String[chunkLines];
+        long[] lineNumbers = new long[chunkLines];
+        Account[] accounts = new Account[chunkLines];
+        String[] errors = new String[chunkLines];
+        long lineNumber = 0;
+        boolean endOfFile = false;
+        while(!endOfFile)
+        {
+            int count = 0;
+            while(count < chunkLines)
+            {
+                String line = reader.readLine();
+                if(line == null)
+                {
+                    endOfFile = true;
+                    break;
+                }
+                lineNumber++;
+                if(!line.isBlank())
+                {
+                    lineNumbers[count] = lineNumber;
+                    lines[count++] = line;
+                }
+            }
+            if(count > 0)
+            {
+                pool.invoke(new ParseTask(lines, accounts, errors, today, 0, count));
+                insert(lines, lineNumbers, accounts, errors, count, seen, result);
+            }
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * This function checks the parsed accounts of a chunk for duplicates and inserts the accepted ones in order.
+     * An account that matches a closed account of the same type reopens it, as the O command does.
+     */
+    private void insert(String[] lines, long[] lineNumbers, Account[] accounts, String[] errors, int count,
+                        HashSet<HolderKey> seen, Result result)
+    {
+        accountDatabase.ensureCapacity(accountDatabase.getNumAcct() + count);
+        for(int i = 0; i < count; i++)
+        {
+            Account account = accounts[i];
+            String error = errors[i];
+            if(account != null)
+            {
+                Account existing = seen.add(account.getHolderKey()) ? accountDatabase.getAccountIfExists(account) : account;
+                if(existing == null)
+                {
+                    accountDatabase.open(account);
+                    result.imported++;
+                }
+                else if(existing != account && existing.isClosed() && existing.getType().equals(account.getType()))
+                {
+                    accountDatabase.reOpen(account);
+                    result.imported++;
+                }
+                else
+                {
+                    error = account.getHolder() + " same account(type) is in the database.";
+                }
+            }
+            if(error != null)
+            {
+                result.errors.add("line " + lineNumbers[i] + ": " + error);
+            }
+            lines[i] = null;
+            accounts[i] = null;
+            errors[i] = null;
+        }
+        result.lines += count;
+    }
+
+    /**
+     * This function parses and validates one line.
+     * @param line - CSV line.
+     * @param errors - array that receives the error message of the line.
+     * @param index - index of the line in the chunk.
+     * @param today - today's date, so dates of birth in the future are rejected.
+     * @return the account to open, or null if the line is rejected.
+     */
+    static Account parse(String line, String[] errors, int index, Date today)
+    {
+        String[] fields = new String[FieldsWithCode];
+        int count = 0;
+        int from = 0;
+        while(count < FieldsWithCode)
+        {
+            int to = line.indexOf(Separator, from);
+            fields[count++] = (to < 0 ? line.substring(from) : line.substring(from, to)).trim();
+            if(to < 0)
+            {
+                break;
+            }
+            from = to + 1;
+        }
+
+        Account account;
+        switch (fields[0])
+        {
+            case "C" -> account = new Checking();
+            case "CC" -> {
+                if(count < FieldsWithCode)
+                {
+                    errors[index] = BankTeller.missingOpeningData;
+                    return null;
+                }
+                int code = fields[5].length() == 1 ? fields[5].charAt(0) - '0' : -1;
+                if(code < 0 || code >= College.values().length)
+                {
+                    errors[index] = "Invalid campus code.";
+                    return null;
+                }
+                account = new CollegeChecking(College.values()[code]);
+            }
+            case "S" -> {
+                if(count < FieldsWithCode)
+                {
+                    errors[index] = BankTeller.missingOpeningData;
+                    return null;
+                }
+                if(!fields[5].equals(Savings.LOYAL) && !fields[5].equals(Savings.NON_LOYAL))
+                {
+                    errors[index] = "Invalid loyalty code";
+                    return null;
+                }
+                Savings savings = new Savings();
+                savings.setLoyalty(fields[5].equals(Savings.LOYAL));
+                account = savings;
+            }
+            case "MM" -> account = new MoneyMarket();
+            default -> {
+                errors[index] = "Invalid Account Type";
+                return null;
+            }
+        }
+        if(count < ExpectedFields)
+        {
+            errors[index] = BankTeller.missingOpeningData;
+            return null;
+        }
+        if(!Profile.isValidName(fields[1]) || !Profile.isValidName(fields[2]))
+        {
+            errors[index] = BankTeller.nameTooLong;
+            return null;
+        }
+        Date dob = Date.parse(fields[3]);
+        if(dob == null || !dob.isValid() || dob.compareTo(today) > 0)
+        {
+            errors[index] = "Date of birth invalid.";
+            return null;
+        }
+        long balance = Money.parseCents(fields[4]);
+        if(balance == Money.INVALID)
+        {
+            errors[index] = "Not a valid amount.";
+            return null;
+        }
+        if(balance <= 0)
+        {
+            errors[index] = "Initial deposit cannot be 0 or negative.";
+            return null;
+        }
+        account.setHolder(fields[1], fields[2], dob);
+        account.setBalanceCents(balance);
+        if(account instanceof MoneyMarket && !((MoneyMarket) account).hasMinimumInitialDeposit())
+        {
+            errors[index] = "Minimum of $" + MoneyMarket.ExpectedBalance + " to open a MoneyMarket account.";
+            return null;
+        }
+        return account;
+    }
+
+    /**
+     * ParseTask parses a range of the lines of a chunk, splitting it in halves until a range is small enough.
+     */
+    private static class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String[] lines;
+        private final Account[] accounts;
+        private final String[] errors;
+        private final Date today;
+        private final int from;
+        private final int to;
+
+        ParseTask(String[] lines, Account[] accounts, String[] errors, Date today, int from, int to)
+        {
+            this.lines = lines;
+            this.accounts = accounts;
+            this.errors = errors;
+            this.today = today;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= MinimumLeafSize)
+            {
+                for(int i = from; i < to; i++)
+                {
+                    accounts[i] = parse(lines[i], errors, i, today);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(lines, accounts, errors, today, from, middle),
+                    new ParseTask(lines, accounts, errors, today, middle, to));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Test class to check that AccountImporter opens valid lines and reports rejected lines like the teller.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class AccountImporterTest {
+
+    /**
+     * This Test method checks valid lines of every type and the message of each kind of rejected line,
+     * with a chunk size that splits the file and a duplicate that spans chunks.
+     */
+    @Test
+    public void importLines_Test() throws Exception {
+        String csv = String.join("\n",
+                "C,John,Doe,2/19/1989,599.99",
+                "CC,Jane,Doe,10/1/1995,100,2",
+                "S,Ann,Lee,1/1/1970,1000,1",
+                "MM,Bob,Ray,3/3/1980,2500",
+                "",
+                "MM,Cy,Day,3/3/1980,2499.99",
+                "C,Ed,Fox,13/1/1980,10",
+                "C,Ed,Fox,1/1/2999,10",
+                "C,Ed,Fox,1/1/1980,ten",
+                "C,Ed,Fox,1/1/1980,0",
+                "CC,Ed,Fox,1/1/1980,10,7",
+                "S,Ed,Fox,1/1/1980,10,2",
+                "X,Ed,Fox,1/1/1980,10",
+                "C,Ed,Fox",
+                "C,JOHN,doe,2/19/1989,5",
+                "CC,John,Doe,2/19/1989,5,0",
+                "S,Gil,Ho,5/5/1955,20,0");
+        AccountDatabase accountDatabase = new AccountDatabase();
+        AccountImporter importer = new AccountImporter(accountDatabase, ForkJoinPool.commonPool(), 3);
+        AccountImporter.Result result = importer.importLines(new BufferedReader(new StringReader(csv)));
+
+        assertEquals(16, result.getLines());
+        assertEquals(5, result.getImported());
+        assertEquals(5, accountDatabase.getNumAcct());
+        List<String> errors = result.getErrors();
+        assertEquals(11, errors.size());
+        assertEquals("line 6: Minimum of $2500 to open a MoneyMarket account.", errors.get(0));
+        assertEquals("line 7: Date of birth invalid.", errors.get(1));
+        assertEquals("line 8: Date of birth invalid.", errors.get(2));
+        assertEquals("line 9: Not a valid amount.", errors.get(3));
+        assertEquals("line 10: Initial deposit cannot be 0 or negative.", errors.get(4));
+        assertEquals("line 11: Invalid campus code.", errors.get(5));
+        assertEquals("line 12: Invalid loyalty code", errors.get(6));
+        assertEquals("line 13: Invalid Account Type", errors.get(7));
+        assertEquals("line 14: " + BankTeller.missingOpeningData, errors.get(8));
+        assertTrue(errors.get(9).startsWith("line 15: JOHN doe"));
+        assertTrue(errors.get(9).endsWith("same account(type) is in the database."));
+        assertTrue(errors.get(10).startsWith("line 16: "));
+        assertTrue(result.getLinesPerSecond() > 0);
+    }
+
+    /**
+     * This Test method checks that a line matching a closed account of the same type reopens it.
+     */
+    @Test
+    public void reopen_Test() throws Exception {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        Savings savings = new Savings();
+        savings.setHolder("Ann", "Lee", new Date("1/1/1970"));
+        savings.setBalanceCents(500);
+        accountDatabase.open(savings);
+        accountDatabase.close(savings);
+
+        AccountImporter.Result result = new AccountImporter(accountDatabase)
+                .importLines(new BufferedReader(new StringReader("S,ann,lee,1/1/1970,12.34,0\n")));
+        assertEquals(1, result.getImported());
+        assertTrue(result.getErrors().isEmpty());
+        Account reopened = accountDatabase.getAccountIfExists(savings);
+        assertFalse(reopened.isClosed());
+        assertEquals(1234, reopened.getBalanceCents());
+    }
+}
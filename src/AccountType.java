@@ -0,0 +1,121 @@
+/**
+ * AccountType class is an enum class of the four account types. It gives each type a small code used by
+ * the stores that keep accounts in primitive arrays, and creates empty account objects of each type.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+public enum AccountType {
+    CHECKING("Checking"),
+    COLLEGE_CHECKING("College Checking"),
+    SAVINGS("Savings"),
+    MONEY_MARKET("Money Market Savings");
+
+    /**
+     * Account types in the alphabetical order of their names, which is the order used when
+     * printing by account type.
+     */
+    public static final AccountType[] BY_NAME = {CHECKING, COLLEGE_CHECKING, MONEY_MARKET, SAVINGS};
+
+    /**
+     * One account type per lookup class, so a holder has at most one account of each of these types in a
+     * database, and probing a store with the holder key of each finds all of the holder's accounts.
+     */
+    public static final AccountType[] BY_LOOKUP_CLASS = {CHECKING, SAVINGS, MONEY_MARKET};
+
+    private static final AccountType[] BY_CODE = values();
+
+    private final String typeName;
+
+    /**
+     * Constructor of this class.
+     * @param typeName - name of the account type, as returned by Account.getType().
+     */
+    AccountType(String typeName)
+    {
+        this.typeName = typeName;
+    }
+
+    /**
+     * @return the code of this account type, which fits in a byte.
+     */
+    public byte code()
+    {
+        return (byte) ordinal();
+    }
+
+    /**
+     * @param code - code of an account type.
+     * @return the account type with the given code.
+     */
+    public static AccountType fromCode(int code)
+    {
+        return BY_CODE[code];
+    }
+
+    /**
+     * This method returns the lookup class of this account type, which agrees with Account.getLookupClass():
+     * Checking and College Checking share one.
+     * @return the lookup class of the type.
+     */
+    public Class<? extends Account> lookupClass()
+    {
+        switch (this)
+        {
+            case SAVINGS:
+                return Savings.class;
+            case MONEY_MARKET:
+                return MoneyMarket.class;
+            default:
+                return Checking.class;
+        }
+    }
+
+    /**
+     * @param account - an account object.
+     * @return the type of the given account.
+     */
+    public static AccountType of(Account account)
+    {
+        if(account instanceof MoneyMarket)
+        {
+            return MONEY_MARKET;
+        }
+        if(account instanceof Savings)
+        {
+            return SAVINGS;
+        }
+        if(account instanceof CollegeChecking)
+        {
+            return COLLEGE_CHECKING;
+        }
+        return CHECKING;
+    }
+
+    /**
+     * This method creates an empty account object of this type.
+     * @param college - campus of a College Checking account, ignored for other types.
+     * @return a new account of this type.
+     */
+    public Account newAccount(College college)
+    {
+        switch (this)
+        {
+            case COLLEGE_CHECKING:
+                return new CollegeChecking(college);
+            case SAVINGS:
+                return new Savings();
+            case MONEY_MARKET:
+                return new MoneyMarket();
+            default:
+                return new Checking();
+        }
+    }
+
+    /**
+     * @return the name of the account type, as returned by Account.getType().
+     */
+    @Override
+    public String toString()
+    {
+        return typeName;
+    }
+}
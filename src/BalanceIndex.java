@@ -0,0 +1,344 @@
+/**
+ * BalanceIndex class is a secondary index of the open accounts of a database, ordered by balance within
+ * each account type. Accounts are identified by an id chosen by the store, such as the position of the
+ * account in the array or its row, and entries are ordered by balance and then by id, so equal balances
+ * are listed in the order the accounts were opened. The index remembers the balance it holds for each id,
+ * so an update only needs the new state of the account. Range, top-N and count queries walk a TreeSet, so
+ * they take O(log n + k) for k results.
+ * The index also keeps the fee watchlist: per type, the accounts whose monthly fee is waived, ordered the
+ * same way, so the accounts less than X dollars above a fee threshold are a prefix of that set; and the
+ * Money Market accounts with a waived fee that have used every free withdrawal, so one more withdrawal
+ * costs them the fee. College Checking has no fee and is never on the watchlist.
+ * The month-end update changes every balance, so UB marks the index stale instead of updating n entries,
+ * and the store rebuilds it before the next query. Updates are ignored while the index is stale.
+ * All functions are synchronized, so stores that change accounts from several threads can share one index.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+public class BalanceIndex {
+    private static final int DefaultCapacity = 16;
+    private static final byte NOT_INDEXED = -1;
+    private static final int LowestId = -1;
+    private static final byte Waived = 1;
+    private static final byte AtWithdrawalLimit = 2;
+
+    private final TreeSet<Entry>[] byType;
+    private final TreeSet<Entry>[] waivedByType;
+    private final TreeSet<Entry> atWithdrawalLimit;
+    private long[] balances;
+    private byte[] types;
+    private byte[] flags;
+    private boolean stale;
+
+    /**
+     * Entry class is one account of the index.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final long balance;
+        private final int id;
+
+        Entry(long balance, int id)
+        {
+            this.balance = balance;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other)
+        {
+            int byBalance = Long.compare(balance, other.balance);
+            return byBalance != 0 ? byBalance : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Constructor of this class. Creates an empty index that is stale, so it is built before its first query.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BalanceIndex()
+    {
+        this.byType = new TreeSet[AccountType.values().length];
+        this.waivedByType = new TreeSet[AccountType.values().length];
+        for(int i = 0; i < byType.length; i++)
+        {
+            byType[i] = new TreeSet<>();
+            waivedByType[i] = new TreeSet<>();
+        }
+        this.atWithdrawalLimit = new TreeSet<>();
+        this.balances = new long[DefaultCapacity];
+        this.types = new byte[DefaultCapacity];
+        this.flags = new byte[DefaultCapacity];
+        Arrays.fill(types, NOT_INDEXED);
+        this.stale = true;
+    }
+
+    /**
+     * This function records the new state of an account. Closed accounts are removed from the index.
+     * @param id - id of the account in its store.
+     * @param type - account type.
+     * @param isClosed - true if the account is closed.
+     * @param balance - balance in cents.
+     * @param withdrawals - withdrawals made from a Money Market account, 0 for other types.
+     */
+    public synchronized void update(int id, AccountType type, boolean isClosed, long balance, int withdrawals)
+    {
+        if(!stale)
+        {
+            put(id, type, isClosed, balance, withdrawals);
+        }
+    }
+
+    /**
+     * This function adds, moves or removes the entry of an account.
+     */
+    private void put(int id, AccountType type, boolean isClosed, long balance, int withdrawals)
+    {
+        if(id >= types.length)
+        {
+            int capacity = Math.max(id + 1, types.length * 2);
+            int length = types.length;
+            balances = Arrays.copyOf(balances, capacity);
+            types = Arrays.copyOf(types, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            Arrays.fill(types, length, capacity, NOT_INDEXED);
+        }
+        byte flag = isClosed ? 0 : feeFlags(type, balance, withdrawals);
+        if(types[id] != NOT_INDEXED)
+        {
+            if(!isClosed && types[id] == type.code() && balances[id] == balance && flags[id] == flag)
+            {
+                return;
+            }
+            remove(id);
+        }
+        if(!isClosed)
+        {
+            Entry entry = new Entry(balance, id);
+            byType[type.code()].add(entry);
+            if((flag & Waived) != 0)
+            {
+                waivedByType[type.code()].add(entry);
+            }
+            if((flag & AtWithdrawalLimit) != 0)
+            {
+                atWithdrawalLimit.add(entry);
+            }
+            balances[id] = balance;
+            types[id] = type.code();
+            flags[id] = flag;
+        }
+    }
+
+    /**
+     * This function removes the entries of an indexed account from every set that holds them.
+     */
+    private void remove(int id)
+    {
+        Entry entry = new Entry(balances[id], id);
+        byType[types[id]].remove(entry);
+        if((flags[id] & Waived) != 0)
+        {
+            waivedByType[types[id]].remove(entry);
+        }
+        if((flags[id] & AtWithdrawalLimit) != 0)
+        {
+            atWithdrawalLimit.remove(entry);
+        }
+        types[id] = NOT_INDEXED;
+        flags[id] = 0;
+    }
+
+    /**
+     * This function finds the watchlist sets an open account belongs to, using the static fee rules of its type.
+     * @return Waived if the monthly fee is waived, plus AtWithdrawalLimit if one more withdrawal ends the waiver.
+     */
+    private static byte feeFlags(AccountType type, long balance, int withdrawals)
+    {
+        switch (type)
+        {
+            case CHECKING -> {
+                return Checking.feeCentsFor(balance) == 0 ? Waived : 0;
+            }
+            case SAVINGS -> {
+                return Savings.feeCentsFor(balance) == 0 ? Waived : 0;
+            }
+            case MONEY_MARKET -> {
+                if(MoneyMarket.feeCentsFor(balance, withdrawals) != 0)
+                {
+                    return 0;
+                }
+                return MoneyMarket.feeCentsFor(balance, withdrawals + 1) != 0 ? Waived | AtWithdrawalLimit : Waived;
+            }
+            default -> {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @param type - account type.
+     * @return the balance in cents at which the monthly fee of the type is waived, or -1 if the type has no fee.
+     */
+    public static long feeThresholdCents(AccountType type)
+    {
+        switch (type)
+        {
+            case CHECKING -> {
+                return (long) Checking.minimumBalanceToWaiveFee * Money.CentsPerDollar;
+            }
+            case SAVINGS -> {
+                return (long) Savings.expectedBalance * Money.CentsPerDollar;
+            }
+            case MONEY_MARKET -> {
+                return (long) MoneyMarket.ExpectedBalance * Money.CentsPerDollar;
+            }
+            default -> {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * This function marks the index stale, after a change that moved too many balances to update one by one.
+     */
+    public synchronized void invalidate()
+    {
+        stale = true;
+    }
+
+    /**
+     * @return true if the index must be rebuilt before it is queried.
+     */
+    public synchronized boolean isStale()
+    {
+        return stale;
+    }
+
+    /**
+     * This function empties the index and lets the store add every account again. The index stays locked
+     * until the loader returns, so an update made meanwhile by another thread is applied after the rebuild
+     * rather than lost.
+     * @param loader - function that calls add() for every account of the store.
+     */
+    public synchronized void rebuild(Consumer<BalanceIndex> loader)
+    {
+        for(int i = 0; i < byType.length; i++)
+        {
+            byType[i].clear();
+            waivedByType[i].clear();
+        }
+        atWithdrawalLimit.clear();
+        Arrays.fill(types, NOT_INDEXED);
+        Arrays.fill(flags, (byte) 0);
+        loader.accept(this);
+        stale = false;
+    }
+
+    /**
+     * This function adds an account while the index is being rebuilt.
+     * @param id - id of the account in its store.
+     * @param type - account type.
+     * @param isClosed - true if the account is closed; closed accounts are skipped.
+     * @param balance - balance in cents.
+     * @param withdrawals - withdrawals made from a Money Market account, 0 for other types.
+     */
+    public synchronized void add(int id, AccountType type, boolean isClosed, long balance, int withdrawals)
+    {
+        put(id, type, isClosed, balance, withdrawals);
+    }
+
+    /**
+     * @param type - account type.
+     * @param fromCents - lowest balance, inclusive.
+     * @param toCents - highest balance, exclusive.
+     * @return the ids of the open accounts of the type in the balance range, lowest balance first.
+     */
+    public synchronized int[] range(AccountType type, long fromCents, long toCents)
+    {
+        if(fromCents >= toCents)
+        {
+            return new int[0];
+        }
+        return ids(subSet(type, fromCents, toCents).iterator(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param type - account type.
+     * @param n - largest number of accounts to return.
+     * @return the ids of the n open accounts of the type with the highest balances, highest first.
+     */
+    public synchronized int[] top(AccountType type, int n)
+    {
+        return ids(byType[type.code()].descendingIterator(), n);
+    }
+
+    /**
+     * @param type - account type.
+     * @param fromCents - lowest balance, inclusive.
+     * @param toCents - highest balance, exclusive.
+     * @return the number of open accounts of the type in the balance range.
+     */
+    public synchronized int count(AccountType type, long fromCents, long toCents)
+    {
+        return fromCents >= toCents ? 0 : subSet(type, fromCents, toCents).size();
+    }
+
+    /**
+     * @param type - account type.
+     * @param withinCents - distance above the fee threshold, exclusive.
+     * @return the ids of the open accounts of the type whose fee is waived and whose balance is less than
+     *         withinCents above the fee threshold of the type, lowest balance first.
+     */
+    public synchronized int[] nearFeeThreshold(AccountType type, long withinCents)
+    {
+        long threshold = feeThresholdCents(type);
+        if(threshold < 0 || withinCents <= 0)
+        {
+            return new int[0];
+        }
+        Entry bound = new Entry(threshold + withinCents, LowestId);
+        return ids(waivedByType[type.code()].headSet(bound).iterator(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the ids of the Money Market accounts whose fee is waived but would not be after one more
+     *         withdrawal, lowest balance first.
+     */
+    public synchronized int[] atWithdrawalLimit()
+    {
+        return ids(atWithdrawalLimit.iterator(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the entries of a type with fromCents <= balance < toCents.
+     */
+    private SortedSet<Entry> subSet(AccountType type, long fromCents, long toCents)
+    {
+        return byType[type.code()].subSet(new Entry(fromCents, LowestId), new Entry(toCents, LowestId));
+    }
+
+    /**
+     * @return the ids of up to limit entries of an iterator.
+     */
+    private static int[] ids(Iterator<Entry> entries, int limit)
+    {
+        List<Entry> found = new ArrayList<>();
+        while(found.size() < limit && entries.hasNext())
+        {
+            found.add(entries.next());
+        }
+        int[] ids = new int[found.size()];
+        for(int i = 0; i < ids.length; i++)
+        {
+            ids[i] = found.get(i).id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Test class to check the balance queries and the fee watchlist of every AccountDatabase against a scan
+ * of all accounts.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BalanceIndexTest {
+
+    /**
+     * This is a helper that opens, changes and closes random accounts, with UBs in between, and checks
+     * the queries after each step, so the index is checked both after updates and after rebuilds.
+     */
+    private void checkQueries(AbstractAccountDatabase accountDatabase) {
+        Random random = new Random(42);
+        Date dob = new Date("3/9/1990");
+        checkAgainstScan(accountDatabase);
+        for(int step = 0; step < 5; step++) {
+            for(int i = 0; i < 100; i++) {
+                int holder = random.nextInt(150);
+                Account account = AccountType.values()[holder % 4].newAccount(College.NEWARK);
+                account.setHolder("First" + holder, "Last", dob);
+                account.setBalanceCents(250000 + random.nextInt(100000));
+                Account existing = accountDatabase.getAccountIfExists(account);
+                if(existing == null) {
+                    accountDatabase.open(account);
+                }
+                else if(existing.isClosed()) {
+                    accountDatabase.reOpen(account);
+                }
+                else {
+                    account.setBalanceCents(1 + random.nextInt(150000));
+                    switch (random.nextInt(3)) {
+                        case 0 -> accountDatabase.deposit(account);
+                        case 1 -> accountDatabase.withdraw(account);
+                        default -> accountDatabase.close(account);
+                    }
+                }
+            }
+            checkAgainstScan(accountDatabase);
+            accountDatabase.updateBalance();
+            checkAgainstScan(accountDatabase);
+        }
+    }
+
+    /**
+     * This is a helper that compares range, top-N and count queries and the fee watchlist of each type
+     * with a scan.
+     */
+    private void checkAgainstScan(AbstractAccountDatabase accountDatabase) {
+        for(AccountType type : AccountType.values()) {
+            List<Account> open = new ArrayList<>();
+            accountDatabase.forEach(account -> {
+                if(!account.isClosed() && AccountType.of(account) == type) {
+                    open.add(account);
+                }
+            });
+            open.sort(Comparator.comparingLong(Account::getBalanceCents));
+            long from = 100000;
+            long to = 300000;
+            List<String> expected = new ArrayList<>();
+            for(Account account : open) {
+                if(account.getBalanceCents() >= from && account.getBalanceCents() < to) {
+                    expected.add(account.toString());
+                }
+            }
+            assertEquals(expected, strings(accountDatabase.findByBalance(type, from, to)));
+            assertEquals(expected.size(), accountDatabase.countByBalance(type, from, to));
+
+            List<String> top = new ArrayList<>();
+            for(int i = open.size() - 1; i >= 0 && top.size() < 10; i--) {
+                top.add(open.get(i).toString());
+            }
+            assertEquals(top, strings(accountDatabase.topByBalance(type, 10)));
+
+            long within = 200000;
+            List<String> near = new ArrayList<>();
+            for(Account account : open) {
+                long threshold = BalanceIndex.feeThresholdCents(type);
+                if(threshold >= 0 && account.feeCents() == 0 && account.getBalanceCents() < threshold + within) {
+                    near.add(account.toString());
+                }
+            }
+            assertEquals(near, strings(accountDatabase.findNearFeeThreshold(type, within)));
+            if(type == AccountType.MONEY_MARKET) {
+                List<String> atLimit = new ArrayList<>();
+                for(Account account : open) {
+                    if(account.feeCents() == 0
+                            && ((MoneyMarket) account).getWithdrawCounter() == MoneyMarket.maximumWithdrawals) {
+                        atLimit.add(account.toString());
+                    }
+                }
+                assertEquals(atLimit, strings(accountDatabase.findAtWithdrawalLimit()));
+            }
+        }
+    }
+
+    /**
+     * This is a helper that renders accounts for comparison.
+     */
+    private static List<String> strings(List<Account> accounts) {
+        List<String> lines = new ArrayList<>();
+        for(Account account : accounts) {
+            lines.add(account.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * This Test method checks the queries and the watchlist of the object, concurrent, columnar and
+     * off-heap stores.
+     */
+    @Test
+    public void matchesScan_Test() {
+        checkQueries(new AccountDatabase());
+        checkQueries(new ConcurrentAccountDatabase());
+        checkQueries(new ColumnarAccountDatabase());
+        checkQueries(new OffHeapAccountDatabase());
+    }
+
+    /**
+     * This Test method checks the queries when UB only advances the statement period.
+     */
+    @Test
+    public void lazyAccrual_Test() {
+        AccountDatabase lazy = new AccountDatabase();
+        lazy.setLazyAccrual(true);
+        checkQueries(lazy);
+    }
+
+    /**
+     * This Test method checks empty ranges and equal balances, which are listed in the order opened.
+     */
+    @Test
+    public void ties_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        Date dob = new Date("3/9/1990");
+        for(int i = 0; i < 3; i++) {
+            Checking checking = new Checking();
+            checking.setHolder("First" + i, "Last", dob);
+            checking.setBalanceCents(50000);
+            accountDatabase.open(checking);
+        }
+        List<Account> found = accountDatabase.findByBalance(AccountType.CHECKING, 50000, 50001);
+        assertEquals(3, found.size());
+        assertEquals("First0", found.get(0).getHolder().getFname());
+        assertEquals("First2", found.get(2).getHolder().getFname());
+        assertEquals("First2", accountDatabase.topByBalance(AccountType.CHECKING, 1).get(0).getHolder().getFname());
+        assertEquals(0, accountDatabase.countByBalance(AccountType.CHECKING, 50001, 50000));
+        assertTrue(accountDatabase.findByBalance(AccountType.SAVINGS, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    /**
+     * This Test method checks that accounts enter and leave the watchlist as their balance crosses the
+     * fee threshold and as Money Market withdrawals reach the limit.
+     */
+    @Test
+    public void watchlist_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        Date dob = new Date("3/9/1990");
+        Checking checking = new Checking();
+        checking.setHolder("John", "Doe", dob);
+        checking.setBalanceCents(105000);
+        accountDatabase.open(checking);
+        MoneyMarket moneyMarket = new MoneyMarket();
+        moneyMarket.setHolder("Jane", "Doe", dob);
+        moneyMarket.setBalanceCents(400000);
+        accountDatabase.open(moneyMarket);
+        assertEquals(1, accountDatabase.findNearFeeThreshold(AccountType.CHECKING, 10000).size());
+        assertTrue(accountDatabase.findNearFeeThreshold(AccountType.CHECKING, 5000).isEmpty());
+        assertTrue(accountDatabase.findNearFeeThreshold(AccountType.MONEY_MARKET, 10000).isEmpty());
+
+        Checking withdrawal = new Checking();
+        withdrawal.setHolder("John", "Doe", dob);
+        withdrawal.setBalanceCents(10000);
+        accountDatabase.withdraw(withdrawal);
+        assertTrue(accountDatabase.findNearFeeThreshold(AccountType.CHECKING, 10000).isEmpty());
+
+        MoneyMarket small = new MoneyMarket();
+        small.setHolder("Jane", "Doe", dob);
+        small.setBalanceCents(100);
+        for(int i = 0; i < MoneyMarket.maximumWithdrawals; i++) {
+            assertTrue(accountDatabase.findAtWithdrawalLimit().isEmpty());
+            accountDatabase.withdraw(small);
+        }
+        assertEquals(1, accountDatabase.findAtWithdrawalLimit().size());
+        accountDatabase.withdraw(small);
+        assertTrue(accountDatabase.findAtWithdrawalLimit().isEmpty());
+        assertTrue(accountDatabase.findNearFeeThreshold(AccountType.COLLEGE_CHECKING, 1000000).isEmpty());
+    }
+}
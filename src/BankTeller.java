@@ -3,7 +3,10 @@
  * This class also handles exceptions and invalid data given by user.
  * @author Sumanth Rajkumar, Shantanu Jain
  */
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.regex.Pattern;
 
 
 public class BankTeller {
@@ -11,11 +14,45 @@ public class BankTeller {
 
     public static final String missingOpeningData = "Missing data for opening an account.";
     public static final String missingClosingData = "Missing data for closing an account.";
+    public static final String missingQueryData = "Missing data for a balance query.";
+    public static final String missingTransferData = "Missing data for a transfer.";
+    public static final String nameTooLong = "Name is too long.";
+    public static final String tellerRunning = "Bank Teller is running.";
+    public static final String tellerTerminated = "Bank Teller is terminated.";
+    private static final Pattern Separators = Pattern.compile("[ \t]+");
     private static final int ExpectedArgumentLength = 1;
     private static final int LengthOfArgumentsWithFirstAndLastName = 3;
     private static final int LengthOfArgumentsWithFirstAndLastNameAndDOB = 5;
     private static final int LengthOfArgumentsWithFirstAndLastNameAndBalance = 6;
     private static final int LengthOfArgumentsToOpenCollegeCheckingAndSavings = 7;
+    private static final int LengthOfArgumentsForWatchlist = 2;
+    private static final int LengthOfArgumentsForHolder = 4;
+    private static final int LengthOfArgumentsForNameSearch = 3;
+    private static final int LengthOfArgumentsForNameSearchWithFirstName = 4;
+    private static final int HoldersPerPage = 20;
+    private static final int LengthOfArgumentsForTopQuery = 3;
+    private static final int LengthOfArgumentsForRangeQuery = 4;
+    private static final int LengthOfArgumentsForTransfer = 7;
+
+    private final AbstractAccountDatabase accountDatabase;
+
+    /**
+     * Constructor of this class. The teller works on a new, empty AccountDatabase.
+     */
+    public BankTeller()
+    {
+        this(new AccountDatabase());
+    }
+
+    /**
+     * Constructor of this class. The teller works on the given database, which may be configured
+     * or be one of the AccountDatabase extensions.
+     * @param accountDatabase - database the teller works on.
+     */
+    public BankTeller(AbstractAccountDatabase accountDatabase)
+    {
+        this.accountDatabase = accountDatabase;
+    }
 
     /**
      * This function is called by main function. This function calls command function which handles
@@ -23,65 +60,368 @@ public class BankTeller {
      */
     public void run()
     {
-        System.out.println("Bank Teller is running.");
-        Scanner s = new Scanner(System.in);
+        ReportWriter out = new ReportWriter(System.out);
+        out.println(tellerRunning);
+        out.flush();
+        CommandTokenizer tokens = new CommandTokenizer(Channels.newChannel(System.in));
+
+        try {
+            while (tokens.nextLine()) {
+                Command command = prepare(tokens);
+                if(command != null){
+                    boolean running;
+                    try {
+                        running = apply(command, out);
+                    }
+                    finally {
+                        out.flush();
+                    }
+                    if(!running){
+                        System.exit(0);
+                    }
+                }
 
-        AccountDatabase accountDatabase = new AccountDatabase();
-        while (s.hasNextLine()) {
-            String c = s.nextLine();
-            String[] transaction = c.split("[ \t]+");
-            if(transaction.length <= 0 || transaction[0].isBlank()){
-                continue;
             }
-            switch (transaction[0]) {
-                case "O" -> caseOpen(accountDatabase, transaction);
-                case "C" -> caseClose(accountDatabase, transaction);
-                case "D" -> caseDeposit(accountDatabase, transaction);
-                case "W" -> caseWithdraw(accountDatabase, transaction);
-                case "P" -> casePrint(accountDatabase);
-                case "PT" -> casePrintByAccountType(accountDatabase);
-                case "PI" -> casePrintWithFeeAndInterest(accountDatabase);
-                case "UB" -> caseUpdateBalance(accountDatabase);
-                case "Q" -> {System.out.println("Bank Teller is terminated."); System.exit(0);}
-                default -> System.out.println("Invalid command!");
+        }
+        catch(IOException e){
+            System.err.println("Input failed: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * This function is a helper that splits a line of input into the tokens of a transaction.
+     * @param line - line given by the user.
+     * @return the tokens of the transaction.
+     */
+    static String[] tokenize(String line)
+    {
+        return Separators.split(line);
+    }
+
+    /**
+     * This function parses and validates a transaction without looking at the database. For O, C, D and W
+     * it builds the account object the command works on, keeping the messages the checks print until the
+     * command is applied; any other command is only parsed when it is applied. It does not change the teller,
+     * so transactions can be prepared ahead, on other threads, and applied in order.
+     * @param transaction - tokens of the transaction.
+     * @return the prepared command, or null for a blank line.
+     */
+    Command prepare(String[] transaction)
+    {
+        if(transaction.length <= 0 || transaction[0].isBlank()){
+            return null;
+        }
+        return validate(new Command(transaction));
+    }
+
+    /**
+     * This function parses and validates the current line of a tokenizer like prepare(String[]), reading
+     * the codes, date of birth and amount in place. The command must be applied before the tokenizer moves
+     * to the next line.
+     * @param tokens - tokenizer at the line of the transaction.
+     * @return the prepared command, or null for a blank line.
+     */
+    Command prepare(CommandTokenizer tokens)
+    {
+        if(tokens.isBlank()){
+            return null;
+        }
+        return validate(new Command(tokens));
+    }
+
+    /**
+     * This function is a helper that validates O, C, D and W commands for prepare().
+     */
+    private Command validate(Command command)
+    {
+        try {
+            switch (command.code) {
+                case "O" -> command.probe = prepareOpen(command);
+                case "C" -> command.probe = prepareProfile(command);
+                case "D" -> command.probe = prepareAmount(command, "Deposit - amount cannot be 0 or negative.");
+                case "W" -> command.probe = prepareAmount(command, "Withdraw - amount cannot be 0 or negative.");
+                default -> {}
             }
+        }
+        catch(RuntimeException e){
+            command.failure = e;
+        }
+        return command;
+    }
 
+    /**
+     * This function applies a prepared command to the database and prints its result. The output is left in
+     * the writer's buffer, which the caller flushes when it wants the output to appear.
+     * @param command - command returned by prepare().
+     * @param out - writer the output is printed to.
+     * @return false if the command is Q, so the teller terminates.
+     */
+    boolean apply(Command command, ReportWriter out)
+    {
+        AbstractAccountDatabase accountDatabase = this.accountDatabase;
+        if(accountDatabase.isReadOnly() && isChange(command.code)){
+            out.println(ReplicaAccountDatabase.readOnlyFollower);
+            return true;
+        }
+        switch (command.code) {
+            case "O" -> caseOpen(accountDatabase, command, out);
+            case "C" -> caseClose(accountDatabase, command, out);
+            case "D" -> caseDeposit(accountDatabase, command, out);
+            case "W" -> caseWithdraw(accountDatabase, command, out);
+            case "T" -> caseTransfer(accountDatabase, command.inputs(), out);
+            case "P" -> casePrint(accountDatabase, out);
+            case "PT" -> casePrintByAccountType(accountDatabase, out);
+            case "PI" -> casePrintWithFeeAndInterest(accountDatabase, out);
+            case "UB" -> caseUpdateBalance(accountDatabase, out);
+            case "PS" -> casePrintSummary(accountDatabase, out);
+            case "BR" -> caseBalanceRange(accountDatabase, command.inputs(), out);
+            case "BT" -> caseBalanceTop(accountDatabase, command.inputs(), out);
+            case "BC" -> caseBalanceCount(accountDatabase, command.inputs(), out);
+            case "FW" -> caseFeeWatchlist(accountDatabase, command.inputs(), out);
+            case "H" -> caseHolder(accountDatabase, command.inputs(), out);
+            case "N" -> caseNameSearch(accountDatabase, command.inputs(), false, out);
+            case "NF" -> caseNameSearch(accountDatabase, command.inputs(), true, out);
+            case "RL" -> caseReplicationLag(accountDatabase, out);
+            case "PR" -> casePromote(accountDatabase, out);
+            case "Q" -> {out.println(tellerTerminated); return false;}
+            default -> out.println("Invalid command!");
         }
+        return true;
+    }
 
+    /**
+     * Command class holds a transaction between prepare() and apply(): its tokens, the account object it
+     * works on and the messages printed while it was validated. The tokens are either Strings or the line
+     * a CommandTokenizer is at; a token is only made into a String when it is needed as one.
+     */
+    static class Command {
+        private final String code;
+        private String[] inputs;
+        private final CommandTokenizer tokens;
+        private Account probe;
+        private StringBuilder messages;
+        private RuntimeException failure;
+
+        Command(String[] inputs)
+        {
+            this.code = inputs[0];
+            this.inputs = inputs;
+            this.tokens = null;
+        }
+
+        Command(CommandTokenizer tokens)
+        {
+            this.code = tokens.code(0);
+            this.tokens = tokens;
+        }
+
+        /**
+         * @return number of tokens.
+         */
+        private int length()
+        {
+            return inputs != null ? inputs.length : tokens.count();
+        }
+
+        /**
+         * @return a token that is a type or loyalty code, without making a String if it is read in place.
+         */
+        private String code(int token)
+        {
+            return inputs != null ? inputs[token] : tokens.code(token);
+        }
+
+        /**
+         * @return a token as a String.
+         */
+        private String input(int token)
+        {
+            return inputs != null ? inputs[token] : tokens.text(token);
+        }
+
+        /**
+         * @return every token as a String, for the commands parsed from String arrays.
+         */
+        private String[] inputs()
+        {
+            if(inputs == null)
+            {
+                inputs = tokens.texts();
+            }
+            return inputs;
+        }
+
+        /**
+         * @return a date token packed by CommandTokenizer.pack(), or CommandTokenizer.INVALID_DATE.
+         */
+        private long date(int token)
+        {
+            return inputs != null ? CommandTokenizer.parseDate(inputs[token]) : tokens.parseDate(token);
+        }
+
+        /**
+         * @return an amount token in cents, or Money.INVALID.
+         */
+        private long cents(int token)
+        {
+            return inputs != null ? Money.parseCents(inputs[token]) : tokens.parseCents(token);
+        }
+
+        /**
+         * This function keeps a line to print when the command is applied.
+         */
+        private void println(String line)
+        {
+            if(messages == null)
+            {
+                messages = new StringBuilder();
+            }
+            messages.append(line).append(System.lineSeparator());
+        }
+
+        /**
+         * This function prints the kept messages and throws the exception validation failed with, if any.
+         * @param out - writer the output is printed to.
+         * @return true if validation built the account object, so the command goes on to the database.
+         */
+        private boolean replay(ReportWriter out)
+        {
+            if(messages != null)
+            {
+                out.append(messages);
+            }
+            if(failure != null)
+            {
+                throw failure;
+            }
+            return probe != null;
+        }
+    }
+
+    /**
+     * This function is a helper that tells whether a command changes the accounts, so a follower that is
+     * not promoted can reject it before printing anything.
+     * @param command - first token of the transaction.
+     * @return true for O, C, D, W, T and UB.
+     */
+    private static boolean isChange(String command)
+    {
+        switch (command)
+        {
+            case "O", "C", "D", "W", "T", "UB" -> {return true;}
+            default -> {return false;}
+        }
+    }
+
+    /**
+     * This function is a helper that builds the account object to open from a transaction.
+     * @param command - transaction given by the user, which keeps the messages.
+     * @return the account to open, or null if the transaction is not valid.
+     */
+    private Account prepareOpen(Command command)
+    {
+        if(command.length() <= ExpectedArgumentLength){
+            command.println(missingOpeningData);
+            return null;
+        }
+        Account account;
+        switch (command.code(1))
+        {
+            case "C" -> account = new Checking();
+            case "CC" -> account = collegeCheckingForOpen(command);
+            case "S" -> account = savingsForOpen(command);
+            case "MM" -> account = new MoneyMarket();
+            default -> {
+                command.println("Invalid Account Type");
+                return null;
+            }
+        }
+        if(account == null || !populateHolderAndBalance(account, "Initial deposit cannot be 0 or negative.", command)){
+            return null;
+        }
+        return account;
+    }
+
+    /**
+     * This function is a helper that builds the account object of a close from a transaction.
+     * @param command - transaction given by the user, which keeps the messages.
+     * @return the account object holding the profile, or null if the transaction is not valid.
+     */
+    private Account prepareProfile(Command command)
+    {
+        Account account = newAccountForType(command.code(1), command);
+        if(account == null || !populateHolder(false, account, command)){
+            return null;
+        }
+        return account;
+    }
+
+    /**
+     * This function is a helper that builds the account object of a deposit or withdrawal from a transaction.
+     * @param command - transaction given by the user, which keeps the messages.
+     * @param errorMessage - message for an amount that is 0 or negative.
+     * @return the account object holding the profile and the amount, or null if the transaction is not valid.
+     */
+    private Account prepareAmount(Command command, String errorMessage)
+    {
+        Account account = newAccountForType(command.code(1), command);
+        if(account == null || !populateHolderAndBalance(account, errorMessage, command)){
+            return null;
+        }
+        return account;
+    }
+
+    /**
+     * This function is a helper that creates an empty account object of the type given by a type code.
+     * @param code - account type code, C, CC, S or MM.
+     * @param command - command that keeps the messages.
+     * @return the account object, or null if the code is not valid.
+     */
+    private Account newAccountForType(String code, Command command)
+    {
+        switch (code)
+        {
+            case "C" -> {return new Checking();}
+            case "CC" -> {return new CollegeChecking();}
+            case "S" -> {return new Savings();}
+            case "MM" -> {return new MoneyMarket();}
+            default -> {
+                command.println("Invalid Account Type");
+                return null;
+            }
+        }
     }
 
     /**
      * This function opens an account, and adds it to accountDatabase object.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - prepared transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseOpen(AccountDatabase accountDatabase, String[] inputs)
+    private void caseOpen(AbstractAccountDatabase accountDatabase, Command command, ReportWriter out)
     {
-        if(inputs.length <= ExpectedArgumentLength){
-            System.out.println(missingOpeningData);
+        if(!command.replay(out)){
             return;
         }
-        switch (inputs[1])
-        {
-            case "C" -> caseCheckingForOpen(accountDatabase, inputs);
-            case "CC" -> caseCollegeCheckingForOpen(accountDatabase, inputs);
-            case "S" -> caseSavingsForOpen(accountDatabase, inputs);
-            case "MM" -> caseMoneyMarketForOpen(accountDatabase, inputs);
-            default -> System.out.println("Invalid Account Type");
-        }
+        checkExistingAndOpenAccount(accountDatabase, command.probe, command, out);
     }
 
 
     /**
      * This function is a helper that checks if the user enters info only until last name
      * @param forOpen - a boolean that says if it's the case of opening and account
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user, which keeps the messages.
      */
-    private boolean validateFirstLastNames(boolean forOpen, String[] inputs){
-        if(inputs.length <= LengthOfArgumentsWithFirstAndLastName){
-            System.out.println(forOpen?missingOpeningData:missingClosingData);
+    private boolean validateFirstLastNames(boolean forOpen, Command command){
+        if(command.length() <= LengthOfArgumentsWithFirstAndLastName){
+            command.println(forOpen?missingOpeningData:missingClosingData);
            return false;
         }
+        if(!Profile.isValidName(command.input(2)) || !Profile.isValidName(command.input(3))){
+            command.println(nameTooLong);
+            return false;
+        }
         return true;
     }
 
@@ -89,45 +429,44 @@ public class BankTeller {
      * This function is a helper that checks if the user enters info only until dob
      * and validates the dob
      * @param forOpen - a boolean that says if it's the case of opening and account
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user, which keeps the messages.
      */
-    private Date validateAndParseDOB(boolean forOpen, String[] inputs){
-        if(inputs.length < LengthOfArgumentsWithFirstAndLastNameAndDOB){
-            System.out.println(forOpen?missingOpeningData:missingClosingData);
+    private Date validateAndParseDOB(boolean forOpen, Command command){
+        if(command.length() < LengthOfArgumentsWithFirstAndLastNameAndDOB){
+            command.println(forOpen?missingOpeningData:missingClosingData);
             return null;
         }
-        try {
-            Date dob = new Date(inputs[4]);
-            if(!dob.isValid() || dob.isInTheFuture())
-            {
-                System.out.println("Date of birth invalid.");
-                return null;
-            }
-            return dob;
+        long packed = command.date(4);
+        if(packed == CommandTokenizer.INVALID_DATE){
+            command.println("Date of birth invalid.");
+            return null;
         }
-        catch(Exception e){
-            System.out.println("Date of birth invalid.");
+        Date dob = CommandTokenizer.toDate(packed);
+        if(!dob.isValid() || dob.isInTheFuture())
+        {
+            command.println("Date of birth invalid.");
             return null;
         }
+        return dob;
     }
 
     /**
      * This function is a helper that populates the account object with given profile info
      * @param forOpen - a boolean that says if it's the case of opening and account
      * @param account - account being populated
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user, which keeps the messages.
      */
-    private boolean populateHolder(boolean forOpen, Account account, String[] inputs)
+    private boolean populateHolder(boolean forOpen, Account account, Command command)
     {
-        if(!validateFirstLastNames(forOpen, inputs)) {
+        if(!validateFirstLastNames(forOpen, command)) {
             return false;
         }
 
-        Date dob = validateAndParseDOB(forOpen, inputs);
+        Date dob = validateAndParseDOB(forOpen, command);
         if(dob==null){
             return false;
         }
-        account.setHolder(inputs[2], inputs[3], dob);
+        account.setHolder(command.input(2), command.input(3), dob);
         return true;
     }
 
@@ -135,30 +474,28 @@ public class BankTeller {
      * This function is a helper that populates the account object with
      * given profile info and initial deposit info
      * @param account - account being populated
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user, which keeps the messages.
      */
-    private boolean populateHolderAndBalance(Account account, String[] inputs, String errorMessage)
+    private boolean populateHolderAndBalance(Account account, String errorMessage, Command command)
     {
-        if(!populateHolder(true, account, inputs)){
+        if(!populateHolder(true, account, command)){
             return false;
         }
 
-        if(inputs.length < LengthOfArgumentsWithFirstAndLastNameAndBalance){
-            System.out.println(missingOpeningData);
+        if(command.length() < LengthOfArgumentsWithFirstAndLastNameAndBalance){
+            command.println(missingOpeningData);
             return false;
         }
-        double balance;
-        try {
-            balance = Double.parseDouble(inputs[5]);
-        }catch (Exception e){
-            System.out.println("Not a valid amount.");
+        long balance = command.cents(5);
+        if(balance == Money.INVALID){
+            command.println("Not a valid amount.");
             return false;
         }
-        if(balance <= 0d){
-            System.out.println(errorMessage);
+        if(balance <= 0){
+            command.println(errorMessage);
             return false;
         }
-        account.setBalance(balance);
+        account.setBalanceCents(balance);
         return true;
     }
 
@@ -167,440 +504,735 @@ public class BankTeller {
      * This function is a helper that checks if account exists or closed
      * before opening an account.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user.
      * @param newAccount - account being deposited to.
+     * @param out - writer the output is printed to.
      */
-    private void checkExistingAndOpenAccount(AccountDatabase accountDatabase, Account newAccount, String[] inputs){
-        if(!populateHolderAndBalance(newAccount, inputs,"Initial deposit cannot be 0 or negative.")){
-            return;
-        }
+    private void checkExistingAndOpenAccount(AbstractAccountDatabase accountDatabase, Account newAccount, Command command, ReportWriter out){
         Account existing = accountDatabase.getAccountIfExists(newAccount);
         if(existing!=null) {
             if(!existing.isClosed() || !existing.getType().equals(newAccount.getType())){
-                System.out.println(inputs[2] + " " + inputs[3] + " " + inputs[4] + " same account(type) is in the database.");
+                out.println(command.input(2) + " " + command.input(3) + " " + command.input(4) + " same account(type) is in the database.");
             }else{
                 accountDatabase.reOpen(newAccount);
-                System.out.println("Account reopened.");
+                out.println("Account reopened.");
             }
         }else {
             if(newAccount instanceof  MoneyMarket){
                     MoneyMarket moneyMarket = (MoneyMarket) newAccount;
                     if(!moneyMarket.hasMinimumInitialDeposit()){
-                        System.out.println("Minimum of $" + MoneyMarket.ExpectedBalance + " to open a MoneyMarket account.");
+                        out.println("Minimum of $" + MoneyMarket.ExpectedBalance + " to open a MoneyMarket account.");
                         return;
                     }
 
             }
             accountDatabase.open(newAccount);
-            System.out.println("Account opened.");
+            out.println("Account opened.");
         }
     }
 
     /**
-     * This function is used to open a Checking account.
-     * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
-     */
-    private void caseCheckingForOpen(AccountDatabase accountDatabase, String[] inputs)
-    {
-        Checking checking = new Checking();
-        checkExistingAndOpenAccount(accountDatabase, checking, inputs);
-    }
-
-    /**
-     * This function is used to open a College Checking account.
-     * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * This function is used to build a College Checking account to open.
+     * @param command - transaction given by the user, which keeps the messages.
+     * @return the account, or null if the campus code is missing or not valid.
      */
-    private void caseCollegeCheckingForOpen(AccountDatabase accountDatabase, String[] inputs)
+    private Account collegeCheckingForOpen(Command command)
     {
-        if(inputs.length < LengthOfArgumentsToOpenCollegeCheckingAndSavings){
-            System.out.println(missingOpeningData);
-            return;
+        if(command.length() < LengthOfArgumentsToOpenCollegeCheckingAndSavings){
+            command.println(missingOpeningData);
+            return null;
         }
         College college;
         try{
-            int enumIndex = Integer.parseInt(inputs[6]);
+            int enumIndex = Integer.parseInt(command.input(6));
             college = College.values()[enumIndex];
         }catch (Exception e){
-            System.out.println("Invalid campus code.");
-            return;
+            command.println("Invalid campus code.");
+            return null;
         }
 
-        CollegeChecking collegeChecking = new CollegeChecking(college);
-        checkExistingAndOpenAccount(accountDatabase, collegeChecking, inputs);
+        return new CollegeChecking(college);
 
     }
 
     /**
-     * This function is used to open a Savings account.
-     * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * This function is used to build a Savings account to open.
+     * @param command - transaction given by the user, which keeps the messages.
+     * @return the account.
      */
-    private void caseSavingsForOpen(AccountDatabase accountDatabase, String[] inputs)
+    private Account savingsForOpen(Command command)
     {
-        if(inputs.length < LengthOfArgumentsToOpenCollegeCheckingAndSavings){
-            System.out.println(missingOpeningData);
+        if(command.length() < LengthOfArgumentsToOpenCollegeCheckingAndSavings){
+            command.println(missingOpeningData);
         }
-        String loyalty = inputs[6];
+        String loyalty = command.code(6);
         if(!loyalty.equals(Savings.LOYAL) && !loyalty.equals(Savings.NON_LOYAL)){
-            System.out.println("Invalid loyalty code");
+            command.println("Invalid loyalty code");
         }
         Savings savings = new Savings();
         savings.setLoyalty(loyalty.equals(Savings.LOYAL));
-        checkExistingAndOpenAccount(accountDatabase, savings, inputs);
-    }
-
-    /**
-     * This function is used to open a Money Market account.
-     * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
-     */
-    private void caseMoneyMarketForOpen(AccountDatabase accountDatabase, String[] inputs)
-    {
-        MoneyMarket savings = new MoneyMarket();
-        checkExistingAndOpenAccount(accountDatabase, savings, inputs);
-
+        return savings;
     }
 
     /**
      * This function is used to close an account.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - prepared transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseClose(AccountDatabase accountDatabase, String[] inputs)
+    private void caseClose(AbstractAccountDatabase accountDatabase, Command command, ReportWriter out)
     {
-        switch (inputs[1]) {
-            case "C" -> caseCheckingForClose(accountDatabase, inputs);
-            case "CC" -> caseCollegeCheckingForClose(accountDatabase, inputs);
-            case "S" -> caseSavingsForClose(accountDatabase, inputs);
-            case "MM" -> caseMoneyMarketForClose(accountDatabase, inputs);
-            default -> System.out.println("Invalid Account Type");
+        if(!command.replay(out)){
+            return;
         }
+        closeExistingAccount(accountDatabase, command.probe, command, out);
     }
 
     /**
      * This function is a helper that checks if account exists or closed
      * before closing an account.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user.
      * @param account - account being deposited to.
+     * @param out - writer the output is printed to.
      */
-    private void closeExistingAccount(AccountDatabase accountDatabase, Account account, String[] inputs ){
-        if(!populateHolder(false, account, inputs)){
-            return;
-        }
+    private void closeExistingAccount(AbstractAccountDatabase accountDatabase, Account account, Command command, ReportWriter out){
         Account existing = accountDatabase.getAccountIfExists(account);
         if(existing!=null) {
             if(!existing.isClosed()){
                 accountDatabase.close(existing);
-                System.out.println("Account closed.");
+                out.println("Account closed.");
             }else{
-                System.out.println("Account is closed already.");
+                out.println("Account is closed already.");
             }
         }else{
-            System.out.println(inputs[2] + " " + inputs[3] + " " + inputs[4] + " " + account.getShortType() + " is not in the database.");
+            out.println(command.input(2) + " " + command.input(3) + " " + command.input(4) + " " + account.getShortType() + " is not in the database.");
         }
 
     }
 
     /**
-     * This function is used to close a Checking account.
+     * This function is a helper that checks if account exists or closed
+     * before depositing an amount to an account.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user.
+     * @param account - account being deposited to.
+     * @param out - writer the output is printed to.
      */
-    private void caseCheckingForClose(AccountDatabase accountDatabase, String[] inputs)
-    {
-        Checking checking = new Checking();
-        closeExistingAccount(accountDatabase, checking, inputs);
-    }
+    private void depositToAccount(AbstractAccountDatabase accountDatabase, Account account, Command command, ReportWriter out){
+        Account existing = accountDatabase.getAccountIfExists(account);
+        if(existing!=null && existing.getType().equals(account.getType())) {
+            if(!existing.isClosed()){
+                accountDatabase.deposit(account);
+                out.println("Deposit - balance updated.");
+            }else{
+                out.println("Account is closed already.");
+            }
+        }else{
+            out.println(command.input(2) + " " + command.input(3) + " " + command.input(4) + " " + account.getShortType() + " is not in the database.");
+        }
 
-    /**
-     * This function is used to close a College Checking account.
-     * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
-     */
-    private void caseCollegeCheckingForClose(AccountDatabase accountDatabase, String[] inputs)
-    {
-        CollegeChecking ClgCheck = new CollegeChecking();
-        closeExistingAccount(accountDatabase, ClgCheck, inputs);
     }
 
     /**
-     * This function is used to close a Savings account.
+     * This function is used to deposit to an account.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - prepared transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseSavingsForClose(AccountDatabase accountDatabase, String[] inputs)
+    private void caseDeposit(AbstractAccountDatabase accountDatabase, Command command, ReportWriter out)
     {
-        Savings savings = new Savings();
-        closeExistingAccount(accountDatabase, savings, inputs);
+        if(!command.replay(out)){
+            return;
+        }
+        depositToAccount(accountDatabase, command.probe, command, out);
     }
 
     /**
-     * This function is used to close a Money Market account.
+     * This function is used to withdraw an amount from an account.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - prepared transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseMoneyMarketForClose(AccountDatabase accountDatabase, String[] inputs)
+    private void caseWithdraw(AbstractAccountDatabase accountDatabase, Command command, ReportWriter out)
     {
-        MoneyMarket moneyMarket = new MoneyMarket();
-        closeExistingAccount(accountDatabase, moneyMarket, inputs);
+        if(!command.replay(out)){
+            return;
+        }
+        withDrawFromAccount(accountDatabase, command.probe, command, out);
     }
 
     /**
-     * This function is a helper that checks if account exists or closed
-     * before depositing an amount to an account.
+     * This function is a helper that checks if account exists or closed and if
+     * the amount being withdrawn is sufficient before withdrawing an amount from an account.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param command - transaction given by the user.
      * @param account - account being deposited to.
+     * @param out - writer the output is printed to.
      */
-    private void depositToAccount(AccountDatabase accountDatabase, Account account, String[] inputs ){
-        if(!populateHolderAndBalance(account,inputs,"Deposit - amount cannot be 0 or negative.")){
-            return;
-        }
+    private void withDrawFromAccount(AbstractAccountDatabase accountDatabase, Account account, Command command, ReportWriter out){
         Account existing = accountDatabase.getAccountIfExists(account);
         if(existing!=null && existing.getType().equals(account.getType())) {
             if(!existing.isClosed()){
-                accountDatabase.deposit(account);
-                System.out.println("Deposit - balance updated.");
+                if(accountDatabase.withdraw(account)) {
+                    out.println("Withdraw - balance updated.");
+                }else{
+                    out.println("Withdraw - insufficient fund.");
+                }
             }else{
-                System.out.println("Account is closed already.");
+                out.println("Account is closed already.");
             }
         }else{
-            System.out.println(inputs[2] + " " + inputs[3] + " " + inputs[4] + " " + account.getShortType() + " is not in the database.");
+            out.println(command.input(2) + " " + command.input(3) + " " + command.input(4) + " " + account.getShortType() + " is not in the database.");
         }
 
     }
 
     /**
-     * This function is used to deposit to a College Checking account.
+     * This function moves an amount between two accounts of one holder as one step, so the money is never
+     * in both or in neither. For example "T C S John Doe 2/19/1989 100" moves $100 from John Doe's Checking
+     * to his Savings. The funds are checked like a withdrawal, and a transfer out of a Money Market account
+     * counts as one of its withdrawals. The two sides are the same account when their holder keys are equal,
+     * which also holds for the copies a sharded database returns.
      * @param accountDatabase - Array-based container that holds account objects.
      * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseCollegeCheckingForDeposit(AccountDatabase accountDatabase, String[] inputs)
+    private void caseTransfer(AbstractAccountDatabase accountDatabase, String[] inputs, ReportWriter out)
     {
-        CollegeChecking clgCheck = new CollegeChecking();
-        depositToAccount(accountDatabase, clgCheck, inputs);
-
+        if(inputs.length < LengthOfArgumentsForTransfer)
+        {
+            out.println(missingTransferData);
+            return;
+        }
+        AccountType fromType = parseAccountType(inputs[1], out);
+        AccountType toType = fromType == null ? null : parseAccountType(inputs[2], out);
+        if(toType == null)
+        {
+            return;
+        }
+        if(!Profile.isValidName(inputs[3]) || !Profile.isValidName(inputs[4]))
+        {
+            out.println(nameTooLong);
+            return;
+        }
+        Date dob = Date.parse(inputs[5]);
+        if(dob == null || !dob.isValid() || dob.isInTheFuture())
+        {
+            out.println("Date of birth invalid.");
+            return;
+        }
+        long amount = Money.parseCents(inputs[6]);
+        if(amount == Money.INVALID)
+        {
+            out.println("Not a valid amount.");
+            return;
+        }
+        if(amount <= 0)
+        {
+            out.println("Transfer - amount cannot be 0 or negative.");
+            return;
+        }
+        Profile holder = new Profile(inputs[3], inputs[4], dob);
+        Account from = fromType.newAccount(null);
+        from.setHolder(holder);
+        from.setBalanceCents(amount);
+        Account to = toType.newAccount(null);
+        to.setHolder(holder);
+        to.setBalanceCents(amount);
+        Account source = accountDatabase.getAccountIfExists(from);
+        if(source == null || !source.getType().equals(from.getType()))
+        {
+            out.println(inputs[3] + " " + inputs[4] + " " + inputs[5] + " " + from.getShortType() + " is not in the database.");
+            return;
+        }
+        Account target = accountDatabase.getAccountIfExists(to);
+        if(target == null || !target.getType().equals(to.getType()))
+        {
+            out.println(inputs[3] + " " + inputs[4] + " " + inputs[5] + " " + to.getShortType() + " is not in the database.");
+            return;
+        }
+        if(source.getHolderKey().equals(target.getHolderKey()))
+        {
+            out.println("Transfer - source and target are the same account.");
+        }
+        else if(accountDatabase.transfer(from, to))
+        {
+            out.println("Transfer - balance updated.");
+        }
+        else if(isClosed(accountDatabase, from) || isClosed(accountDatabase, to))
+        {
+            out.println("Account is closed already.");
+        }
+        else
+        {
+            out.println("Transfer - insufficient fund.");
+        }
     }
 
     /**
-     * This function is used to deposit to a Checking account.
+     * This function is a helper that tells why a transfer was refused: the database checks that both
+     * accounts are open while it holds them, and the teller only looks again to choose the message.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param account - account object that holds the profile of one side of the transfer.
+     * @return true if the account is in the database and closed.
      */
-    private void caseCheckingForDeposit(AccountDatabase accountDatabase, String[] inputs)
+    private static boolean isClosed(AbstractAccountDatabase accountDatabase, Account account)
     {
-        Checking checking = new Checking();
-        depositToAccount(accountDatabase, checking, inputs);
+        Account existing = accountDatabase.getAccountIfExists(account);
+        return existing != null && existing.isClosed();
     }
 
     /**
-     * This function is used to deposit to a Savings account.
+     * This function is used to print all accounts
+     * @param accountDatabase - Array-based container that holds account obj
+     * @param out - writer the output is printed to.
+     */
+    private void casePrint(AbstractAccountDatabase accountDatabase, ReportWriter out)
+    {
+        if(accountDatabase.getNumAcct() > 0)
+        {
+            out.println("");
+            out.println("*list of accounts in the database*");
+            accountDatabase.print(out);
+            out.println("*end of list*");
+            out.println("");
+        }
+        else
+        {
+            out.println("Account Database is empty!");
+        }
+    }
+    /**
+     * This function is used to print all accounts by order account type.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseSavingsForDeposit(AccountDatabase accountDatabase, String[] inputs)
+    private void casePrintByAccountType(AbstractAccountDatabase accountDatabase, ReportWriter out)
     {
-        Savings savings = new Savings();
-        depositToAccount(accountDatabase, savings, inputs);
+        if(accountDatabase.getNumAcct() > 0)
+        {
+            out.println("");
+            out.println("*list of accounts by account type.");
+            accountDatabase.printByAccountType(out);
+            out.println("*end of list.");
+            out.println("");
+        }
+        else
+        {
+            out.println("Account Database is empty!");
+        }
     }
 
     /**
-     * This function is used to deposit to a Money Market account.
+     * This function is used to print all accounts with calculated fees and interests.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseMoneyMarketForDeposit(AccountDatabase accountDatabase, String[] inputs)
+    private void casePrintWithFeeAndInterest(AbstractAccountDatabase accountDatabase, ReportWriter out)
     {
-        MoneyMarket moneyMarket = new MoneyMarket();
-        depositToAccount(accountDatabase, moneyMarket, inputs);
+        if(accountDatabase.getNumAcct() > 0)
+        {
+            out.println("");
+            out.println("*list of accounts with fee and monthly interest");
+            accountDatabase.printFeeAndInterest(out);
+            out.println("*end of list.");
+            out.println("");
+        }
+        else
+        {
+            out.println("Account Database is empty!");
+        }
     }
 
     /**
-     * This function is used to deposit to an account.
+     * This function is used to update the balances of all accounts and print them.
      * @param accountDatabase - Array-based container that holds account objects.
-     * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseDeposit(AccountDatabase accountDatabase, String[] inputs)
+    private void caseUpdateBalance(AbstractAccountDatabase accountDatabase, ReportWriter out)
     {
-        switch (inputs[1]) {
-            case "C" -> caseCheckingForDeposit(accountDatabase, inputs);
-            case "CC" -> caseCollegeCheckingForDeposit(accountDatabase, inputs);
-            case "S" -> caseSavingsForDeposit(accountDatabase, inputs);
-            case "MM" -> caseMoneyMarketForDeposit(accountDatabase, inputs);
-            default -> System.out.println("Invalid Account Type");
+        if(accountDatabase.getNumAcct() > 0)
+        {
+            out.println("");
+            out.println("*list of accounts with updated balance");
+            accountDatabase.printWithUpdatedBalance(out);
+            out.println("*end of list.");
+            out.println("");
+        }
+        else
+        {
+            out.println("Account Database is empty!");
         }
     }
 
     /**
-     * This function is used to withdraw an amount from an account.
+     * This function is used to print the book summary: the accounts of each type, the total balance and the
+     * fee and interest the next UB will post. The totals are kept up to date by the database, so no account
+     * is visited.
      * @param accountDatabase - Array-based container that holds account objects.
+     * @param out - writer the output is printed to.
+     */
+    private void casePrintSummary(AbstractAccountDatabase accountDatabase, ReportWriter out)
+    {
+        if(accountDatabase.getNumAcct() > 0)
+        {
+            out.println("");
+            out.println("*book summary");
+            out.println(accountDatabase.getSummary());
+            out.println("*end of summary.");
+            out.println("");
+        }
+        else
+        {
+            out.println("Account Database is empty!");
+        }
+    }
+
+
+    /**
+     * This function is a helper that parses the account type of a balance query.
+     * @param code - account type code, C, CC, S or MM.
+     * @param out - writer the output is printed to.
+     * @return the account type, or null after printing an error.
+     */
+    private AccountType parseAccountType(String code, ReportWriter out)
+    {
+        switch (code)
+        {
+            case "C" -> {return AccountType.CHECKING;}
+            case "CC" -> {return AccountType.COLLEGE_CHECKING;}
+            case "S" -> {return AccountType.SAVINGS;}
+            case "MM" -> {return AccountType.MONEY_MARKET;}
+            default -> {
+                out.println("Invalid Account Type");
+                return null;
+            }
+        }
+    }
+
+    /**
+     * This function is a helper that parses an amount of a balance query.
+     * @param amount - amount in dollars.
+     * @param out - writer the output is printed to.
+     * @return the amount in cents, or Money.INVALID after printing an error.
+     */
+    private long parseQueryAmount(String amount, ReportWriter out)
+    {
+        long cents = Money.parseCents(amount);
+        if(cents == Money.INVALID)
+        {
+            out.println("Not a valid amount.");
+        }
+        return cents;
+    }
+
+    /**
+     * This function is a helper that parses the lowest and highest balance of a range query.
      * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
+     * @return the lowest and highest balance in cents, or null after printing an error.
      */
-    private void caseWithdraw(AccountDatabase accountDatabase, String[] inputs)
+    private long[] parseRange(String[] inputs, ReportWriter out)
     {
-        switch (inputs[1]) {
-            case "C" -> caseCheckingForWithdraw(accountDatabase, inputs);
-            case "CC" -> caseCollegeCheckingForWithdraw(accountDatabase, inputs);
-            case "S" -> caseSavingsForWithdraw(accountDatabase, inputs);
-            case "MM" -> caseMoneyMarketForWithdraw(accountDatabase, inputs);
-            default -> System.out.println("Invalid Account Type");
+        long from = parseQueryAmount(inputs[2], out);
+        if(from == Money.INVALID)
+        {
+            return null;
         }
+        long to = parseQueryAmount(inputs[3], out);
+        if(to == Money.INVALID)
+        {
+            return null;
+        }
+        return new long[] {from, to};
     }
 
     /**
-     * This function is a helper that checks if account exists or closed and if
-     * the amount being withdrawn is sufficient before withdrawing an amount from an account.
+     * This function prints the open accounts of a type with a balance from the lowest amount, inclusive,
+     * up to the highest amount, exclusive, lowest balance first. For example "BR C 0 1000" lists the
+     * Checking accounts under $1,000.
      * @param accountDatabase - Array-based container that holds account objects.
      * @param inputs - transaction given by the user.
-     * @param account - account being deposited to.
+     * @param out - writer the output is printed to.
      */
-    private void withDrawFromAccount(AccountDatabase accountDatabase, Account account, String[] inputs ){
-        if(!populateHolderAndBalance(account, inputs,"Withdraw - amount cannot be 0 or negative.")){
+    private void caseBalanceRange(AbstractAccountDatabase accountDatabase, String[] inputs, ReportWriter out)
+    {
+        if(inputs.length < LengthOfArgumentsForRangeQuery)
+        {
+            out.println(missingQueryData);
             return;
         }
-        Account existing = accountDatabase.getAccountIfExists(account);
-        if(existing!=null && existing.getType().equals(account.getType())) {
-            if(!existing.isClosed()){
-                if(accountDatabase.withdraw(account)) {
-                    System.out.println("Withdraw - balance updated.");
-                }else{
-                    System.out.println("Withdraw - insufficient fund.");
-                }
-            }else{
-                System.out.println("Account is closed already.");
-            }
-        }else{
-            System.out.println(inputs[2] + " " + inputs[3] + " " + inputs[4] + " " + account.getShortType() + " is not in the database.");
+        AccountType type = parseAccountType(inputs[1], out);
+        long[] range = type == null ? null : parseRange(inputs, out);
+        if(range != null)
+        {
+            printQueryResult(accountDatabase.findByBalance(type, range[0], range[1]), out);
         }
-
     }
 
     /**
-     * This function is used to withdraw an amount from a Checking account.
+     * This function prints the open accounts of a type with the highest balances, highest first.
+     * For example "BT MM 100" lists the top 100 Money Market balances.
      * @param accountDatabase - Array-based container that holds account objects.
      * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseCheckingForWithdraw(AccountDatabase accountDatabase, String[] inputs)
+    private void caseBalanceTop(AbstractAccountDatabase accountDatabase, String[] inputs, ReportWriter out)
     {
-        Checking checking = new Checking();
-        withDrawFromAccount(accountDatabase, checking, inputs);
-
+        if(inputs.length < LengthOfArgumentsForTopQuery)
+        {
+            out.println(missingQueryData);
+            return;
+        }
+        AccountType type = parseAccountType(inputs[1], out);
+        if(type == null)
+        {
+            return;
+        }
+        int n;
+        try
+        {
+            n = Integer.parseInt(inputs[2]);
+        }
+        catch(NumberFormatException e)
+        {
+            n = -1;
+        }
+        if(n <= 0)
+        {
+            out.println("Not a valid number of accounts.");
+            return;
+        }
+        printQueryResult(accountDatabase.topByBalance(type, n), out);
     }
 
     /**
-     * This function is used to withdraw an amount from a College Checking account.
+     * This function prints the number of open accounts of a type with a balance in a range, as for BR.
      * @param accountDatabase - Array-based container that holds account objects.
      * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseCollegeCheckingForWithdraw(AccountDatabase accountDatabase, String[] inputs)
+    private void caseBalanceCount(AbstractAccountDatabase accountDatabase, String[] inputs, ReportWriter out)
     {
-        CollegeChecking clgCheck = new CollegeChecking();
-        withDrawFromAccount(accountDatabase, clgCheck, inputs);
+        if(inputs.length < LengthOfArgumentsForRangeQuery)
+        {
+            out.println(missingQueryData);
+            return;
+        }
+        AccountType type = parseAccountType(inputs[1], out);
+        long[] range = type == null ? null : parseRange(inputs, out);
+        if(range != null)
+        {
+            int count = accountDatabase.countByBalance(type, range[0], range[1]);
+            out.println(count + " " + type + " account(s) in the range.");
+        }
     }
 
     /**
-     * This function is used to withdraw an amount from a Savings account.
+     * This function prints the fee watchlist: for each account type with a fee, the accounts that pay no fee
+     * today and are less than the given amount above the fee threshold, then the Money Market accounts that
+     * would pay the fee after one more withdrawal. For example "FW 100" lists the accounts within $100.
      * @param accountDatabase - Array-based container that holds account objects.
      * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseSavingsForWithdraw(AccountDatabase accountDatabase, String[] inputs)
+    private void caseFeeWatchlist(AbstractAccountDatabase accountDatabase, String[] inputs, ReportWriter out)
     {
-        Savings savings = new Savings();
-        withDrawFromAccount(accountDatabase, savings, inputs);
+        if(inputs.length < LengthOfArgumentsForWatchlist)
+        {
+            out.println(missingQueryData);
+            return;
+        }
+        long within = parseQueryAmount(inputs[1], out);
+        if(within == Money.INVALID)
+        {
+            return;
+        }
+        out.println("");
+        out.println("*accounts near a fee threshold.");
+        for(AccountType type : AccountType.BY_NAME)
+        {
+            for(Account account : accountDatabase.findNearFeeThreshold(type, within))
+            {
+                out.println(account);
+            }
+        }
+        out.println("*accounts one withdrawal from the limit.");
+        for(Account account : accountDatabase.findAtWithdrawalLimit())
+        {
+            out.println(account);
+        }
+        out.println("*end of list.");
+        out.println("");
     }
 
     /**
-     * This function is used to withdraw an amount from a Money Market account.
+     * This function prints every account of a holder, whatever the account type, and the holder's net worth.
+     * For example "H John Doe 2/19/1989".
      * @param accountDatabase - Array-based container that holds account objects.
      * @param inputs - transaction given by the user.
+     * @param out - writer the output is printed to.
      */
-    private void caseMoneyMarketForWithdraw(AccountDatabase accountDatabase, String[] inputs)
+    private void caseHolder(AbstractAccountDatabase accountDatabase, String[] inputs, ReportWriter out)
     {
-        MoneyMarket moneyMarket = new MoneyMarket();
-        withDrawFromAccount(accountDatabase, moneyMarket, inputs);
+        if(inputs.length < LengthOfArgumentsForHolder)
+        {
+            out.println(missingQueryData);
+            return;
+        }
+        if(!Profile.isValidName(inputs[1]) || !Profile.isValidName(inputs[2]))
+        {
+            out.println(nameTooLong);
+            return;
+        }
+        Date dob = Date.parse(inputs[3]);
+        if(dob == null || !dob.isValid())
+        {
+            out.println("Date of birth invalid.");
+            return;
+        }
+        Profile holder = new Profile(inputs[1], inputs[2], dob);
+        List<Account> accounts = accountDatabase.getAccountsOf(holder);
+        if(accounts.isEmpty())
+        {
+            out.println(holder + " has no accounts.");
+            return;
+        }
+        out.println("");
+        out.println("*accounts of " + holder);
+        long netWorth = 0;
+        for(Account account : accounts)
+        {
+            out.println(account);
+            netWorth += account.getBalanceCents();
+        }
+        out.println("*net worth " + Money.format(netWorth));
+        out.println("*end of list.");
+        out.println("");
     }
 
     /**
-     * This function is used to print all accounts
-     * @param accountDatabase - Array-based container that holds account obj
+     * This function prints one page of the accounts of the holders found by name, 20 holders per page and
+     * pages numbered from 1. "N 1 Do" lists the holders whose last name starts with "Do", "N 1 Doe J" those
+     * named Doe whose first name starts with "J", and "NF 1 Doe" those whose last name is Doe or one typo
+     * away from it, such as Doe, Do or Dee.
+     * @param accountDatabase - Array-based container that holds account objects.
+     * @param inputs - transaction given by the user.
+     * @param fuzzy - true for NF, false for N.
+     * @param out - writer the output is printed to.
      */
-    private void casePrint(AccountDatabase accountDatabase)
+    private void caseNameSearch(AbstractAccountDatabase accountDatabase, String[] inputs, boolean fuzzy, ReportWriter out)
     {
-        if(accountDatabase.getNumAcct() > 0)
+        if(inputs.length < LengthOfArgumentsForNameSearch)
+        {
+            out.println(missingQueryData);
+            return;
+        }
+        int page;
+        try
+        {
+            page = Integer.parseInt(inputs[1]);
+        }
+        catch(NumberFormatException e)
+        {
+            page = 0;
+        }
+        if(page <= 0)
+        {
+            out.println("Not a valid page number.");
+            return;
+        }
+        String firstName = fuzzy || inputs.length < LengthOfArgumentsForNameSearchWithFirstName ? null : inputs[3];
+        if(!Profile.isValidName(inputs[2]) || firstName != null && !Profile.isValidName(firstName))
+        {
+            out.println(nameTooLong);
+            return;
+        }
+        List<Account> accounts;
+        if(fuzzy)
         {
-            System.out.println("");
-            System.out.println("*list of accounts in the database*");
-            accountDatabase.print();
-            System.out.println("*end of list*");
-            System.out.println("");
+            accounts = accountDatabase.searchByNameFuzzy(inputs[2], page - 1, HoldersPerPage);
         }
         else
         {
-            System.out.println("Account Database is empty!");
+            accounts = accountDatabase.searchByName(inputs[2], firstName, page - 1, HoldersPerPage);
+        }
+        if(accounts.isEmpty())
+        {
+            out.println("No accounts found.");
+            return;
+        }
+        out.println("");
+        out.println("*list of accounts by name, page " + page + ".");
+        for(Account account : accounts)
+        {
+            out.println(account);
         }
+        out.println("*end of list.");
+        out.println("");
     }
+
     /**
-     * This function is used to print all accounts by order account type.
+     * This function prints how far a replication follower is behind its primary: the records applied and
+     * the time between the primary sending the last batch and the follower applying it.
      * @param accountDatabase - Array-based container that holds account objects.
+     * @param out - writer the output is printed to.
      */
-    private void casePrintByAccountType(AccountDatabase accountDatabase)
+    private void caseReplicationLag(AbstractAccountDatabase accountDatabase, ReportWriter out)
     {
-        if(accountDatabase.getNumAcct() > 0)
+        if(!(accountDatabase instanceof ReplicaAccountDatabase replica))
         {
-            System.out.println("");
-            System.out.println("*list of accounts by account type.");
-            accountDatabase.printByAccountType();
-            System.out.println("*end of list.");
-            System.out.println("");
-        }
-        else
-        {
-            System.out.println("Account Database is empty!");
+            out.println("Not a replication follower.");
+            return;
         }
+        out.println("Applied " + replica.getAppliedRecords() + " records, lag " + replica.getLagMillis()
+                + " ms" + (replica.isFollowing() ? "." : ", not following."));
     }
 
     /**
-     * This function is used to print all accounts with calculated fees and interests.
+     * This function promotes a replication follower, so it stops following its primary and accepts changes.
      * @param accountDatabase - Array-based container that holds account objects.
+     * @param out - writer the output is printed to.
      */
-    private void casePrintWithFeeAndInterest(AccountDatabase accountDatabase)
+    private void casePromote(AbstractAccountDatabase accountDatabase, ReportWriter out)
     {
-        if(accountDatabase.getNumAcct() > 0)
+        if(!(accountDatabase instanceof ReplicaAccountDatabase replica))
         {
-            System.out.println("");
-            System.out.println("*list of accounts with fee and monthly interest");
-            accountDatabase.printFeeAndInterest();
-            System.out.println("*end of list.");
-            System.out.println("");
+            out.println("Not a replication follower.");
+            return;
         }
-        else
+        if(replica.isPromoted())
         {
-            System.out.println("Account Database is empty!");
+            out.println("Follower is already promoted.");
+            return;
         }
+        replica.promote();
+        out.println("Follower promoted after " + replica.getAppliedRecords() + " records.");
     }
 
     /**
-     * This function is used to update the balances of all accounts and print them.
-     * @param accountDatabase - Array-based container that holds account objects.
+     * This function is a helper that prints the accounts found by a balance query.
+     * @param accounts - accounts to print.
+     * @param out - writer the output is printed to.
      */
-    private void caseUpdateBalance(AccountDatabase accountDatabase)
+    private void printQueryResult(List<Account> accounts, ReportWriter out)
     {
-        if(accountDatabase.getNumAcct() > 0)
+        if(accounts.isEmpty())
         {
-            System.out.println("");
-            System.out.println("*list of accounts with updated balance");
-            accountDatabase.printWithUpdatedBalance();
-            System.out.println("*end of list.");
-            System.out.println("");
+            out.println("No accounts found.");
+            return;
         }
-        else
+        out.println("");
+        out.println("*list of accounts by balance.");
+        for(Account account : accounts)
         {
-            System.out.println("Account Database is empty!");
+            out.println(account);
         }
+        out.println("*end of list.");
+        out.println("");
     }
 
 
+
 }
\ No newline at end of file
@@ -0,0 +1,399 @@
+/**
+ * BatchPipeline class runs a batch file of teller commands, such as a branch's nightly file, as a pipeline of
+ * four stages, so reading, parsing and printing overlap with the changes to the database. A reader thread
+ * reads the file in blocks of lines and splits each line into tokens. The lines of a block are parsed and
+ * validated in parallel on a ForkJoinPool with BankTeller.prepare(), which checks the names, dates, amounts
+ * and type codes and builds the account objects without looking at the database. The calling thread takes the
+ * blocks in file order and applies their commands one at a time with BankTeller.apply(); it is the only stage
+ * that reads or changes the database, and it prints into its own ReportWriter rather than System.out. The
+ * printed bytes are handed to a writer thread in chunks of at most 64K as they fill, so a block with large
+ * reports is never held in memory whole, and the writer thread writes them out while the next lines are applied.
+ * The output is the same as running the file through BankTeller.run(), and the result carries the number of
+ * commands per second.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class BatchPipeline {
+    public static final int DefaultBlockLines = 4096;
+    private static final int MinimumLeafSize = 256;
+    private static final int BlocksInFlight = 8;
+    private static final int ChunksInFlight = 8;
+    private static final int OutputChunkSize = 1 << 16;
+
+    private final BankTeller teller;
+    private final ForkJoinPool pool;
+    private final int blockLines;
+
+    /**
+     * Constructor of this class. Parses on the common ForkJoinPool with the default block size.
+     * @param teller - teller whose database the commands are applied to.
+     */
+    public BatchPipeline(BankTeller teller)
+    {
+        this(teller, ForkJoinPool.commonPool(), DefaultBlockLines);
+    }
+
+    /**
+     * Constructor of this class.
+     * @param teller - teller whose database the commands are applied to.
+     * @param pool - pool that parses the lines of a block.
+     * @param blockLines - number of lines read, parsed and printed at a time.
+     */
+    public BatchPipeline(BankTeller teller, ForkJoinPool pool, int blockLines)
+    {
+        this.teller = teller;
+        this.pool = pool;
+        this.blockLines = Math.max(blockLines, 1);
+    }
+
+    /**
+     * Result class holds the outcome of a batch.
+     */
+    public static class Result {
+        private long commands;
+        private long nanos;
+        private boolean terminated;
+
+        /**
+         * @return number of non-blank lines applied.
+         */
+        public long getCommands()
+        {
+            return commands;
+        }
+
+        /**
+         * @return commands applied per second, from reading the first line to printing the last result.
+         */
+        public double getCommandsPerSecond()
+        {
+            return nanos == 0 ? 0 : commands * 1e9 / nanos;
+        }
+
+        /**
+         * @return true if the batch stopped at a Q command.
+         */
+        public boolean isTerminated()
+        {
+            return terminated;
+        }
+
+        /**
+         * @return a one line summary of the batch.
+         */
+        @Override
+        public String toString()
+        {
+            return "Ran " + commands + " commands, " + Math.round(getCommandsPerSecond()) + " commands/sec.";
+        }
+    }
+
+    /**
+     * Block class holds a block of lines as it goes through the stages.
+     */
+    private static class Block {
+        private final String[][] transactions;
+        private final BankTeller.Command[] commands;
+        private int count;
+        private ForkJoinTask<Void> parsing;
+        private boolean last;
+        private IOException failure;
+
+        Block(int lines)
+        {
+            this.transactions = new String[lines][];
+            this.commands = new BankTeller.Command[lines];
+        }
+    }
+
+    /**
+     * This function runs every command of a batch file and prints the output to System.out.
+     * @param file - batch file, one command per line.
+     * @return the result of the batch.
+     * @throws IOException if the file cannot be read.
+     * @throws InterruptedException if the thread is interrupted while waiting for a stage.
+     */
+    public Result runFile(Path file) throws IOException, InterruptedException
+    {
+        try(BufferedReader reader = Files.newBufferedReader(file))
+        {
+            return run(reader, System.out);
+        }
+    }
+
+    /**
+     * This function runs every command read from a reader.
+     * @param reader - reader of commands, one per line.
+     * @param out - stream the output is written to.
+     * @return the result of the batch.
+     * @throws IOException if the reader fails, or if the output fails; the commands are still applied.
+     * @throws InterruptedException if the thread is interrupted while waiting for a stage.
+     */
+    public Result run(BufferedReader reader, OutputStream out) throws IOException, InterruptedException
+    {
+        Result result = new Result();
+        long start = System.nanoTime();
+        BlockingQueue<Block> blocks = new ArrayBlockingQueue<>(BlocksInFlight);
+        BlockingQueue<byte[]> output = new ArrayBlockingQueue<>(ChunksInFlight);
+        Thread readerThread = new Thread(() -> read(reader, blocks), "batch-reader");
+        IOException[] written = new IOException[1];
+        Thread writerThread = new Thread(() -> written[0] = write(output, out), "batch-writer");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        writerThread.start();
+
+        ChunkStream chunks = new ChunkStream(output);
+        ReportWriter sink = new ReportWriter(new PrintStream(chunks, false));
+        IOException failure = null;
+        try
+        {
+            sink.println(BankTeller.tellerRunning);
+            while(!result.terminated)
+            {
+                Block block = blocks.take();
+                if(block.last)
+                {
+                    failure = block.failure;
+                    break;
+                }
+                block.parsing.join();
+                for(int i = 0; i < block.count && !result.terminated; i++)
+                {
+                    BankTeller.Command command = block.commands[i];
+                    if(command != null)
+                    {
+                        result.commands++;
+                        result.terminated = !teller.apply(command, sink);
+                    }
+                }
+                sink.flush();
+                chunks.flush();
+            }
+        }
+        finally
+        {
+            readerThread.interrupt();
+            sink.flush();
+            chunks.flush();
+            output.put(new byte[0]);
+            writerThread.join();
+        }
+        result.nanos = System.nanoTime() - start;
+        if(failure == null)
+        {
+            failure = written[0];
+        }
+        if(failure != null)
+        {
+            throw failure;
+        }
+        return result;
+    }
+
+    /**
+     * This function is the reader stage. It reads blocks of lines, splits them into tokens, starts parsing
+     * each block on the pool and queues it for the apply stage, ending with a last block.
+     */
+    private void read(BufferedReader reader, BlockingQueue<Block> blocks)
+    {
+        Block last = new Block(0);
+        last.last = true;
+        try
+        {
+            try
+            {
+                boolean endOfFile = false;
+                while(!endOfFile)
+                {
+                    Block block = new Block(blockLines);
+                    while(block.count < blockLines)
+                    {
+                        String line = reader.readLine();
+                        if(line == null)
+                        {
+                            endOfFile = true;
+                            break;
+                        }
+                        block.transactions[block.count++] = BankTeller.tokenize(line);
+                    }
+                    if(block.count > 0)
+                    {
+                        block.parsing = pool.submit(new ParseTask(teller, block, 0, block.count));
+                        blocks.put(block);
+                    }
+                }
+            }
+            catch(IOException e)
+            {
+                last.failure = e;
+            }
+            blocks.put(last);
+        }
+        catch(InterruptedException e)
+        {
+            // the apply stage stopped before the end of the file, at a Q command or an exception
+        }
+    }
+
+    /**
+     * This function is the writer stage. It writes the chunks of output until it takes an empty one. If the
+     * output fails, it keeps taking chunks so the apply stage is not held up, and returns the failure.
+     * @return the first exception of the output, or null if it did not fail.
+     */
+    private static IOException write(BlockingQueue<byte[]> output, OutputStream out)
+    {
+        IOException failure = null;
+        try
+        {
+            for(byte[] bytes = output.take(); bytes.length > 0; bytes = output.take())
+            {
+                if(failure == null)
+                {
+                    try
+                    {
+                        out.write(bytes);
+                    }
+                    catch(IOException e)
+                    {
+                        failure = e;
+                    }
+                }
+            }
+            if(failure == null)
+            {
+                out.flush();
+            }
+        }
+        catch(IOException e)
+        {
+            failure = e;
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return failure;
+    }
+
+    /**
+     * ChunkStream collects the bytes the apply stage prints into chunks and queues each chunk for the writer
+     * stage once it is full, or when the apply stage flushes it at the end of a block. Queueing waits while
+     * the writer stage is behind, so at most ChunksInFlight chunks are held.
+     */
+    private static class ChunkStream extends OutputStream {
+        private final BlockingQueue<byte[]> output;
+        private byte[] chunk;
+        private int size;
+
+        ChunkStream(BlockingQueue<byte[]> output)
+        {
+            this.output = output;
+            this.chunk = new byte[OutputChunkSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            if(size == chunk.length)
+            {
+                handOff();
+            }
+            chunk[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException
+        {
+            while(length > 0)
+            {
+                if(size == chunk.length)
+                {
+                    handOff();
+                }
+                int count = Math.min(length, chunk.length - size);
+                System.arraycopy(bytes, offset, chunk, size, count);
+                size += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        /**
+         * This function queues the bytes collected so far, if any.
+         */
+        @Override
+        public void flush() throws IOException
+        {
+            if(size > 0)
+            {
+                handOff();
+            }
+        }
+
+        private void handOff() throws IOException
+        {
+            byte[] full = size == chunk.length ? chunk : Arrays.copyOf(chunk, size);
+            try
+            {
+                output.put(full);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Batch output interrupted");
+            }
+            if(full == chunk)
+            {
+                chunk = new byte[OutputChunkSize];
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * ParseTask prepares a range of the lines of a block, splitting it in halves until a range is small enough.
+     */
+    private static class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final BankTeller teller;
+        private final Block block;
+        private final int from;
+        private final int to;
+
+        ParseTask(BankTeller teller, Block block, int from, int to)
+        {
+            this.teller = teller;
+            this.block = block;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= MinimumLeafSize)
+            {
+                for(int i = from; i < to; i++)
+                {
+                    block.commands[i] = teller.prepare(block.transactions[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParseTask(teller, block, from, middle), new ParseTask(teller, block, middle, to));
+        }
+    }
+}
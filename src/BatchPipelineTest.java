@@ -0,0 +1,143 @@
+/**
+ * Test class to check that BatchPipeline prints exactly what BankTeller.run() prints for the same commands,
+ * for valid and invalid lines and blocks of several sizes, and that it stops at Q.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class BatchPipelineTest {
+
+    private static final String[] Types = {"C", "CC", "S", "MM", "X"};
+
+    /**
+     * This is a helper that writes random teller commands, some of them with missing or invalid data.
+     */
+    private static String randomCommands(Random random, int count) {
+        StringBuilder commands = new StringBuilder();
+        for(int i = 0; i < count; i++) {
+            String type = Types[random.nextInt(Types.length)];
+            String profile = "First" + random.nextInt(60) + " Last " + (random.nextInt(20) == 0 ? "2/30/1990" : "1/2/1990");
+            String amount = random.nextInt(20) == 0 ? "-5" : String.valueOf(1 + random.nextInt(3000));
+            switch (random.nextInt(12)) {
+                case 0, 1, 2 -> commands.append("O ").append(type).append(' ').append(profile).append(' ').append(amount)
+                        .append(type.equals("CC") || type.equals("S") ? " " + random.nextInt(3) : "");
+                case 3, 4 -> commands.append("D ").append(type).append(' ').append(profile).append(' ').append(amount);
+                case 5, 6 -> commands.append("W ").append(type).append(' ').append(profile).append(' ').append(amount);
+                case 7 -> commands.append("C ").append(type).append(' ').append(profile);
+                case 8 -> commands.append("T ").append(type).append(" C ").append(profile).append(' ').append(amount);
+                case 9 -> commands.append(random.nextBoolean() ? "O C First1" : "D MM");
+                case 10 -> commands.append(random.nextInt(10) == 0 ? "UB" : "PS");
+                default -> commands.append(random.nextBoolean() ? "" : "  X");
+            }
+            commands.append('\n');
+        }
+        return commands.toString();
+    }
+
+    /**
+     * This is a helper that returns what BankTeller.run() prints for the commands.
+     */
+    private static String sequential(String commands) {
+        InputStream originalIn = System.in;
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setIn(new ByteArrayInputStream(commands.getBytes()));
+        System.setOut(new PrintStream(captured));
+        try {
+            new BankTeller().run();
+        } finally {
+            System.setIn(originalIn);
+            System.setOut(originalOut);
+        }
+        return captured.toString();
+    }
+
+    /**
+     * This is a helper that runs the commands through a BatchPipeline and returns what it prints. Nothing may
+     * be printed to System.out.
+     */
+    private static String pipelined(String commands, int blockLines, BatchPipeline.Result[] result) throws Exception {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream stray = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(stray));
+        try {
+            BatchPipeline pipeline = new BatchPipeline(new BankTeller(), ForkJoinPool.commonPool(), blockLines);
+            result[0] = pipeline.run(new BufferedReader(new StringReader(commands)), captured);
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertEquals("", stray.toString());
+        return captured.toString();
+    }
+
+    /**
+     * This Test method checks that the pipeline prints the same output as the teller for random commands,
+     * with blocks of one line, a few lines and more lines than the batch.
+     */
+    @Test
+    public void matchesSequential_Test() throws Exception {
+        String commands = randomCommands(new Random(11), 3000);
+        String expected = sequential(commands);
+        for(int blockLines : new int[] {1, 7, 500, BatchPipeline.DefaultBlockLines}) {
+            BatchPipeline.Result[] result = new BatchPipeline.Result[1];
+            assertEquals(expected, pipelined(commands, blockLines, result));
+            assertFalse(result[0].isTerminated());
+            assertTrue(result[0].getCommandsPerSecond() > 0);
+        }
+    }
+
+    /**
+     * This Test method checks that the pipeline stops at Q, ignoring the lines after it.
+     */
+    @Test
+    public void terminate_Test() throws Exception {
+        String commands = randomCommands(new Random(12), 200);
+        String expected = sequential(commands) + BankTeller.tellerTerminated + System.lineSeparator();
+        BatchPipeline.Result[] result = new BatchPipeline.Result[1];
+        assertEquals(expected, pipelined(commands + "Q\n" + commands, 16, result));
+        assertTrue(result[0].isTerminated());
+        assertEquals(commands.lines().filter(line -> !line.isBlank() && !line.startsWith(" ")).count() + 1,
+                result[0].getCommands());
+    }
+
+    /**
+     * This Test method checks that a failed output is thrown by run() once every command is applied, rather
+     * than ending in a normal result.
+     */
+    @Test
+    public void outputFailure_Test() throws Exception {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        BankTeller teller = new BankTeller(accountDatabase);
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        BatchPipeline pipeline = new BatchPipeline(teller, ForkJoinPool.commonPool(), 2);
+        try {
+            pipeline.run(new BufferedReader(new StringReader("O C John Doe 2/19/2000 500\nD C John Doe 2/19/2000 100\n")), failing);
+            fail("The output failure was not thrown.");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        accountDatabase.print(new ReportWriter(new PrintStream(printed)));
+        assertTrue(printed.toString().contains("Balance $600.00"));
+    }
+}
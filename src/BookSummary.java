@@ -0,0 +1,247 @@
+/**
+ * BookSummary class holds the book-wide totals of an AccountDatabase: the number of accounts and closed
+ * accounts of each type, the total balance, and the fee and monthly interest the next UB would post to the
+ * open accounts. The database keeps one BookSummary up to date as it changes accounts, by adding the change
+ * of each account (its contribution after the change minus its contribution before), so reading the totals
+ * never scans the accounts.
+ * In lazy accrual mode a UB does not visit the accounts: addPeriod() posts the projected fee and interest to
+ * the balance total once, and an account settled later for the periods it missed replaces the contribution
+ * it was counted with, see addAccrual().
+ * Deltas are built with add(), which is not synchronized; they are applied with merge(), and read with
+ * snapshot(), which are, so a snapshot always shows whole operations.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.nio.ByteBuffer;
+
+public class BookSummary {
+    private final long[] accounts;
+    private final long[] closed;
+    private long balanceCents;
+    private long projectedFeeCents;
+    private long projectedInterestCents;
+
+    /**
+     * Constructor of this class. Creates a summary with every total at 0.
+     */
+    public BookSummary()
+    {
+        this.accounts = new long[AccountType.values().length];
+        this.closed = new long[AccountType.values().length];
+    }
+
+    /**
+     * This function adds or removes the contribution of an account.
+     * @param account - account whose current state is counted.
+     * @param sign - 1 to add the account, -1 to remove it.
+     */
+    public void add(Account account, int sign)
+    {
+        boolean isClosed = account.isClosed();
+        add(AccountType.of(account), isClosed, account.getBalanceCents(),
+                isClosed ? 0 : account.feeCents(), isClosed ? 0 : account.monthlyInterestCents(), sign);
+    }
+
+    /**
+     * This function adds or removes the contribution of an account given by its fields.
+     * @param type - account type.
+     * @param isClosed - true if the account is closed.
+     * @param balance - balance in cents.
+     * @param fee - fee the next UB posts, 0 for a closed account.
+     * @param interest - interest in cents the next UB posts, 0 for a closed account.
+     * @param sign - 1 to add the account, -1 to remove it.
+     */
+    public void add(AccountType type, boolean isClosed, long balance, long fee, long interest, int sign)
+    {
+        accounts[type.code()] += sign;
+        if(isClosed)
+        {
+            closed[type.code()] += sign;
+        }
+        balanceCents += sign * balance;
+        projectedFeeCents += sign * fee;
+        projectedInterestCents += sign * interest;
+    }
+
+    /**
+     * This function adds or removes the periods an account in lazy accrual mode has missed, as a lazy UB
+     * counts them: each period posts the fee and interest of the account's last settled state.
+     * @param account - account whose current, not yet settled, state is counted.
+     * @param periods - number of statement periods the account has missed.
+     * @param sign - 1 to add the periods, -1 to remove them.
+     */
+    public void addAccrual(Account account, int periods, int sign)
+    {
+        if(!account.isClosed())
+        {
+            balanceCents += sign * periods * (account.monthlyInterestCents() - account.feeCents());
+        }
+    }
+
+    /**
+     * This function records a UB in lazy accrual mode: the projected fee and interest are posted to the
+     * balance total, and are kept as the projection of the next period until the accounts are settled.
+     */
+    public synchronized void addPeriod()
+    {
+        balanceCents += projectedInterestCents - projectedFeeCents;
+    }
+
+    /**
+     * This function adds every total of a delta to this summary.
+     * @param delta - change to apply.
+     */
+    public synchronized void merge(BookSummary delta)
+    {
+        for(int i = 0; i < accounts.length; i++)
+        {
+            accounts[i] += delta.accounts[i];
+            closed[i] += delta.closed[i];
+        }
+        balanceCents += delta.balanceCents;
+        projectedFeeCents += delta.projectedFeeCents;
+        projectedInterestCents += delta.projectedInterestCents;
+    }
+
+    /**
+     * This function records a month-end update computed by a kernel that visits every account:
+     * the balance total changes and the projected fee and interest are replaced.
+     * @param balanceChange - change of the total balance in cents.
+     * @param projectedFee - fee in cents the next UB will post.
+     * @param projectedInterest - interest in cents the next UB will post.
+     */
+    public synchronized void setMonthEnd(long balanceChange, long projectedFee, long projectedInterest)
+    {
+        balanceCents += balanceChange;
+        projectedFeeCents = projectedFee;
+        projectedInterestCents = projectedInterest;
+    }
+
+    /**
+     * @return a copy of this summary that later changes do not affect.
+     */
+    public synchronized BookSummary snapshot()
+    {
+        BookSummary copy = new BookSummary();
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * This function writes the totals, so a summary can be sent to another process.
+     * @param buffer - buffer to write to.
+     */
+    public synchronized void writeTo(ByteBuffer buffer)
+    {
+        for(int i = 0; i < accounts.length; i++)
+        {
+            buffer.putLong(accounts[i]).putLong(closed[i]);
+        }
+        buffer.putLong(balanceCents).putLong(projectedFeeCents).putLong(projectedInterestCents);
+    }
+
+    /**
+     * This function reads a summary written by writeTo().
+     * @param buffer - buffer to read from.
+     * @return the summary that was read.
+     */
+    public static BookSummary readFrom(ByteBuffer buffer)
+    {
+        BookSummary summary = new BookSummary();
+        for(int i = 0; i < summary.accounts.length; i++)
+        {
+            summary.accounts[i] = buffer.getLong();
+            summary.closed[i] = buffer.getLong();
+        }
+        summary.balanceCents = buffer.getLong();
+        summary.projectedFeeCents = buffer.getLong();
+        summary.projectedInterestCents = buffer.getLong();
+        return summary;
+    }
+
+    /**
+     * @param type - account type.
+     * @return the number of accounts of the type, closed ones included.
+     */
+    public long getAccounts(AccountType type)
+    {
+        return accounts[type.code()];
+    }
+
+    /**
+     * @param type - account type.
+     * @return the number of closed accounts of the type.
+     */
+    public long getClosed(AccountType type)
+    {
+        return closed[type.code()];
+    }
+
+    /**
+     * @return the number of accounts, closed ones included.
+     */
+    public long getTotalAccounts()
+    {
+        long total = 0;
+        for(long count : accounts)
+        {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of closed accounts.
+     */
+    public long getTotalClosed()
+    {
+        long total = 0;
+        for(long count : closed)
+        {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return the total balance of all accounts in cents.
+     */
+    public long getBalanceCents()
+    {
+        return balanceCents;
+    }
+
+    /**
+     * @return the total fee in cents the next UB will post.
+     */
+    public long getProjectedFeeCents()
+    {
+        return projectedFeeCents;
+    }
+
+    /**
+     * @return the total monthly interest in cents the next UB will post.
+     */
+    public long getProjectedInterestCents()
+    {
+        return projectedInterestCents;
+    }
+
+    /**
+     * @return one line per account type, alphabetically, and the book totals, as printed by the S command.
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        for(AccountType type : AccountType.BY_NAME)
+        {
+            builder.append(type).append("::accounts ").append(getAccounts(type))
+                    .append("::closed ").append(getClosed(type)).append(System.lineSeparator());
+        }
+        builder.append("Total::accounts ").append(getTotalAccounts()).append("::closed ").append(getTotalClosed())
+                .append("::balance ");
+        Money.appendTo(builder, balanceCents).append(System.lineSeparator());
+        Money.appendTo(builder.append("Next UB::fee "), projectedFeeCents).append("::monthly interest ");
+        return Money.appendTo(builder, projectedInterestCents).toString();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Test class to check that the book summary kept by each AccountDatabase matches a full recount.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class BookSummaryTest {
+
+    /**
+     * This is a helper that runs the common scenario on a database and checks its summary against
+     * a summary built by visiting every account.
+     */
+    private void assertSummaryMatchesRecount(AbstractAccountDatabase accountDatabase) {
+        ColumnarAccountDatabaseTest.runScenario(accountDatabase);
+        BookSummary summary = accountDatabase.getSummary();
+        BookSummary recount = new BookSummary();
+        accountDatabase.forEach(account -> recount.add(account, 1));
+        assertEquals(20, summary.getTotalAccounts());
+        assertEquals(recount.toString(), summary.toString());
+        assertEquals(recount.getBalanceCents(), summary.getBalanceCents());
+        assertEquals(recount.getProjectedFeeCents(), summary.getProjectedFeeCents());
+        assertEquals(recount.getProjectedInterestCents(), summary.getProjectedInterestCents());
+    }
+
+    /**
+     * This Test method checks the summary of every store after opens, deposits, withdrawals, a close,
+     * a reopen and two month-end updates.
+     */
+    @Test
+    public void matchesRecount_Test() {
+        assertSummaryMatchesRecount(new AccountDatabase());
+        assertSummaryMatchesRecount(new ConcurrentAccountDatabase());
+        assertSummaryMatchesRecount(new ColumnarAccountDatabase(2));
+        assertSummaryMatchesRecount(new OffHeapAccountDatabase());
+    }
+
+    /**
+     * This Test method checks the summary with the parallel month-end update and with lazy accrual.
+     */
+    @Test
+    public void matchesRecountInMonthEndModes_Test() {
+        AccountDatabase parallel = new AccountDatabase();
+        parallel.setParallelMonthEnd(new ForkJoinPool(4), 0);
+        assertSummaryMatchesRecount(parallel);
+        AccountDatabase lazy = new AccountDatabase();
+        lazy.setLazyAccrual(true);
+        assertSummaryMatchesRecount(lazy);
+        ConcurrentAccountDatabase concurrentLazy = new ConcurrentAccountDatabase();
+        concurrentLazy.setLazyAccrual(true);
+        assertSummaryMatchesRecount(concurrentLazy);
+    }
+
+    /**
+     * This Test method checks that a lazy UB posts the projected fee and interest to the balance total
+     * without settling the accounts, and that the summary matches a recount once they are settled.
+     */
+    @Test
+    public void lazyUpdateBalance_Test() {
+        AccountDatabase eager = new AccountDatabase();
+        AccountDatabase lazy = new AccountDatabase();
+        lazy.setLazyAccrual(true);
+        ColumnarAccountDatabaseTest.runScenario(eager);
+        ColumnarAccountDatabaseTest.runScenario(lazy);
+        eager.updateBalance();
+        lazy.updateBalance();
+        BookSummary summary = lazy.getSummary();
+        assertEquals(eager.getSummary().getBalanceCents(), summary.getBalanceCents());
+        assertEquals(20, lazy.sweepAccrual(20));
+        assertEquals(eager.getSummary().toString(), lazy.getSummary().toString());
+
+        eager.updateBalance();
+        eager.updateBalance();
+        lazy.updateBalance();
+        lazy.updateBalance();
+        BookSummary recount = new BookSummary();
+        lazy.forEach(account -> recount.add(account, 1));
+        assertEquals(recount.toString(), lazy.getSummary().toString());
+        assertEquals(eager.getSummary().toString(), lazy.getSummary().toString());
+    }
+
+    /**
+     * This Test method checks the counts of a small book and that a snapshot does not change afterwards.
+     */
+    @Test
+    public void counts_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        Date dob = new Date("1/15/1987");
+        Checking checking = new Checking();
+        checking.setHolder("John", "Doe", dob);
+        checking.setBalanceCents(100000);
+        accountDatabase.open(checking);
+        Savings savings = new Savings();
+        savings.setHolder("John", "Doe", dob);
+        savings.setBalanceCents(50000);
+        accountDatabase.open(savings);
+        BookSummary before = accountDatabase.getSummary();
+
+        Savings close = new Savings();
+        close.setHolder("John", "Doe", dob);
+        accountDatabase.close(close);
+        BookSummary after = accountDatabase.getSummary();
+
+        assertEquals(0, before.getClosed(AccountType.SAVINGS));
+        assertEquals(150000, before.getBalanceCents());
+        assertEquals(1, after.getAccounts(AccountType.SAVINGS));
+        assertEquals(1, after.getClosed(AccountType.SAVINGS));
+        assertEquals(2, after.getTotalAccounts());
+        assertEquals(100000, after.getBalanceCents());
+        assertEquals(0, after.getProjectedFeeCents());
+        assertEquals(checking.monthlyInterestCents(), after.getProjectedInterestCents());
+    }
+}
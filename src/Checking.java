@@ -6,11 +6,10 @@
 public class Checking extends Account
 {
 
-    private static final double annualInterest = 0.1;
+    static final int annualInterestBasisPoints = 10;
     private static final String accountType = "Checking";
-    private static final int minimumBalanceToWaiveFee = 1000;
+    static final int minimumBalanceToWaiveFee = 1000;
     private static final int monthlyFee = 25;
-    private static final int interestPercentDividedByTotalMonths = 1200;
 
     /**
      * Checks if the passed in object is an instance of Checking or not.
@@ -30,31 +29,48 @@ public class Checking extends Account
     }
 
     /**
-     * This function is used to get the annualInterest rate of a Checking account.
+     * @return the lookup class of this account type, matching the equals() override above.
      */
-    protected double getAnnualInterestRate(){
-        return annualInterest;
+    @Override
+    protected Class<? extends Account> getLookupClass()
+    {
+        return Checking.class;
     }
 
     /**
-     * This function returns a monthly interest, which in this case would be balance*annualInterest/1200.
-     * @return The monthly interest that a account holder gets on his account.
+     * This function is used to get the annualInterest rate of a Checking account in basis points.
      */
     @Override
-    public double monthlyInterest() {
-        return getBalance()*getAnnualInterestRate()/interestPercentDividedByTotalMonths;
+    protected int getAnnualInterestBasisPoints(){
+        return annualInterestBasisPoints;
+    }
+
+    /**
+     * This function is used to get the annualInterest rate of a Checking account in percent.
+     */
+    protected double getAnnualInterestRate(){
+        return getAnnualInterestBasisPoints() / 100.0;
     }
 
     /**
      * This function returns a monthly fee that an account holder needs to pay on a monthly basis.
-     * @return - a double that has a monthly fee that an account holder needs to pay on a monthly basis
-     * depending on the account type.
+     * @return - a long that has the monthly fee in cents that an account holder needs to pay on a
+     * monthly basis depending on the account type.
      */
     @Override
-    public double fee() {
-        if(balance>= minimumBalanceToWaiveFee)
+    public long feeCents() {
+        return feeCentsFor(balance);
+    }
+
+    /**
+     * This function returns the monthly fee of a Checking account with the given balance.
+     * @param balance - balance in cents.
+     * @return the monthly fee in cents.
+     */
+    public static long feeCentsFor(long balance) {
+        if(balance >= (long) minimumBalanceToWaiveFee * Money.CentsPerDollar)
             return 0;
-        else return monthlyFee;
+        else return (long) monthlyFee * Money.CentsPerDollar;
     }
 
     /**
@@ -66,15 +82,18 @@ public class Checking extends Account
     }
 
     /**
-     * @return the type of account, profile info of holder and whether it's closed.
+     * This function appends the type of account, profile info of holder and whether it's closed.
+     * @param builder - builder to append to.
+     * @return the builder.
      */
     @Override
-    public String toString()
+    public StringBuilder appendTo(StringBuilder builder)
     {
+        super.appendTo(builder.append(getType()).append("::"));
         if(this.isClosed())
         {
-            return getType() + "::" + super.toString() + "::CLOSED";
+            builder.append("::CLOSED");
         }
-        return getType() + "::" + super.toString();
+        return builder;
     }
 }
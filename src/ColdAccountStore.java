@@ -0,0 +1,196 @@
+/**
+ * ColdAccountStore class holds accounts that have been closed for a long time, packed into one byte array
+ * with AccountCodec instead of one set of objects per account. A hash map from HolderKey to the offset of
+ * the record finds an account without decoding the others. Each record starts with the open order of the
+ * account, so an account brought back goes to the place it had in the array. Lookups decode a copy and leave
+ * the record in the store. Taking an account out leaves its record behind as garbage, and the array is
+ * compacted once garbage is more than half of it.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class ColdAccountStore {
+    private static final int DefaultCapacity = 1 << 12;
+    private static final int MaxRecordSize = 1 << 17;
+    private static final int GrowthFactor = 2;
+
+    private final ByteBuffer scratch;
+    private final HashMap<HolderKey, Integer> offsets;
+    private byte[] records;
+    private int end;
+    private int garbage;
+
+    /**
+     * Constructor of this class. Creates an empty store.
+     */
+    public ColdAccountStore()
+    {
+        this.scratch = ByteBuffer.allocate(MaxRecordSize);
+        this.offsets = new HashMap<>();
+        this.records = new byte[DefaultCapacity];
+    }
+
+    /**
+     * @return number of accounts in the store.
+     */
+    public int size()
+    {
+        return offsets.size();
+    }
+
+    /**
+     * @return number of bytes used by the records, garbage included.
+     */
+    public int getBytes()
+    {
+        return end;
+    }
+
+    /**
+     * This function adds an account to the store. The account object is no longer needed afterwards.
+     * @param account - account to add; no account with the same holder key may be in the store.
+     * @param openOrder - number that orders the account among the accounts of the database by when they were opened.
+     */
+    public void put(Account account, long openOrder)
+    {
+        scratch.clear();
+        scratch.putLong(openOrder);
+        AccountCodec.write(scratch, account);
+        int length = scratch.position();
+        if(end + length > records.length)
+        {
+            records = Arrays.copyOf(records, Math.max(end + length, records.length * GrowthFactor));
+        }
+        System.arraycopy(scratch.array(), 0, records, end, length);
+        offsets.put(account.getHolderKey(), end);
+        end += length;
+    }
+
+    /**
+     * This function finds an account and returns a copy of it, leaving it in the store.
+     * @param key - holder key of the account.
+     * @return a new account object holding the account, or null if it is not in the store.
+     */
+    public Account get(HolderKey key)
+    {
+        Integer offset = offsets.get(key);
+        return offset == null ? null : read(offset);
+    }
+
+    /**
+     * This function finds the open order an account was added with.
+     * @param key - holder key of the account.
+     * @return the open order passed to put(), or -1 if the account is not in the store.
+     */
+    public long openOrderOf(HolderKey key)
+    {
+        Integer offset = offsets.get(key);
+        return offset == null ? -1 : ByteBuffer.wrap(records).getLong(offset);
+    }
+
+    /**
+     * This function finds an account and removes it from the store.
+     * @param key - holder key of the account.
+     * @return a new account object holding the account, or null if it is not in the store.
+     */
+    public Account take(HolderKey key)
+    {
+        Integer offset = offsets.remove(key);
+        if(offset == null)
+        {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.wrap(records, offset, end - offset);
+        record.getLong();
+        Account account = AccountCodec.read(record);
+        garbage += record.position() - offset;
+        if(garbage > end / 2)
+        {
+            compact();
+        }
+        return account;
+    }
+
+    /**
+     * This function adds copies of the accounts of a holder to a list, probing the store once per lookup class.
+     * @param holder - profile of the account holder.
+     * @param found - list that receives the accounts.
+     */
+    public void copiesOf(Profile holder, List<Account> found)
+    {
+        if(offsets.isEmpty())
+        {
+            return;
+        }
+        for(AccountType type : AccountType.BY_LOOKUP_CLASS)
+        {
+            Integer offset = offsets.get(holder.getHolderKey(type.lookupClass()));
+            if(offset != null)
+            {
+                found.add(read(offset));
+            }
+        }
+    }
+
+    /**
+     * This function calls the action with a copy of every account in the store, in the order they were added.
+     * @param action - action to call with each account.
+     */
+    public void forEach(Consumer<Account> action)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(records, 0, end);
+        while(buffer.hasRemaining())
+        {
+            int offset = buffer.position();
+            buffer.getLong();
+            Account account = AccountCodec.read(buffer);
+            Integer live = offsets.get(account.getHolderKey());
+            if(live != null && live == offset)
+            {
+                action.accept(account);
+            }
+        }
+    }
+
+    /**
+     * This function moves the records that are still in the store to the start of the array, in order,
+     * and drops the garbage.
+     */
+    private void compact()
+    {
+        byte[] compacted = new byte[Math.max(DefaultCapacity, (end - garbage) * GrowthFactor)];
+        ByteBuffer buffer = ByteBuffer.wrap(records, 0, end);
+        int size = 0;
+        while(buffer.hasRemaining())
+        {
+            int offset = buffer.position();
+            buffer.getLong();
+            HolderKey key = AccountCodec.read(buffer).getHolderKey();
+            int length = buffer.position() - offset;
+            Integer live = offsets.get(key);
+            if(live != null && live == offset)
+            {
+                System.arraycopy(records, offset, compacted, size, length);
+                offsets.put(key, size);
+                size += length;
+            }
+        }
+        records = compacted;
+        end = size;
+        garbage = 0;
+    }
+
+    /**
+     * This function decodes the account of the record at an offset.
+     */
+    private Account read(int offset)
+    {
+        ByteBuffer record = ByteBuffer.wrap(records, offset, end - offset);
+        record.getLong();
+        return AccountCodec.read(record);
+    }
+}
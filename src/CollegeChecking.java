@@ -5,16 +5,16 @@
  */
 public class CollegeChecking extends Checking{
 
-    private static final double annualInterest = 0.25;
+    static final int annualInterestBasisPoints = 25;
     private static final String accountType = "College Checking";
     private College college;
 
     /**
-     * This function is used to get the annualInterest rate of a College Checking account.
+     * This function is used to get the annualInterest rate of a College Checking account in basis points.
      */
     @Override
-    protected double getAnnualInterestRate(){
-       return annualInterest;
+    protected int getAnnualInterestBasisPoints(){
+       return annualInterestBasisPoints;
     }
 
      /**
@@ -33,6 +33,14 @@ public class CollegeChecking extends Checking{
 
      }
 
+    /**
+     * @return the campus of this account.
+     */
+    public College getCollege()
+    {
+        return this.college;
+    }
+
     /**
      * This function sets the passed in account object's balance and sets the boolean
      * closed variable to false by polymorphism.
@@ -46,11 +54,11 @@ public class CollegeChecking extends Checking{
 
     /**
      * This function returns a monthly fee that an account holder needs to pay on a monthly basis.
-     * @return - a double that has a monthly fee that an account holder needs to pay on a monthly basis
-     * depending on the account type.
+     * @return - a long that has the monthly fee in cents that an account holder needs to pay on a
+     * monthly basis depending on the account type.
      */
     @Override
-    public double fee() {
+    public long feeCents() {
         return 0;
     }
 
@@ -63,12 +71,14 @@ public class CollegeChecking extends Checking{
     }
 
     /**
-     * @return the type of account and whether it's opened or close.
+     * This function appends the type of account, whether it's opened or close and the campus.
+     * @param builder - builder to append to.
+     * @return the builder.
      */
     @Override
-    public String toString()
+    public StringBuilder appendTo(StringBuilder builder)
     {
-        return super.toString() + "::" + college.toString();
+        return super.appendTo(builder).append("::").append(college.toString());
     }
 
 
@@ -0,0 +1,641 @@
+/**
+ * ColumnarAccountDatabase class is the store that keeps accounts in parallel
+ * primitive arrays instead of one object per account: holders, type codes, balances in cents, closed and
+ * loyal flags, Money Market withdrawal counters and campuses, one row per account in the order they were
+ * opened. The rows of each account type are also listed per type, so the month-end update runs one tight
+ * loop per type over primitive arrays, using the same static fee and interest rules as the account classes.
+ * Accounts returned by getAccountIfExists() are copies of a row; changes go through the database operations.
+ * The columnar kernel always runs eagerly and sequentially; the parallel month-end and lazy accrual modes,
+ * tiering and report views belong to the object store, since rows are changed in place without leaving a copy.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+public class ColumnarAccountDatabase extends IndexedAccountDatabase {
+    private static final int DefaultCapacity = 4;
+    private static final int GrowthFactor = 2;
+
+    private Profile[] holders;
+    private byte[] types;
+    private long[] balances;
+    private boolean[] closed;
+    private boolean[] loyal;
+    private int[] withdrawals;
+    private College[] colleges;
+    private int size;
+    private HashMap<HolderKey, Integer> rowIndex;
+    private int[][] typeRows;
+    private int[] typeRowCounts;
+
+    /**
+     * This is the constructor that creates an empty columnar database with the default capacity.
+     */
+    public ColumnarAccountDatabase()
+    {
+        this(DefaultCapacity);
+    }
+
+    /**
+     * This is the constructor that creates an empty columnar database sized for a known number of accounts.
+     * @param capacityHint - expected number of accounts, values below 4 use the default capacity.
+     */
+    public ColumnarAccountDatabase(int capacityHint)
+    {
+        int capacity = Math.max(capacityHint, DefaultCapacity);
+        this.holders = new Profile[capacity];
+        this.types = new byte[capacity];
+        this.balances = new long[capacity];
+        this.closed = new boolean[capacity];
+        this.loyal = new boolean[capacity];
+        this.withdrawals = new int[capacity];
+        this.colleges = new College[capacity];
+        this.size = 0;
+        this.rowIndex = new HashMap<>(capacity * 4 / 3 + 1);
+        this.typeRows = new int[AccountType.values().length][DefaultCapacity];
+        this.typeRowCounts = new int[AccountType.values().length];
+    }
+
+    /**
+     * @return number of accounts that the database is currently holding.
+     */
+    @Override
+    public int getNumAcct()
+    {
+        return size;
+    }
+
+    /**
+     * This function finds the row of the passed in account.
+     * @param account - account that holds the profile and type to look up.
+     * @return the row of the account, or NOT_FOUND.
+     */
+    private int findRow(Account account)
+    {
+        Integer row = rowIndex.get(account.getHolderKey());
+        return row == null ? NOT_FOUND : row;
+    }
+
+    /**
+     * This function builds an account object from a row.
+     * @param row - row of the account.
+     * @return a new account object holding a copy of the row.
+     */
+    private Account materialize(int row)
+    {
+        Account account = AccountType.fromCode(types[row]).newAccount(colleges[row]);
+        account.setHolder(holders[row]);
+        account.setBalanceCents(balances[row]);
+        account.closed = closed[row];
+        if(account instanceof MoneyMarket)
+        {
+            ((MoneyMarket) account).setWithdrawCounter(withdrawals[row]);
+        }
+        else if(account instanceof Savings)
+        {
+            ((Savings) account).setLoyalty(loyal[row]);
+        }
+        return account;
+    }
+
+    /**
+     * This function finds whether the passed in account exists in the database and returns a copy of it.
+     * @param account
+     * @return a copy of the account if found, null if not found
+     */
+    @Override
+    public Account getAccountIfExists(Account account)
+    {
+        int row = findRow(account);
+        return row == NOT_FOUND ? null : materialize(row);
+    }
+
+    /**
+     * This function grows all columns to the given capacity.
+     * @param capacity - new capacity.
+     */
+    private void grow(int capacity)
+    {
+        holders = Arrays.copyOf(holders, capacity);
+        types = Arrays.copyOf(types, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        closed = Arrays.copyOf(closed, capacity);
+        loyal = Arrays.copyOf(loyal, capacity);
+        withdrawals = Arrays.copyOf(withdrawals, capacity);
+        colleges = Arrays.copyOf(colleges, capacity);
+    }
+
+    /**
+     * This function grows the columns so they can hold at least minCapacity accounts.
+     * @param minCapacity - number of accounts the columns must be able to hold.
+     */
+    @Override
+    public void ensureCapacity(int minCapacity)
+    {
+        if(minCapacity > balances.length)
+        {
+            grow(Math.max(minCapacity, balances.length * GrowthFactor));
+        }
+    }
+
+    /**
+     * This function calls the action with a copy of every account in the database, in the order they were opened.
+     * @param action - action to call with each account.
+     */
+    @Override
+    public void forEach(Consumer<Account> action)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            action.accept(materialize(row));
+        }
+    }
+
+    /**
+     * This function appends a new row holding the passed in account.
+     * @param account - The account object that needs to be added.
+     * @return true only after when the account gets added successfully.
+     */
+    @Override
+    public boolean open(Account account)
+    {
+        fireOpened(account);
+        if(size == balances.length)
+        {
+            grow(size * GrowthFactor);
+        }
+        int row = size++;
+        AccountType type = AccountType.of(account);
+        holders[row] = account.getHolder();
+        types[row] = type.code();
+        balances[row] = account.getBalanceCents();
+        closed[row] = account.isClosed();
+        if(account instanceof MoneyMarket)
+        {
+            withdrawals[row] = ((MoneyMarket) account).getWithdrawCounter();
+        }
+        else if(account instanceof Savings)
+        {
+            loyal[row] = ((Savings) account).isLoyal();
+        }
+        if(account instanceof CollegeChecking)
+        {
+            colleges[row] = ((CollegeChecking) account).getCollege();
+        }
+        rowIndex.putIfAbsent(account.getHolderKey(), row);
+        addTypeRow(row);
+        finishRowChange(new BookSummary(), row);
+        indexHolder(holders[row], row);
+        return true;
+    }
+
+    /**
+     * This function is a helper that adds a row to the list of rows of its account type.
+     */
+    private void addTypeRow(int row)
+    {
+        int code = types[row];
+        if(typeRowCounts[code] == typeRows[code].length)
+        {
+            typeRows[code] = Arrays.copyOf(typeRows[code], typeRowCounts[code] * GrowthFactor);
+        }
+        typeRows[code][typeRowCounts[code]++] = row;
+    }
+
+    /**
+     * This function finds and reopens an account with the balance of the passed in account.
+     * @param account - account that holds the profile and the new balance.
+     * @return false if the account does not exist, true if it was reopened.
+     */
+    @Override
+    public boolean reOpen(Account account)
+    {
+        int row = findRow(account);
+        if(row == NOT_FOUND)
+        {
+            return false;
+        }
+        fireReopened(account);
+        BookSummary delta = startRowChange(row);
+        balances[row] = account.getBalanceCents();
+        closed[row] = false;
+        if(account instanceof CollegeChecking)
+        {
+            colleges[row] = ((CollegeChecking) account).getCollege();
+        }
+        finishRowChange(delta, row);
+        return true;
+    }
+
+    /**
+     * This function finds and closes an account, setting its balance and withdrawal counter to 0.
+     * @param account - The account object that needs to be closed.
+     * @return false if the account does not exist, true if it was closed.
+     */
+    @Override
+    public boolean close(Account account)
+    {
+        int row = findRow(account);
+        if(row == NOT_FOUND)
+        {
+            return false;
+        }
+        fireClosed(account);
+        BookSummary delta = startRowChange(row);
+        balances[row] = 0;
+        closed[row] = true;
+        withdrawals[row] = 0;
+        finishRowChange(delta, row);
+        return true;
+    }
+
+    /**
+     * This function finds the account and adds in an amount to its balance.
+     * @param account - account object that holds the profile and the amount to deposit.
+     */
+    @Override
+    public void deposit(Account account)
+    {
+        int row = findRow(account);
+        fireDeposited(account);
+        depositToRow(row, account.getBalanceCents());
+    }
+
+    /**
+     * This function deducts an amount from the balance of the account if it is available.
+     * @param account - account object that holds the profile and the amount to withdraw.
+     * @return true if the amount was withdrawn, false if the account does not exist or has insufficient funds.
+     */
+    @Override
+    public boolean withdraw(Account account)
+    {
+        int row = findRow(account);
+        long amount = account.getBalanceCents();
+        if(row == NOT_FOUND || amount > balances[row])
+        {
+            return false;
+        }
+        fireWithdrew(account);
+        withdrawFromRow(row, amount);
+        return true;
+    }
+
+    /**
+     * This function moves an amount from one row to another if the source row holds it.
+     * @param from - account object that holds the profile of the source and the amount to move.
+     * @param to - account object that holds the profile of the target.
+     * @return true if the amount was moved, false if either account does not exist or is closed, both are
+     *         the same account or the source has insufficient funds.
+     */
+    @Override
+    public boolean transfer(Account from, Account to)
+    {
+        int source = findRow(from);
+        int target = findRow(to);
+        long amount = from.getBalanceCents();
+        if(source == NOT_FOUND || target == NOT_FOUND || source == target || closed[source] || closed[target]
+                || amount > balances[source])
+        {
+            return false;
+        }
+        fireTransferred(from, to);
+        withdrawFromRow(source, amount);
+        depositToRow(target, amount);
+        return true;
+    }
+
+    /**
+     * This function is a helper that adds an amount to the balance of a row.
+     */
+    private void depositToRow(int row, long amount)
+    {
+        BookSummary delta = startRowChange(row);
+        balances[row] += amount;
+        finishRowChange(delta, row);
+    }
+
+    /**
+     * This function is a helper that takes an amount from the balance of a row, counting Money Market
+     * withdrawals.
+     */
+    private void withdrawFromRow(int row, long amount)
+    {
+        BookSummary delta = startRowChange(row);
+        balances[row] -= amount;
+        if(types[row] == AccountType.MONEY_MARKET.code())
+        {
+            withdrawals[row]++;
+        }
+        finishRowChange(delta, row);
+    }
+
+    /**
+     * This function starts the summary delta of a change to one row.
+     * @param row - row that is about to change.
+     * @return a delta holding the row's contribution before the change, removed.
+     */
+    private BookSummary startRowChange(int row)
+    {
+        BookSummary delta = new BookSummary();
+        addRow(delta, row, -1);
+        return delta;
+    }
+
+    /**
+     * This function finishes the summary delta of a change to one row and applies it,
+     * together with the balance index entry of the row.
+     * @param delta - delta returned by startRowChange(), or an empty summary for a new row.
+     * @param row - row after the change.
+     */
+    private void finishRowChange(BookSummary delta, int row)
+    {
+        addRow(delta, row, 1);
+        summary().merge(delta);
+        balanceIndex().update(row, AccountType.fromCode(types[row]), closed[row], balances[row], withdrawals[row]);
+    }
+
+    /**
+     * This function adds every row to the balance index, with the row number as id.
+     * @param balanceIndex - index being rebuilt.
+     */
+    @Override
+    protected void loadBalanceIndex(BalanceIndex balanceIndex)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            balanceIndex.add(row, AccountType.fromCode(types[row]), closed[row], balances[row], withdrawals[row]);
+        }
+    }
+
+    /**
+     * This function calls the action with the holder and the number of every row, to build the holder and
+     * name indexes.
+     * @param action - action to call with each holder and id.
+     */
+    @Override
+    protected void forEachHolder(ObjIntConsumer<Profile> action)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            action.accept(holders[row], row);
+        }
+    }
+
+    /**
+     * This function builds copies of the accounts of the ids returned by an index.
+     * @param ids - row numbers.
+     * @return the accounts, in the order of the ids.
+     */
+    @Override
+    protected List<Account> accountsAt(int[] ids)
+    {
+        List<Account> found = new ArrayList<>(ids.length);
+        for(int row : ids)
+        {
+            found.add(materialize(row));
+        }
+        return found;
+    }
+
+    /**
+     * This function adds or removes the contribution of a row to a summary, using the static fee and
+     * interest rules of its account type.
+     */
+    private void addRow(BookSummary delta, int row, int sign)
+    {
+        AccountType type = AccountType.fromCode(types[row]);
+        long balance = balances[row];
+        if(closed[row])
+        {
+            delta.add(type, true, balance, 0, 0, sign);
+            return;
+        }
+        long fee;
+        int basisPoints;
+        switch (type)
+        {
+            case CHECKING -> {
+                fee = Checking.feeCentsFor(balance);
+                basisPoints = Checking.annualInterestBasisPoints;
+            }
+            case COLLEGE_CHECKING -> {
+                fee = 0;
+                basisPoints = CollegeChecking.annualInterestBasisPoints;
+            }
+            case SAVINGS -> {
+                fee = Savings.feeCentsFor(balance);
+                basisPoints = Savings.annualInterestBasisPointsFor(loyal[row]);
+            }
+            default -> {
+                fee = MoneyMarket.feeCentsFor(balance, withdrawals[row]);
+                basisPoints = MoneyMarket.annualInterestBasisPointsFor(balance);
+            }
+        }
+        delta.add(type, false, balance, fee, Account.monthlyInterestCentsFor(balance, basisPoints), sign);
+    }
+
+    /**
+     * This function prints all the accounts in the database.
+     */
+    @Override
+    public void print(ReportWriter report)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            report.account(materialize(row));
+        }
+        report.flush();
+    }
+
+    /**
+     * This function prints all the accounts in the database by their account type.
+     */
+    @Override
+    public void printByAccountType(ReportWriter report)
+    {
+        for(AccountType type : AccountType.BY_NAME)
+        {
+            int[] rows = typeRows[type.code()];
+            for(int i = 0; i < typeRowCounts[type.code()]; i++)
+            {
+                report.account(materialize(rows[i]));
+            }
+        }
+        report.flush();
+    }
+
+    /**
+     * This function prints the monthly fees and interests of all accounts in the database.
+     */
+    @Override
+    public void printFeeAndInterest(ReportWriter report)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            report.feeAndInterest(materialize(row));
+        }
+        report.flush();
+    }
+
+    /**
+     * This function is the month-end kernel. It posts fee and monthly interest to every open account,
+     * with one loop per account type over the primitive columns, and totals the fee and interest of the
+     * next month-end for the summary as it goes.
+     */
+    @Override
+    protected void updateBalance()
+    {
+        fireBalancesUpdated();
+        long[] balances = this.balances;
+        boolean[] closed = this.closed;
+        long balanceChange = 0;
+        long projectedFee = 0;
+        long projectedInterest = 0;
+
+        int[] rows = typeRows[AccountType.CHECKING.code()];
+        int count = typeRowCounts[AccountType.CHECKING.code()];
+        for(int i = 0; i < count; i++)
+        {
+            int row = rows[i];
+            if(!closed[row])
+            {
+                long balance = balances[row];
+                long updated = balance - Checking.feeCentsFor(balance)
+                        + Account.monthlyInterestCentsFor(balance, Checking.annualInterestBasisPoints);
+                balances[row] = updated;
+                balanceChange += updated - balance;
+                projectedFee += Checking.feeCentsFor(updated);
+                projectedInterest += Account.monthlyInterestCentsFor(updated, Checking.annualInterestBasisPoints);
+            }
+        }
+
+        rows = typeRows[AccountType.COLLEGE_CHECKING.code()];
+        count = typeRowCounts[AccountType.COLLEGE_CHECKING.code()];
+        for(int i = 0; i < count; i++)
+        {
+            int row = rows[i];
+            if(!closed[row])
+            {
+                long balance = balances[row];
+                long updated = balance + Account.monthlyInterestCentsFor(balance, CollegeChecking.annualInterestBasisPoints);
+                balances[row] = updated;
+                balanceChange += updated - balance;
+                projectedInterest += Account.monthlyInterestCentsFor(updated, CollegeChecking.annualInterestBasisPoints);
+            }
+        }
+
+        boolean[] loyal = this.loyal;
+        rows = typeRows[AccountType.SAVINGS.code()];
+        count = typeRowCounts[AccountType.SAVINGS.code()];
+        for(int i = 0; i < count; i++)
+        {
+            int row = rows[i];
+            if(!closed[row])
+            {
+                long balance = balances[row];
+                int basisPoints = Savings.annualInterestBasisPointsFor(loyal[row]);
+                long updated = balance - Savings.feeCentsFor(balance) + Account.monthlyInterestCentsFor(balance, basisPoints);
+                balances[row] = updated;
+                balanceChange += updated - balance;
+                projectedFee += Savings.feeCentsFor(updated);
+                projectedInterest += Account.monthlyInterestCentsFor(updated, basisPoints);
+            }
+        }
+
+        int[] withdrawals = this.withdrawals;
+        rows = typeRows[AccountType.MONEY_MARKET.code()];
+        count = typeRowCounts[AccountType.MONEY_MARKET.code()];
+        for(int i = 0; i < count; i++)
+        {
+            int row = rows[i];
+            if(!closed[row])
+            {
+                long balance = balances[row];
+                long updated = balance - MoneyMarket.feeCentsFor(balance, withdrawals[row])
+                        + Account.monthlyInterestCentsFor(balance, MoneyMarket.annualInterestBasisPointsFor(balance));
+                balances[row] = updated;
+                balanceChange += updated - balance;
+                projectedFee += MoneyMarket.feeCentsFor(updated, withdrawals[row]);
+                projectedInterest += Account.monthlyInterestCentsFor(updated, MoneyMarket.annualInterestBasisPointsFor(updated));
+            }
+        }
+        summary().setMonthEnd(balanceChange, projectedFee, projectedInterest);
+    }
+
+    /**
+     * This function takes out up to limit accounts that match a filter, see AbstractAccountDatabase.removeAccounts().
+     * The rows left slide down so they stay in the order they were opened; the row index is renumbered in
+     * place and the per-type row lists are rebuilt, while the balance, holder and name indexes are rebuilt by
+     * their next query.
+     * @param filter - filter that selects the accounts to take.
+     * @param limit - largest number of accounts to take.
+     * @return copies of the accounts taken, which are no longer in the database.
+     */
+    @Override
+    protected List<Account> removeAccounts(Predicate<Account> filter, int limit)
+    {
+        List<Account> removed = new ArrayList<>();
+        int[] moves = new int[size];
+        for(int row = 0; row < size && removed.size() < limit; row++)
+        {
+            Account account = materialize(row);
+            if(filter.test(account))
+            {
+                moves[row] = NOT_FOUND;
+                removed.add(account);
+            }
+        }
+        if(removed.isEmpty())
+        {
+            return removed;
+        }
+        removed.forEach(this::fireRemoved);
+        int kept = 0;
+        for(int row = 0; row < size; row++)
+        {
+            if(moves[row] == NOT_FOUND)
+            {
+                summary().merge(startRowChange(row));
+                continue;
+            }
+            moves[row] = kept;
+            if(kept != row)
+            {
+                moveRow(row, kept);
+            }
+            kept++;
+        }
+        Arrays.fill(holders, kept, size, null);
+        Arrays.fill(colleges, kept, size, null);
+        size = kept;
+        rowIndex.replaceAll((key, row) -> moves[row]);
+        rowIndex.values().removeIf(row -> row == NOT_FOUND);
+        Arrays.fill(typeRowCounts, 0);
+        for(int row = 0; row < size; row++)
+        {
+            addTypeRow(row);
+        }
+        balanceIndex().invalidate();
+        invalidateHolderIndexes();
+        return removed;
+    }
+
+    /**
+     * This function is a helper that copies a row to a lower row.
+     */
+    private void moveRow(int from, int to)
+    {
+        holders[to] = holders[from];
+        types[to] = types[from];
+        balances[to] = balances[from];
+        closed[to] = closed[from];
+        loyal[to] = loyal[from];
+        withdrawals[to] = withdrawals[from];
+        colleges[to] = colleges[from];
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Test class to check that ColumnarAccountDatabase gives the same results as AccountDatabase.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.*;
+
+public class ColumnarAccountDatabaseTest {
+
+    /**
+     * This is a helper that opens, deposits, withdraws, closes and reopens a mix of accounts,
+     * runs two month-end updates, and returns everything the database printed.
+     */
+    static String runScenario(AbstractAccountDatabase accountDatabase) {
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured));
+        try {
+            Date dob = new Date("1/15/1987");
+            for(int i = 0; i < 20; i++) {
+                Account account;
+                switch (i % 4) {
+                    case 0 -> account = new Checking();
+                    case 1 -> account = new CollegeChecking(College.values()[i % 3]);
+                    case 2 -> {
+                        Savings savings = new Savings();
+                        savings.setLoyalty(i % 3 == 0);
+                        account = savings;
+                    }
+                    default -> account = new MoneyMarket();
+                }
+                account.setHolder("First" + i, "Last", dob);
+                account.setBalanceCents(250000 + i * 1234 - (i % 2) * 240000);
+                accountDatabase.open(account);
+            }
+            for(int i = 3; i < 20; i += 4) {
+                MoneyMarket probe = new MoneyMarket();
+                probe.setHolder("first" + i, "LAST", dob);
+                probe.setBalanceCents(1000);
+                for(int w = 0; w < i % 5; w++) {
+                    accountDatabase.withdraw(probe);
+                }
+            }
+            Checking deposit = new Checking();
+            deposit.setHolder("First0", "Last", dob);
+            deposit.setBalanceCents(999);
+            accountDatabase.deposit(deposit);
+            Savings close = new Savings();
+            close.setHolder("First2", "Last", dob);
+            accountDatabase.close(close);
+            Savings reopen = new Savings();
+            reopen.setHolder("First2", "Last", dob);
+            reopen.setBalanceCents(50000);
+            accountDatabase.close(reopen);
+            accountDatabase.reOpen(reopen);
+            accountDatabase.printFeeAndInterest();
+            accountDatabase.printWithUpdatedBalance();
+            accountDatabase.printWithUpdatedBalance();
+            accountDatabase.printByAccountType();
+        } finally {
+            System.setOut(original);
+        }
+        return captured.toString();
+    }
+
+    /**
+     * This Test method checks that the columnar store prints the same reports as the object store
+     * after the same operations and two month-end updates.
+     */
+    @Test
+    public void sameResults_Test() {
+        String expected = runScenario(new AccountDatabase());
+        String actual = runScenario(new ColumnarAccountDatabase(2));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+}
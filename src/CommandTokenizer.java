@@ -0,0 +1,444 @@
+/**
+ * CommandTokenizer class splits teller commands into tokens straight from the bytes read from a channel, so
+ * the teller does not make a String for every line and every token the way Scanner and split() do. The input
+ * is read into one ByteBuffer; a line is a range of the buffer, and its tokens, separated by spaces and tabs
+ * as in BankTeller.tokenize(), are ranges of the line. Command and account type codes are returned as the
+ * constant Strings they match, dates of birth and amounts are parsed from the bytes into primitive values,
+ * and only the names kept by an account, or a token of a command the teller does not parse this way, are
+ * made into Strings. Lines end at \n, \r or \r\n.
+ * The tokens of a line are valid until nextLine() is called again.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+public class CommandTokenizer {
+    public static final int DefaultBufferSize = 1 << 16;
+    public static final long INVALID_DATE = Long.MIN_VALUE;
+    private static final int InitialTokens = 8;
+    private static final String[] Codes = {"O", "C", "D", "W", "T", "P", "PT", "PI", "UB", "PS", "BR", "BT", "BC",
+            "FW", "H", "N", "NF", "RL", "PR", "Q", "CC", "S", "MM", Savings.LOYAL, Savings.NON_LOYAL};
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private final Slice slice;
+    private final Charset charset;
+    private int[] starts;
+    private int[] ends;
+    private int count;
+    private int lineStart;
+    private int lineEnd;
+    private int next;
+    private boolean leadingSeparator;
+    private boolean endOfInput;
+
+    /**
+     * Constructor of this class. Reads the channel through a buffer of the default size.
+     * @param channel - channel the commands are read from.
+     */
+    public CommandTokenizer(ReadableByteChannel channel)
+    {
+        this(channel, DefaultBufferSize);
+    }
+
+    /**
+     * Constructor of this class.
+     * @param channel - channel the commands are read from.
+     * @param bufferSize - initial size of the buffer; it grows to hold a line that does not fit.
+     */
+    public CommandTokenizer(ReadableByteChannel channel, int bufferSize)
+    {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 16));
+        this.buffer.flip();
+        this.slice = new Slice();
+        this.charset = Charset.defaultCharset();
+        this.starts = new int[InitialTokens];
+        this.ends = new int[InitialTokens];
+    }
+
+    /**
+     * This function moves to the next line and splits it into tokens.
+     * @return false at the end of the input.
+     * @throws IOException if the channel cannot be read.
+     */
+    public boolean nextLine() throws IOException
+    {
+        int start = next;
+        int end = start;
+        while(true)
+        {
+            while(end < buffer.limit() && buffer.get(end) != '\n' && buffer.get(end) != '\r')
+            {
+                end++;
+            }
+            if(end < buffer.limit() || endOfInput)
+            {
+                break;
+            }
+            int shift = fill(start);
+            start -= shift;
+            end -= shift;
+        }
+        if(start == end && end == buffer.limit())
+        {
+            count = 0;
+            return false;
+        }
+        if(end + 1 == buffer.limit() && buffer.get(end) == '\r' && !endOfInput)
+        {
+            int shift = fill(start);
+            start -= shift;
+            end -= shift;
+        }
+        next = end;
+        if(end < buffer.limit())
+        {
+            next += buffer.get(end) == '\r' && end + 1 < buffer.limit() && buffer.get(end + 1) == '\n' ? 2 : 1;
+        }
+        lineStart = start;
+        lineEnd = end;
+        split();
+        return true;
+    }
+
+    /**
+     * This function is a helper that keeps the bytes from the given position and reads more after them,
+     * growing the buffer if it is full.
+     * @return how far the bytes kept moved down the buffer.
+     */
+    private int fill(int keepFrom) throws IOException
+    {
+        buffer.position(keepFrom);
+        buffer.compact();
+        if(!buffer.hasRemaining())
+        {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        int read = 0;
+        while(read == 0)
+        {
+            read = channel.read(buffer);
+        }
+        if(read < 0)
+        {
+            endOfInput = true;
+        }
+        buffer.flip();
+        return keepFrom;
+    }
+
+    /**
+     * This function is a helper that finds the tokens of the current line.
+     */
+    private void split()
+    {
+        count = 0;
+        leadingSeparator = lineStart < lineEnd && isSeparator(buffer.get(lineStart));
+        int i = lineStart;
+        while(i < lineEnd)
+        {
+            while(i < lineEnd && isSeparator(buffer.get(i)))
+            {
+                i++;
+            }
+            if(i == lineEnd)
+            {
+                break;
+            }
+            if(count == starts.length)
+            {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = i;
+            while(i < lineEnd && !isSeparator(buffer.get(i)))
+            {
+                i++;
+            }
+            ends[count++] = i;
+        }
+    }
+
+    private static boolean isSeparator(byte b)
+    {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * This function tells whether the line has no command, as BankTeller.run() skips a line that is empty,
+     * starts with a space or tab, or whose first token is white space.
+     * @return true if the line is skipped.
+     */
+    public boolean isBlank()
+    {
+        if(count == 0 || leadingSeparator)
+        {
+            return true;
+        }
+        for(int i = starts[0]; i < ends[0]; i++)
+        {
+            byte b = buffer.get(i);
+            if(b < 0)
+            {
+                return text(0).isBlank();
+            }
+            if(!Character.isWhitespace(b))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of tokens of the line.
+     */
+    public int count()
+    {
+        return count;
+    }
+
+    /**
+     * This function returns a token that is a command, account type or loyalty code as the constant String
+     * it matches, without making a new String. Any other token is made into a String.
+     * @param token - index of the token.
+     * @return the code.
+     */
+    public String code(int token)
+    {
+        checkToken(token);
+        int length = ends[token] - starts[token];
+        for(String code : Codes)
+        {
+            if(code.length() == length && matches(token, code))
+            {
+                return code;
+            }
+        }
+        return text(token);
+    }
+
+    /**
+     * This function is a helper that compares a token with an ASCII String.
+     */
+    private boolean matches(int token, String code)
+    {
+        for(int i = 0; i < code.length(); i++)
+        {
+            if(buffer.get(starts[token] + i) != code.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This function makes a token into a String, such as a name an account keeps.
+     * @param token - index of the token.
+     * @return the token.
+     */
+    public String text(int token)
+    {
+        checkToken(token);
+        int length = ends[token] - starts[token];
+        if(buffer.hasArray())
+        {
+            return new String(buffer.array(), buffer.arrayOffset() + starts[token], length, charset);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(starts[token], bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * This function makes every token of the line into a String, for the commands the teller parses from
+     * String arrays.
+     * @return the tokens, as BankTeller.tokenize() returns them.
+     */
+    public String[] texts()
+    {
+        String[] texts = new String[count];
+        for(int i = 0; i < count; i++)
+        {
+            texts[i] = text(i);
+        }
+        return texts;
+    }
+
+    /**
+     * This function parses an amount token into cents, with the rules of Money.parseCents().
+     * @param token - index of the token.
+     * @return the amount in cents, or Money.INVALID.
+     */
+    public long parseCents(int token)
+    {
+        return Money.parseCents(slice(token));
+    }
+
+    /**
+     * This function parses a date of birth token, with the rules of Date(String).
+     * @param token - index of the token.
+     * @return the date packed by pack(), or INVALID_DATE.
+     */
+    public long parseDate(int token)
+    {
+        return parseDate(slice(token));
+    }
+
+    /**
+     * This function is a helper that points the reused slice at a token.
+     */
+    private Slice slice(int token)
+    {
+        checkToken(token);
+        slice.start = starts[token];
+        slice.end = ends[token];
+        return slice;
+    }
+
+    private void checkToken(int token)
+    {
+        if(token >= count)
+        {
+            throw new ArrayIndexOutOfBoundsException("Index " + token + " out of bounds for length " + count);
+        }
+    }
+
+    /**
+     * This function parses a date in the form mm/dd/yyyy with the rules of Date(String): the text is split
+     * at '/', the first three parts must be integers and any later parts are ignored. A month that is not 1
+     * to 12 or a day that is not 1 to 31 is returned as INVALID_DATE, since such a date is not valid either.
+     * @param date - text of the date.
+     * @return the date packed by pack(), or INVALID_DATE.
+     */
+    public static long parseDate(CharSequence date)
+    {
+        int[] parts = new int[3];
+        int part = 0;
+        int i = 0;
+        int length = date.length();
+        while(part < 3)
+        {
+            boolean negative = false;
+            if(i < length && (date.charAt(i) == '-' || date.charAt(i) == '+'))
+            {
+                negative = date.charAt(i) == '-';
+                i++;
+            }
+            long value = 0;
+            int digits = 0;
+            for(; i < length && date.charAt(i) != '/'; i++)
+            {
+                char c = date.charAt(i);
+                if(c >= 0x80)
+                {
+                    return parseDateSlowly(date.toString());
+                }
+                if(c < '0' || c > '9' || value > Integer.MAX_VALUE + 1L)
+                {
+                    return INVALID_DATE;
+                }
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+            value = negative ? -value : value;
+            if(digits == 0 || value > Integer.MAX_VALUE || value < Integer.MIN_VALUE)
+            {
+                return INVALID_DATE;
+            }
+            parts[part++] = (int) value;
+            if(part < 3)
+            {
+                if(i == length)
+                {
+                    return INVALID_DATE;
+                }
+                i++;
+            }
+        }
+        return pack(parts[0], parts[1], parts[2]);
+    }
+
+    /**
+     * This function is a helper that parses a date that has characters other than ASCII with Date(String),
+     * whose Integer.parseInt() also takes digits of other scripts.
+     */
+    private static long parseDateSlowly(String date)
+    {
+        try
+        {
+            String[] s = date.split("/");
+            return pack(Integer.parseInt(s[0]), Integer.parseInt(s[1]), Integer.parseInt(s[2]));
+        }
+        catch(RuntimeException e)
+        {
+            return INVALID_DATE;
+        }
+    }
+
+    /**
+     * This function packs a date into a long: the year in the high 32 bits, then the month and the day.
+     * @return the packed date, or INVALID_DATE if the month or day is out of range.
+     */
+    public static long pack(int month, int day, int year)
+    {
+        if(month < 1 || month > Date.MONTHS_END || day < 1 || day > Date.DAYS_END)
+        {
+            return INVALID_DATE;
+        }
+        return ((long) year << 32) | (month << 8) | day;
+    }
+
+    /**
+     * This function makes a packed date into a Date.
+     * @param packed - date packed by pack().
+     * @return the date.
+     */
+    public static Date toDate(long packed)
+    {
+        return new Date((int) (packed >> 8) & 0xff, (int) packed & 0xff, (int) (packed >> 32));
+    }
+
+    /**
+     * Slice class is a view of a token as a CharSequence of its bytes, so the parsers of Money can read it in
+     * place. A byte that is not ASCII is read as a char above 0x7f, which no parser accepts.
+     */
+    private class Slice implements CharSequence {
+        private int start;
+        private int end;
+
+        @Override
+        public int length()
+        {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            return (char) (buffer.get(start + index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to)
+        {
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString()
+        {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return new String(bytes, charset);
+        }
+    }
+}
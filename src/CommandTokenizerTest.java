@@ -0,0 +1,120 @@
+/**
+ * Test class to check that CommandTokenizer splits lines like Scanner and BankTeller.tokenize(), and parses
+ * codes, dates and amounts in place with the same rules as the String parsers.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CommandTokenizerTest {
+
+    private static CommandTokenizer tokenizer(String input, int bufferSize) {
+        return new CommandTokenizer(Channels.newChannel(new ByteArrayInputStream(input.getBytes())), bufferSize);
+    }
+
+    /**
+     * This Test method checks that lines ending in \n, \r or \r\n, a last line without an end and lines
+     * longer than the buffer are split into the same tokens as BankTeller.tokenize().
+     */
+    @Test
+    public void lines_Test() throws Exception {
+        Random random = new Random(4);
+        String[] words = {"O", "CC", "John", "Doe", "2/19/1989", "500.25", "", "x\u00e9y"};
+        String[] ends = {"\n", "\r", "\r\n"};
+        for(int bufferSize : new int[] {16, 33, CommandTokenizer.DefaultBufferSize}) {
+            StringBuilder input = new StringBuilder();
+            List<String> lines = new ArrayList<>();
+            for(int i = 0; i < 400; i++) {
+                StringBuilder line = new StringBuilder();
+                int count = random.nextInt(i % 50 == 0 ? 40 : 8);
+                for(int w = 0; w < count; w++) {
+                    line.append(random.nextInt(5) == 0 ? "\t " : " ").append(words[random.nextInt(words.length)]);
+                }
+                String text = new String((random.nextBoolean() ? line.toString().trim() : line.toString()).getBytes());
+                lines.add(text);
+            }
+            for(int i = 0; i < lines.size(); i++) {
+                input.append(lines.get(i));
+                if(i + 1 < lines.size()) {
+                    String end = ends[random.nextInt(ends.length)];
+                    // a lone \r before an empty line would read as \r\n
+                    input.append(end.equals("\r") && lines.get(i + 1).isEmpty() ? "\r\n" : end);
+                }
+            }
+            CommandTokenizer tokens = tokenizer(input.toString(), bufferSize);
+            for(String line : lines) {
+                assertTrue(tokens.nextLine());
+                String[] expected = BankTeller.tokenize(line);
+                assertEquals(expected.length == 0 || expected[0].isBlank(), tokens.isBlank());
+                if(!tokens.isBlank()) {
+                    assertArrayEquals(line, expected, tokens.texts());
+                }
+            }
+            assertFalse(tokens.nextLine());
+        }
+    }
+
+    /**
+     * This Test method checks that codes are returned as the constant Strings and that an empty last line
+     * is not a line, as with Scanner.
+     */
+    @Test
+    public void codes_Test() throws Exception {
+        CommandTokenizer tokens = tokenizer("PT\nO MM CC S 1 Z\n", 64);
+        assertTrue(tokens.nextLine());
+        assertSame("PT", tokens.code(0));
+        assertTrue(tokens.nextLine());
+        assertEquals(6, tokens.count());
+        assertSame("O", tokens.code(0));
+        assertSame("MM", tokens.code(1));
+        assertSame("CC", tokens.code(2));
+        assertSame(Savings.LOYAL, tokens.code(4));
+        assertEquals("Z", tokens.code(5));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> tokens.code(6));
+        assertFalse(tokens.nextLine());
+    }
+
+    /**
+     * This Test method checks that dates and amounts parsed in place match Date(String) and
+     * Money.parseCents(String), including dates Date(String) rejects by throwing.
+     */
+    @Test
+    public void datesAndAmounts_Test() throws Exception {
+        String[] dates = {"2/19/1989", "02/09/2001", "1/2/1990/x", "1/2/1990/", "+1/2/1990", "1//1990", "1/2",
+                "/1/2/1990", "13/1/1990", "2/30/1990", "1/0/1990", "-1/2/1990", "1/2/-5", "1/2/2147483647",
+                "1/2/2147483648", "99999999999/2/1990", "a/2/1990", "1/2/1990a", "\u0661/2/1990"};
+        String[] amounts = {"100", "0.005", "12.345", "-5", "+7", "1.", ".5", ".", "abc", "1.2.3", "99999999999999999999"};
+        CommandTokenizer tokens = tokenizer(String.join(" ", dates) + "\n" + String.join(" ", amounts), 16);
+        assertTrue(tokens.nextLine());
+        for(int i = 0; i < dates.length; i++) {
+            long expected;
+            try {
+                Date date = new Date(tokens.text(i));
+                expected = date.isValid() ? 1 : 0;
+            } catch(RuntimeException e) {
+                expected = 0;
+            }
+            long packed = tokens.parseDate(i);
+            assertEquals(dates[i], packed, CommandTokenizer.parseDate(tokens.text(i)));
+            long actual = packed != CommandTokenizer.INVALID_DATE && CommandTokenizer.toDate(packed).isValid() ? 1 : 0;
+            assertEquals(dates[i], expected, actual);
+            if(actual == 1) {
+                assertEquals(0, CommandTokenizer.toDate(packed).compareTo(new Date(tokens.text(i))));
+            }
+        }
+        assertTrue(tokens.nextLine());
+        for(int i = 0; i < amounts.length; i++) {
+            assertEquals(amounts[i], Money.parseCents(amounts[i]), tokens.parseCents(i));
+        }
+        assertFalse(Arrays.asList(tokens.texts()).isEmpty());
+    }
+}
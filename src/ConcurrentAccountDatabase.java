@@ -0,0 +1,649 @@
+/**
+ * ConcurrentAccountDatabase class is the extension of AccountDatabase that can be shared by several
+ * teller threads. Lookups go through a ConcurrentHashMap and take no lock. Deposit, withdraw, close and
+ * reOpen lock one stripe chosen by the holder, so operations on different holders do not contend unless
+ * their holders hash to the same stripe. Opening an account checks its key and appends it under the database
+ * lock and its stripe lock, so when two threads race to open the same profile only one of them succeeds.
+ * Opening a report view locks the database itself, and UB locks the database and every stripe. P, PT, PI and
+ * forEach() read a ReportView, so they see one point in time while deposits, withdrawals and opens go on, and
+ * lock each account only while reading it; reports also lock the writer they print to, so their lines are not
+ * interleaved. Listeners are called inside the locks of each change, before it is applied, so they get the
+ * changes in the order they are applied. Locks are always taken
+ * database first, then report writer, then stripe, such as when an appended account is added to the balance
+ * index under its stripe lock; a transfer locks its two stripes lower number first. With closed-account
+ * tiering, UB moves accounts to the cold store under the database lock and every stripe lock. A lookup of an
+ * account that is not in the index reads the cold store under the database lock and its stripe lock, and a
+ * change to it takes the database lock and every stripe lock, since bringing it back from the cold store
+ * slides the accounts opened after it up the array.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public class ConcurrentAccountDatabase extends AccountDatabase {
+    private final ConcurrentHashMap<HolderKey, Account> index;
+    private final Object[] stripes;
+
+    public static final int DefaultStripes = 1024;
+    public static final int MaxStripes = 1 << 12;
+
+    /**
+     * This is the constructor that creates an empty database with the default capacity and stripes.
+     */
+    public ConcurrentAccountDatabase()
+    {
+        this(0, DefaultStripes);
+    }
+
+    /**
+     * This is the constructor that creates an empty database sized for a known number of accounts.
+     * @param capacityHint - expected number of accounts.
+     * @param stripeCount - number of holder locks, rounded up to a power of 2 and at most MaxStripes, since
+     *                      changes to every account nest one lock per stripe.
+     */
+    public ConcurrentAccountDatabase(int capacityHint, int stripeCount)
+    {
+        this(capacityHint, stripeCount, new ConcurrentHashMap<>(Math.max(capacityHint, 16)));
+    }
+
+    /**
+     * This is a helper constructor that keeps a reference to the index handed to the superclass.
+     */
+    private ConcurrentAccountDatabase(int capacityHint, int stripeCount, ConcurrentHashMap<HolderKey, Account> index)
+    {
+        super(capacityHint, index);
+        this.index = index;
+        int size = Integer.highestOneBit(Math.min(Math.max(stripeCount, 1), MaxStripes) * 2 - 1);
+        this.stripes = new Object[size];
+        for(int i = 0; i < size; i++)
+        {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * This function returns the lock of the stripe that guards all accounts of the holder of the
+     * passed in account.
+     * @param account - account whose holder selects the stripe.
+     * @return the stripe lock.
+     */
+    @Override
+    protected Object lockFor(Account account)
+    {
+        return stripes[stripeOf(account)];
+    }
+
+    /**
+     * This function is a helper that returns the number of the stripe of an account's holder.
+     */
+    private int stripeOf(Account account)
+    {
+        int hash = account.getHolderKey().holderHash();
+        hash ^= hash >>> 16;
+        return hash & (stripes.length - 1);
+    }
+
+    /**
+     * @return number of accounts that the database is currently holding.
+     */
+    @Override
+    public synchronized int getNumAcct()
+    {
+        return super.getNumAcct();
+    }
+
+    /**
+     * This function adds a new account unless an account with the same key is already in the database. The
+     * check, the listeners and the append run as one step under the database lock and the holder's stripe
+     * lock, so an account is never recorded as opened before a UB that does not see it; with closed-account
+     * tiering the check includes the cold store.
+     * @param account - The account object that needs to be added.
+     * @return true if the account was added, false if another thread opened the same account first.
+     */
+    @Override
+    public boolean open(Account account)
+    {
+        synchronized(this)
+        {
+            synchronized(lockFor(account))
+            {
+                return lookUp(account) == null && super.open(account);
+            }
+        }
+    }
+
+    /**
+     * This function finds and reopens an account while holding the holder's stripe lock. Like every change
+     * to an account, it looks the account up under the lock, so it never changes an account that another
+     * thread has just taken out of the database.
+     * @param account - account that holds the profile and the new balance.
+     * @return false if the account does not exist, true if it was reopened.
+     */
+    @Override
+    public boolean reOpen(Account account)
+    {
+        return withHolder(account, () -> {
+            Account existing = lookUp(account);
+            if(existing == null)
+            {
+                return false;
+            }
+            fireReopened(account);
+            existing = toChange(existing);
+            BookSummary delta = startChange(existing);
+            existing.reOpen(account);
+            finishChange(delta, existing);
+            return true;
+        });
+    }
+
+    /**
+     * This function finds and closes an account while holding the holder's stripe lock. Closing a cold
+     * account again changes nothing, so it stays in the cold store.
+     * @param account - The account object that needs to be closed.
+     * @return false if the account does not exist, true if it was closed.
+     */
+    @Override
+    public boolean close(Account account)
+    {
+        return withHolder(account, () -> {
+            Account existing = lookUp(account);
+            if(existing == null)
+            {
+                return false;
+            }
+            fireClosed(account);
+            if(isCold(existing))
+            {
+                return true;
+            }
+            BookSummary delta = startChange(existing);
+            existing.close();
+            finishChange(delta, existing);
+            return true;
+        });
+    }
+
+    /**
+     * This function finds the account and adds the amount while holding the holder's stripe lock.
+     * @param account - account object that holds the profile and the amount to deposit.
+     */
+    @Override
+    public void deposit(Account account)
+    {
+        withHolder(account, () -> {
+            Account existing = lookUp(account);
+            fireDeposited(account);
+            existing = toChange(existing);
+            BookSummary delta = startChange(existing);
+            existing.deposit(account.getBalanceCents());
+            finishChange(delta, existing);
+            return null;
+        });
+    }
+
+    /**
+     * This function checks the funds and withdraws the amount as one step under the holder's stripe lock.
+     * @param account - account object that holds the profile and the amount to withdraw.
+     * @return true if the amount was withdrawn, false if the account does not exist or has insufficient funds.
+     */
+    @Override
+    public boolean withdraw(Account account)
+    {
+        return withHolder(account, () -> {
+            Account existing = lookUp(account);
+            if(existing == null || !existing.canBeWithdrawn(account.getBalanceCents()))
+            {
+                return false;
+            }
+            fireWithdrew(account);
+            existing = toChange(existing);
+            BookSummary delta = startChange(existing);
+            existing.withdraw(account.getBalanceCents());
+            finishChange(delta, existing);
+            return true;
+        });
+    }
+
+    /**
+     * This function checks the funds and moves the amount as one step under the stripe locks of both
+     * holders. The two stripes are always locked lower number first, so transfers running in opposite
+     * directions cannot deadlock; the accounts of one holder share a stripe, which is locked once.
+     * @param from - account object that holds the profile of the source and the amount to move.
+     * @param to - account object that holds the profile of the target.
+     * @return true if the amount was moved, false if either account does not exist or is closed, both are
+     *         the same account or the source has insufficient funds.
+     */
+    @Override
+    public boolean transfer(Account from, Account to)
+    {
+        int sourceStripe = stripeOf(from);
+        int targetStripe = stripeOf(to);
+        synchronized(stripes[Math.min(sourceStripe, targetStripe)])
+        {
+            synchronized(stripes[Math.max(sourceStripe, targetStripe)])
+            {
+                if(isHot(from) && isHot(to))
+                {
+                    return transferLocked(from, to);
+                }
+            }
+        }
+        synchronized(this)
+        {
+            synchronized(stripes[Math.min(sourceStripe, targetStripe)])
+            {
+                synchronized(stripes[Math.max(sourceStripe, targetStripe)])
+                {
+                    return transferLocked(from, to);
+                }
+            }
+        }
+    }
+
+    /**
+     * This function is a helper that checks the funds and moves the amount once the locks of the transfer
+     * are held.
+     */
+    private boolean transferLocked(Account from, Account to)
+    {
+        Account source = lookUp(from);
+        Account target = lookUp(to);
+        if(source == null || target == null || source == target || source.isClosed() || target.isClosed()
+                || !source.canBeWithdrawn(from.getBalanceCents()))
+        {
+            return false;
+        }
+        moveFunds(source, target, from, to);
+        return true;
+    }
+
+    /**
+     * This function finds whether the passed in account exists and returns it, settled. A lookup of an
+     * account in the array takes no lock. With closed-account tiering, a lookup that misses the index reads
+     * a copy from the cold store under the database and stripe locks, and leaves the account there.
+     * @param account - account that holds the profile to look up.
+     * @return account if found, null if not found.
+     */
+    @Override
+    public Account getAccountIfExists(Account account)
+    {
+        Account existing = index.get(account.getHolderKey());
+        if(existing != null || !hasColdStore())
+        {
+            if(existing != null)
+            {
+                settle(existing);
+            }
+            return existing;
+        }
+        synchronized(this)
+        {
+            synchronized(lockFor(account))
+            {
+                return lookUp(account);
+            }
+        }
+    }
+
+    /**
+     * This function is a helper that looks an account up once the locks of a change are held.
+     */
+    private Account lookUp(Account account)
+    {
+        return super.getAccountIfExists(account);
+    }
+
+    /**
+     * This function is a helper that tells whether an account can be changed under its stripe lock alone:
+     * it is in the index, or there is no cold store it could be brought back from. Accounts only move to
+     * and from the cold store under the database lock and their stripe lock, so the answer holds for as
+     * long as the caller holds the stripe lock.
+     */
+    private boolean isHot(Account account)
+    {
+        return !hasColdStore() || index.containsKey(account.getHolderKey());
+    }
+
+    /**
+     * This function is a helper that runs a change to one holder's account under the holder's stripe lock.
+     * An account that may be in the cold store is changed under the database lock and every stripe lock,
+     * since bringing it back slides the accounts opened after it up the array.
+     * @param account - account whose holder selects the stripe.
+     * @param change - the change, which looks the account up itself.
+     * @return the result of the change.
+     */
+    private <T> T withHolder(Account account, Supplier<T> change)
+    {
+        synchronized(lockFor(account))
+        {
+            if(isHot(account))
+            {
+                return change.get();
+            }
+        }
+        synchronized(this)
+        {
+            return withAllStripes(0, change);
+        }
+    }
+
+    /**
+     * This function grows the array so it can hold at least minCapacity accounts.
+     * @param minCapacity - number of accounts the array must be able to hold.
+     */
+    @Override
+    public synchronized void ensureCapacity(int minCapacity)
+    {
+        super.ensureCapacity(minCapacity);
+    }
+
+    /**
+     * This function adds the accounts of a snapshot, see AccountDatabase.loadAccounts(), while holding the
+     * database lock and every stripe lock.
+     * @param loaded - accounts to add, in the order they were opened.
+     */
+    @Override
+    protected synchronized void loadAccounts(List<Account> loaded)
+    {
+        withAllStripes(0, () -> {
+            super.loadAccounts(loaded);
+            return null;
+        });
+    }
+
+    /**
+     * This function calls the action with every account in the database, in the order they were opened, as
+     * they were when it was called, followed by copies of the cold accounts taken at the same time. See
+     * ReportView.forEach() for what the action may do.
+     * @param action - action to call with each account.
+     */
+    @Override
+    public void forEach(Consumer<Account> action)
+    {
+        List<Account> cold = new ArrayList<>();
+        ReportView view;
+        synchronized(this)
+        {
+            view = openView();
+            forEachCold(cold::add);
+        }
+        try(view)
+        {
+            view.forEach(action);
+        }
+        cold.forEach(action);
+    }
+
+    /**
+     * This function opens a point-in-time view of the accounts while holding the database lock, so no
+     * account is appended at the same time.
+     * @return the view, which the caller must close.
+     */
+    @Override
+    public synchronized ReportView openView()
+    {
+        return super.openView();
+    }
+
+    /**
+     * This function prints all the accounts in the database from a report view.
+     */
+    @Override
+    public void print(ReportWriter report)
+    {
+        try(ReportView view = openView())
+        {
+            synchronized(report)
+            {
+                view.forEach(report::account);
+                report.flush();
+            }
+        }
+    }
+
+    /**
+     * This function prints all the accounts in the database by their account type from a report view.
+     * The lines of each type are collected first, since the per-type buckets may grow during the report.
+     */
+    @Override
+    public void printByAccountType(ReportWriter report)
+    {
+        TreeMap<String, StringBuilder> lines = new TreeMap<>();
+        try(ReportView view = openView())
+        {
+            view.forEach(account -> account.appendTo(lines.computeIfAbsent(account.getType(), type -> new StringBuilder()))
+                    .append(System.lineSeparator()));
+        }
+        synchronized(report)
+        {
+            lines.values().forEach(report::append);
+            report.flush();
+        }
+    }
+
+    /**
+     * This function prints the monthly fees and interests of all accounts in the database from a report
+     * view. The view is read by one thread, so parallel month-end mode does not apply to this report.
+     */
+    @Override
+    public void printFeeAndInterest(ReportWriter report)
+    {
+        try(ReportView view = openView())
+        {
+            synchronized(report)
+            {
+                view.forEach(report::feeAndInterest);
+                report.flush();
+            }
+        }
+    }
+
+    /**
+     * This function updates and prints the balances of all accounts in the database.
+     */
+    @Override
+    public synchronized void printWithUpdatedBalance(ReportWriter report)
+    {
+        super.printWithUpdatedBalance(report);
+    }
+
+    /**
+     * This function settles an account for lazy accrual while holding the holder's stripe lock. The
+     * mutating operations settle again inside their own critical section, so a deposit or withdrawal
+     * is never applied before the interest of an earlier period. An account that is not behind is not
+     * locked at all, so lookups outside lazy accrual mode or of settled accounts take no lock.
+     * @param account - account to settle.
+     */
+    @Override
+    protected void settle(Account account)
+    {
+        if(!isBehind(account))
+        {
+            return;
+        }
+        synchronized(lockFor(account))
+        {
+            super.settle(account);
+        }
+    }
+
+    /**
+     * This function settles up to budget accounts for lazy accrual.
+     * @param budget - largest number of accounts to settle.
+     * @return the number of accounts settled.
+     */
+    @Override
+    public synchronized int sweepAccrual(int budget)
+    {
+        return super.sweepAccrual(budget);
+    }
+
+    /**
+     * This function selects lazy accrual mode, see AccountDatabase.setLazyAccrual().
+     * @param lazyAccrual - true for lazy accrual, false to update every account on UB.
+     */
+    @Override
+    public synchronized void setLazyAccrual(boolean lazyAccrual)
+    {
+        super.setLazyAccrual(lazyAccrual);
+    }
+
+    /**
+     * This function updates the balances of all accounts for UB while holding the database lock and every
+     * stripe lock, so no account is appended or changed during the pass and the UB record the listeners get
+     * is ordered with the changes of every holder as they were applied. The accounts are updated without
+     * locking their stripes again, so parallel month-end tasks can update them from the pool.
+     */
+    @Override
+    protected synchronized void updateBalance()
+    {
+        withAllStripes(0, () -> {
+            super.updateBalance();
+            return null;
+        });
+    }
+
+    /**
+     * This function settles every account for lazy accrual while holding the database lock, so no account
+     * is appended during the pass.
+     */
+    @Override
+    protected synchronized void settleAll()
+    {
+        super.settleAll();
+    }
+
+    /**
+     * This function rebuilds the balance index while holding the database lock, so no account is appended
+     * or updated by UB during the rebuild. Operations on single accounts keep running and update the index
+     * once the rebuild is done.
+     */
+    @Override
+    protected synchronized void refreshBalanceIndex()
+    {
+        super.refreshBalanceIndex();
+    }
+
+    /**
+     * This function finds the accounts of the ids returned by an index while holding the database lock.
+     * @param ids - positions of accounts in the array.
+     * @return the accounts, in the order of the ids.
+     */
+    @Override
+    protected synchronized List<Account> accountsAt(int[] ids)
+    {
+        return super.accountsAt(ids);
+    }
+
+    /**
+     * This function finds the ids of the accounts of a holder while holding the database lock, which also
+     * guards the holder index against accounts being appended.
+     * @param holder - profile of the account holder.
+     * @return the positions of the holder's accounts in the array.
+     */
+    @Override
+    protected synchronized int[] holderIds(Profile holder)
+    {
+        return super.holderIds(holder);
+    }
+
+    /**
+     * This function runs a name search while holding the database lock, which also guards the name index
+     * against accounts being appended.
+     * @return the ids of the accounts of the holders on the page.
+     */
+    @Override
+    protected synchronized int[] nameIds(String lastName, String firstName, boolean fuzzy, int page, int pageSize)
+    {
+        return super.nameIds(lastName, firstName, fuzzy, page, pageSize);
+    }
+
+    /**
+     * This function selects closed-account tiering, see AccountDatabase.setColdAfterCycles(). It holds the
+     * database lock and every stripe lock, so a change that runs under a stripe lock alone sees the cold store
+     * once it is selected.
+     * @param cycles - number of UBs an account stays closed before it moves, or 0 to stop moving accounts.
+     */
+    @Override
+    public synchronized void setColdAfterCycles(int cycles)
+    {
+        withAllStripes(0, () -> {
+            super.setColdAfterCycles(cycles);
+            return null;
+        });
+    }
+
+    /**
+     * @return number of accounts in the cold store.
+     */
+    @Override
+    public synchronized int getColdAccounts()
+    {
+        return super.getColdAccounts();
+    }
+
+    /**
+     * This function moves the accounts closed for long enough to the cold store during UB. It holds every
+     * stripe lock as well as the database lock UB holds, since no change may look an account up while it
+     * moves and the accounts left are moved down the array.
+     */
+    @Override
+    protected void moveClosedAccountsToColdStore()
+    {
+        withAllStripes(0, () -> {
+            super.moveClosedAccountsToColdStore();
+            return null;
+        });
+    }
+
+    /**
+     * This function finds all the accounts of a holder while holding the database lock, which also guards
+     * the cold store the copies of cold accounts are read from.
+     * @param holder - profile of the account holder.
+     * @return the accounts of the holder in the order they were opened, or an empty list.
+     */
+    @Override
+    public synchronized List<Account> getAccountsOf(Profile holder)
+    {
+        return super.getAccountsOf(holder);
+    }
+
+    /**
+     * This function takes accounts out of the database, see AccountDatabase.removeAccounts(). It holds the
+     * database lock and every stripe lock, since the accounts left are moved down the array. A thread that
+     * looked an account up before it was taken out looks it up again under its stripe lock and finds nothing.
+     * @param filter - filter that selects the accounts to take.
+     * @param limit - largest number of accounts to take.
+     * @return the accounts taken, which are no longer in the database.
+     */
+    @Override
+    protected synchronized List<Account> removeAccounts(Predicate<Account> filter, int limit)
+    {
+        return withAllStripes(0, () -> super.removeAccounts(filter, limit));
+    }
+
+    /**
+     * This function is a helper that runs an action while holding the stripe locks from the given one to the
+     * last, nesting one synchronized block per stripe so they are taken lower number first.
+     * @param from - first stripe to lock.
+     * @param action - action to run once every stripe is locked.
+     * @return the result of the action.
+     */
+    private <T> T withAllStripes(int from, Supplier<T> action)
+    {
+        if(from == stripes.length)
+        {
+            return action.get();
+        }
+        synchronized(stripes[from])
+        {
+            return withAllStripes(from + 1, action);
+        }
+    }
+}
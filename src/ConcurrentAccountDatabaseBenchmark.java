@@ -0,0 +1,96 @@
+/**
+ * ConcurrentAccountDatabaseBenchmark class measures the throughput of ConcurrentAccountDatabase under
+ * contention. It loads a book of Checking accounts and runs a mix of lookups, deposits and withdrawals on
+ * random holders from 1, 4, 16 and 64 threads, printing operations per second for each thread count.
+ * Usage: java ConcurrentAccountDatabaseBenchmark [accounts] [millisPerRun]
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConcurrentAccountDatabaseBenchmark {
+    private static final int[] ThreadCounts = {1, 4, 16, 64};
+    private static final int DefaultAccounts = 100000;
+    private static final int DefaultMillisPerRun = 2000;
+    private static final int LookupPercent = 60;
+    private static final int DepositPercent = 20;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int numAccounts = args.length > 0 ? Integer.parseInt(args[0]) : DefaultAccounts;
+        int millis = args.length > 1 ? Integer.parseInt(args[1]) : DefaultMillisPerRun;
+
+        ConcurrentAccountDatabase accountDatabase = new ConcurrentAccountDatabase(numAccounts,
+                ConcurrentAccountDatabase.DefaultStripes);
+        Date dob = new Date("1/1/1990");
+        Checking[] probes = new Checking[numAccounts];
+        for(int i = 0; i < numAccounts; i++)
+        {
+            Checking checking = new Checking();
+            checking.setHolder("First" + i, "Last" + i, dob);
+            checking.setBalance(1000000);
+            accountDatabase.open(checking);
+            probes[i] = new Checking();
+            probes[i].setHolder("first" + i, "LAST" + i, dob);
+            probes[i].setBalance(1);
+        }
+
+        System.out.println("accounts=" + numAccounts + " millisPerRun=" + millis);
+        for(int threads : ThreadCounts)
+        {
+            run(accountDatabase, probes, threads, millis);
+        }
+    }
+
+    /**
+     * This function runs the operation mix from the given number of threads for a fixed time and
+     * prints the throughput.
+     */
+    private static void run(ConcurrentAccountDatabase accountDatabase, Checking[] probes, int threads, int millis)
+            throws InterruptedException
+    {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++)
+        {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while(running.get())
+                {
+                    Checking probe = probes[random.nextInt(probes.length)];
+                    int op = random.nextInt(100);
+                    if(op < LookupPercent)
+                    {
+                        accountDatabase.getAccountIfExists(probe);
+                    }
+                    else if(op < LookupPercent + DepositPercent)
+                    {
+                        accountDatabase.deposit(probe);
+                    }
+                    else
+                    {
+                        accountDatabase.withdraw(probe);
+                    }
+                    done++;
+                }
+                operations.add(done);
+            });
+        }
+        long start = System.nanoTime();
+        for(Thread worker : workers)
+        {
+            worker.start();
+        }
+        Thread.sleep(millis);
+        running.set(false);
+        for(Thread worker : workers)
+        {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("threads=%d ops/sec=%.0f%n", threads, operations.sum() / seconds);
+    }
+}
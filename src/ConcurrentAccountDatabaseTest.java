@@ -0,0 +1,174 @@
+/**
+ * Test class to test open(), deposit() and transfer() methods of ConcurrentAccountDatabase class from several
+ * threads, and closed-account tiering while UB runs.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentAccountDatabaseTest {
+
+    /**
+     * This Test method checks that when several threads race to open the same profile, exactly one
+     * open() succeeds and the database holds one account.
+     */
+    @Test
+    public void open_Race_Test() throws InterruptedException {
+        ConcurrentAccountDatabase accountDatabase = new ConcurrentAccountDatabase();
+        int threads = 8;
+        boolean[] opened = new boolean[threads];
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                Checking checking = new Checking();
+                checking.setHolder("Joe","Doe",new Date("02/12/1982"));
+                checking.setBalance(100);
+                opened[id] = accountDatabase.open(checking);
+            });
+            workers[t].start();
+        }
+        int successes = 0;
+        for(int t = 0; t < threads; t++) {
+            workers[t].join();
+            if(opened[t]) {
+                successes++;
+            }
+        }
+        assertEquals(1, successes);
+        assertEquals(1, accountDatabase.getNumAcct());
+    }
+
+    /**
+     * This Test method checks that deposits from several threads to the same account are not lost.
+     */
+    @Test
+    public void deposit_Concurrent_Test() throws InterruptedException {
+        ConcurrentAccountDatabase accountDatabase = new ConcurrentAccountDatabase();
+        Savings savings = new Savings();
+        savings.setHolder("Joe","Doe",new Date("02/12/1982"));
+        savings.setBalance(1);
+        assertTrue(accountDatabase.open(savings));
+        int threads = 4;
+        int depositsPerThread = 1000;
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                Savings probe = new Savings();
+                probe.setHolder("joe","doe",new Date("02/12/1982"));
+                probe.setBalance(1);
+                for(int i = 0; i < depositsPerThread; i++) {
+                    accountDatabase.deposit(probe);
+                }
+            });
+            workers[t].start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(1 + threads * depositsPerThread, savings.getBalance(), 0.001);
+    }
+
+    /**
+     * This Test method runs transfers in both directions between accounts on different stripes from several
+     * threads. Opposite transfers lock the same two stripes, so they would deadlock if the stripes were not
+     * locked in one order; the total of the balances must not change.
+     */
+    @Test(timeout = 20000)
+    public void transfer_Concurrent_Test() throws InterruptedException {
+        ConcurrentAccountDatabase accountDatabase = new ConcurrentAccountDatabase(16, 4);
+        int holders = 8;
+        Checking[] probes = new Checking[holders];
+        for(int i = 0; i < holders; i++) {
+            Checking checking = new Checking();
+            checking.setHolder("First" + i, "Last", new Date("02/12/1982"));
+            checking.setBalanceCents(100000);
+            assertTrue(accountDatabase.open(checking));
+            probes[i] = new Checking();
+            probes[i].setHolder("first" + i, "LAST", new Date("02/12/1982"));
+            probes[i].setBalanceCents(7);
+        }
+        int threads = 8;
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                for(int i = 0; i < 20000; i++) {
+                    int a = (id + i) % holders;
+                    int b = (id + 3 * i + 1) % holders;
+                    accountDatabase.transfer(probes[a], probes[b]);
+                    accountDatabase.transfer(probes[b], probes[a]);
+                }
+            });
+            workers[t].start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        long total = 0;
+        for(Checking probe : probes) {
+            total += accountDatabase.getAccountIfExists(probe).getBalanceCents();
+        }
+        assertEquals(holders * 100000L, total);
+    }
+
+    /**
+     * This Test method closes, reopens and opens accounts from several threads while another thread runs UB
+     * with accounts moving to the cold store after one UB. Every change must find its account, whether it is
+     * in the array or cold, and an account must never be opened twice.
+     */
+    @Test(timeout = 20000)
+    public void tiering_Concurrent_Test() throws InterruptedException {
+        ConcurrentAccountDatabase accountDatabase = new ConcurrentAccountDatabase(16, 4);
+        accountDatabase.setColdAfterCycles(1);
+        int holders = 8;
+        for(int i = 0; i < holders; i++) {
+            Checking checking = new Checking();
+            checking.setHolder("First" + i, "Last", new Date("02/12/1982"));
+            checking.setBalanceCents(100000);
+            assertTrue(accountDatabase.open(checking));
+        }
+        boolean[] failed = new boolean[holders];
+        Thread[] workers = new Thread[holders];
+        for(int t = 0; t < holders; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> {
+                Checking probe = new Checking();
+                probe.setHolder("first" + id, "LAST", new Date("02/12/1982"));
+                probe.setBalanceCents(100000);
+                for(int i = 0; i < 2000; i++) {
+                    if(!accountDatabase.close(probe) || accountDatabase.open(probe)
+                            || !accountDatabase.getAccountIfExists(probe).isClosed()) {
+                        failed[id] = true;
+                    }
+                    Thread.yield();
+                    if(!accountDatabase.reOpen(probe) || accountDatabase.getAccountIfExists(probe).isClosed()) {
+                        failed[id] = true;
+                    }
+                }
+                accountDatabase.close(probe);
+            });
+            workers[t].start();
+        }
+        Thread monthEnd = new Thread(() -> {
+            while(workers[0].isAlive()) {
+                accountDatabase.updateBalance();
+            }
+        });
+        monthEnd.start();
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        monthEnd.join();
+        accountDatabase.updateBalance();
+        assertArrayEquals(new boolean[holders], failed);
+        assertEquals(holders, accountDatabase.getNumAcct());
+        assertEquals(holders, accountDatabase.getColdAccounts());
+        BookSummary recount = new BookSummary();
+        accountDatabase.forEach(account -> recount.add(account, 1));
+        assertEquals(holders, recount.getTotalClosed());
+        assertEquals(recount.toString(), accountDatabase.getSummary().toString());
+    }
+}
@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 import java.util.Calendar;
 /**
  * A class that stores the date based off an input string and the current date.
@@ -37,6 +38,55 @@ public class Date implements Comparable<Date> {
         this.day=d;
     }
 
+    /**
+     * Creates a Date object from its month, day and year.
+     *
+     * @param month - month of the year, 1 to 12
+     * @param day - day of the month
+     * @param year - year
+     */
+    public Date(int month, int day, int year) {
+        this.year=year;
+        this.month=month;
+        this.day=day;
+    }
+
+    /**
+     * Parses a date in the form mm/dd/yyyy without splitting the string.
+     *
+     * @param date - a string in the form mm/dd/yyyy
+     * @return the date, or null if the string is not three groups of digits separated by '/'
+     */
+    public static Date parse(String date)
+    {
+        int[] parts = new int[3];
+        int part = 0;
+        int digits = 0;
+        for(int i = 0; i < date.length(); i++)
+        {
+            char c = date.charAt(i);
+            if(c == '/' && digits > 0 && part < 2)
+            {
+                part++;
+                digits = 0;
+            }
+            else if(c >= '0' && c <= '9' && digits < 9)
+            {
+                parts[part] = parts[part] * 10 + (c - '0');
+                digits++;
+            }
+            else
+            {
+                return null;
+            }
+        }
+        if(part != 2 || digits == 0)
+        {
+            return null;
+        }
+        return new Date(parts[0], parts[1], parts[2]);
+    }
+
     /**
      * Creates a Date object that represents today's date
      * with the help of the Java Calendar library.
@@ -130,6 +180,53 @@ public class Date implements Comparable<Date> {
         }
     }
 
+    /**
+     * Writes the date to a buffer as month and day bytes followed by the year.
+     *
+     * @param buffer - buffer to write to
+     */
+    public void writeTo(ByteBuffer buffer)
+    {
+        buffer.put((byte) this.month);
+        buffer.put((byte) this.day);
+        buffer.putInt(this.year);
+    }
+
+    /**
+     * Packs the date into one int: year in the high bits, then 4 bits of month and 5 bits of day.
+     *
+     * @return the packed date
+     */
+    public int toPacked()
+    {
+        return this.year << 9 | this.month << 5 | this.day;
+    }
+
+    /**
+     * Unpacks a date packed by toPacked().
+     *
+     * @param packed - the packed date
+     * @return the date that was packed
+     */
+    public static Date fromPacked(int packed)
+    {
+        return new Date((packed >> 5) & 0xf, packed & 0x1f, packed >> 9);
+    }
+
+    /**
+     * Reads a date written by writeTo().
+     *
+     * @param buffer - buffer to read from
+     * @return the date that was read
+     */
+    public static Date readFrom(ByteBuffer buffer)
+    {
+        int m = buffer.get();
+        int d = buffer.get();
+        int y = buffer.getInt();
+        return new Date(m, d, y);
+    }
+
     /**
      * Returns a string of the date in the format mm/dd/yyyy
      *
@@ -137,7 +234,43 @@ public class Date implements Comparable<Date> {
      */
     public String toString()
     {
-        return this.month + "/" + this.day + "/" + this.year;
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the date in the format mm/dd/yyyy, the same text as toString()
+     *
+     * @param builder - builder to append to
+     * @return the builder
+     */
+    public StringBuilder appendTo(StringBuilder builder)
+    {
+        return builder.append(this.month).append('/').append(this.day).append('/').append(this.year);
+    }
+
+    /**
+     * Checks whether the passed in object is a Date with the same year, month and day.
+     * @param obj - object
+     * @return true if the dates are equal, otherwise false.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(obj instanceof Date)
+        {
+            return this.compareTo((Date) obj) == 0;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a hash code consistent with equals, built from year, month and day.
+     * @return hash code of the date.
+     */
+    @Override
+    public int hashCode()
+    {
+        return (this.year * 31 + this.month) * 31 + this.day;
     }
 
     /**
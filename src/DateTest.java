@@ -33,4 +33,22 @@ public class DateTest {
         Date date4 = new Date("02/29/2020");
         assertTrue(date4.isValid());
     }
+
+    @Test
+    public void parse_Test() {
+        /**
+         * Testing that parse reads the same date as the string constructor.
+         */
+        assertEquals(0, Date.parse("02/29/2024").compareTo(new Date("02/29/2024")));
+        assertEquals(0, Date.parse("1/5/1999").compareTo(new Date("1/5/1999")));
+
+        /**
+         * Testing strings that are not dates.
+         */
+        assertNull(Date.parse("1/5"));
+        assertNull(Date.parse("1//1999"));
+        assertNull(Date.parse("1/5/1999/2"));
+        assertNull(Date.parse("a/5/1999"));
+        assertNull(Date.parse(""));
+    }
 }
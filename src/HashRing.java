@@ -0,0 +1,109 @@
+/**
+ * HashRing class is the consistent hash ring that assigns account holders to shards. Each shard owns 64
+ * points on a ring of 32-bit values, and a holder belongs to the shard of the first point at or after the
+ * hash of the holder, wrapping around at the end. Adding a shard only moves the holders whose hash falls
+ * just before one of its new points, about 1/n of them, and every one of them moves to the new shard.
+ * The points of a shard depend only on its number, so two processes that build rings with the same number
+ * of shards agree on every owner without exchanging the ring.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.Arrays;
+
+public class HashRing {
+    private static final int PointsPerShard = 64;
+
+    private int shards;
+    private int[] points;
+    private int[] owners;
+
+    /**
+     * Constructor of this class. Creates a ring of shards numbered 0 to shards - 1.
+     * @param shards - number of shards, at least 1.
+     */
+    public HashRing(int shards)
+    {
+        if(shards < 1)
+        {
+            throw new IllegalArgumentException("A hash ring needs at least one shard.");
+        }
+        this.points = new int[0];
+        this.owners = new int[0];
+        for(int i = 0; i < shards; i++)
+        {
+            addShard();
+        }
+    }
+
+    /**
+     * This function adds the next shard to the ring.
+     * @return the number of the new shard.
+     */
+    public int addShard()
+    {
+        int shard = shards++;
+        long[] sorted = new long[points.length + PointsPerShard];
+        for(int i = 0; i < points.length; i++)
+        {
+            sorted[i] = entry(points[i], owners[i]);
+        }
+        for(int i = 0; i < PointsPerShard; i++)
+        {
+            sorted[points.length + i] = entry(mix(shard * PointsPerShard + i), shard);
+        }
+        Arrays.sort(sorted);
+        points = new int[sorted.length];
+        owners = new int[sorted.length];
+        for(int i = 0; i < sorted.length; i++)
+        {
+            points[i] = (int) (sorted[i] >> 32);
+            owners[i] = (int) sorted[i];
+        }
+        return shard;
+    }
+
+    /**
+     * @return number of shards in the ring.
+     */
+    public int size()
+    {
+        return shards;
+    }
+
+    /**
+     * This function finds the shard of a holder.
+     * @param holderHash - hash of the holder, see HolderKey.holderHash().
+     * @return the number of the shard that owns the holder.
+     */
+    public int shardOf(int holderHash)
+    {
+        int found = Arrays.binarySearch(points, mix(holderHash));
+        if(found < 0)
+        {
+            found = -found - 1;
+        }
+        return owners[found == points.length ? 0 : found];
+    }
+
+    /**
+     * This function is a helper that packs a point and its owner so sorting orders them by point.
+     */
+    private static long entry(int point, int owner)
+    {
+        return ((long) point << 32) | owner;
+    }
+
+    /**
+     * This function spreads the bits of a value over the whole ring, with the finalizer of MurmurHash3.
+     * @param value - value to spread.
+     * @return the mixed value.
+     */
+    private static int mix(int value)
+    {
+        value ^= value >>> 16;
+        value *= 0x85ebca6b;
+        value ^= value >>> 13;
+        value *= 0xc2b2ae35;
+        value ^= value >>> 16;
+        return value;
+    }
+}
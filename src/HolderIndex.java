@@ -0,0 +1,67 @@
+/**
+ * HolderIndex class maps an account holder to all of their accounts in a database. It is keyed by Profile,
+ * whose equals() and hashCode() ignore the case of the names, and holds the ids the store gave the accounts,
+ * such as positions in the array or rows. A holder has at most one account per lookup class, so the ids of
+ * a holder are a tiny array and finding them is one hash lookup.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.Arrays;
+import java.util.HashMap;
+
+public class HolderIndex {
+    private static final int[] NONE = new int[0];
+
+    private final HashMap<Profile, int[]> ids;
+
+    /**
+     * Constructor of this class. Creates an empty index.
+     */
+    public HolderIndex()
+    {
+        this.ids = new HashMap<>();
+    }
+
+    /**
+     * This function adds an account of a holder.
+     * @param holder - profile of the account holder.
+     * @param id - id of the account in its store.
+     */
+    public void add(Profile holder, int id)
+    {
+        int[] found = ids.get(holder);
+        if(found == null)
+        {
+            ids.put(holder, new int[] {id});
+            return;
+        }
+        int[] grown = Arrays.copyOf(found, found.length + 1);
+        grown[found.length] = id;
+        ids.put(holder, grown);
+    }
+
+    /**
+     * @param holder - profile of the account holder, in any case.
+     * @return the ids of the holder's accounts in the order they were added, or an empty array.
+     */
+    public int[] get(Profile holder)
+    {
+        int[] found = ids.get(holder);
+        return found == null ? NONE : found;
+    }
+
+    /**
+     * This function removes every holder, so the store can add its accounts again after moving them.
+     */
+    public void clear()
+    {
+        ids.clear();
+    }
+
+    /**
+     * @return number of holders in the index.
+     */
+    public int size()
+    {
+        return ids.size();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Test class to check the holder queries of every AccountDatabase and the hashCode() of Profile.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HolderIndexTest {
+
+    /**
+     * This is a helper that opens a Checking, a Savings and a Money Market account for one holder, written
+     * in different cases, and accounts for other holders, and checks the holder query before and after
+     * the holder index is built.
+     */
+    private void checkHolder(AbstractAccountDatabase accountDatabase) {
+        Date dob = new Date("7/4/1980");
+        Profile holder = new Profile("Ada", "Lovelace", dob);
+        Checking other = new Checking();
+        other.setHolder("Ada", "Byron", dob);
+        other.setBalanceCents(700000);
+        accountDatabase.open(other);
+        Checking checking = new Checking();
+        checking.setHolder("ADA", "lovelace", dob);
+        checking.setBalanceCents(150000);
+        accountDatabase.open(checking);
+        Savings savings = new Savings();
+        savings.setHolder("ada", "LOVELACE", dob);
+        savings.setBalanceCents(40000);
+        accountDatabase.open(savings);
+        assertEquals(190000, accountDatabase.getNetWorthCents(holder));
+
+        MoneyMarket moneyMarket = new MoneyMarket();
+        moneyMarket.setHolder("Ada", "Lovelace", dob);
+        moneyMarket.setBalanceCents(300000);
+        accountDatabase.open(moneyMarket);
+        Savings closing = new Savings();
+        closing.setHolder("Ada", "Lovelace", dob);
+        accountDatabase.close(closing);
+        accountDatabase.updateBalance();
+
+        List<String> types = new ArrayList<>();
+        long total = 0;
+        for(Account account : accountDatabase.getAccountsOf(holder)) {
+            types.add(account.getType());
+            total += account.getBalanceCents();
+        }
+        types.sort(null);
+        assertEquals(List.of("Checking", "Money Market Savings", "Savings"), types);
+        assertEquals(total, accountDatabase.getNetWorthCents(holder));
+        assertTrue(total > 450000);
+        assertTrue(accountDatabase.getAccountsOf(new Profile("Ada", "Lovelace", new Date("7/5/1980"))).isEmpty());
+    }
+
+    /**
+     * This Test method checks the holder query of the object, concurrent, columnar and off-heap stores.
+     */
+    @Test
+    public void accountsOf_Test() {
+        checkHolder(new AccountDatabase());
+        checkHolder(new ConcurrentAccountDatabase());
+        checkHolder(new ColumnarAccountDatabase());
+        checkHolder(new OffHeapAccountDatabase());
+        AccountDatabase lazy = new AccountDatabase();
+        lazy.setLazyAccrual(true);
+        checkHolder(lazy);
+    }
+
+    /**
+     * This Test method checks that accounts moved to the cold store are still listed for their holder.
+     */
+    @Test
+    public void coldAccounts_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        accountDatabase.setColdAfterCycles(1);
+        checkHolder(accountDatabase);
+        assertEquals(1, accountDatabase.getColdAccounts());
+        assertEquals(3, accountDatabase.getAccountsOf(new Profile("ada", "lovelace", new Date("7/4/1980"))).size());
+    }
+
+    /**
+     * This Test method checks that profiles that are equal ignoring case have the same hash code.
+     */
+    @Test
+    public void profileHashCode_Test() {
+        Date dob = new Date("7/4/1980");
+        Profile profile = new Profile("Ada", "Lovelace", dob);
+        Profile other = new Profile("aDA", "LOVELACE", new Date("7/4/1980"));
+        assertEquals(profile, other);
+        assertEquals(profile.hashCode(), other.hashCode());
+        assertNotEquals(profile, new Profile("Ada", "Lovelace", new Date("7/5/1980")));
+    }
+}
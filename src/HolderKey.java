@@ -0,0 +1,97 @@
+/**
+ * HolderKey class is the normalized lookup key of an account. It holds the case-folded first and last
+ * name of the holder, the date of birth and the lookup class of the account type, so two accounts
+ * have equal keys exactly when the equals() override of the account type says they match.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+public class HolderKey {
+    private final String fname;
+    private final String lname;
+    private final Date dob;
+    private final Class<? extends Account> lookupClass;
+    private final int holderHash;
+    private final int hash;
+
+    /**
+     * Constructor of this class. The names must already be case-folded.
+     * @param fname - case-folded first name of account holder.
+     * @param lname - case-folded last name of account holder.
+     * @param dob - Date of birth of account holder.
+     * @param lookupClass - lookup class of the account type, see Account.getLookupClass().
+     */
+    public HolderKey(String fname, String lname, Date dob, Class<? extends Account> lookupClass)
+    {
+        this.fname = fname;
+        this.lname = lname;
+        this.dob = dob;
+        this.lookupClass = lookupClass;
+        this.holderHash = (fname.hashCode() * 31 + lname.hashCode()) * 31 + dob.hashCode();
+        this.hash = holderHash * 31 + lookupClass.hashCode();
+    }
+
+    /**
+     * Checks if the passed in object is a HolderKey for the same holder and lookup class.
+     * @param obj - object
+     * @return true if both keys identify the same account, otherwise false.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if(obj instanceof HolderKey)
+        {
+            HolderKey key = (HolderKey) obj;
+            return key.hash == hash && key.lookupClass == lookupClass && key.fname.equals(fname)
+                    && key.lname.equals(lname) && key.dob.equals(dob);
+        }
+        return false;
+    }
+
+    /**
+     * @return the case-folded first name of account holder.
+     */
+    public String getFname()
+    {
+        return this.fname;
+    }
+
+    /**
+     * @return the case-folded last name of account holder.
+     */
+    public String getLname()
+    {
+        return this.lname;
+    }
+
+    /**
+     * @return Date of birth of account holder.
+     */
+    public Date getDob()
+    {
+        return this.dob;
+    }
+
+    /**
+     * @return the lookup class of the account type, see Account.getLookupClass().
+     */
+    public Class<? extends Account> getLookupClass()
+    {
+        return this.lookupClass;
+    }
+
+    /**
+     * @return a hash of the holder only, which is the same for all account types of one holder.
+     */
+    public int holderHash()
+    {
+        return this.holderHash;
+    }
+
+    /**
+     * @return the hash code computed once in the constructor.
+     */
+    @Override
+    public int hashCode()
+    {
+        return this.hash;
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * IndexedAccountDatabase class is the base of the stores that hold their accounts in this process: the object
+ * store AccountDatabase and the columnar and off-heap stores. It keeps the book summary, which every change
+ * updates, and the balance, holder and name indexes that answer the balance, holder and name queries without
+ * scanning the book. The indexes know accounts by an id, their position in the store, and each store hands its
+ * ids and accounts to them through loadBalanceIndex(), forEachHolder() and accountsAt().
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+public abstract class IndexedAccountDatabase extends AbstractAccountDatabase {
+    private final BookSummary summary = new BookSummary();
+    private final BalanceIndex balanceIndex = new BalanceIndex();
+    private HolderIndex holderIndex;
+    private NameIndex nameIndex;
+
+    /**
+     * This function is a helper for stores that keep the summary themselves, such as the columnar kernel.
+     * @return the live summary of the database.
+     */
+    protected BookSummary summary()
+    {
+        return summary;
+    }
+
+    /**
+     * This function returns the book-wide totals. They are kept up to date by every operation, so reading
+     * them takes constant time.
+     * @return a snapshot of the totals.
+     */
+    @Override
+    public BookSummary getSummary()
+    {
+        return summary.snapshot();
+    }
+
+    /**
+     * This function is a helper for stores that keep the balance index themselves.
+     * @return the balance index of the database.
+     */
+    protected BalanceIndex balanceIndex()
+    {
+        return balanceIndex;
+    }
+
+    /**
+     * This function lists the open accounts of a type whose balance is in a range, lowest balance first.
+     * Equal balances are listed in the order the accounts were opened.
+     * @param type - account type.
+     * @param fromCents - lowest balance in cents, inclusive.
+     * @param toCents - highest balance in cents, exclusive.
+     * @return the accounts in the range.
+     */
+    @Override
+    public List<Account> findByBalance(AccountType type, long fromCents, long toCents)
+    {
+        refreshBalanceIndex();
+        return accountsAt(balanceIndex.range(type, fromCents, toCents));
+    }
+
+    /**
+     * This function lists the open accounts of a type with the highest balances, highest first.
+     * @param type - account type.
+     * @param n - largest number of accounts to return.
+     * @return up to n accounts.
+     */
+    @Override
+    public List<Account> topByBalance(AccountType type, int n)
+    {
+        refreshBalanceIndex();
+        return accountsAt(balanceIndex.top(type, n));
+    }
+
+    /**
+     * This function counts the open accounts of a type whose balance is in a range.
+     * @param type - account type.
+     * @param fromCents - lowest balance in cents, inclusive.
+     * @param toCents - highest balance in cents, exclusive.
+     * @return the number of accounts in the range.
+     */
+    @Override
+    public int countByBalance(AccountType type, long fromCents, long toCents)
+    {
+        refreshBalanceIndex();
+        return balanceIndex.count(type, fromCents, toCents);
+    }
+
+    /**
+     * This function lists the open accounts of a type that pay no monthly fee today but are close to the
+     * fee threshold: their balance is less than withinCents above it. Lowest balance first.
+     * @param type - account type; College Checking has no fee, so it never has accounts on the list.
+     * @param withinCents - distance above the fee threshold in cents, exclusive.
+     * @return the accounts near the threshold.
+     */
+    @Override
+    public List<Account> findNearFeeThreshold(AccountType type, long withinCents)
+    {
+        refreshBalanceIndex();
+        return accountsAt(balanceIndex.nearFeeThreshold(type, withinCents));
+    }
+
+    /**
+     * This function lists the Money Market accounts that pay no monthly fee today but would after one more
+     * withdrawal. Lowest balance first.
+     * @return the accounts at the withdrawal limit.
+     */
+    @Override
+    public List<Account> findAtWithdrawalLimit()
+    {
+        refreshBalanceIndex();
+        return accountsAt(balanceIndex.atWithdrawalLimit());
+    }
+
+    /**
+     * This function finds all the accounts of a holder, whatever their type, with one lookup in the holder
+     * index.
+     * @param holder - profile of the account holder; names are matched ignoring case.
+     * @return the accounts of the holder in the order they were opened, or an empty list.
+     */
+    @Override
+    public List<Account> getAccountsOf(Profile holder)
+    {
+        return accountsAt(holderIds(holder));
+    }
+
+    /**
+     * This function finds the ids of the accounts of a holder, building the holder index on first use.
+     * @param holder - profile of the account holder.
+     * @return the ids of the holder's accounts.
+     */
+    protected int[] holderIds(Profile holder)
+    {
+        if(holderIndex == null)
+        {
+            HolderIndex holderIndex = new HolderIndex();
+            forEachHolder(holderIndex::add);
+            this.holderIndex = holderIndex;
+        }
+        return holderIndex.get(holder);
+    }
+
+    /**
+     * This function finds a page of holders by name and lists their accounts. A last name prefix alone matches
+     * every holder whose last name starts with it; with a first name prefix, the last name must match in full.
+     * Names are matched ignoring case, and holders are listed by last name, first name and date of birth.
+     * @param lastName - prefix of the last name, or the whole last name if firstName is given.
+     * @param firstName - prefix of the first name, or null to match any first name.
+     * @param page - page number, starting at 0.
+     * @param pageSize - number of holders per page.
+     * @return the accounts of the holders on the page, holder by holder.
+     */
+    @Override
+    public List<Account> searchByName(String lastName, String firstName, int page, int pageSize)
+    {
+        return accountsAt(nameIds(lastName, firstName, false, page, pageSize));
+    }
+
+    /**
+     * This function finds a page of holders whose last name is the given name or one typo away from it,
+     * see NameIndex, and lists their accounts in the same order as searchByName().
+     * @param lastName - last name to look for.
+     * @param page - page number, starting at 0.
+     * @param pageSize - number of holders per page.
+     * @return the accounts of the holders on the page, holder by holder.
+     */
+    @Override
+    public List<Account> searchByNameFuzzy(String lastName, int page, int pageSize)
+    {
+        return accountsAt(nameIds(lastName, null, true, page, pageSize));
+    }
+
+    /**
+     * This function runs a name search, building the name index on first use.
+     * @return the ids of the accounts of the holders on the page.
+     */
+    protected int[] nameIds(String lastName, String firstName, boolean fuzzy, int page, int pageSize)
+    {
+        if(nameIndex == null)
+        {
+            NameIndex nameIndex = new NameIndex();
+            forEachHolder(nameIndex::add);
+            this.nameIndex = nameIndex;
+        }
+        return fuzzy ? nameIndex.searchFuzzy(lastName, page, pageSize) : nameIndex.search(lastName, firstName, page, pageSize);
+    }
+
+    /**
+     * This function calls the action with the holder and the id of every account, to build the holder and
+     * name indexes.
+     * @param action - action to call with each holder and id.
+     */
+    protected abstract void forEachHolder(ObjIntConsumer<Profile> action);
+
+    /**
+     * This function is a helper that adds a new account to the holder and name indexes that have been built.
+     * @param holder - profile of the account holder.
+     * @param id - id of the account in its store.
+     */
+    protected void indexHolder(Profile holder, int id)
+    {
+        if(holderIndex != null)
+        {
+            holderIndex.add(holder, id);
+        }
+        if(nameIndex != null)
+        {
+            nameIndex.add(holder, id);
+        }
+    }
+
+    /**
+     * This function drops the holder and name indexes, which are rebuilt by their next query, for stores
+     * that move accounts to other ids.
+     */
+    protected void invalidateHolderIndexes()
+    {
+        holderIndex = null;
+        nameIndex = null;
+    }
+
+    /**
+     * This function builds the balance index if it has never been queried, or rebuilds it after a UB.
+     */
+    protected void refreshBalanceIndex()
+    {
+        if(balanceIndex.isStale())
+        {
+            balanceIndex.rebuild(this::loadBalanceIndex);
+        }
+    }
+
+    /**
+     * This function adds every account of the database to the balance index, with its id.
+     * @param balanceIndex - index being rebuilt.
+     */
+    protected abstract void loadBalanceIndex(BalanceIndex balanceIndex);
+
+    /**
+     * This function finds the accounts of the ids returned by an index.
+     * @param ids - ids of accounts in the store.
+     * @return the accounts, in the order of the ids.
+     */
+    protected abstract List<Account> accountsAt(int[] ids);
+
+    /**
+     * This function tells the listeners that fee and monthly interest are applied to all accounts. Every
+     * balance is about to move, so the balance index is marked stale, ignores the updates of the pass and is
+     * rebuilt by the next query.
+     */
+    @Override
+    protected void fireBalancesUpdated()
+    {
+        balanceIndex.invalidate();
+        super.fireBalancesUpdated();
+    }
+}
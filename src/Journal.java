@@ -0,0 +1,519 @@
+/**
+ * Journal class is a write-ahead journal of AccountDatabase changes. It is registered as a listener, which the
+ * database calls before it applies each change, and appends one record per open, reOpen, close, deposit,
+ * withdraw, transfer, UB and account taken out to a file; on startup replay() applies the records to an empty
+ * AccountDatabase to rebuild it. If a record cannot be written, the listener throws and the change is not
+ * applied, so the database is never ahead of the journal. A transfer is one record, so replay never applies
+ * half of it. Each record is its length, a CRC32 checksum and the body, so a record torn by a crash is detected
+ * and cut off during replay.
+ * Records are collected in a buffer and written with group commit. Appending a record only takes the journal
+ * lock long enough to copy it and give it a sequence number; a thread that must wait for its record to be on
+ * disk releases the lock and parks until the synced sequence number reaches its own. One waiting thread
+ * becomes the leader: it writes the buffer, forces the file outside the lock and wakes the others, so a single
+ * fsync commits every record appended before it and records keep being appended while it runs. The durability
+ * level decides who waits:
+ * PER_COMMAND waits for every record to be on disk before the change is applied and the command returns,
+ * PER_BATCH waits once every batchSize records, so at most batchSize - 1 records can be lost,
+ * TIME_BOUNDED forces the file from a background thread every intervalMillis, so at most that much time is lost.
+ * close() always writes and forces everything that is pending.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+public class Journal implements AccountDatabaseListener, Closeable {
+
+    /**
+     * Durability levels of the journal.
+     */
+    public enum Durability {
+        PER_COMMAND,
+        PER_BATCH,
+        TIME_BOUNDED;
+
+        /**
+         * @param name - level name such as per-command, per-batch or time-bounded.
+         * @return the durability level with that name.
+         */
+        public static Durability fromName(String name)
+        {
+            return valueOf(name.toUpperCase().replace('-', '_'));
+        }
+    }
+
+    public static final int DefaultBatchSize = 256;
+    public static final long DefaultIntervalMillis = 10;
+
+    static final byte OPEN = 1;
+    static final byte REOPEN = 2;
+    static final byte CLOSE = 3;
+    static final byte DEPOSIT = 4;
+    static final byte WITHDRAW = 5;
+    static final byte UPDATE_BALANCE = 6;
+    static final byte REMOVE = 7;
+    static final byte TRANSFER = 8;
+
+    static final int HeaderSize = 8;
+    static final int MaxRecordSize = 1 << 17;
+    private static final int BufferSize = 1 << 20;
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final int batchSize;
+    private final ByteBuffer pending;
+    private final ByteBuffer record;
+    private final CRC32 crc;
+    private final ScheduledExecutorService flusher;
+    private int unsyncedRecords;
+    private boolean unsyncedWrites;
+    private long recordCount;
+    private long syncedRecords;
+    private boolean syncing;
+
+    /**
+     * Constructor of this class. Opens the journal file for appending with the default batch size and interval.
+     * @param file - journal file, created if it does not exist.
+     * @param durability - durability level.
+     * @throws IOException if the file cannot be opened.
+     */
+    public Journal(Path file, Durability durability) throws IOException
+    {
+        this(file, durability, DefaultBatchSize, DefaultIntervalMillis);
+    }
+
+    /**
+     * Constructor of this class. Opens the journal file for appending.
+     * @param file - journal file, created if it does not exist.
+     * @param durability - durability level.
+     * @param batchSize - records per fsync for PER_BATCH.
+     * @param intervalMillis - time between fsyncs for TIME_BOUNDED.
+     * @throws IOException if the file cannot be opened.
+     */
+    public Journal(Path file, Durability durability, int batchSize, long intervalMillis) throws IOException
+    {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.durability = durability;
+        this.batchSize = Math.max(batchSize, 1);
+        this.pending = ByteBuffer.allocateDirect(BufferSize);
+        this.record = ByteBuffer.allocate(MaxRecordSize);
+        this.crc = new CRC32();
+        if(durability == Durability.TIME_BOUNDED)
+        {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleAtFixedRate(this::syncQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * @return the number of records appended since the journal was opened.
+     */
+    public synchronized long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    @Override
+    public void opened(Account account)
+    {
+        append(OPEN, account);
+    }
+
+    @Override
+    public void reopened(Account account)
+    {
+        append(REOPEN, account);
+    }
+
+    @Override
+    public void closed(Account account)
+    {
+        append(CLOSE, account);
+    }
+
+    @Override
+    public void deposited(Account account)
+    {
+        append(DEPOSIT, account);
+    }
+
+    @Override
+    public void withdrew(Account account)
+    {
+        append(WITHDRAW, account);
+    }
+
+    @Override
+    public void balancesUpdated()
+    {
+        append(UPDATE_BALANCE, null);
+    }
+
+    @Override
+    public void removed(Account account)
+    {
+        append(REMOVE, account);
+    }
+
+    @Override
+    public void transferred(Account from, Account to)
+    {
+        append(TRANSFER, from, to);
+    }
+
+    /**
+     * This function adds a record that holds at most one account.
+     * @param op - record type.
+     * @param account - account written in the record body, or null for UB.
+     */
+    private void append(byte op, Account account)
+    {
+        append(op, account, null);
+    }
+
+    /**
+     * This function adds one record to the pending buffer and, if the durability level requires it, waits
+     * for it to be on disk without holding the journal lock.
+     * @param op - record type.
+     * @param account - account written in the record body, or null for UB.
+     * @param second - second account written in the record body, for a transfer, or null.
+     */
+    private void append(byte op, Account account, Account second)
+    {
+        try
+        {
+            long sequence;
+            boolean await;
+            synchronized(this)
+            {
+                ByteBuffer record = this.record;
+                record.clear();
+                writeRecord(record, crc, op, account, second);
+                record.flip();
+                if(pending.remaining() < record.remaining())
+                {
+                    writePending();
+                }
+                pending.put(record);
+                sequence = ++recordCount;
+                unsyncedRecords++;
+                await = durability == Durability.PER_COMMAND
+                        || (durability == Durability.PER_BATCH && unsyncedRecords >= batchSize);
+                if(await)
+                {
+                    unsyncedRecords = 0;
+                }
+            }
+            if(await)
+            {
+                awaitSynced(sequence);
+            }
+        }
+        catch(IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * This function waits until the records up to a sequence number are forced to disk. If no other thread is
+     * forcing the file, the caller becomes the leader and forces every record appended so far; otherwise it
+     * parks until the leader is done and checks again.
+     * @param sequence - sequence number of the last record that must be on disk.
+     * @throws IOException if the file cannot be written or the thread is interrupted while it waits.
+     */
+    private void awaitSynced(long sequence) throws IOException
+    {
+        long upTo;
+        synchronized(this)
+        {
+            while(syncing && syncedRecords < sequence)
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal to sync");
+                }
+            }
+            if(syncedRecords >= sequence)
+            {
+                return;
+            }
+            writePending();
+            if(!unsyncedWrites)
+            {
+                syncedRecords = recordCount;
+                return;
+            }
+            syncing = true;
+            unsyncedWrites = false;
+            upTo = recordCount;
+        }
+        boolean forced = false;
+        try
+        {
+            channel.force(false);
+            forced = true;
+        }
+        finally
+        {
+            synchronized(this)
+            {
+                syncing = false;
+                if(forced)
+                {
+                    syncedRecords = Math.max(syncedRecords, upTo);
+                }
+                else
+                {
+                    unsyncedWrites = true;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * This function writes one record, its header included, at the position of a heap buffer. The replication
+     * log ships records in the same format.
+     * @param record - buffer with room for MaxRecordSize bytes.
+     * @param crc - checksum object to use.
+     * @param op - record type.
+     * @param account - account written in the record body, or null for UB.
+     * @param second - second account written in the record body, for a transfer, or null.
+     */
+    static void writeRecord(ByteBuffer record, CRC32 crc, byte op, Account account, Account second)
+    {
+        int start = record.position();
+        record.position(start + HeaderSize);
+        record.put(op);
+        if(account != null)
+        {
+            AccountCodec.write(record, account);
+        }
+        if(second != null)
+        {
+            AccountCodec.write(record, second);
+        }
+        int length = record.position() - start - HeaderSize;
+        crc.reset();
+        crc.update(record.array(), record.arrayOffset() + start + HeaderSize, length);
+        record.putInt(start, length);
+        record.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * This function writes the pending buffer to the file without forcing it to disk.
+     */
+    private void writePending() throws IOException
+    {
+        if(pending.position() == 0)
+        {
+            return;
+        }
+        pending.flip();
+        while(pending.hasRemaining())
+        {
+            channel.write(pending);
+        }
+        pending.clear();
+        unsyncedWrites = true;
+    }
+
+    /**
+     * This function writes every pending record and forces the file to disk, committing all of them with one
+     * fsync that runs outside the journal lock, see awaitSynced().
+     * @throws IOException if the file cannot be written.
+     */
+    public void sync() throws IOException
+    {
+        awaitSynced(getRecordCount());
+    }
+
+    /**
+     * This function is the body of the TIME_BOUNDED flusher thread.
+     */
+    private void syncQuietly()
+    {
+        try
+        {
+            sync();
+        }
+        catch(IOException e)
+        {
+            System.err.println("Journal sync failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This function stops the flusher without interrupting it, because an interrupted FileChannel closes
+     * itself, then waits for a leader that is forcing the file, syncs every pending record and closes the file.
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if(flusher != null)
+        {
+            flusher.shutdown();
+            try
+            {
+                flusher.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized(this)
+        {
+            while(syncing)
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the journal to sync");
+                }
+            }
+            if(!channel.isOpen())
+            {
+                return;
+            }
+            writePending();
+            channel.force(false);
+            syncedRecords = recordCount;
+            channel.close();
+        }
+    }
+
+    /**
+     * This function applies every complete record of a journal file to a database, in order. If the file
+     * ends with a torn or corrupt record, the file is cut back to the last good record so new records are
+     * appended after it. The database should have no listeners while it is replayed.
+     * @param file - journal file; nothing is done if it does not exist.
+     * @param accountDatabase - database to apply the records to.
+     * @return the number of records applied.
+     * @throws IOException if the file cannot be read.
+     */
+    public static long replay(Path file, AbstractAccountDatabase accountDatabase) throws IOException
+    {
+        return replay(file, accountDatabase, 0);
+    }
+
+    /**
+     * This function replays a journal file like replay(file, accountDatabase), but only checks the first
+     * skip records without applying them, because a snapshot already holds their changes.
+     * @param file - journal file; nothing is done if it does not exist.
+     * @param accountDatabase - database to apply the records to.
+     * @param skip - number of records at the start of the file that are already in the database.
+     * @return the number of complete records in the file, skipped ones included.
+     * @throws IOException if the file cannot be read.
+     */
+    public static long replay(Path file, AbstractAccountDatabase accountDatabase, long skip) throws IOException
+    {
+        if(!Files.exists(file))
+        {
+            return 0;
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(BufferSize);
+            CRC32 crc = new CRC32();
+            long goodBytes = 0;
+            long applied = 0;
+            boolean corrupt = false;
+            boolean endOfFile = false;
+            while(!corrupt && !endOfFile)
+            {
+                endOfFile = channel.read(buffer) < 0;
+                buffer.flip();
+                while(buffer.remaining() >= HeaderSize)
+                {
+                    int start = buffer.position();
+                    int length = buffer.getInt(start);
+                    if(length <= 0 || length > MaxRecordSize - HeaderSize)
+                    {
+                        corrupt = true;
+                        break;
+                    }
+                    if(buffer.remaining() < HeaderSize + length)
+                    {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(buffer.array(), start + HeaderSize, length);
+                    if((int) crc.getValue() != buffer.getInt(start + 4))
+                    {
+                        corrupt = true;
+                        break;
+                    }
+                    if(applied >= skip)
+                    {
+                        buffer.position(start + HeaderSize);
+                        apply(buffer, accountDatabase);
+                    }
+                    buffer.position(start + HeaderSize + length);
+                    goodBytes += HeaderSize + length;
+                    applied++;
+                }
+                buffer.compact();
+            }
+            if(goodBytes < channel.size())
+            {
+                channel.truncate(goodBytes);
+            }
+            return applied;
+        }
+    }
+
+    /**
+     * This function applies one record body to a database.
+     * @param buffer - buffer positioned at the record type.
+     * @param accountDatabase - database to apply the record to.
+     */
+    static void apply(ByteBuffer buffer, AbstractAccountDatabase accountDatabase)
+    {
+        byte op = buffer.get();
+        switch (op)
+        {
+            case OPEN -> accountDatabase.open(AccountCodec.read(buffer));
+            case REOPEN -> accountDatabase.reOpen(AccountCodec.read(buffer));
+            case CLOSE -> accountDatabase.close(AccountCodec.read(buffer));
+            case DEPOSIT -> accountDatabase.deposit(AccountCodec.read(buffer));
+            case WITHDRAW -> accountDatabase.withdraw(AccountCodec.read(buffer));
+            case TRANSFER -> accountDatabase.transfer(AccountCodec.read(buffer), AccountCodec.read(buffer));
+            case UPDATE_BALANCE -> accountDatabase.updateBalance();
+            case REMOVE -> {
+                HolderKey key = AccountCodec.read(buffer).getHolderKey();
+                accountDatabase.removeAccounts(account -> account.getHolderKey().equals(key), 1);
+            }
+            default -> throw new IllegalStateException("Unknown journal record type " + op);
+        }
+    }
+}
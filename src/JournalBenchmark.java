@@ -0,0 +1,72 @@
+/**
+ * JournalBenchmark class measures how many AccountDatabase commands per second can be journaled at each
+ * durability level. For each level it opens a book of Checking accounts and then runs deposits and
+ * withdrawals against them with a Journal attached, writing to a temporary file.
+ * Usage: java JournalBenchmark [accounts] [commands]
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class JournalBenchmark {
+    private static final int DefaultAccounts = 10000;
+    private static final int DefaultCommands = 100000;
+
+    public static void main(String[] args) throws IOException
+    {
+        int numAccounts = args.length > 0 ? Integer.parseInt(args[0]) : DefaultAccounts;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : DefaultCommands;
+        System.out.println("accounts=" + numAccounts + " commands=" + commands);
+        for(Journal.Durability durability : Journal.Durability.values())
+        {
+            run(durability, numAccounts, commands);
+        }
+    }
+
+    /**
+     * This function runs the commands with a journal at the given durability level and prints the throughput.
+     */
+    private static void run(Journal.Durability durability, int numAccounts, int commands) throws IOException
+    {
+        Path file = Files.createTempFile("journal", ".bin");
+        Date dob = new Date("1/1/1990");
+        Checking[] probes = new Checking[numAccounts];
+        for(int i = 0; i < numAccounts; i++)
+        {
+            probes[i] = new Checking();
+            probes[i].setHolder("First" + i, "Last", dob);
+            probes[i].setBalanceCents(100000);
+        }
+
+        AccountDatabase accountDatabase = new AccountDatabase(numAccounts);
+        long start = System.nanoTime();
+        try(Journal journal = new Journal(file, durability))
+        {
+            accountDatabase.addListener(journal);
+            for(Checking probe : probes)
+            {
+                Checking account = new Checking();
+                account.setHolder(probe.getHolder());
+                account.setBalanceCents(probe.getBalanceCents());
+                accountDatabase.open(account);
+            }
+            for(int i = 0; i < commands; i++)
+            {
+                Checking probe = probes[i % numAccounts];
+                if(i % 2 == 0)
+                {
+                    accountDatabase.deposit(probe);
+                }
+                else
+                {
+                    accountDatabase.withdraw(probe);
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("durability=%s commands/sec=%.0f journalBytes=%d%n", durability,
+                (numAccounts + commands) / seconds, Files.size(file));
+        Files.delete(file);
+    }
+}
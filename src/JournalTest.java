@@ -0,0 +1,240 @@
+/**
+ * Test class to test that a database rebuilt by Journal.replay() matches the database that was journaled.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class JournalTest {
+
+    /**
+     * This is a helper that returns what P prints for a database.
+     */
+    private String printed(AccountDatabase accountDatabase) {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        accountDatabase.print(new ReportWriter(new PrintStream(captured)));
+        return captured.toString();
+    }
+
+    /**
+     * This is a helper that journals a mix of changes, including UB, for a database.
+     */
+    private void makeChanges(AccountDatabase accountDatabase) {
+        Date dob = new Date("7/4/1976");
+        CollegeChecking collegeChecking = new CollegeChecking(College.CAMDEN);
+        collegeChecking.setHolder("Ann", "Lee", dob);
+        collegeChecking.setBalanceCents(12345);
+        accountDatabase.open(collegeChecking);
+        Savings savings = new Savings();
+        savings.setHolder("Bob", "Ray", dob);
+        savings.setBalanceCents(50000);
+        savings.setLoyalty(true);
+        accountDatabase.open(savings);
+        MoneyMarket moneyMarket = new MoneyMarket();
+        moneyMarket.setHolder("Cy", "Day", dob);
+        moneyMarket.setBalanceCents(400000);
+        accountDatabase.open(moneyMarket);
+
+        MoneyMarket withdrawal = new MoneyMarket();
+        withdrawal.setHolder("cy", "day", dob);
+        withdrawal.setBalanceCents(1000);
+        for(int i = 0; i < 5; i++) {
+            accountDatabase.withdraw(withdrawal);
+        }
+        accountDatabase.deposit(withdrawal);
+        Checking checking = new Checking();
+        checking.setHolder("Cy", "Day", dob);
+        checking.setBalanceCents(100);
+        accountDatabase.open(checking);
+        accountDatabase.transfer(withdrawal, checking);
+        accountDatabase.printWithUpdatedBalance();
+        Savings closing = new Savings();
+        closing.setHolder("Bob", "Ray", dob);
+        accountDatabase.close(closing);
+        closing.setBalanceCents(777);
+        accountDatabase.reOpen(closing);
+        accountDatabase.updateBalance();
+    }
+
+    /**
+     * This Test method checks that replaying the journal rebuilds the same accounts, for each durability level.
+     */
+    @Test
+    public void replay_Test() throws Exception {
+        for(Journal.Durability durability : Journal.Durability.values()) {
+            Path file = Files.createTempFile("journal", ".bin");
+            Files.delete(file);
+            AccountDatabase original = new AccountDatabase();
+            try(Journal journal = new Journal(file, durability, 3, 1)) {
+                original.addListener(journal);
+                makeChanges(original);
+            }
+            AccountDatabase replayed = new AccountDatabase();
+            assertEquals(15, Journal.replay(file, replayed));
+            assertEquals(printed(original), printed(replayed));
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * This Test method checks that the teller rejects a name too long for the journal, in an open and in a
+     * transfer, that the longest name it accepts is replayed, and that a length longer than the codec allows
+     * is not read.
+     */
+    @Test
+    public void longName_Test() throws Exception {
+        Path file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        AccountDatabase original = new AccountDatabase();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try(Journal journal = new Journal(file, Journal.Durability.PER_COMMAND)) {
+            original.addListener(journal);
+            BankTeller teller = new BankTeller(original);
+            ReportWriter out = new ReportWriter(new PrintStream(output));
+            String tooLong = "x".repeat(AccountCodec.MaxStringBytes + 1);
+            String longest = "\u00e9".repeat(AccountCodec.MaxStringBytes / 2);
+            teller.apply(teller.prepare(BankTeller.tokenize("O C " + tooLong + " Doe 1/1/1990 100")), out);
+            teller.apply(teller.prepare(BankTeller.tokenize("O C " + longest + " Doe 1/1/1990 100")), out);
+            teller.apply(teller.prepare(BankTeller.tokenize("T C S " + tooLong + " Doe 1/1/1990 100")), out);
+            out.flush();
+        }
+        String newLine = System.lineSeparator();
+        assertEquals(BankTeller.nameTooLong + newLine + "Account opened." + newLine + BankTeller.nameTooLong + newLine,
+                output.toString());
+        assertEquals(1, original.getNumAcct());
+        AccountDatabase replayed = new AccountDatabase();
+        assertEquals(1, Journal.replay(file, replayed));
+        assertEquals(printed(original), printed(replayed));
+        Files.delete(file);
+
+        ByteBuffer buffer = ByteBuffer.allocate(8).putShort((short) -1).putShort((short) 1);
+        buffer.flip();
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.getString(buffer));
+        assertThrows(IllegalArgumentException.class, () -> AccountCodec.putString(buffer.clear(), "y".repeat(5000)));
+    }
+
+    /**
+     * This Test method checks that a torn record at the end of the journal is ignored and cut off.
+     */
+    @Test
+    public void replay_TornTail_Test() throws Exception {
+        Path file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        AccountDatabase original = new AccountDatabase();
+        try(Journal journal = new Journal(file, Journal.Durability.PER_COMMAND)) {
+            original.addListener(journal);
+            makeChanges(original);
+        }
+        long size = Files.size(file);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 40, 1, 2, 3}));
+        }
+        AccountDatabase replayed = new AccountDatabase();
+        assertEquals(15, Journal.replay(file, replayed));
+        assertEquals(size, Files.size(file));
+        assertEquals(printed(original), printed(replayed));
+        Files.delete(file);
+    }
+
+    /**
+     * This Test method checks that accounts taken out of the database, as when they move to another shard,
+     * stay out when the journal is replayed.
+     */
+    @Test
+    public void replay_Removed_Test() throws Exception {
+        Path file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        AccountDatabase original = new AccountDatabase();
+        try(Journal journal = new Journal(file, Journal.Durability.PER_BATCH)) {
+            original.addListener(journal);
+            makeChanges(original);
+            assertEquals(1, original.removeAccounts(account -> AccountType.of(account) == AccountType.SAVINGS, 5).size());
+        }
+        AccountDatabase replayed = new AccountDatabase();
+        assertEquals(16, Journal.replay(file, replayed));
+        assertEquals(3, replayed.getNumAcct());
+        assertEquals(original.getSummary().toString(), replayed.getSummary().toString());
+        assertEquals(printed(original), printed(replayed));
+        Files.delete(file);
+    }
+
+    /**
+     * This Test method checks that the record is written before the change: once the journal cannot write,
+     * the change fails and the database is left as it was.
+     */
+    @Test
+    public void writeAhead_Test() throws Exception {
+        Path file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        AccountDatabase accountDatabase = new AccountDatabase();
+        Journal journal = new Journal(file, Journal.Durability.PER_COMMAND);
+        accountDatabase.addListener(journal);
+        makeChanges(accountDatabase);
+        journal.close();
+        String before = printed(accountDatabase);
+        Checking deposit = new Checking();
+        deposit.setHolder("Cy", "Day", new Date("7/4/1976"));
+        deposit.setBalanceCents(500);
+        assertThrows(UncheckedIOException.class, () -> accountDatabase.deposit(deposit));
+        assertThrows(UncheckedIOException.class, accountDatabase::printWithUpdatedBalance);
+        assertEquals(before, printed(accountDatabase));
+        Files.delete(file);
+    }
+
+    /**
+     * This Test method journals deposits, withdrawals and UBs from several threads on a concurrent database
+     * with per-command durability, and checks that replay applies them in the order they were applied.
+     */
+    @Test
+    public void groupCommit_Concurrent_Test() throws Exception {
+        Path file = Files.createTempFile("journal", ".bin");
+        Files.delete(file);
+        ConcurrentAccountDatabase original = new ConcurrentAccountDatabase();
+        Date dob = new Date("7/4/1976");
+        try(Journal journal = new Journal(file, Journal.Durability.PER_COMMAND)) {
+            original.addListener(journal);
+            Thread[] threads = new Thread[8];
+            for(int t = 0; t < threads.length; t++) {
+                int holder = t;
+                threads[t] = new Thread(() -> {
+                    MoneyMarket opened = new MoneyMarket();
+                    opened.setHolder("First" + holder, "Last", dob);
+                    opened.setBalanceCents(250000);
+                    original.open(opened);
+                    MoneyMarket account = new MoneyMarket();
+                    account.setHolder("First" + holder, "Last", dob);
+                    for(int i = 0; i < 200; i++) {
+                        account.setBalanceCents(100 + i);
+                        if(i % 3 == 0) {
+                            original.withdraw(account);
+                        } else {
+                            original.deposit(account);
+                        }
+                        if(holder == 0 && i % 20 == 0) {
+                            original.updateBalance();
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for(Thread thread : threads) {
+                thread.join();
+            }
+        }
+        AccountDatabase replayed = new AccountDatabase();
+        Journal.replay(file, replayed);
+        assertEquals(printed(original), printed(replayed));
+        assertEquals(original.getSummary().toString(), replayed.getSummary().toString());
+        Files.delete(file);
+    }
+}
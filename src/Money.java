@@ -0,0 +1,181 @@
+/**
+ * Money class holds the fixed-point helpers for amounts kept as a long number of cents. All rounding
+ * uses one mode, half-even (banker's rounding): it is applied when interest is posted and when an
+ * amount with more than two decimals is parsed.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class Money {
+    public static final int CentsPerDollar = 100;
+    public static final long INVALID = Long.MIN_VALUE;
+    public static final RoundingMode Rounding = RoundingMode.HALF_EVEN;
+    private static final int Scale = 2;
+    private static final int DigitsPerGroup = 3;
+    private static final int MaxFormattedLength = 32;
+    private static final long[] PowersOfTen = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+            10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L,
+            1000000000000000L, 10000000000000000L, 100000000000000000L, 1000000000000000000L};
+
+    /**
+     * This function divides two longs and rounds the quotient half-even.
+     * @param numerator - the dividend.
+     * @param denominator - the divisor, must be positive.
+     * @return the rounded quotient.
+     */
+    public static long divide(long numerator, long denominator)
+    {
+        long quotient = Math.floorDiv(numerator, denominator);
+        long twiceRemainder = 2 * (numerator - quotient * denominator);
+        if(twiceRemainder > denominator || (twiceRemainder == denominator && (quotient & 1) != 0))
+        {
+            quotient++;
+        }
+        return quotient;
+    }
+
+    /**
+     * This function parses a decimal amount such as 12, 12.5 or 1234.56 straight into cents without
+     * going through a double. Digits past the cents are rounded half-even. The amount can be any CharSequence,
+     * such as a token read in place by CommandTokenizer.
+     * @param amount - the amount as typed by the user.
+     * @return the amount in cents, or INVALID if it is not a valid amount.
+     */
+    public static long parseCents(CharSequence amount)
+    {
+        int length = amount.length();
+        int i = 0;
+        boolean negative = false;
+        if(i < length && (amount.charAt(i) == '-' || amount.charAt(i) == '+'))
+        {
+            negative = amount.charAt(i) == '-';
+            i++;
+        }
+        long cents = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        boolean sticky = false;
+        int roundingDigit = -1;
+        for(; i < length; i++)
+        {
+            char c = amount.charAt(i);
+            if(c == '.' && fractionDigits < 0)
+            {
+                fractionDigits = 0;
+                continue;
+            }
+            if(c < '0' || c > '9')
+            {
+                return INVALID;
+            }
+            digits++;
+            if(fractionDigits >= Scale)
+            {
+                if(roundingDigit < 0)
+                {
+                    roundingDigit = c - '0';
+                }
+                else if(c != '0')
+                {
+                    sticky = true;
+                }
+                continue;
+            }
+            if(cents > (Long.MAX_VALUE - 9) / 10)
+            {
+                return INVALID;
+            }
+            cents = cents * 10 + (c - '0');
+            if(fractionDigits >= 0)
+            {
+                fractionDigits++;
+            }
+        }
+        if(digits == 0)
+        {
+            return INVALID;
+        }
+        for(int scale = Math.max(fractionDigits, 0); scale < Scale; scale++)
+        {
+            if(cents > Long.MAX_VALUE / 10)
+            {
+                return INVALID;
+            }
+            cents *= 10;
+        }
+        if(roundingDigit > 5 || (roundingDigit == 5 && (sticky || (cents & 1) != 0)))
+        {
+            roundUp = true;
+        }
+        if(roundUp)
+        {
+            cents++;
+        }
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * This function converts a dollar amount to cents, rounding half-even.
+     * @param dollars - amount in dollars.
+     * @return amount in cents.
+     */
+    public static long toCents(double dollars)
+    {
+        return BigDecimal.valueOf(dollars).setScale(Scale, Rounding).unscaledValue().longValueExact();
+    }
+
+    /**
+     * This function converts cents to dollars.
+     * @param cents - amount in cents.
+     * @return amount in dollars.
+     */
+    public static double toDollars(long cents)
+    {
+        return (double) cents / CentsPerDollar;
+    }
+
+    /**
+     * This function formats an amount of cents as $#,##0.00.
+     * @param cents - amount in cents.
+     * @return the formatted amount.
+     */
+    public static String format(long cents)
+    {
+        return appendTo(new StringBuilder(MaxFormattedLength), cents).toString();
+    }
+
+    /**
+     * This function appends an amount of cents formatted as $#,##0.00, the same text as format(), without
+     * building a DecimalFormat or any intermediate string. Negative amounts are written as -$#,##0.00.
+     * @param builder - builder to append to.
+     * @param cents - amount in cents.
+     * @return the builder.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long cents)
+    {
+        if(cents < 0)
+        {
+            builder.append('-');
+        }
+        builder.append('$');
+        long dollars = Math.abs(cents / CentsPerDollar);
+        int remainder = (int) Math.abs(cents % CentsPerDollar);
+        int digits = 1;
+        while(digits < PowersOfTen.length && dollars >= PowersOfTen[digits])
+        {
+            digits++;
+        }
+        for(int digit = digits - 1; digit >= 0; digit--)
+        {
+            builder.append((char) ('0' + dollars / PowersOfTen[digit] % 10));
+            if(digit > 0 && digit % DigitsPerGroup == 0)
+            {
+                builder.append(',');
+            }
+        }
+        return builder.append('.').append((char) ('0' + remainder / 10)).append((char) ('0' + remainder % 10));
+    }
+}
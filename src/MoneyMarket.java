@@ -7,11 +7,11 @@ public class MoneyMarket extends Savings{
 
 
 
-    private static final double annualInterest = 0.8;
+    static final int annualInterestBasisPoints = 80;
     private static final String accountType = "Money Market Savings";
     public static final int ExpectedBalance = 2500;
     private static final int monthlyFee = 10;
-    private static final int maximumWithdrawals = 3;
+    static final int maximumWithdrawals = 3;
     private int withdrawCounter = 0;
 
     /**
@@ -32,11 +32,20 @@ public class MoneyMarket extends Savings{
     }
 
     /**
-     * This function is used to get the annualInterest rate of a Money Market account.
+     * @return the lookup class of this account type, matching the equals() override above.
      */
     @Override
-    protected double getBaseAnnualInterestRate(){
-        return annualInterest;
+    protected Class<? extends Account> getLookupClass()
+    {
+        return MoneyMarket.class;
+    }
+
+    /**
+     * This function is used to get the annualInterest rate of a Money Market account in basis points.
+     */
+    @Override
+    protected int getBaseAnnualInterestBasisPoints(){
+        return annualInterestBasisPoints;
     }
 
     /**
@@ -51,44 +60,85 @@ public class MoneyMarket extends Savings{
     /**
      * This function deducts the balance from an account, the amount that should be deducted from the
      * balance is passed in as a parameter.
-     * @param amount - The amount that needs to be deducted or withdrawn from an account.
+     * @param amount - The amount in cents that needs to be deducted or withdrawn from an account.
      */
     @Override
-    public void withdraw(double amount) {
+    public void withdraw(long amount) {
         super.withdraw(amount);
         withdrawCounter+=1;
     }
 
     /**
      * This function returns a monthly fee that an account holder needs to pay on a monthly basis.
-     * @return - a double that has a monthly fee that an account holder needs to pay on a monthly basis
-     * depending on the account type.
+     * @return - a long that has the monthly fee in cents that an account holder needs to pay on a
+     * monthly basis depending on the account type.
      */
     @Override
-    public double fee()
+    public long feeCents()
     {
-        if(balance >= ExpectedBalance && withdrawCounter <= maximumWithdrawals)
+        return feeCentsFor(balance, withdrawCounter);
+    }
+
+    /**
+     * This function returns the monthly fee of a Money Market account with the given balance and withdrawals.
+     * @param balance - balance in cents.
+     * @param withdrawCounter - number of withdrawals made.
+     * @return the monthly fee in cents.
+     */
+    public static long feeCentsFor(long balance, int withdrawCounter)
+    {
+        if(isLoyalFor(balance) && withdrawCounter <= maximumWithdrawals)
             return 0;
-        else return monthlyFee;
+        else return (long) monthlyFee * Money.CentsPerDollar;
+    }
+
+    /**
+     * This function returns the annual interest rate of a Money Market account with the given balance.
+     * @param balance - balance in cents.
+     * @return the annual interest rate in basis points.
+     */
+    public static int annualInterestBasisPointsFor(long balance)
+    {
+        return isLoyalFor(balance) ? annualInterestBasisPoints + loyaltyBonusBasisPoints : annualInterestBasisPoints;
+    }
+
+    /**
+     * This function checks whether a Money Market account with the given balance counts as loyal.
+     * @param balance - balance in cents.
+     * @return true if the balance is at least 2500 dollars.
+     */
+    public static boolean isLoyalFor(long balance)
+    {
+        return balance >= (long) ExpectedBalance * Money.CentsPerDollar;
+    }
+
+    /**
+     * @return the number of withdrawals made since the account was opened or last closed.
+     */
+    public int getWithdrawCounter()
+    {
+        return this.withdrawCounter;
     }
 
     /**
-     *
-     * @return a string that describes the profile info,
+     * This function sets the number of withdrawals made.
+     * @param withdrawCounter - number of withdrawals.
+     */
+    public void setWithdrawCounter(int withdrawCounter)
+    {
+        this.withdrawCounter = withdrawCounter;
+    }
+
+    /**
+     * This function appends a string that describes the profile info,
      * how many withdraws an account holder had, and if they are loyal or not.
+     * @param builder - builder to append to.
+     * @return the builder.
      */
     @Override
-    public String toString()
+    public StringBuilder appendTo(StringBuilder builder)
     {
-        if(this.isLoyal())
-        {
-            return super.toString() + "::withdrawl: " + withdrawCounter;
-        }
-        else if(this.isClosed())
-        {
-            return super.toString() + "::withdrawl: " + withdrawCounter;
-        }
-        return super.toString() + "::withdrawl: " + withdrawCounter;
+        return super.appendTo(builder).append("::withdrawl: ").append(withdrawCounter);
     }
 
     /**
@@ -124,11 +174,7 @@ public class MoneyMarket extends Savings{
     @Override
     public boolean isLoyal()
     {
-        if(this.balance >= ExpectedBalance)
-        {
-            return true;
-        }
-        return false;
+        return isLoyalFor(this.balance);
     }
 
     /**
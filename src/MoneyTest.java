@@ -0,0 +1,69 @@
+/**
+ * Test class to test parseCents(), divide() and format() methods of Money class.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+
+    @Test
+    public void parseCents_Test() {
+        /**
+         * Testing whole, one-decimal and two-decimal amounts.
+         */
+        assertEquals(1200, Money.parseCents("12"));
+        assertEquals(1250, Money.parseCents("12.5"));
+        assertEquals(123456, Money.parseCents("1234.56"));
+        assertEquals(50, Money.parseCents(".5"));
+        assertEquals(-500, Money.parseCents("-5"));
+        /**
+         * Testing that digits past the cents are rounded half-even.
+         */
+        assertEquals(1234, Money.parseCents("12.345"));
+        assertEquals(1236, Money.parseCents("12.355"));
+        assertEquals(1235, Money.parseCents("12.3451"));
+        /**
+         * Testing invalid amounts.
+         */
+        assertEquals(Money.INVALID, Money.parseCents("abc"));
+        assertEquals(Money.INVALID, Money.parseCents("."));
+        assertEquals(Money.INVALID, Money.parseCents("1.2.3"));
+        assertEquals(Money.INVALID, Money.parseCents(""));
+    }
+
+    @Test
+    public void divide_Test() {
+        /**
+         * Testing that ties are rounded to the even neighbour and other quotients to the nearest.
+         */
+        assertEquals(2, Money.divide(5, 2));
+        assertEquals(4, Money.divide(7, 2));
+        assertEquals(3, Money.divide(8, 3));
+        assertEquals(-2, Money.divide(-5, 2));
+        assertEquals(8, Money.divide(90000, 12000));
+    }
+
+    /**
+     * This Test method checks that format gives the same text as DecimalFormat("$#,##0.00").
+     */
+    @Test
+    public void format_Test() {
+        DecimalFormat reference = new DecimalFormat("$#,##0.00");
+        long[] amounts = {0, 1, -1, 99, 100, -100, 99999, 100000, 123456789, -123456789,
+                100000000000L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for(long cents : amounts) {
+            assertEquals(reference.format(BigDecimal.valueOf(cents, 2)), Money.format(cents));
+        }
+        Random random = new Random(7);
+        for(int i = 0; i < 100000; i++) {
+            long cents = random.nextLong() >> random.nextInt(64);
+            assertEquals(reference.format(BigDecimal.valueOf(cents, 2)), Money.format(cents));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * NameIndex class finds account holders by name. Holders are kept in a TreeMap ordered by case-folded last
+ * name, then first name, then date of birth, and each holder maps to the ids of their accounts in the store.
+ * A last name prefix, or a full last name with a first name prefix, is one contiguous range of the map, so a
+ * page of results takes O(log n + skipped + page size) whatever the number of holders.
+ * The fuzzy search lists the holders whose last name is one edit away from the query: every string one
+ * deletion, transposition, substitution or insertion away is generated and looked up exactly. Substitutions
+ * and insertions try the letters a to z, the apostrophe and the hyphen, and the letters of the query.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class NameIndex {
+    private static final char Separator = '\u0000';
+    private static final char HighestChar = '\uffff';
+    private static final String Alphabet = "abcdefghijklmnopqrstuvwxyz'-";
+
+    private final TreeMap<String, int[]> holders;
+
+    /**
+     * Constructor of this class. Creates an empty index.
+     */
+    public NameIndex()
+    {
+        this.holders = new TreeMap<>();
+    }
+
+    /**
+     * This function adds an account of a holder.
+     * @param holder - profile of the account holder.
+     * @param id - id of the account in its store.
+     */
+    public void add(Profile holder, int id)
+    {
+        String key = keyOf(holder);
+        int[] found = holders.get(key);
+        if(found == null)
+        {
+            holders.put(key, new int[] {id});
+            return;
+        }
+        int[] grown = Arrays.copyOf(found, found.length + 1);
+        grown[found.length] = id;
+        holders.put(key, grown);
+    }
+
+    /**
+     * @param holder - profile of an account holder.
+     * @return the key of the holder; holders are listed in the order of their keys.
+     */
+    public static String keyOf(Profile holder)
+    {
+        return Profile.fold(holder.getLname()) + Separator + Profile.fold(holder.getFname()) + Separator
+                + Integer.toHexString(holder.getDob().toPacked());
+    }
+
+    /**
+     * @return number of holders in the index.
+     */
+    public int size()
+    {
+        return holders.size();
+    }
+
+    /**
+     * This function finds a page of holders by name, in name order.
+     * @param lastName - prefix of the last name, or the whole last name if firstName is given.
+     * @param firstName - prefix of the first name, or null to match any first name.
+     * @param page - page number, starting at 0.
+     * @param pageSize - number of holders per page.
+     * @return the ids of the accounts of the holders on the page, holder by holder.
+     */
+    public int[] search(String lastName, String firstName, int page, int pageSize)
+    {
+        String from = Profile.fold(lastName);
+        if(firstName != null)
+        {
+            from += Separator + Profile.fold(firstName);
+        }
+        return page(holders.subMap(from, from + HighestChar).values(), page, pageSize);
+    }
+
+    /**
+     * This function finds a page of holders whose last name is the query or one edit away from it, in name order.
+     * @param lastName - last name to look for.
+     * @param page - page number, starting at 0.
+     * @param pageSize - number of holders per page.
+     * @return the ids of the accounts of the holders on the page, holder by holder.
+     */
+    public int[] searchFuzzy(String lastName, int page, int pageSize)
+    {
+        String query = Profile.fold(lastName);
+        List<int[]> matches = new ArrayList<>();
+        for(String candidate : oneEditAway(query))
+        {
+            String from = candidate + Separator;
+            SortedMap<String, int[]> exact = holders.subMap(from, from + HighestChar);
+            matches.addAll(exact.values());
+        }
+        return page(matches, page, pageSize);
+    }
+
+    /**
+     * @return the query and every string one edit away from it, in order.
+     */
+    private static TreeSet<String> oneEditAway(String query)
+    {
+        StringBuilder letters = new StringBuilder(Alphabet);
+        for(int i = 0; i < query.length(); i++)
+        {
+            if(letters.indexOf(String.valueOf(query.charAt(i))) < 0)
+            {
+                letters.append(query.charAt(i));
+            }
+        }
+        TreeSet<String> candidates = new TreeSet<>();
+        candidates.add(query);
+        for(int i = 0; i <= query.length(); i++)
+        {
+            String head = query.substring(0, i);
+            String tail = query.substring(i);
+            for(int l = 0; l < letters.length(); l++)
+            {
+                candidates.add(head + letters.charAt(l) + tail);
+            }
+            if(i < query.length())
+            {
+                String rest = query.substring(i + 1);
+                candidates.add(head + rest);
+                for(int l = 0; l < letters.length(); l++)
+                {
+                    candidates.add(head + letters.charAt(l) + rest);
+                }
+                if(i + 1 < query.length())
+                {
+                    candidates.add(head + query.charAt(i + 1) + query.charAt(i) + query.substring(i + 2));
+                }
+            }
+        }
+        candidates.remove("");
+        return candidates;
+    }
+
+    /**
+     * @return the ids of the holders on one page of a sequence of holders.
+     */
+    private static int[] page(Collection<int[]> holders, int page, int pageSize)
+    {
+        long skip = (long) Math.max(page, 0) * pageSize;
+        int[] ids = new int[0];
+        int count = 0;
+        int taken = 0;
+        for(int[] holder : holders)
+        {
+            if(skip > 0)
+            {
+                skip--;
+                continue;
+            }
+            if(taken++ == pageSize)
+            {
+                break;
+            }
+            if(count + holder.length > ids.length)
+            {
+                ids = Arrays.copyOf(ids, Math.max(count + holder.length, ids.length * 2));
+            }
+            System.arraycopy(holder, 0, ids, count, holder.length);
+            count += holder.length;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+}
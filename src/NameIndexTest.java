@@ -0,0 +1,105 @@
+/**
+ * Test class to check the name searches of every AccountDatabase.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NameIndexTest {
+
+    /**
+     * This is a helper that opens a Checking account for each holder, by last name, first name and
+     * date of birth.
+     */
+    private void open(AbstractAccountDatabase accountDatabase, String[][] holders) {
+        for(String[] holder : holders) {
+            Checking checking = new Checking();
+            checking.setHolder(holder[1], holder[0], new Date(holder[2]));
+            checking.setBalanceCents(100000);
+            accountDatabase.open(checking);
+        }
+    }
+
+    /**
+     * This is a helper that renders the holders of accounts as "last first" for comparison.
+     */
+    private static List<String> names(List<Account> accounts) {
+        List<String> names = new ArrayList<>();
+        for(Account account : accounts) {
+            names.add(account.getHolder().getLname() + " " + account.getHolder().getFname());
+        }
+        return names;
+    }
+
+    /**
+     * This is a helper that checks prefix, first name, paged and fuzzy searches on one database. The first
+     * search builds the index, so the later ones also check that open keeps it up to date.
+     */
+    private void checkSearches(AbstractAccountDatabase accountDatabase) {
+        open(accountDatabase, new String[][] {
+                {"Doe", "John", "1/1/1980"}, {"Dow", "Jane", "1/1/1980"}, {"Doyle", "Ann", "1/1/1980"}});
+        assertEquals(List.of("Doe John", "Dow Jane", "Doyle Ann"), names(accountDatabase.searchByName("do", null, 0, 10)));
+
+        open(accountDatabase, new String[][] {
+                {"DOE", "jane", "2/2/1990"}, {"Smith", "Joe", "1/1/1980"}, {"Dee", "Zed", "1/1/1980"},
+                {"Doe", "Jack", "1/1/1980"}});
+        Savings savings = new Savings();
+        savings.setHolder("John", "doe", new Date("1/1/1980"));
+        savings.setBalanceCents(100000);
+        accountDatabase.open(savings);
+
+        assertEquals(List.of("Doe Jack", "DOE jane", "Doe John", "doe John", "Dow Jane", "Doyle Ann"),
+                names(accountDatabase.searchByName("DO", null, 0, 10)));
+        assertEquals(List.of("Doe Jack", "DOE jane"), names(accountDatabase.searchByName("do", null, 0, 2)));
+        assertEquals(List.of("Doe John", "doe John", "Dow Jane"), names(accountDatabase.searchByName("do", null, 1, 2)));
+        assertEquals(List.of("Doyle Ann"), names(accountDatabase.searchByName("do", null, 2, 2)));
+        assertTrue(accountDatabase.searchByName("do", null, 3, 2).isEmpty());
+        assertEquals(List.of("Doe Jack", "DOE jane"), names(accountDatabase.searchByName("doe", "ja", 0, 10)));
+        assertTrue(accountDatabase.searchByName("do", "ja", 0, 10).isEmpty());
+        assertTrue(accountDatabase.searchByName("x", null, 0, 10).isEmpty());
+
+        assertEquals(List.of("Dee Zed", "Doe Jack", "DOE jane", "Doe John", "doe John", "Dow Jane"),
+                names(accountDatabase.searchByNameFuzzy("Doe", 0, 10)));
+        assertEquals(List.of("Smith Joe"), names(accountDatabase.searchByNameFuzzy("smtih", 0, 10)));
+        assertEquals(List.of("Smith Joe"), names(accountDatabase.searchByNameFuzzy("Smth", 0, 10)));
+        assertEquals(List.of("Dow Jane"), names(accountDatabase.searchByNameFuzzy("Dowe", 3, 1)));
+        assertEquals(1, accountDatabase.searchByNameFuzzy("Smiths", 0, 10).size());
+        assertTrue(accountDatabase.searchByNameFuzzy("Smithers", 0, 10).isEmpty());
+    }
+
+    /**
+     * This Test method checks the name searches of the object, concurrent, columnar and off-heap stores.
+     */
+    @Test
+    public void searches_Test() {
+        checkSearches(new AccountDatabase());
+        checkSearches(new ConcurrentAccountDatabase());
+        checkSearches(new ColumnarAccountDatabase());
+        checkSearches(new OffHeapAccountDatabase());
+    }
+
+    /**
+     * This Test method checks that holders are found again after closed accounts are moved to the cold
+     * store, which renumbers the accounts left in the array.
+     */
+    @Test
+    public void afterColdStore_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        accountDatabase.setColdAfterCycles(1);
+        open(accountDatabase, new String[][] {
+                {"Abel", "Ann", "1/1/1980"}, {"Baker", "Bob", "1/1/1980"}, {"Abbott", "Cy", "1/1/1980"}});
+        assertEquals(List.of("Abbott Cy", "Abel Ann"), names(accountDatabase.searchByName("ab", null, 0, 10)));
+        Checking closing = new Checking();
+        closing.setHolder("Ann", "Abel", new Date("1/1/1980"));
+        accountDatabase.close(closing);
+        accountDatabase.updateBalance();
+        assertEquals(1, accountDatabase.getColdAccounts());
+        assertEquals(List.of("Abbott Cy"), names(accountDatabase.searchByName("ab", null, 0, 10)));
+        assertEquals(List.of("Baker Bob"), names(accountDatabase.searchByNameFuzzy("baker", 0, 10)));
+    }
+}
@@ -0,0 +1,1144 @@
+/**
+ * OffHeapAccountDatabase class is the store that keeps accounts outside the Java heap.
+ * Every account is a fixed-width 40 byte record in direct ByteBuffer slabs: balance in cents, references to
+ * the first and last name, date of birth, Money Market withdrawal counter, link to the next record of the same
+ * type, type code, closed and loyal flags and campus. Names are UTF-8 strings in an off-heap string arena, and
+ * the lookup index is an open-addressing hash table in a direct buffer, so the heap holds only a few small
+ * arrays however many accounts are loaded.
+ * getAccountIfExists() hands out AccountView flyweights: small Account objects that only hold a record number
+ * and read and write the record directly. Like the columnar store, month-end always runs eagerly and sequentially,
+ * and records are changed in place, so the store has no report views.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+public class OffHeapAccountDatabase extends IndexedAccountDatabase {
+    private static final int BALANCE = 0;
+    private static final int FIRST_NAME = 8;
+    private static final int LAST_NAME = 16;
+    private static final int DOB = 24;
+    private static final int WITHDRAWALS = 28;
+    private static final int NEXT_OF_TYPE = 32;
+    private static final int TYPE = 36;
+    private static final int FLAGS = 37;
+    private static final int COLLEGE = 38;
+    private static final int RecordSize = 40;
+
+    private static final int ClosedFlag = 1;
+    private static final int LoyalFlag = 2;
+    private static final int NoCollege = -1;
+
+    private static final int RecordsPerSlab = 1 << 15;
+    private static final int ArenaChunkSize = 1 << 20;
+    private static final int DefaultIndexCapacity = 16;
+    private static final int SlotSize = 8;
+    // the largest table whose size in bytes fits in an int
+    private static final int MaxIndexCapacity = 1 << 27;
+
+    private final ArrayList<ByteBuffer> slabs;
+    private final ArrayList<ByteBuffer> arena;
+    private int size;
+    private ByteBuffer indexTable;
+    private int indexMask;
+    private int indexCount;
+    private final int[] typeHeads;
+    private final int[] typeTails;
+
+    /**
+     * This is the constructor that creates an empty off-heap database.
+     */
+    public OffHeapAccountDatabase()
+    {
+        this.slabs = new ArrayList<>();
+        this.arena = new ArrayList<>();
+        this.size = 0;
+        this.indexTable = ByteBuffer.allocateDirect(DefaultIndexCapacity * SlotSize);
+        this.indexMask = DefaultIndexCapacity - 1;
+        this.indexCount = 0;
+        int types = AccountType.values().length;
+        this.typeHeads = new int[types];
+        this.typeTails = new int[types];
+        Arrays.fill(typeHeads, NOT_FOUND);
+        Arrays.fill(typeTails, NOT_FOUND);
+    }
+
+    /**
+     * @return number of accounts that the database is currently holding.
+     */
+    @Override
+    public int getNumAcct()
+    {
+        return size;
+    }
+
+    /**
+     * @return the slab holding a record.
+     */
+    private ByteBuffer slab(int row)
+    {
+        return slabs.get(row / RecordsPerSlab);
+    }
+
+    /**
+     * @return the byte offset of a record inside its slab.
+     */
+    private static int offset(int row)
+    {
+        return (row % RecordsPerSlab) * RecordSize;
+    }
+
+    private long balance(int row)
+    {
+        return slab(row).getLong(offset(row) + BALANCE);
+    }
+
+    private void putBalance(int row, long balance)
+    {
+        slab(row).putLong(offset(row) + BALANCE, balance);
+    }
+
+    private int withdrawals(int row)
+    {
+        return slab(row).getInt(offset(row) + WITHDRAWALS);
+    }
+
+    private void putWithdrawals(int row, int withdrawals)
+    {
+        slab(row).putInt(offset(row) + WITHDRAWALS, withdrawals);
+    }
+
+    private AccountType type(int row)
+    {
+        return AccountType.fromCode(slab(row).get(offset(row) + TYPE));
+    }
+
+    private boolean hasFlag(int row, int flag)
+    {
+        return (slab(row).get(offset(row) + FLAGS) & flag) != 0;
+    }
+
+    private void putFlag(int row, int flag, boolean value)
+    {
+        ByteBuffer slab = slab(row);
+        int at = offset(row) + FLAGS;
+        int flags = value ? slab.get(at) | flag : slab.get(at) & ~flag;
+        slab.put(at, (byte) flags);
+    }
+
+    private College college(int row)
+    {
+        int college = slab(row).get(offset(row) + COLLEGE);
+        return college == NoCollege ? null : College.values()[college];
+    }
+
+    private void putCollege(int row, College college)
+    {
+        slab(row).put(offset(row) + COLLEGE, (byte) (college == null ? NoCollege : college.ordinal()));
+    }
+
+    /**
+     * This function builds the profile of a record from the string arena.
+     * @param row - record number.
+     * @return a new profile holding the names and date of birth of the record.
+     */
+    private Profile holder(int row)
+    {
+        ByteBuffer slab = slab(row);
+        int at = offset(row);
+        return new Profile(getString(slab.getLong(at + FIRST_NAME)), getString(slab.getLong(at + LAST_NAME)),
+                Date.fromPacked(slab.getInt(at + DOB)));
+    }
+
+    /**
+     * This function copies a string into the arena.
+     * @param value - string to store, at most AccountCodec.MaxStringBytes bytes long in UTF-8.
+     * @return the reference of the string, which is its chunk number times the chunk size plus its offset.
+     */
+    private long putString(String value)
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer chunk = arena.isEmpty() ? null : arena.get(arena.size() - 1);
+        if(chunk == null || chunk.remaining() < Short.BYTES + bytes.length)
+        {
+            chunk = ByteBuffer.allocateDirect(ArenaChunkSize);
+            arena.add(chunk);
+        }
+        long reference = (long) (arena.size() - 1) * ArenaChunkSize + chunk.position();
+        chunk.putShort((short) bytes.length);
+        chunk.put(bytes);
+        return reference;
+    }
+
+    /**
+     * This function reads a string from the arena.
+     * @param reference - reference returned by putString().
+     * @return the string.
+     */
+    private String getString(long reference)
+    {
+        ByteBuffer chunk = arena.get((int) (reference / ArenaChunkSize));
+        int at = (int) (reference % ArenaChunkSize);
+        byte[] bytes = new byte[chunk.getShort(at)];
+        chunk.get(at + Short.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This function appends a string of the arena to a builder. ASCII strings are copied byte by byte; a string
+     * with other characters is read with getString().
+     * @param builder - builder to append to.
+     * @param reference - reference returned by putString().
+     * @return the builder.
+     */
+    private StringBuilder appendString(StringBuilder builder, long reference)
+    {
+        ByteBuffer chunk = arena.get((int) (reference / ArenaChunkSize));
+        int at = (int) (reference % ArenaChunkSize) + Short.BYTES;
+        int length = chunk.getShort(at - Short.BYTES);
+        int start = builder.length();
+        for(int i = 0; i < length; i++)
+        {
+            byte b = chunk.get(at + i);
+            if(b < 0)
+            {
+                builder.setLength(start);
+                return builder.append(getString(reference));
+            }
+            builder.append((char) b);
+        }
+        return builder;
+    }
+
+    /**
+     * This function spreads the bits of a hash so the low bits pick a table slot.
+     */
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * This function finds the record of the passed in account in the hash table.
+     * @param account - account that holds the profile and type to look up.
+     * @return the record number of the account, or NOT_FOUND.
+     */
+    private int findRow(Account account)
+    {
+        return findRow(account.getHolderKey());
+    }
+
+    /**
+     * This function finds the record with the given key in the hash table.
+     * @param key - holder key of the account.
+     * @return the record number of the account, or NOT_FOUND.
+     */
+    private int findRow(HolderKey key)
+    {
+        int hash = key.hashCode();
+        int slot = spread(hash) & indexMask;
+        while(true)
+        {
+            long entry = indexTable.getLong(slot * SlotSize);
+            if(entry == 0)
+            {
+                return NOT_FOUND;
+            }
+            if((int) (entry >>> 32) == hash && matches((int) entry - 1, key))
+            {
+                return (int) entry - 1;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    /**
+     * This function checks whether a record has the given key, reading the type, date of birth and names
+     * where they are stored rather than building a profile and a key for the record.
+     * @param row - record number.
+     * @param key - holder key of the account.
+     * @return true if the key of the record equals the passed in key.
+     */
+    private boolean matches(int row, HolderKey key)
+    {
+        ByteBuffer slab = slab(row);
+        int at = offset(row);
+        return type(row).lookupClass() == key.getLookupClass() && slab.getInt(at + DOB) == key.getDob().toPacked()
+                && nameMatches(slab.getLong(at + LAST_NAME), key.getLname())
+                && nameMatches(slab.getLong(at + FIRST_NAME), key.getFname());
+    }
+
+    /**
+     * This function checks whether a name in the arena equals a case-folded name ignoring case. ASCII names are
+     * folded byte by byte in place; a name with other characters is read and folded with Profile.fold().
+     * @param reference - reference returned by putString().
+     * @param folded - case-folded name, see Profile.fold().
+     * @return true if the name folds to the passed in name.
+     */
+    private boolean nameMatches(long reference, String folded)
+    {
+        ByteBuffer chunk = arena.get((int) (reference / ArenaChunkSize));
+        int at = (int) (reference % ArenaChunkSize) + Short.BYTES;
+        int length = chunk.getShort(at - Short.BYTES);
+        for(int i = 0; i < length; i++)
+        {
+            int b = chunk.get(at + i);
+            if(b < 0)
+            {
+                return Profile.fold(getString(reference)).equals(folded);
+            }
+            if(i >= folded.length() || folded.charAt(i) != (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b))
+            {
+                return false;
+            }
+        }
+        return length == folded.length();
+    }
+
+    /**
+     * This function adds a record to the hash table, doubling the table when it is half full.
+     * @param hash - hash of the HolderKey of the record.
+     * @param row - record number.
+     * @throws IllegalStateException if the table is at its largest size and half full.
+     */
+    private void insertIndex(int hash, int row)
+    {
+        if((indexCount + 1) * 2 > indexMask + 1)
+        {
+            if(indexMask + 1 == MaxIndexCapacity)
+            {
+                throw new IllegalStateException("The off-heap store holds at most " + MaxIndexCapacity / 2 + " accounts.");
+            }
+            resizeIndex((indexMask + 1) * 2);
+        }
+        putEntry(((long) hash << 32) | (row + 1));
+        indexCount++;
+    }
+
+    /**
+     * This function stores a table entry in the first free slot of its probe sequence.
+     */
+    private void putEntry(long entry)
+    {
+        int slot = spread((int) (entry >>> 32)) & indexMask;
+        while(indexTable.getLong(slot * SlotSize) != 0)
+        {
+            slot = (slot + 1) & indexMask;
+        }
+        indexTable.putLong(slot * SlotSize, entry);
+    }
+
+    /**
+     * This function finds whether the passed in account exists in the database and returns a view of its record.
+     * @param account
+     * @return a flyweight view of the account if found, null if not found
+     */
+    @Override
+    public Account getAccountIfExists(Account account)
+    {
+        int row = findRow(account);
+        return row == NOT_FOUND ? null : new AccountView(row);
+    }
+
+    /**
+     * This function grows the hash table so it can hold at least minCapacity accounts without growing again.
+     * Records and names are allocated slab by slab, so they need no reservation.
+     * @param minCapacity - number of accounts the database must be able to hold.
+     */
+    @Override
+    public void ensureCapacity(int minCapacity)
+    {
+        int capacity = indexMask + 1;
+        while((long) minCapacity * 2 > capacity && capacity < MaxIndexCapacity)
+        {
+            capacity *= 2;
+        }
+        if(capacity > indexMask + 1)
+        {
+            resizeIndex(capacity);
+        }
+    }
+
+    /**
+     * This function moves every entry of the hash table to a new, larger table.
+     * @param capacity - number of slots of the new table, a power of 2.
+     */
+    private void resizeIndex(int capacity)
+    {
+        ByteBuffer old = indexTable;
+        int oldCapacity = indexMask + 1;
+        indexTable = ByteBuffer.allocateDirect(capacity * SlotSize);
+        indexMask = capacity - 1;
+        for(int slot = 0; slot < oldCapacity; slot++)
+        {
+            long entry = old.getLong(slot * SlotSize);
+            if(entry != 0)
+            {
+                putEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * This function calls the action with a copy of every account in the database, in the order they were opened.
+     * Copies are real account objects, so code that looks at the account class, such as AccountCodec, sees the right type.
+     * @param action - action to call with each account.
+     */
+    @Override
+    public void forEach(Consumer<Account> action)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            action.accept(materialize(row));
+        }
+    }
+
+    /**
+     * This function builds an account object from a record.
+     * @param row - record number.
+     * @return a new account object holding a copy of the record.
+     */
+    private Account materialize(int row)
+    {
+        Account account = type(row).newAccount(college(row));
+        account.setHolder(holder(row));
+        account.setBalanceCents(balance(row));
+        account.closed = hasFlag(row, ClosedFlag);
+        if(account instanceof MoneyMarket)
+        {
+            ((MoneyMarket) account).setWithdrawCounter(withdrawals(row));
+        }
+        else if(account instanceof Savings)
+        {
+            ((Savings) account).setLoyalty(hasFlag(row, LoyalFlag));
+        }
+        return account;
+    }
+
+    /**
+     * This function appends a new record holding the passed in account.
+     * @param account - The account object that needs to be added.
+     * @return true only after when the account gets added successfully.
+     */
+    @Override
+    public boolean open(Account account)
+    {
+        fireOpened(account);
+        int row = size;
+        if(row == slabs.size() * RecordsPerSlab)
+        {
+            slabs.add(ByteBuffer.allocateDirect(RecordsPerSlab * RecordSize));
+        }
+        AccountType type = AccountType.of(account);
+        Profile holder = account.getHolder();
+        ByteBuffer slab = slab(row);
+        int at = offset(row);
+        slab.putLong(at + BALANCE, account.getBalanceCents());
+        slab.putLong(at + FIRST_NAME, putString(holder.getFname()));
+        slab.putLong(at + LAST_NAME, putString(holder.getLname()));
+        slab.putInt(at + DOB, holder.getDob().toPacked());
+        slab.putInt(at + WITHDRAWALS, account instanceof MoneyMarket ? ((MoneyMarket) account).getWithdrawCounter() : 0);
+        slab.putInt(at + NEXT_OF_TYPE, NOT_FOUND);
+        slab.put(at + TYPE, type.code());
+        int flags = account.isClosed() ? ClosedFlag : 0;
+        if(!(account instanceof MoneyMarket) && account instanceof Savings && ((Savings) account).isLoyal())
+        {
+            flags |= LoyalFlag;
+        }
+        slab.put(at + FLAGS, (byte) flags);
+        putCollege(row, account instanceof CollegeChecking ? ((CollegeChecking) account).getCollege() : null);
+        size++;
+
+        if(findRow(account) == NOT_FOUND)
+        {
+            insertIndex(account.getHolderKey().hashCode(), row);
+        }
+        linkType(row);
+        finishRowChange(new BookSummary(), row);
+        indexHolder(account.getHolder(), row);
+        return true;
+    }
+
+    /**
+     * This function is a helper that appends a record to the linked list of its account type.
+     */
+    private void linkType(int row)
+    {
+        int code = type(row).code();
+        if(typeTails[code] == NOT_FOUND)
+        {
+            typeHeads[code] = row;
+        }
+        else
+        {
+            slab(typeTails[code]).putInt(offset(typeTails[code]) + NEXT_OF_TYPE, row);
+        }
+        typeTails[code] = row;
+    }
+
+    /**
+     * This function finds and reopens an account with the balance of the passed in account.
+     * @param account - account that holds the profile and the new balance.
+     * @return false if the account does not exist, true if it was reopened.
+     */
+    @Override
+    public boolean reOpen(Account account)
+    {
+        int row = findRow(account);
+        if(row == NOT_FOUND)
+        {
+            return false;
+        }
+        fireReopened(account);
+        BookSummary delta = startRowChange(row);
+        new AccountView(row).reOpen(account);
+        finishRowChange(delta, row);
+        return true;
+    }
+
+    /**
+     * This function finds and closes an account, setting its balance and withdrawal counter to 0.
+     * @param account - The account object that needs to be closed.
+     * @return false if the account does not exist, true if it was closed.
+     */
+    @Override
+    public boolean close(Account account)
+    {
+        int row = findRow(account);
+        if(row == NOT_FOUND)
+        {
+            return false;
+        }
+        fireClosed(account);
+        BookSummary delta = startRowChange(row);
+        new AccountView(row).close();
+        finishRowChange(delta, row);
+        return true;
+    }
+
+    /**
+     * This function finds the account and adds in an amount to its balance.
+     * @param account - account object that holds the profile and the amount to deposit.
+     */
+    @Override
+    public void deposit(Account account)
+    {
+        int row = findRow(account);
+        fireDeposited(account);
+        depositToRow(row, account.getBalanceCents());
+    }
+
+    /**
+     * This function deducts an amount from the balance of the account if it is available.
+     * @param account - account object that holds the profile and the amount to withdraw.
+     * @return true if the amount was withdrawn, false if the account does not exist or has insufficient funds.
+     */
+    @Override
+    public boolean withdraw(Account account)
+    {
+        int row = findRow(account);
+        if(row == NOT_FOUND)
+        {
+            return false;
+        }
+        AccountView view = new AccountView(row);
+        long amount = account.getBalanceCents();
+        if(!view.canBeWithdrawn(amount))
+        {
+            return false;
+        }
+        fireWithdrew(account);
+        withdrawFromRow(view, amount);
+        return true;
+    }
+
+    /**
+     * This function moves an amount from one row to another if the source row can pay it.
+     * @param from - account object that holds the profile of the source and the amount to move.
+     * @param to - account object that holds the profile of the target.
+     * @return true if the amount was moved, false if either account does not exist or is closed, both are
+     *         the same account or the source has insufficient funds.
+     */
+    @Override
+    public boolean transfer(Account from, Account to)
+    {
+        int source = findRow(from);
+        int target = findRow(to);
+        if(source == NOT_FOUND || target == NOT_FOUND || source == target || hasFlag(source, ClosedFlag)
+                || hasFlag(target, ClosedFlag))
+        {
+            return false;
+        }
+        AccountView view = new AccountView(source);
+        long amount = from.getBalanceCents();
+        if(!view.canBeWithdrawn(amount))
+        {
+            return false;
+        }
+        fireTransferred(from, to);
+        withdrawFromRow(view, amount);
+        depositToRow(target, amount);
+        return true;
+    }
+
+    /**
+     * This function is a helper that adds an amount to the balance of a row.
+     */
+    private void depositToRow(int row, long amount)
+    {
+        BookSummary delta = startRowChange(row);
+        putBalance(row, balance(row) + amount);
+        finishRowChange(delta, row);
+    }
+
+    /**
+     * This function is a helper that takes an amount from the row of a view, with the withdraw() of its
+     * account type.
+     */
+    private void withdrawFromRow(AccountView view, long amount)
+    {
+        BookSummary delta = startRowChange(view.row);
+        view.withdraw(amount);
+        finishRowChange(delta, view.row);
+    }
+
+    /**
+     * This function prints all the accounts in the database.
+     */
+    @Override
+    public void print(ReportWriter report)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            report.account(new AccountView(row));
+        }
+        report.flush();
+    }
+
+    /**
+     * This function prints all the accounts in the database by their account type.
+     */
+    @Override
+    public void printByAccountType(ReportWriter report)
+    {
+        for(AccountType type : AccountType.BY_NAME)
+        {
+            for(int row = typeHeads[type.code()]; row != NOT_FOUND; row = slab(row).getInt(offset(row) + NEXT_OF_TYPE))
+            {
+                report.account(new AccountView(row));
+            }
+        }
+        report.flush();
+    }
+
+    /**
+     * This function prints the monthly fees and interests of all accounts in the database.
+     */
+    @Override
+    public void printFeeAndInterest(ReportWriter report)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            report.feeAndInterest(new AccountView(row));
+        }
+        report.flush();
+    }
+
+    /**
+     * This function posts fee and monthly interest to every open account, walking the records in place,
+     * and totals the fee and interest of the next month-end for the summary as it goes.
+     */
+    @Override
+    protected void updateBalance()
+    {
+        fireBalancesUpdated();
+        long balanceChange = 0;
+        long projectedFee = 0;
+        long projectedInterest = 0;
+        for(int row = 0; row < size; row++)
+        {
+            if(!hasFlag(row, ClosedFlag))
+            {
+                long balance = balance(row);
+                long updated = balance - feeCents(row) + Account.monthlyInterestCentsFor(balance, interestBasisPoints(row));
+                putBalance(row, updated);
+                balanceChange += updated - balance;
+                projectedFee += feeCents(row);
+                projectedInterest += Account.monthlyInterestCentsFor(updated, interestBasisPoints(row));
+            }
+        }
+        summary().setMonthEnd(balanceChange, projectedFee, projectedInterest);
+    }
+
+    /**
+     * This function starts the summary delta of a change to one record.
+     * @param row - record that is about to change.
+     * @return a delta holding the record's contribution before the change, removed.
+     */
+    private BookSummary startRowChange(int row)
+    {
+        BookSummary delta = new BookSummary();
+        addRow(delta, row, -1);
+        return delta;
+    }
+
+    /**
+     * This function finishes the summary delta of a change to one record and applies it,
+     * together with the balance index entry of the record.
+     * @param delta - delta returned by startRowChange(), or an empty summary for a new record.
+     * @param row - record after the change.
+     */
+    private void finishRowChange(BookSummary delta, int row)
+    {
+        addRow(delta, row, 1);
+        summary().merge(delta);
+        balanceIndex().update(row, type(row), hasFlag(row, ClosedFlag), balance(row), withdrawals(row));
+    }
+
+    /**
+     * This function adds every record to the balance index, with the record number as id.
+     * @param balanceIndex - index being rebuilt.
+     */
+    @Override
+    protected void loadBalanceIndex(BalanceIndex balanceIndex)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            balanceIndex.add(row, type(row), hasFlag(row, ClosedFlag), balance(row), withdrawals(row));
+        }
+    }
+
+    /**
+     * This function finds the records of a holder's accounts. The off-heap store keeps no profile objects to
+     * key a holder index with, so it probes its hash table once per lookup class instead, which is still a
+     * constant number of lookups per holder.
+     * @param holder - profile of the account holder.
+     * @return the record numbers of the holder's accounts, in the order they were opened.
+     */
+    @Override
+    protected int[] holderIds(Profile holder)
+    {
+        int[] rows = new int[AccountType.BY_LOOKUP_CLASS.length];
+        int count = 0;
+        for(AccountType type : AccountType.BY_LOOKUP_CLASS)
+        {
+            int row = findRow(holder.getHolderKey(type.lookupClass()));
+            if(row != NOT_FOUND)
+            {
+                rows[count++] = row;
+            }
+        }
+        rows = Arrays.copyOf(rows, count);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /**
+     * This function calls the action with the holder and the number of every record, to build the name index.
+     * The profiles are decoded from the records, so the name index is the one part of this store that keeps
+     * the names on the heap.
+     * @param action - action to call with each holder and id.
+     */
+    @Override
+    protected void forEachHolder(ObjIntConsumer<Profile> action)
+    {
+        for(int row = 0; row < size; row++)
+        {
+            action.accept(holder(row), row);
+        }
+    }
+
+    /**
+     * This function builds copies of the accounts of the ids returned by an index.
+     * @param ids - record numbers.
+     * @return the accounts, in the order of the ids.
+     */
+    @Override
+    protected List<Account> accountsAt(int[] ids)
+    {
+        List<Account> found = new ArrayList<>(ids.length);
+        for(int row : ids)
+        {
+            found.add(materialize(row));
+        }
+        return found;
+    }
+
+    /**
+     * This function adds or removes the contribution of a record to a summary.
+     */
+    private void addRow(BookSummary delta, int row, int sign)
+    {
+        long balance = balance(row);
+        if(hasFlag(row, ClosedFlag))
+        {
+            delta.add(type(row), true, balance, 0, 0, sign);
+            return;
+        }
+        delta.add(type(row), false, balance, feeCents(row),
+                Account.monthlyInterestCentsFor(balance, interestBasisPoints(row)), sign);
+    }
+
+    /**
+     * This function returns the monthly fee of a record, using the static fee rules of its account type.
+     * @param row - record number.
+     * @return the monthly fee in cents.
+     */
+    private long feeCents(int row)
+    {
+        long balance = balance(row);
+        switch (type(row))
+        {
+            case CHECKING:
+                return Checking.feeCentsFor(balance);
+            case SAVINGS:
+                return Savings.feeCentsFor(balance);
+            case MONEY_MARKET:
+                return MoneyMarket.feeCentsFor(balance, withdrawals(row));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * This function returns the annual interest rate of a record, using the static rules of its account type.
+     * @param row - record number.
+     * @return the annual interest rate in basis points.
+     */
+    private int interestBasisPoints(int row)
+    {
+        switch (type(row))
+        {
+            case COLLEGE_CHECKING:
+                return CollegeChecking.annualInterestBasisPoints;
+            case SAVINGS:
+                return Savings.annualInterestBasisPointsFor(hasFlag(row, LoyalFlag));
+            case MONEY_MARKET:
+                return MoneyMarket.annualInterestBasisPointsFor(balance(row));
+            default:
+                return Checking.annualInterestBasisPoints;
+        }
+    }
+
+    /**
+     * This function takes out up to limit accounts that match a filter, see AbstractAccountDatabase.removeAccounts().
+     * The records left slide down so they stay in the order they were opened, the hash table is rebuilt from
+     * its own entries with the new record numbers, without decoding any key, and the per-type lists are
+     * linked again. The names of the accounts taken stay in the string arena, which only grows.
+     * @param filter - filter that selects the accounts to take.
+     * @param limit - largest number of accounts to take.
+     * @return copies of the accounts taken, which are no longer in the database.
+     */
+    @Override
+    protected List<Account> removeAccounts(Predicate<Account> filter, int limit)
+    {
+        List<Account> removed = new ArrayList<>();
+        int[] moves = new int[size];
+        for(int row = 0; row < size && removed.size() < limit; row++)
+        {
+            Account account = materialize(row);
+            if(filter.test(account))
+            {
+                moves[row] = NOT_FOUND;
+                removed.add(account);
+            }
+        }
+        if(removed.isEmpty())
+        {
+            return removed;
+        }
+        removed.forEach(this::fireRemoved);
+        int kept = 0;
+        for(int row = 0; row < size; row++)
+        {
+            if(moves[row] == NOT_FOUND)
+            {
+                summary().merge(startRowChange(row));
+                continue;
+            }
+            moves[row] = kept;
+            if(kept != row)
+            {
+                moveRecord(row, kept);
+            }
+            kept++;
+        }
+        size = kept;
+        renumberIndex(moves);
+        Arrays.fill(typeHeads, NOT_FOUND);
+        Arrays.fill(typeTails, NOT_FOUND);
+        for(int row = 0; row < size; row++)
+        {
+            slab(row).putInt(offset(row) + NEXT_OF_TYPE, NOT_FOUND);
+            linkType(row);
+        }
+        balanceIndex().invalidate();
+        invalidateHolderIndexes();
+        return removed;
+    }
+
+    /**
+     * This function is a helper that copies a record to a lower record number.
+     */
+    private void moveRecord(int from, int to)
+    {
+        ByteBuffer source = slab(from);
+        ByteBuffer target = slab(to);
+        int sourceAt = offset(from);
+        int targetAt = offset(to);
+        for(int i = 0; i < RecordSize; i += Long.BYTES)
+        {
+            target.putLong(targetAt + i, source.getLong(sourceAt + i));
+        }
+    }
+
+    /**
+     * This function is a helper that rebuilds the hash table after records moved, keeping the hash of each
+     * entry and giving it the new record number, and dropping the entries of records taken out.
+     * @param moves - new record number of each old record, or NOT_FOUND.
+     */
+    private void renumberIndex(int[] moves)
+    {
+        ByteBuffer old = indexTable;
+        int capacity = indexMask + 1;
+        indexTable = ByteBuffer.allocateDirect(capacity * SlotSize);
+        indexCount = 0;
+        for(int slot = 0; slot < capacity; slot++)
+        {
+            long entry = old.getLong(slot * SlotSize);
+            if(entry != 0 && moves[(int) entry - 1] != NOT_FOUND)
+            {
+                putEntry((entry & 0xFFFFFFFF00000000L) | (moves[(int) entry - 1] + 1));
+                indexCount++;
+            }
+        }
+    }
+
+    /**
+     * AccountView class is a flyweight Account over one off-heap record. It holds only the record number;
+     * every getter reads the record and every operation writes it, so a view always shows the current state.
+     * The holder of a view cannot be changed.
+     */
+    private class AccountView extends Account {
+        private final int row;
+
+        AccountView(int row)
+        {
+            this.row = row;
+        }
+
+        @Override
+        public boolean isClosed()
+        {
+            return hasFlag(row, ClosedFlag);
+        }
+
+        @Override
+        public void reOpen(Account newAccount)
+        {
+            putBalance(row, newAccount.getBalanceCents());
+            putFlag(row, ClosedFlag, false);
+            if(newAccount instanceof CollegeChecking)
+            {
+                putCollege(row, ((CollegeChecking) newAccount).getCollege());
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            putBalance(row, 0);
+            putFlag(row, ClosedFlag, true);
+            putWithdrawals(row, 0);
+        }
+
+        @Override
+        public double getBalance()
+        {
+            return Money.toDollars(balance(row));
+        }
+
+        @Override
+        public long getBalanceCents()
+        {
+            return balance(row);
+        }
+
+        @Override
+        public void setBalance(double balance)
+        {
+            setBalanceCents(Money.toCents(balance));
+        }
+
+        @Override
+        public void setBalanceCents(long balance)
+        {
+            putBalance(row, balance);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Account && getHolder().equals(((Account) obj).getHolder());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return getHolder().hashCode();
+        }
+
+        @Override
+        protected Class<? extends Account> getLookupClass()
+        {
+            return type(row).lookupClass();
+        }
+
+        @Override
+        public HolderKey getHolderKey()
+        {
+            return getHolder().getHolderKey(getLookupClass());
+        }
+
+        @Override
+        public void updateBalanceWithFeeAndMonthlyInterest()
+        {
+            if(!isClosed())
+            {
+                setBalanceCents(getBalanceCents() - feeCents() + monthlyInterestCents());
+            }
+        }
+
+        @Override
+        public void settle(int period)
+        {
+        }
+
+        @Override
+        public void withdraw(long amount)
+        {
+            setBalanceCents(getBalanceCents() - amount);
+            if(type(row) == AccountType.MONEY_MARKET)
+            {
+                putWithdrawals(row, withdrawals(row) + 1);
+            }
+        }
+
+        @Override
+        public boolean canBeWithdrawn(long amount)
+        {
+            return amount <= getBalanceCents();
+        }
+
+        @Override
+        public void deposit(long amount)
+        {
+            setBalanceCents(getBalanceCents() + amount);
+        }
+
+        @Override
+        public void setHolder(Profile holder)
+        {
+            throw new UnsupportedOperationException("The holder of an off-heap account cannot be changed");
+        }
+
+        @Override
+        public Profile getHolder()
+        {
+            return holder(row);
+        }
+
+        @Override
+        protected int getAnnualInterestBasisPoints()
+        {
+            return interestBasisPoints(row);
+        }
+
+        @Override
+        public double monthlyInterest()
+        {
+            return (double) getBalanceCents() * getAnnualInterestBasisPoints() / InterestDivisor / Money.CentsPerDollar;
+        }
+
+        @Override
+        public long monthlyInterestCents()
+        {
+            return Account.monthlyInterestCentsFor(getBalanceCents(), getAnnualInterestBasisPoints());
+        }
+
+        @Override
+        public long feeCents()
+        {
+            return OffHeapAccountDatabase.this.feeCents(row);
+        }
+
+        @Override
+        public String getType()
+        {
+            return type(row).toString();
+        }
+
+        @Override
+        public String getShortType()
+        {
+            return type(row) == AccountType.MONEY_MARKET ? "Money Market" : getType();
+        }
+
+        /**
+         * This function appends the same text as the account object of this record, read straight from the
+         * record and the string arena, so printing a record builds no account, profile or date.
+         * @param builder - builder to append to.
+         * @return the builder.
+         */
+        @Override
+        public StringBuilder appendTo(StringBuilder builder)
+        {
+            ByteBuffer slab = slab(row);
+            int at = offset(row);
+            AccountType type = type(row);
+            builder.append(type).append("::");
+            appendString(builder, slab.getLong(at + FIRST_NAME)).append(' ');
+            appendString(builder, slab.getLong(at + LAST_NAME)).append(' ');
+            int dob = slab.getInt(at + DOB);
+            builder.append((dob >> 5) & 0xf).append('/').append(dob & 0x1f).append('/').append(dob >> 9);
+            long balance = slab.getLong(at + BALANCE);
+            Money.appendTo(builder.append("::Balance "), balance);
+            boolean closed = hasFlag(row, ClosedFlag);
+            switch(type)
+            {
+                case CHECKING, COLLEGE_CHECKING -> {
+                    if(closed)
+                    {
+                        builder.append("::CLOSED");
+                    }
+                    if(type == AccountType.COLLEGE_CHECKING)
+                    {
+                        builder.append("::").append(college(row));
+                    }
+                }
+                case SAVINGS, MONEY_MARKET -> {
+                    boolean loyal = type == AccountType.SAVINGS ? hasFlag(row, LoyalFlag) : MoneyMarket.isLoyalFor(balance);
+                    if(closed)
+                    {
+                        builder.append("::CLOSED");
+                    }
+                    else if(loyal)
+                    {
+                        builder.append("::Loyal");
+                    }
+                    if(type == AccountType.MONEY_MARKET)
+                    {
+                        builder.append("::withdrawl: ").append(withdrawals(row));
+                    }
+                }
+            }
+            return builder;
+        }
+    }
+}
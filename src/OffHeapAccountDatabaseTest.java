@@ -0,0 +1,117 @@
+/**
+ * Test class to check that OffHeapAccountDatabase gives the same results as AccountDatabase.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class OffHeapAccountDatabaseTest {
+
+    /**
+     * This Test method checks that the off-heap store prints the same reports as the object store
+     * after the same operations and two month-end updates.
+     */
+    @Test
+    public void sameResults_Test() {
+        String expected = ColumnarAccountDatabaseTest.runScenario(new AccountDatabase());
+        String actual = ColumnarAccountDatabaseTest.runScenario(new OffHeapAccountDatabase());
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * This Test method checks that views read and write the records and are equal for the same record,
+     * and that lookups ignore case, compare the whole name and date of birth, and match Checking with
+     * College Checking.
+     */
+    @Test
+    public void views_Test() {
+        OffHeapAccountDatabase accountDatabase = new OffHeapAccountDatabase();
+        Date dob = new Date("3/9/1990");
+        CollegeChecking collegeChecking = new CollegeChecking(College.CAMDEN);
+        collegeChecking.setHolder("Zo\u00eb", "Smith", dob);
+        collegeChecking.setBalanceCents(10000);
+        accountDatabase.open(collegeChecking);
+
+        Checking probe = new Checking();
+        probe.setHolder("ZO\u00cb", "smith", dob);
+        Account view = accountDatabase.getAccountIfExists(probe);
+        assertNotNull(view);
+        assertEquals("College Checking", view.getType());
+        assertEquals(collegeChecking.toString(), view.toString());
+        assertEquals(collegeChecking.monthlyInterest(), view.monthlyInterest(), 0.001);
+        Account again = accountDatabase.getAccountIfExists(probe);
+        assertEquals(view, again);
+        assertEquals(view.hashCode(), again.hashCode());
+
+        probe.setBalanceCents(2500);
+        accountDatabase.deposit(probe);
+        assertEquals(12500, view.getBalanceCents());
+        assertTrue(accountDatabase.close(probe));
+        assertTrue(view.isClosed());
+
+        Savings savings = new Savings();
+        savings.setHolder("Zo\u00eb", "Smith", dob);
+        assertNull(accountDatabase.getAccountIfExists(savings));
+
+        savings.setHolder("Ann", "Lee", dob);
+        accountDatabase.open(savings);
+        Savings other = new Savings();
+        other.setHolder("aNN", "LEE", dob);
+        assertNotNull(accountDatabase.getAccountIfExists(other));
+        other.setHolder("Anna", "Lee", dob);
+        assertNull(accountDatabase.getAccountIfExists(other));
+        other.setHolder("An", "Lee", dob);
+        assertNull(accountDatabase.getAccountIfExists(other));
+        other.setHolder("Ann", "Lee", new Date("3/10/1990"));
+        assertNull(accountDatabase.getAccountIfExists(other));
+    }
+
+    /**
+     * This Test method checks that records are found after the slabs, the arena and the hash table have grown.
+     */
+    @Test
+    public void growth_Test() {
+        OffHeapAccountDatabase accountDatabase = new OffHeapAccountDatabase();
+        Date dob = new Date("1/1/1970");
+        int count = 100000;
+        for(int i = 0; i < count; i++) {
+            MoneyMarket moneyMarket = new MoneyMarket();
+            moneyMarket.setHolder("First" + i, "Last" + i, dob);
+            moneyMarket.setBalanceCents(i);
+            accountDatabase.open(moneyMarket);
+        }
+        assertEquals(count, accountDatabase.getNumAcct());
+        for(int i = 0; i < count; i += 997) {
+            MoneyMarket probe = new MoneyMarket();
+            probe.setHolder("first" + i, "last" + i, dob);
+            assertEquals(i, accountDatabase.getAccountIfExists(probe).getBalanceCents());
+        }
+    }
+
+    /**
+     * This Test method checks that a snapshot of the off-heap store keeps every account type.
+     */
+    @Test
+    public void snapshot_Test() throws Exception {
+        OffHeapAccountDatabase offHeap = new OffHeapAccountDatabase();
+        ColumnarAccountDatabaseTest.runScenario(offHeap);
+        Path file = Files.createTempFile("snapshot", ".bin");
+        Snapshot.write(file, offHeap, 0);
+        AccountDatabase loaded = new AccountDatabase();
+        Snapshot.load(file, loaded);
+        Files.delete(file);
+
+        StringBuilder expected = new StringBuilder();
+        offHeap.forEach(account -> expected.append(account).append('\n'));
+        StringBuilder actual = new StringBuilder();
+        loaded.forEach(account -> actual.append(account).append('\n'));
+        assertEquals(expected.toString(), actual.toString());
+        assertTrue(actual.indexOf("Money Market Savings::") >= 0);
+    }
+}
@@ -3,10 +3,14 @@
  * Date of Birth. It also has some getters to retrive account holder's data when needed.
  * @author Sumanth Rajkumar, Shantanu Jain
  */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class Profile {
     private String fname;
     private String lname;
     private Date dob;
+    private int hash;
 
     public Profile(String fname, String lname, Date dob)
     {
@@ -15,6 +19,30 @@ public class Profile {
         this.dob = dob;
     }
 
+    /**
+     * @return the first name of the account holder.
+     */
+    public String getFname()
+    {
+        return this.fname;
+    }
+
+    /**
+     * @return the last name of the account holder.
+     */
+    public String getLname()
+    {
+        return this.lname;
+    }
+
+    /**
+     * @return the date of birth of the account holder.
+     */
+    public Date getDob()
+    {
+        return this.dob;
+    }
+
     /**
      * This method checks whether the parameter is an instance of profile or not.
      * @param obj
@@ -30,6 +58,87 @@ public class Profile {
         }
         return false;
     }
+
+    /**
+     * This method returns a hash code consistent with equals(): the names are case-folded first, so
+     * profiles that are equal ignoring case have the same hash code. It is computed once and cached.
+     * @return the hash code of the profile.
+     */
+    @Override
+    public int hashCode()
+    {
+        int hash = this.hash;
+        if(hash == 0)
+        {
+            hash = (fold(fname).hashCode() * 31 + fold(lname).hashCode()) * 31 + dob.hashCode();
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * This method builds the normalized lookup key of this profile for the given account lookup class.
+     * @param lookupClass - lookup class of the account type, see Account.getLookupClass().
+     * @return a HolderKey that is equal for profiles that are equal ignoring case.
+     */
+    public HolderKey getHolderKey(Class<? extends Account> lookupClass)
+    {
+        return new HolderKey(fold(fname), fold(lname), dob, lookupClass);
+    }
+
+    /**
+     * This method case-folds a name the same way equalsIgnoreCase compares characters, so two names
+     * fold to the same string exactly when they are equal ignoring case.
+     * @param name - name to fold.
+     * @return the case-folded name.
+     */
+    public static String fold(String name)
+    {
+        StringBuilder folded = new StringBuilder(name.length());
+        for(int i = 0; i < name.length(); )
+        {
+            int codePoint = name.codePointAt(i);
+            folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(codePoint)));
+            i += Character.charCount(codePoint);
+        }
+        return folded.toString();
+    }
+
+    /**
+     * This method checks that a name can be stored: names are written with AccountCodec, so they are at most
+     * AccountCodec.MaxStringBytes bytes long in UTF-8.
+     * @param name - name to check.
+     * @return true if the name is short enough.
+     */
+    public static boolean isValidName(String name)
+    {
+        return name.length() <= AccountCodec.MaxStringBytes / 3
+                || name.getBytes(StandardCharsets.UTF_8).length <= AccountCodec.MaxStringBytes;
+    }
+
+    /**
+     * This method writes the profile to a buffer: first name, last name and date of birth.
+     * @param buffer - buffer to write to.
+     */
+    public void writeTo(ByteBuffer buffer)
+    {
+        AccountCodec.putString(buffer, fname);
+        AccountCodec.putString(buffer, lname);
+        dob.writeTo(buffer);
+    }
+
+    /**
+     * This method reads a profile written by writeTo().
+     * @param buffer - buffer to read from.
+     * @return the profile that was read.
+     */
+    public static Profile readFrom(ByteBuffer buffer)
+    {
+        String fname = AccountCodec.getString(buffer);
+        String lname = AccountCodec.getString(buffer);
+        return new Profile(fname, lname, Date.readFrom(buffer));
+    }
+
     /**
      * Returns a string that contains the first name, last name and date of birth of a user.
      * @return a string that contains the first name, last name and date of birth of a user.
@@ -37,6 +146,17 @@ public class Profile {
     @Override
     public String toString()
     {
-        return this.fname + " " + this.lname + " " + this.dob.toString();
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the first name, last name and date of birth of a user, the same text as toString().
+     * @param builder - builder to append to.
+     * @return the builder.
+     */
+    public StringBuilder appendTo(StringBuilder builder)
+    {
+        builder.append(this.fname).append(' ').append(this.lname).append(' ');
+        return this.dob.appendTo(builder);
     }
 }
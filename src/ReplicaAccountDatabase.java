@@ -0,0 +1,335 @@
+/**
+ * ReplicaAccountDatabase class is the follower side of log-shipping replication, a warm standby of a primary
+ * that runs a ReplicationLog. A follower thread reads the batches the primary ships, checks the CRC of every
+ * record and applies it with the Journal replay code while holding the database lock, so a P, PT or PI
+ * served by the follower always sees whole batches. After each batch it acknowledges the number of records
+ * applied, and getLagMillis() tells how long ago the primary sent the batch that was applied last.
+ * Until it is promoted the follower is read-only: only the follower thread may change it. promote()
+ * disconnects from the primary and makes the database writable, so the teller of the follower can take
+ * over. A follower may run its own ReplicationLog; the records it applies reach its listeners like any
+ * other change, so other followers can chain from it and keep following after it is promoted.
+ * When the primary has truncated its log past the last record applied, it sends a snapshot first: the
+ * follower takes out all of its accounts and opens the snapshot accounts under the database lock, so readers
+ * never see half a snapshot, and then applies the log from where the snapshot ends.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+public class ReplicaAccountDatabase extends ConcurrentAccountDatabase implements Closeable {
+    public static final String readOnlyFollower = "Follower is read-only until it is promoted.";
+
+    private final byte[] batch;
+    private final CRC32 crc;
+    private Socket socket;
+    private volatile Thread follower;
+    private long appliedBytes;
+    private volatile long appliedRecords;
+    private volatile long lagMillis;
+    private volatile boolean promoted;
+
+    /**
+     * Constructor of this class. The database is empty and read-only until follow() connects it to a
+     * primary; listeners added before then see every record from the first one.
+     */
+    public ReplicaAccountDatabase()
+    {
+        super();
+        this.batch = new byte[ReplicationLog.MaxBatchSize];
+        this.crc = new CRC32();
+    }
+
+    /**
+     * This function starts following a primary, resuming after the last record applied, such as after the
+     * connection was lost. The primary must be the same one, or a follower of it, since the log is not
+     * checked.
+     * @param primary - address of the ReplicationLog to follow.
+     * @throws IOException if the primary cannot be reached.
+     * @throws IllegalStateException if this database is promoted or still following.
+     */
+    public synchronized void follow(InetSocketAddress primary) throws IOException
+    {
+        if(promoted || isFollowing())
+        {
+            throw new IllegalStateException("Follower is promoted or still following.");
+        }
+        Socket socket = new Socket(primary.getAddress(), primary.getPort());
+        socket.setTcpNoDelay(true);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeLong(appliedRecords);
+        out.writeLong(appliedBytes);
+        out.flush();
+        this.socket = socket;
+        this.follower = new Thread(() -> applyBatches(socket, out), "replication-follower");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    /**
+     * @return true if the follower thread is connected to a primary.
+     */
+    public boolean isFollowing()
+    {
+        Thread follower = this.follower;
+        return follower != null && follower.isAlive();
+    }
+
+    /**
+     * @return true after promote() was called.
+     */
+    public boolean isPromoted()
+    {
+        return promoted;
+    }
+
+    /**
+     * @return the number of records applied since the first record of the primary.
+     */
+    public long getAppliedRecords()
+    {
+        return appliedRecords;
+    }
+
+    /**
+     * @return the time between sending and applying the last batch, in milliseconds.
+     */
+    public long getLagMillis()
+    {
+        return lagMillis;
+    }
+
+    /**
+     * @return true until this database is promoted.
+     */
+    @Override
+    public boolean isReadOnly()
+    {
+        return !promoted;
+    }
+
+    /**
+     * This function stops following the primary and makes the database writable. Batches applied before
+     * are kept; a batch still being received is dropped.
+     */
+    public void promote()
+    {
+        promoted = true;
+        close();
+    }
+
+    /**
+     * This function disconnects from the primary and waits for the follower thread to stop.
+     */
+    @Override
+    public void close()
+    {
+        Socket socket;
+        Thread follower;
+        synchronized(this)
+        {
+            socket = this.socket;
+            follower = this.follower;
+        }
+        if(socket == null)
+        {
+            return;
+        }
+        try
+        {
+            socket.close();
+            follower.join();
+        }
+        catch(IOException e)
+        {
+            System.err.println("Closing the primary connection failed: " + e.getMessage());
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean open(Account account)
+    {
+        checkWritable();
+        return super.open(account);
+    }
+
+    @Override
+    public boolean reOpen(Account account)
+    {
+        checkWritable();
+        return super.reOpen(account);
+    }
+
+    @Override
+    public boolean close(Account account)
+    {
+        checkWritable();
+        return super.close(account);
+    }
+
+    @Override
+    public void deposit(Account account)
+    {
+        checkWritable();
+        super.deposit(account);
+    }
+
+    @Override
+    public boolean withdraw(Account account)
+    {
+        checkWritable();
+        return super.withdraw(account);
+    }
+
+    @Override
+    public boolean transfer(Account from, Account to)
+    {
+        checkWritable();
+        return super.transfer(from, to);
+    }
+
+    @Override
+    protected void updateBalance()
+    {
+        checkWritable();
+        super.updateBalance();
+    }
+
+    @Override
+    protected void loadAccounts(List<Account> loaded)
+    {
+        checkWritable();
+        super.loadAccounts(loaded);
+    }
+
+    @Override
+    protected List<Account> removeAccounts(Predicate<Account> filter, int limit)
+    {
+        checkWritable();
+        return super.removeAccounts(filter, limit);
+    }
+
+    /**
+     * This function is a helper that rejects a change made by any thread but the follower thread before
+     * the database is promoted.
+     */
+    private void checkWritable()
+    {
+        if(!promoted && Thread.currentThread() != follower)
+        {
+            throw new UnsupportedOperationException(readOnlyFollower);
+        }
+    }
+
+    /**
+     * This function is the body of the follower thread. The primary first sends where its records start and
+     * the number of snapshot accounts that come before them; if that is not where this follower stopped, the
+     * database is replaced by the snapshot. Each batch is the time it was sent, the number of records and
+     * their bytes; it is applied whole under the database lock and then acknowledged.
+     */
+    private void applyBatches(Socket socket, DataOutputStream out)
+    {
+        try(socket)
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            long startRecords = in.readLong();
+            long startBytes = in.readLong();
+            long snapshotAccounts = in.readLong();
+            if(startRecords != appliedRecords || startBytes != appliedBytes)
+            {
+                synchronized(this)
+                {
+                    removeAccounts(account -> true, Integer.MAX_VALUE);
+                    for(long loaded = 0; loaded < snapshotAccounts; )
+                    {
+                        in.readLong();
+                        int records = in.readInt();
+                        applyRecords(readBatch(in), records, false);
+                        loaded += records;
+                    }
+                    appliedRecords = startRecords;
+                    appliedBytes = startBytes;
+                }
+            }
+            while(true)
+            {
+                long sentMillis = in.readLong();
+                int records = in.readInt();
+                ByteBuffer buffer = readBatch(in);
+                synchronized(this)
+                {
+                    applyRecords(buffer, records, true);
+                }
+                lagMillis = System.currentTimeMillis() - sentMillis;
+                out.writeLong(appliedRecords);
+                out.flush();
+            }
+        }
+        catch(IOException e)
+        {
+            if(!socket.isClosed())
+            {
+                System.err.println("Stopped following the primary: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This function is a helper that reads the length and the bytes of a batch.
+     * @return the bytes of the batch.
+     */
+    private ByteBuffer readBatch(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if(length < 0 || length > batch.length)
+        {
+            throw new IOException("Batch of " + length + " bytes is too long");
+        }
+        in.readFully(batch, 0, length);
+        return ByteBuffer.wrap(batch, 0, length);
+    }
+
+    /**
+     * This function is a helper that checks and applies the records of a batch. The caller holds the
+     * database lock.
+     * @param buffer - bytes of the batch.
+     * @param records - number of records in the batch.
+     * @param replicated - true for records of the log, which are counted as applied, false for snapshot records.
+     */
+    private void applyRecords(ByteBuffer buffer, int records, boolean replicated) throws IOException
+    {
+        for(int i = 0; i < records; i++)
+        {
+            int start = buffer.position();
+            int recordLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            crc.reset();
+            crc.update(batch, start + Journal.HeaderSize, recordLength);
+            if((int) crc.getValue() != checksum)
+            {
+                throw new IOException((replicated ? "Replicated record " + appliedRecords : "Snapshot record")
+                        + " fails its checksum");
+            }
+            Journal.apply(buffer, this);
+            buffer.position(start + Journal.HeaderSize + recordLength);
+            if(replicated)
+            {
+                appliedBytes += Journal.HeaderSize + recordLength;
+                appliedRecords++;
+            }
+        }
+    }
+}
@@ -0,0 +1,539 @@
+/**
+ * ReplicationLog class is the primary side of log-shipping replication. It is registered as a listener of
+ * the primary AccountDatabase and appends one record per open, reOpen, close, deposit, withdraw, transfer,
+ * UB and account taken out, in the Journal record format, to a log held in memory. Followers, see
+ * ReplicaAccountDatabase, connect to a loopback port and each gets a sender thread that ships the records
+ * it has not received yet.
+ * The teller thread only copies the record into the log, so the latency of a command barely moves. The log
+ * is a chain of 1 MB segments addressed by long byte offsets, and a record never spans two segments. Each
+ * sender ships everything appended to a segment since its last batch in one frame: the time the frame was
+ * sent, the number of records and their bytes. A follower acknowledges each frame with the number of
+ * records it has applied, so getLagRecords() tells how far the slowest follower is behind. Between batches
+ * a sender waits up to intervalMillis for the follower, so one that went away is dropped even when idle.
+ * The acceptor thread truncates the log: a full segment that every connected follower has applied is folded
+ * into a shadow AccountDatabase and dropped, so the log only holds what some follower still needs and the
+ * shadow holds the book as of the first record kept. A follower that reconnects tells where it stopped and
+ * resumes from there if the log still holds that record; a new follower, or one that stopped before the
+ * log was truncated, first gets the shadow as a snapshot of OPEN records and then the log from its start.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+public class ReplicationLog implements AccountDatabaseListener, Closeable {
+    public static final long DefaultIntervalMillis = 2;
+
+    static final int MaxBatchSize = 1 << 20;
+    private static final int SegmentSize = MaxBatchSize;
+    private static final int TruncateIntervalMillis = 100;
+    private static final int Backlog = 4;
+
+    private final ServerSocket serverSocket;
+    private final long intervalMillis;
+    private final ByteBuffer record;
+    private final CRC32 crc;
+    private final CopyOnWriteArrayList<Sender> senders;
+    private final Thread acceptor;
+    private final ArrayDeque<Segment> segments;
+    private final AccountDatabase shadow;
+    private long recordCount;
+    private volatile boolean open;
+
+    /**
+     * Constructor of this class. Starts accepting followers on a loopback port with the default interval.
+     * @param port - port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public ReplicationLog(int port) throws IOException
+    {
+        this(port, DefaultIntervalMillis);
+    }
+
+    /**
+     * Constructor of this class. Starts accepting followers on a loopback port.
+     * @param port - port to listen on, or 0 for any free port.
+     * @param intervalMillis - time a sender waits for more records between batches.
+     * @throws IOException if the port cannot be bound.
+     */
+    public ReplicationLog(int port, long intervalMillis) throws IOException
+    {
+        this.serverSocket = new ServerSocket(port, Backlog, InetAddress.getLoopbackAddress());
+        this.intervalMillis = Math.max(intervalMillis, 1);
+        this.record = ByteBuffer.allocate(Journal.MaxRecordSize);
+        this.crc = new CRC32();
+        this.senders = new CopyOnWriteArrayList<>();
+        this.segments = new ArrayDeque<>();
+        segments.add(new Segment(0, 0));
+        this.shadow = new AccountDatabase();
+        serverSocket.setSoTimeout(TruncateIntervalMillis);
+        this.open = true;
+        this.acceptor = new Thread(this::acceptFollowers, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port followers connect to.
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of records appended to the log.
+     */
+    public synchronized long getRecordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * @return the number of bytes of records the log still holds, from the first segment not truncated.
+     */
+    public synchronized long getLogBytes()
+    {
+        Segment tail = segments.peekLast();
+        return tail.start + tail.used - segments.peekFirst().start;
+    }
+
+    /**
+     * @return the number of followers connected.
+     */
+    public int getFollowers()
+    {
+        return senders.size();
+    }
+
+    /**
+     * @return the number of records the slowest connected follower has not applied yet, 0 without followers.
+     */
+    public long getLagRecords()
+    {
+        long applied = Long.MAX_VALUE;
+        for(Sender sender : senders)
+        {
+            applied = Math.min(applied, sender.applied);
+        }
+        return applied == Long.MAX_VALUE ? 0 : Math.max(getRecordCount() - applied, 0);
+    }
+
+    @Override
+    public void opened(Account account)
+    {
+        append(Journal.OPEN, account);
+    }
+
+    @Override
+    public void reopened(Account account)
+    {
+        append(Journal.REOPEN, account);
+    }
+
+    @Override
+    public void closed(Account account)
+    {
+        append(Journal.CLOSE, account);
+    }
+
+    @Override
+    public void deposited(Account account)
+    {
+        append(Journal.DEPOSIT, account);
+    }
+
+    @Override
+    public void withdrew(Account account)
+    {
+        append(Journal.WITHDRAW, account);
+    }
+
+    @Override
+    public void transferred(Account from, Account to)
+    {
+        append(Journal.TRANSFER, from, to);
+    }
+
+    @Override
+    public void balancesUpdated()
+    {
+        append(Journal.UPDATE_BALANCE, null);
+    }
+
+    @Override
+    public void removed(Account account)
+    {
+        append(Journal.REMOVE, account);
+    }
+
+    /**
+     * This function adds a record that holds at most one account.
+     * @param op - record type.
+     * @param account - account written in the record body, or null for UB.
+     */
+    private void append(byte op, Account account)
+    {
+        append(op, account, null);
+    }
+
+    /**
+     * This function copies one record to the end of the log, starting a new segment if it does not fit in the
+     * last one. The senders pick it up on their next batch.
+     * @param op - record type.
+     * @param account - account written in the record body, or null for UB.
+     * @param second - second account written in the record body, for a transfer, or null.
+     */
+    private synchronized void append(byte op, Account account, Account second)
+    {
+        ByteBuffer record = this.record;
+        record.clear();
+        Journal.writeRecord(record, crc, op, account, second);
+        int length = record.position();
+        Segment tail = segments.peekLast();
+        if(tail.used + length > SegmentSize)
+        {
+            tail = new Segment(tail.start + tail.used, recordCount);
+            segments.add(tail);
+        }
+        System.arraycopy(record.array(), 0, tail.bytes, tail.used, length);
+        tail.used += length;
+        tail.records++;
+        recordCount++;
+    }
+
+    /**
+     * This function finds the segment that holds a byte offset of the log.
+     * @param position - byte offset since the first record of the primary.
+     * @return the segment that holds the offset, the last segment if the offset is the end of the log, or null
+     *         if the offset was truncated or is past the end.
+     */
+    private synchronized Segment segmentAt(long position)
+    {
+        Iterator<Segment> newestFirst = segments.descendingIterator();
+        while(newestFirst.hasNext())
+        {
+            Segment segment = newestFirst.next();
+            if(segment.start <= position)
+            {
+                return position <= segment.start + segment.used ? segment : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This function drops the full segments at the start of the log that every connected follower has
+     * applied, folding their records into the shadow database first.
+     */
+    private void truncate()
+    {
+        synchronized(shadow)
+        {
+            while(true)
+            {
+                Segment head;
+                synchronized(this)
+                {
+                    head = segments.peekFirst();
+                    if(segments.size() < 2 || !appliedByAll(head.firstRecord + head.records))
+                    {
+                        return;
+                    }
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(head.bytes, 0, head.used);
+                for(int i = 0; i < head.records; i++)
+                {
+                    int start = buffer.position();
+                    int length = buffer.getInt();
+                    buffer.getInt();
+                    Journal.apply(buffer, shadow);
+                    buffer.position(start + Journal.HeaderSize + length);
+                }
+                synchronized(this)
+                {
+                    segments.pollFirst();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if every connected follower has applied the given number of records.
+     */
+    private boolean appliedByAll(long records)
+    {
+        for(Sender sender : senders)
+        {
+            if(sender.applied < records)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This function writes the shadow database as OPEN records, in batches of up to 1 MB, each starting
+     * with its number of records and its length. The caller holds the shadow lock.
+     * @return the batches, ready to be sent.
+     */
+    private List<ByteBuffer> snapshotBatches()
+    {
+        List<ByteBuffer> batches = new ArrayList<>();
+        ByteBuffer record = ByteBuffer.allocate(Journal.MaxRecordSize);
+        CRC32 crc = new CRC32();
+        shadow.forEach(account -> {
+            record.clear();
+            Journal.writeRecord(record, crc, Journal.OPEN, account, null);
+            ByteBuffer batch = batches.isEmpty() ? null : batches.get(batches.size() - 1);
+            if(batch == null || batch.remaining() < record.position())
+            {
+                batch = ByteBuffer.allocate(2 * Integer.BYTES + MaxBatchSize);
+                batch.putInt(0).putInt(0);
+                batches.add(batch);
+            }
+            batch.put(record.array(), 0, record.position());
+            batch.putInt(0, batch.getInt(0) + 1);
+        });
+        for(ByteBuffer batch : batches)
+        {
+            batch.putInt(Integer.BYTES, batch.position() - 2 * Integer.BYTES).flip();
+        }
+        return batches;
+    }
+
+    /**
+     * This function stops accepting followers and disconnects the connected ones.
+     * @throws IOException if the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        open = false;
+        serverSocket.close();
+        for(Sender sender : senders)
+        {
+            sender.disconnect();
+        }
+        try
+        {
+            acceptor.join(1000);
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * This function is the body of the acceptor thread. Each follower sends the number of records and
+     * bytes it has already applied, and gets a sender thread that ships the log from there. Between
+     * followers, and at least every TruncateIntervalMillis, the log is truncated.
+     */
+    private void acceptFollowers()
+    {
+        while(open)
+        {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Sender sender = new Sender(socket);
+                senders.add(sender);
+                Thread thread = new Thread(sender, "replication-sender");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            catch(SocketTimeoutException e)
+            {
+                // no follower arrived, truncate the log
+            }
+            catch(IOException e)
+            {
+                if(open)
+                {
+                    System.err.println("Accepting a follower failed: " + e.getMessage());
+                }
+            }
+            truncate();
+        }
+    }
+
+    /**
+     * Segment is a part of the log: up to SegmentSize bytes of whole records, starting at a byte offset and
+     * a record number. Only the last segment is still appended to.
+     */
+    private static final class Segment {
+        private final byte[] bytes;
+        private final long start;
+        private final long firstRecord;
+        private int used;
+        private int records;
+
+        Segment(long start, long firstRecord)
+        {
+            this.bytes = new byte[SegmentSize];
+            this.start = start;
+            this.firstRecord = firstRecord;
+        }
+    }
+
+    /**
+     * Sender ships the log to one follower and reads its acknowledgements. It first tells the follower where
+     * the records it ships start and how many snapshot accounts come before them.
+     */
+    private class Sender implements Runnable {
+        private final Socket socket;
+        private volatile long applied;
+
+        Sender(Socket socket)
+        {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run()
+        {
+            try(socket)
+            {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                long records = in.readLong();
+                long position = in.readLong();
+                List<ByteBuffer> snapshot = List.of();
+                long snapshotAccounts = 0;
+                synchronized(shadow)
+                {
+                    Segment head;
+                    synchronized(ReplicationLog.this)
+                    {
+                        head = segments.peekFirst();
+                    }
+                    if(records < head.firstRecord || position < head.start)
+                    {
+                        snapshot = snapshotBatches();
+                        for(ByteBuffer batch : snapshot)
+                        {
+                            snapshotAccounts += batch.getInt(0);
+                        }
+                        records = head.firstRecord;
+                        position = head.start;
+                    }
+                    applied = records;
+                }
+                out.writeLong(records);
+                out.writeLong(position);
+                out.writeLong(snapshotAccounts);
+                for(ByteBuffer batch : snapshot)
+                {
+                    out.writeLong(System.currentTimeMillis());
+                    out.write(batch.array(), 0, batch.limit());
+                }
+                out.flush();
+                socket.setSoTimeout((int) intervalMillis);
+                while(open)
+                {
+                    Segment segment = segmentAt(position);
+                    if(segment == null)
+                    {
+                        throw new IOException("Follower is ahead of the log");
+                    }
+                    int used;
+                    boolean last;
+                    synchronized(ReplicationLog.this)
+                    {
+                        used = segment.used;
+                        last = segment == segments.peekLast();
+                    }
+                    ByteBuffer view = ByteBuffer.wrap(segment.bytes);
+                    int from = (int) (position - segment.start);
+                    int batchEnd = from;
+                    int batchRecords = 0;
+                    while(batchEnd < used)
+                    {
+                        batchEnd += Journal.HeaderSize + view.getInt(batchEnd);
+                        batchRecords++;
+                    }
+                    if(batchRecords > 0)
+                    {
+                        out.writeLong(System.currentTimeMillis());
+                        out.writeInt(batchRecords);
+                        out.writeInt(batchEnd - from);
+                        out.write(segment.bytes, from, batchEnd - from);
+                        out.flush();
+                        position += batchEnd - from;
+                    }
+                    while(in.available() >= Long.BYTES)
+                    {
+                        applied = in.readLong();
+                    }
+                    if(last && !awaitAcknowledgement(in))
+                    {
+                        break;
+                    }
+                }
+            }
+            catch(IOException e)
+            {
+                if(open)
+                {
+                    System.err.println("Follower disconnected: " + e.getMessage());
+                }
+            }
+            finally
+            {
+                senders.remove(this);
+            }
+        }
+
+        /**
+         * This function waits up to intervalMillis for the follower to send something, without reading it,
+         * so a follower that went away is noticed even when there is nothing to ship.
+         * @return false if the follower closed the connection, true otherwise.
+         */
+        private boolean awaitAcknowledgement(DataInputStream in) throws IOException
+        {
+            in.mark(1);
+            try
+            {
+                if(in.read() < 0)
+                {
+                    return false;
+                }
+                in.reset();
+            }
+            catch(SocketTimeoutException e)
+            {
+                // nothing arrived, ship the next batch
+            }
+            return true;
+        }
+
+        void disconnect()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch(IOException e)
+            {
+                System.err.println("Closing follower connection failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * Test class to check that a ReplicaAccountDatabase following a ReplicationLog prints the same reports as its
+ * primary, resumes after reconnecting, rejects changes until it is promoted and accepts them after, and that
+ * the log is truncated once its followers have applied it.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReplicationTest {
+
+    /**
+     * This is a helper that applies random opens, deposits, withdrawals, closes and reopens to a database.
+     */
+    private static void randomChanges(Random random, AccountDatabase accountDatabase, int count) {
+        Date dob = new Date("5/14/1985");
+        for(int i = 0; i < count; i++) {
+            int holder = random.nextInt(100);
+            AccountType type = AccountType.values()[random.nextInt(4)];
+            Account account = type.newAccount(College.CAMDEN);
+            account.setHolder("First" + holder, "Last" + holder % 5, dob);
+            account.setBalanceCents(1 + random.nextInt(300000));
+            Account existing = accountDatabase.getAccountIfExists(account);
+            if(existing == null) {
+                accountDatabase.open(account);
+            }
+            else if(existing.isClosed()) {
+                if(existing.getType().equals(account.getType())) {
+                    accountDatabase.reOpen(account);
+                }
+            }
+            else if(random.nextInt(4) == 0) {
+                accountDatabase.close(account);
+            }
+            else if(random.nextBoolean()) {
+                accountDatabase.withdraw(account);
+            }
+            else if(existing.getType().equals(account.getType())) {
+                accountDatabase.deposit(account);
+            }
+        }
+    }
+
+    /**
+     * This is a helper that renders the P, PT and PI reports of a database.
+     */
+    private static String report(AccountDatabase accountDatabase) {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        ReportWriter writer = new ReportWriter(new PrintStream(captured));
+        accountDatabase.print(writer);
+        accountDatabase.printByAccountType(writer);
+        accountDatabase.printFeeAndInterest(writer);
+        return captured.toString() + accountDatabase.getSummary();
+    }
+
+    /**
+     * This is a helper that waits until the follower has applied every record of the log.
+     */
+    private static void awaitCaughtUp(ReplicationLog log, ReplicaAccountDatabase follower) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while(follower.getAppliedRecords() < log.getRecordCount() || log.getLagRecords() > 0) {
+            assertTrue("follower did not catch up", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private static InetSocketAddress addressOf(ReplicationLog log) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), log.getPort());
+    }
+
+    /**
+     * This Test method checks that a follower that joins late catches up from the first record, keeps up
+     * with later changes and UBs, and rejects changes of its own.
+     */
+    @Test
+    public void followerMatchesPrimary_Test() throws Exception {
+        AccountDatabase primary = new AccountDatabase();
+        try(ReplicationLog log = new ReplicationLog(0)) {
+            primary.addListener(log);
+            Random random = new Random(5);
+            randomChanges(random, primary, 300);
+            primary.updateBalance();
+            try(ReplicaAccountDatabase follower = new ReplicaAccountDatabase()) {
+                follower.follow(addressOf(log));
+                awaitCaughtUp(log, follower);
+                assertEquals(report(primary), report(follower));
+                assertEquals(1, log.getFollowers());
+
+                randomChanges(random, primary, 300);
+                primary.updateBalance();
+                randomChanges(random, primary, 50);
+                awaitCaughtUp(log, follower);
+                assertEquals(report(primary), report(follower));
+                assertTrue(follower.getLagMillis() >= 0);
+
+                assertTrue(follower.isReadOnly());
+                Checking account = new Checking();
+                account.setHolder("New", "Holder", new Date("1/2/2000"));
+                assertThrows(UnsupportedOperationException.class, () -> follower.open(account));
+                assertThrows(UnsupportedOperationException.class, follower::printWithUpdatedBalance);
+            }
+        }
+    }
+
+    /**
+     * This Test method disconnects a follower, makes more changes, and checks that it resumes where it
+     * stopped, and that after promotion it accepts changes and ships all it applied and changed to a follower
+     * of its own.
+     */
+    @Test
+    public void resumeAndPromote_Test() throws Exception {
+        AccountDatabase primary = new AccountDatabase();
+        try(ReplicationLog log = new ReplicationLog(0)) {
+            primary.addListener(log);
+            Random random = new Random(9);
+            randomChanges(random, primary, 200);
+            ReplicaAccountDatabase follower = new ReplicaAccountDatabase();
+            ReplicationLog chained = new ReplicationLog(0);
+            follower.addListener(chained);
+            follower.follow(addressOf(log));
+            awaitCaughtUp(log, follower);
+            follower.close();
+            assertFalse(follower.isFollowing());
+
+            randomChanges(random, primary, 200);
+            primary.updateBalance();
+            follower.follow(addressOf(log));
+            awaitCaughtUp(log, follower);
+            assertEquals(report(primary), report(follower));
+
+            try(chained) {
+                follower.promote();
+                assertTrue(follower.isPromoted());
+                assertFalse(follower.isReadOnly());
+                assertThrows(IllegalStateException.class, () -> follower.follow(addressOf(log)));
+                try(ReplicaAccountDatabase second = new ReplicaAccountDatabase()) {
+                    second.follow(addressOf(chained));
+                    randomChanges(random, follower, 200);
+                    follower.updateBalance();
+                    awaitCaughtUp(chained, second);
+                    assertEquals(report(follower), report(second));
+                }
+            }
+        }
+    }
+
+    /**
+     * This Test method checks that the log is truncated once the follower has applied it, that a follower
+     * joining after the truncation and one that stopped before it start from a snapshot, and that both
+     * keep up with later changes.
+     */
+    @Test
+    public void truncateAndSnapshot_Test() throws Exception {
+        AccountDatabase primary = new AccountDatabase();
+        try(ReplicationLog log = new ReplicationLog(0)) {
+            primary.addListener(log);
+            Random random = new Random(13);
+            ReplicaAccountDatabase stopped = new ReplicaAccountDatabase();
+            stopped.follow(addressOf(log));
+            randomChanges(random, primary, 500);
+            awaitCaughtUp(log, stopped);
+            stopped.close();
+            try(ReplicaAccountDatabase follower = new ReplicaAccountDatabase()) {
+                follower.follow(addressOf(log));
+                for(int i = 0; i < 20; i++) {
+                    randomChanges(random, primary, 5000);
+                    primary.updateBalance();
+                }
+                awaitCaughtUp(log, follower);
+                long deadline = System.currentTimeMillis() + 10000;
+                while(log.getLogBytes() > 1 << 20) {
+                    assertTrue("log was not truncated", System.currentTimeMillis() < deadline);
+                    Thread.sleep(5);
+                }
+                assertEquals(report(primary), report(follower));
+
+                try(ReplicaAccountDatabase late = new ReplicaAccountDatabase()) {
+                    late.follow(addressOf(log));
+                    stopped.follow(addressOf(log));
+                    randomChanges(random, primary, 300);
+                    primary.updateBalance();
+                    awaitCaughtUp(log, late);
+                    awaitCaughtUp(log, stopped);
+                    assertEquals(report(primary), report(late));
+                    assertEquals(report(primary), report(stopped));
+                    assertEquals(report(primary), report(follower));
+                }
+            }
+            stopped.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * ReportView class is a point-in-time view of the accounts of an AccountDatabase, used by reports that must
+ * not tear or block while other threads change accounts. Opening a view only keeps the account array, the
+ * number of accounts and the statement period, so it takes constant time. Before an account of the view
+ * changes, the database leaves a copy of it in the view, settled to the view's period, so the view reads
+ * the copy and the account itself is free to change. An account that has not changed is read in place under
+ * its lock. Accounts opened after the view are not in it.
+ * Copies are kept only while the view is open, at most one per account of the view; closing the view drops
+ * them, so memory does not grow as long as reports close their views.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class ReportView implements AutoCloseable {
+    private final AccountDatabase accountDatabase;
+    private final Account[] accounts;
+    private final int count;
+    private final int period;
+    private final ConcurrentHashMap<Integer, Account> copies;
+
+    /**
+     * Constructor of this class. It is called by AccountDatabase.openView() while no account is appended.
+     * @param accountDatabase - database the view belongs to.
+     * @param accounts - account array of the database.
+     * @param count - number of accounts in the array.
+     * @param period - statement period of the database.
+     */
+    ReportView(AccountDatabase accountDatabase, Account[] accounts, int count, int period)
+    {
+        this.accountDatabase = accountDatabase;
+        this.accounts = accounts;
+        this.count = count;
+        this.period = period;
+        this.copies = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return number of accounts in the view.
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @return number of accounts that changed since the view was opened and are read from copies.
+     */
+    public int getCopies()
+    {
+        return copies.size();
+    }
+
+    /**
+     * This function calls the action with every account of the view, in the order they were opened, as it
+     * was when the view was opened. An account read in place is passed while its lock is held, so the
+     * action must not lock the database; it must not keep the account either.
+     * @param action - action to call with each account.
+     */
+    public void forEach(Consumer<Account> action)
+    {
+        for(int i = 0; i < count; i++)
+        {
+            Account copy = copies.get(i);
+            if(copy == null)
+            {
+                Account account = accounts[i];
+                synchronized(accountDatabase.lockFor(account))
+                {
+                    copy = copies.get(i);
+                    if(copy == null && account.getSettledPeriod() < period && period == accountDatabase.getStatementPeriod())
+                    {
+                        accountDatabase.settle(account);
+                        copy = copies.get(i);
+                    }
+                    if(copy == null && account.getSettledPeriod() == period)
+                    {
+                        action.accept(account);
+                        continue;
+                    }
+                    if(copy == null)
+                    {
+                        copy = copyOf(account);
+                    }
+                }
+            }
+            action.accept(copy);
+        }
+    }
+
+    /**
+     * This function is called by the database, under the account's lock, before an account changes. The
+     * first time an account of the view changes, a copy of it is kept.
+     * @param account - account that is about to change.
+     */
+    void preserve(Account account)
+    {
+        int position = account.getPosition();
+        if(position >= 0 && position < count && accounts[position] == account && !copies.containsKey(position))
+        {
+            copies.put(position, copyOf(account));
+        }
+    }
+
+    /**
+     * This function is called by the database before accounts are moved in the array, such as when it is
+     * compacted. Every account not copied yet is copied, so the view no longer reads the array.
+     */
+    void preserveAll()
+    {
+        for(int i = 0; i < count; i++)
+        {
+            if(!copies.containsKey(i))
+            {
+                copies.put(i, copyOf(accounts[i]));
+            }
+        }
+    }
+
+    /**
+     * This function closes the view and drops its copies.
+     */
+    @Override
+    public void close()
+    {
+        accountDatabase.closeView(this);
+        copies.clear();
+    }
+
+    /**
+     * This function is a helper that copies the fields of an account and settles the copy to the period of
+     * the view. The holder is shared, since a profile does not change.
+     */
+    private Account copyOf(Account account)
+    {
+        Account copy = AccountType.of(account).newAccount(account instanceof CollegeChecking ? ((CollegeChecking) account).getCollege() : null);
+        copy.setHolder(account.getHolder());
+        copy.setBalanceCents(account.getBalanceCents());
+        copy.closed = account.isClosed();
+        if(account instanceof MoneyMarket)
+        {
+            ((MoneyMarket) copy).setWithdrawCounter(((MoneyMarket) account).getWithdrawCounter());
+        }
+        else if(account instanceof Savings)
+        {
+            ((Savings) copy).setLoyalty(((Savings) account).isLoyal());
+        }
+        copy.setSettledPeriod(account.getSettledPeriod());
+        copy.settle(period);
+        return copy;
+    }
+}
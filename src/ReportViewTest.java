@@ -0,0 +1,131 @@
+/**
+ * Test class to check that a ReportView shows the accounts as they were when it was opened, while accounts
+ * change, UB runs and accounts are opened, and that reports of ConcurrentAccountDatabase do not tear.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReportViewTest {
+
+    /**
+     * This is a helper that opens Checking accounts of holders First0 to First(n - 1), $100 each.
+     */
+    private static void openAccounts(AccountDatabase accountDatabase, int n) {
+        for(int i = 0; i < n; i++) {
+            accountDatabase.open(probe(i, 10000));
+        }
+    }
+
+    private static Checking probe(int holder, long cents) {
+        Checking checking = new Checking();
+        checking.setHolder("First" + holder, "Last", new Date("7/4/1976"));
+        checking.setBalanceCents(cents);
+        return checking;
+    }
+
+    /**
+     * This is a helper that renders the lines of a view, as printed by P.
+     */
+    private static List<String> lines(ReportView view) {
+        List<String> lines = new ArrayList<>();
+        view.forEach(account -> lines.add(account.toString()));
+        return lines;
+    }
+
+    /**
+     * This Test method checks that a view keeps showing the accounts as they were while they change, with
+     * eager and lazy UB, and that closing it drops the copies.
+     */
+    @Test
+    public void pointInTime_Test() {
+        for(boolean lazy : new boolean[] {false, true}) {
+            AccountDatabase accountDatabase = new AccountDatabase();
+            accountDatabase.setLazyAccrual(lazy);
+            openAccounts(accountDatabase, 10);
+            accountDatabase.updateBalance();
+            ReportView view = accountDatabase.openView();
+            List<String> before = lines(view);
+            assertEquals(10, view.size());
+
+            accountDatabase.deposit(probe(1, 5000));
+            accountDatabase.withdraw(probe(2, 5000));
+            accountDatabase.close(probe(3, 0));
+            accountDatabase.updateBalance();
+            openAccounts(accountDatabase, 12);
+            accountDatabase.open(probe(20, 100));
+            assertEquals(before, lines(view));
+            assertNotEquals(before, lines(accountDatabase.openView()));
+            assertTrue(view.getCopies() >= 3);
+
+            view.close();
+            assertEquals(0, view.getCopies());
+            accountDatabase.deposit(probe(4, 100));
+            assertEquals(0, view.getCopies());
+        }
+    }
+
+    /**
+     * This Test method checks that a view survives the array being compacted by closed-account tiering.
+     */
+    @Test
+    public void compacted_Test() {
+        AccountDatabase accountDatabase = new AccountDatabase();
+        accountDatabase.setColdAfterCycles(1);
+        openAccounts(accountDatabase, 6);
+        accountDatabase.close(probe(0, 0));
+        accountDatabase.close(probe(4, 0));
+        ReportView view = accountDatabase.openView();
+        List<String> before = lines(view);
+        accountDatabase.updateBalance();
+        assertEquals(2, accountDatabase.getColdAccounts());
+        assertEquals(before, lines(view));
+        view.close();
+    }
+
+    /**
+     * This Test method runs one thread that deposits $1 into each account in turn while reports read the
+     * database. At any one time the balances of the accounts can only step down once, by $1, from the
+     * first account to the last, so a report that mixes two points in time fails the check.
+     */
+    @Test
+    public void noTornReports_Test() throws InterruptedException {
+        ConcurrentAccountDatabase accountDatabase = new ConcurrentAccountDatabase();
+        int n = 2000;
+        openAccounts(accountDatabase, n);
+        Checking[] probes = new Checking[n];
+        for(int i = 0; i < n; i++) {
+            probes[i] = probe(i, 100);
+        }
+        Thread writer = new Thread(() -> {
+            for(int round = 0; round < 50; round++) {
+                for(Checking probe : probes) {
+                    accountDatabase.deposit(probe);
+                }
+            }
+        });
+        writer.start();
+        int reports = 0;
+        while(writer.isAlive() || reports == 0) {
+            List<Long> balances = new ArrayList<>();
+            accountDatabase.forEach(account -> balances.add(account.getBalanceCents()));
+            assertEquals(n, balances.size());
+            int steps = 0;
+            for(int i = 1; i < n; i++) {
+                long step = balances.get(i - 1) - balances.get(i);
+                assertTrue("torn report at " + i, step == 0 || step == 100);
+                steps += step == 0 ? 0 : 1;
+            }
+            assertTrue(steps <= 1);
+            assertTrue(balances.get(0) - balances.get(n - 1) <= 100);
+            reports++;
+        }
+        writer.join();
+        assertTrue(reports > 0);
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * ReportWriter class renders the P, PT, PI and UB reports. Lines are appended to one reusable buffer with
+ * Account.appendTo() and Money.appendTo(), so no DecimalFormat or per-line string is built, and the buffer
+ * is written to its PrintStream in blocks of about 64K characters instead of one println per account.
+ * The teller prints its messages through the same writer, so they stay in order with the reports.
+ * The text goes through a PrintStream, so it is encoded exactly as println would have encoded it.
+ * Callers must call flush() at the end of a report so it is not interleaved with other output.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.PrintStream;
+
+public class ReportWriter {
+    private static final int BlockSize = 1 << 16;
+    private static final String LineSeparator = System.lineSeparator();
+
+    private final StringBuilder buffer;
+    private final PrintStream out;
+
+    /**
+     * Constructor of this class. Creates an empty buffer that is written to System.out, as it is when the
+     * buffer is flushed.
+     */
+    public ReportWriter()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor of this class. Creates an empty buffer.
+     * @param out - stream the buffer is written to, or null for System.out.
+     */
+    public ReportWriter(PrintStream out)
+    {
+        this.buffer = new StringBuilder(BlockSize);
+        this.out = out;
+    }
+
+    /**
+     * This function adds a line of text, as println would print it.
+     * @param line - line to add, without the line separator.
+     */
+    public void println(Object line)
+    {
+        buffer.append(line).append(LineSeparator);
+        flushIfFull();
+    }
+
+    /**
+     * This function adds the line of an account, as printed by P and PT.
+     * @param account - account to render.
+     */
+    public void account(Account account)
+    {
+        account.appendTo(buffer).append(LineSeparator);
+        flushIfFull();
+    }
+
+    /**
+     * This function adds the fee and monthly interest line of an account, as printed by PI.
+     * @param account - account to render.
+     */
+    public void feeAndInterest(Account account)
+    {
+        appendFeeAndInterest(buffer, account).append(LineSeparator);
+        flushIfFull();
+    }
+
+    /**
+     * This function adds lines that were rendered elsewhere, such as by parallel tasks.
+     * @param lines - complete lines, each ending with the line separator.
+     */
+    public void append(CharSequence lines)
+    {
+        buffer.append(lines);
+        flushIfFull();
+    }
+
+    /**
+     * This function appends the fee and monthly interest line of an account, without the line separator.
+     * @param builder - builder to append to.
+     * @param account - account to render.
+     * @return the builder.
+     */
+    public static StringBuilder appendFeeAndInterest(StringBuilder builder, Account account)
+    {
+        Money.appendTo(account.appendTo(builder).append("::fee "), account.feeCents());
+        return Money.appendTo(builder.append("::monthly interest "), account.monthlyInterestCents());
+    }
+
+    /**
+     * This function writes the buffer once it holds a full block.
+     */
+    private void flushIfFull()
+    {
+        if(buffer.length() >= BlockSize)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * This function writes everything in the buffer to the stream and empties the buffer, keeping its capacity.
+     */
+    public void flush()
+    {
+        if(buffer.length() > 0)
+        {
+            (out != null ? out : System.out).print(buffer);
+            buffer.setLength(0);
+        }
+    }
+}
@@ -1,10 +1,174 @@
 /**
  * RunProject2 class contains the main function of the program.
  * It calls the run method from BankTeller class to run the program.
+ * Options: -parallel [threshold] runs UB and PI in parallel month-end mode on the common ForkJoinPool,
+ * -lazy selects lazy interest accrual, and -journal file [per-command|per-batch|time-bounded] replays the
+ * journal file into the database on startup and then records every change to it. -snapshot file loads the
+ * snapshot file on startup, before the journal, and writes a new snapshot on exit; the snapshot remembers how
+ * many journal records it holds so they are not applied twice. -import file opens the accounts of a CSV file
+ * with AccountImporter before the teller starts. -tier cycles moves accounts that have been closed for that
+ * many UBs to the cold store. -shard port serves the database to a router on a loopback port instead of
+ * running the teller, and -shards port,port,... runs the teller as a router over shards already listening on
+ * those loopback ports; the journal, snapshot and import options then apply to the router, while -parallel,
+ * -lazy and -tier are given to each shard and rejected with -shards. -replicate port
+ * ships every change, starting with those loaded from the snapshot and journal, to followers connecting to
+ * that loopback port, and -follow port runs the teller on a read-only follower of the primary replicating on
+ * that port, which PR promotes; the follower gets its accounts from the primary, so -snapshot, -journal and
+ * -import are rejected with it. Both can be given to chain a follower to another. -batch file runs the
+ * commands of the file through BatchPipeline instead of reading the console, with the same output, and prints
+ * the commands per second to the error stream; if the file cannot be read or the output cannot be written, it
+ * exits with status 1.
  * @author Sumanth Rajkumar, Shantanu Jain
  */
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 public class RunProject2 {
-    public static void main(String[] args) {
-        new BankTeller().run();
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int parallelThreshold = -1;
+        boolean lazyAccrual = false;
+        int coldAfterCycles = -1;
+        Path journalFile = null;
+        Journal.Durability durability = Journal.Durability.PER_BATCH;
+        Path snapshotFile = null;
+        Path importFile = null;
+        Path batchFile = null;
+        int shardPort = -1;
+        List<InetSocketAddress> shards = new ArrayList<>();
+        int replicationPort = -1;
+        int followPort = -1;
+        for(int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-parallel" -> {
+                    parallelThreshold = AccountDatabase.DefaultParallelThreshold;
+                    if(i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        parallelThreshold = Integer.parseInt(args[++i]);
+                    }
+                }
+                case "-lazy" -> lazyAccrual = true;
+                case "-journal" -> {
+                    journalFile = Path.of(args[++i]);
+                    if(i + 1 < args.length && !args[i + 1].startsWith("-")) {
+                        durability = Journal.Durability.fromName(args[++i]);
+                    }
+                }
+                case "-snapshot" -> snapshotFile = Path.of(args[++i]);
+                case "-import" -> importFile = Path.of(args[++i]);
+                case "-batch" -> batchFile = Path.of(args[++i]);
+                case "-tier" -> coldAfterCycles = Integer.parseInt(args[++i]);
+                case "-shard" -> shardPort = Integer.parseInt(args[++i]);
+                case "-shards" -> {
+                    for(String port : args[++i].split(",")) {
+                        shards.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port)));
+                    }
+                }
+                case "-replicate" -> replicationPort = Integer.parseInt(args[++i]);
+                case "-follow" -> followPort = Integer.parseInt(args[++i]);
+                default -> System.out.println("Unknown option " + args[i]);
+            }
+        }
+
+        if(followPort >= 0 && (snapshotFile != null || journalFile != null || importFile != null)) {
+            System.out.println("-snapshot, -journal and -import cannot be used with -follow: the follower is read-only.");
+            System.exit(1);
+        }
+        if(!shards.isEmpty() && (parallelThreshold >= 0 || lazyAccrual || coldAfterCycles >= 0)) {
+            System.out.println("-parallel, -lazy and -tier are configured on each shard, not with -shards.");
+            System.exit(1);
+        }
+        AbstractAccountDatabase accountDatabase;
+        ReplicaAccountDatabase replica = null;
+        if(followPort >= 0) {
+            replica = new ReplicaAccountDatabase();
+            accountDatabase = replica;
+        } else if(!shards.isEmpty()) {
+            accountDatabase = new ShardedAccountDatabase(shards);
+        } else {
+            accountDatabase = new AccountDatabase();
+        }
+        if(accountDatabase instanceof AccountDatabase objectStore) {
+            if(parallelThreshold >= 0) {
+                objectStore.setParallelMonthEnd(ForkJoinPool.commonPool(), parallelThreshold);
+            }
+            if(lazyAccrual) {
+                objectStore.setLazyAccrual(true);
+            }
+            if(coldAfterCycles >= 0) {
+                objectStore.setColdAfterCycles(coldAfterCycles);
+            }
+        }
+        if(replicationPort >= 0) {
+            ReplicationLog replicationLog = new ReplicationLog(replicationPort);
+            accountDatabase.addListener(replicationLog);
+            System.out.println("Replicating on port " + replicationLog.getPort() + ".");
+        }
+        if(replica != null) {
+            replica.follow(new InetSocketAddress(InetAddress.getLoopbackAddress(), followPort));
+        }
+        long snapshotRecords = 0;
+        if(snapshotFile != null && Files.exists(snapshotFile)) {
+            snapshotRecords = Snapshot.load(snapshotFile, accountDatabase);
+        }
+        Journal journal = null;
+        long replayedRecords = 0;
+        if(journalFile != null) {
+            replayedRecords = Journal.replay(journalFile, accountDatabase, snapshotRecords);
+            journal = new Journal(journalFile, durability);
+            accountDatabase.addListener(journal);
+        }
+        if(journal != null || snapshotFile != null) {
+            Journal shutdownJournal = journal;
+            Path shutdownSnapshot = snapshotFile;
+            AbstractAccountDatabase shutdownDatabase = accountDatabase;
+            long journalRecords = replayedRecords;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    long records = journalRecords;
+                    if(shutdownJournal != null) {
+                        shutdownJournal.close();
+                        records += shutdownJournal.getRecordCount();
+                    }
+                    if(shutdownSnapshot != null) {
+                        Snapshot.write(shutdownSnapshot, shutdownDatabase, records);
+                    }
+                } catch (IOException e) {
+                    System.err.println("Shutdown failed: " + e.getMessage());
+                }
+            }));
+        }
+        if(importFile != null) {
+            AccountImporter.Result result = new AccountImporter(accountDatabase).importFile(importFile);
+            result.getErrors().forEach(System.out::println);
+            System.out.println(result);
+        }
+        if(shardPort >= 0) {
+            try(ShardServer server = new ShardServer(accountDatabase, shardPort)) {
+                System.out.println("Shard listening on port " + server.getPort() + ".");
+                server.serve();
+            }
+            return;
+        }
+        if(batchFile != null) {
+            BatchPipeline.Result result;
+            try {
+                result = new BatchPipeline(new BankTeller(accountDatabase)).runFile(batchFile);
+            } catch (IOException e) {
+                System.err.println("Batch failed: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            System.err.println(result);
+            if(result.isTerminated()) {
+                System.exit(0);
+            }
+            return;
+        }
+        new BankTeller(accountDatabase).run();
     }
 }
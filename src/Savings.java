@@ -4,12 +4,11 @@
  * @author Sumanth Rajkumar, Shantanu Jain
  */
 public class Savings extends Account{
-    private static final double annualInterest = 0.3;
+    private static final int annualInterestBasisPoints = 30;
     private static final String accountType = "Savings";
-    private static final int expectedBalance = 300;
+    static final int expectedBalance = 300;
     private static final int monthlyFee = 6;
-    private static final double loyaltyBonus = 0.15;
-    private static final int interestPercentDividedByTotalMonths = 1200;
+    static final int loyaltyBonusBasisPoints = 15;
     private boolean loyalty;
 
     public static final String LOYAL = "1";
@@ -32,49 +31,76 @@ public class Savings extends Account{
     }
 
     /**
-     * This function is used to get the annualInterest rate without loyalty bonus of a Savings account.
+     * @return the lookup class of this account type, matching the equals() override above.
      */
-    protected double getBaseAnnualInterestRate(){
-        return annualInterest;
+    @Override
+    protected Class<? extends Account> getLookupClass()
+    {
+        return Savings.class;
+    }
+
+    /**
+     * This function is used to get the annualInterest rate without loyalty bonus of a Savings account
+     * in basis points.
+     */
+    protected int getBaseAnnualInterestBasisPoints(){
+        return annualInterestBasisPoints;
     }
 
     /**
-     * This function is used to get the annualInterest rate after loyalty rate is added.
+     * This function is used to get the loyalty bonus rate in basis points.
      */
-    protected double getLoyaltyBonusRate(){
-        return loyaltyBonus;
+    protected int getLoyaltyBonusBasisPoints(){
+        return loyaltyBonusBasisPoints;
     }
 
     /**
-     * This function is used to get the annualInterest rate of a Savings account depending
+     * This function is used to get the annualInterest rate of a Savings account in basis points depending
      * on whether the holder has been loyal or not.
      */
-    protected double getAnnualInterestRate(){
+    @Override
+    protected int getAnnualInterestBasisPoints(){
         if(this.isLoyal()){
-            return getBaseAnnualInterestRate() + getLoyaltyBonusRate();
+            return getBaseAnnualInterestBasisPoints() + getLoyaltyBonusBasisPoints();
         }
-        return getBaseAnnualInterestRate();
+        return getBaseAnnualInterestBasisPoints();
     }
 
     /**
-     * This function returns a monthly interest, which in this case would be balance*annualInterest/1200.
-     * @return The monthly interest that an account holder gets on his account.
+     * This function is used to get the annualInterest rate of a Savings account in percent.
      */
-    @Override
-    public double monthlyInterest() {
-        return getBalance()*getAnnualInterestRate()/interestPercentDividedByTotalMonths;
+    protected double getAnnualInterestRate(){
+        return getAnnualInterestBasisPoints() / 100.0;
     }
 
     /**
      * This function returns a monthly fee that an account holder needs to pay on a monthly basis.
-     * @return - a double that has a monthly fee that an account holder needs to pay on a monthly basis
-     * depending on the account type.
+     * @return - a long that has the monthly fee in cents that an account holder needs to pay on a
+     * monthly basis depending on the account type.
      */
     @Override
-    public double fee() {
-        if(balance>expectedBalance)
+    public long feeCents() {
+        return feeCentsFor(balance);
+    }
+
+    /**
+     * This function returns the monthly fee of a Savings account with the given balance.
+     * @param balance - balance in cents.
+     * @return the monthly fee in cents.
+     */
+    public static long feeCentsFor(long balance) {
+        if(balance > (long) expectedBalance * Money.CentsPerDollar)
             return 0;
-        else return monthlyFee;
+        else return (long) monthlyFee * Money.CentsPerDollar;
+    }
+
+    /**
+     * This function returns the annual interest rate of a Savings account in basis points.
+     * @param loyal - whether the holder is loyal.
+     * @return the annual interest rate in basis points.
+     */
+    public static int annualInterestBasisPointsFor(boolean loyal) {
+        return loyal ? annualInterestBasisPoints + loyaltyBonusBasisPoints : annualInterestBasisPoints;
     }
 
     /**
@@ -86,23 +112,23 @@ public class Savings extends Account{
     }
 
     /**
-     * This methods returns a String that describes the account type and weather the account holder
-     * is loyal or not.
-     * @return a String that describes the account type and weather the account holder
+     * This methods appends a String that describes the account type and weather the account holder
      * is loyal or not.
+     * @param builder - builder to append to.
+     * @return the builder.
      */
     @Override
-    public String toString()
+    public StringBuilder appendTo(StringBuilder builder)
     {
+        super.appendTo(builder.append(getType()).append("::"));
         if(this.isClosed())
         {
-            return getType() + "::" + super.toString() + "::CLOSED";
+            builder.append("::CLOSED");
         }
         else if(this.isLoyal()) {
-            return getType() + "::" + super.toString() + "::Loyal";
+            builder.append("::Loyal");
         }
-
-        return getType() + "::" + super.toString();
+        return builder;
     }
 
     /**
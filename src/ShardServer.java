@@ -0,0 +1,396 @@
+/**
+ * ShardServer class serves one AccountDatabase to a ShardedAccountDatabase router over a loopback socket,
+ * so a book can be split across several local processes. It serves one router connection at a time and
+ * runs each request to completion before reading the next, so the database needs no locking.
+ * Every message is a frame: its length followed by its body. A request body is an operation code and its
+ * arguments; accounts are written with AccountCodec. A list of accounts is sent as frames of up to 1 MB,
+ * each holding a count and that many records, and ends with an empty frame. Each record is the account and
+ * the sequence number the router gave it when it was opened, which the router uses to merge the lists of
+ * all shards in the order accounts were opened. The sequence numbers are kept in memory only, so accounts
+ * loaded from a journal or snapshot get number 0 and are listed first.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+
+public class ShardServer implements Closeable {
+    static final byte HELLO = 1;
+    static final byte FIND = 2;
+    static final byte OPEN = 3;
+    static final byte REOPEN = 4;
+    static final byte CLOSE = 5;
+    static final byte DEPOSIT = 6;
+    static final byte WITHDRAW = 7;
+    static final byte COUNT = 8;
+    static final byte LIST = 9;
+    static final byte UPDATE_BALANCE = 10;
+    static final byte SUMMARY = 11;
+    static final byte HOLDER = 12;
+    static final byte BALANCE_QUERY = 13;
+    static final byte COUNT_BY_BALANCE = 14;
+    static final byte EXPORT = 15;
+    static final byte IMPORT = 16;
+    static final byte SHUTDOWN = 17;
+    static final byte NAME_SEARCH = 18;
+    static final byte TRANSFER = 19;
+    static final byte REMOVE = 20;
+
+    static final byte RANGE = 1;
+    static final byte TOP = 2;
+    static final byte NEAR_FEE_THRESHOLD = 3;
+    static final byte AT_WITHDRAWAL_LIMIT = 4;
+
+    static final int MaxFrameSize = 1 << 20;
+    static final int MaxRecordSize = 1 << 17;
+    private static final int Backlog = 4;
+    private static final long NoSequence = 0;
+
+    private final AbstractAccountDatabase accountDatabase;
+    private final ServerSocket serverSocket;
+    private final HashMap<HolderKey, Long> sequences;
+    private final ByteBuffer request;
+    private final ByteBuffer reply;
+    private long lastSequence;
+    private volatile boolean running;
+
+    /**
+     * Constructor of this class. Binds the server to a port of the loopback address.
+     * @param accountDatabase - database to serve.
+     * @param port - port to listen on, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public ShardServer(AbstractAccountDatabase accountDatabase, int port) throws IOException
+    {
+        this.accountDatabase = accountDatabase;
+        this.serverSocket = new ServerSocket(port, Backlog, InetAddress.getLoopbackAddress());
+        this.sequences = new HashMap<>();
+        this.request = ByteBuffer.allocate(MaxFrameSize);
+        this.reply = ByteBuffer.allocate(MaxFrameSize);
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * This function serves routers one at a time until a router sends SHUTDOWN or close() is called.
+     * @throws IOException if the server socket fails.
+     */
+    public void serve() throws IOException
+    {
+        running = true;
+        while(running)
+        {
+            Socket socket;
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch(SocketException e)
+            {
+                if(serverSocket.isClosed())
+                {
+                    return;
+                }
+                throw e;
+            }
+            try(socket)
+            {
+                socket.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                while(running && readFrame(in, request))
+                {
+                    handle(request, out);
+                    out.flush();
+                }
+            }
+            catch(IOException | UncheckedIOException e)
+            {
+                System.err.println("Shard connection failed: " + e.getMessage());
+            }
+        }
+        serverSocket.close();
+    }
+
+    /**
+     * This function stops the server and closes its socket.
+     * @throws IOException if the socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        running = false;
+        serverSocket.close();
+    }
+
+    /**
+     * This function runs one request and writes its reply.
+     * @param body - request body, positioned at the operation code.
+     * @param out - stream to the router.
+     */
+    private void handle(ByteBuffer body, DataOutputStream out) throws IOException
+    {
+        AbstractAccountDatabase accountDatabase = this.accountDatabase;
+        ByteBuffer reply = this.reply;
+        reply.clear();
+        byte op = body.get();
+        switch (op)
+        {
+            case HELLO -> reply.putLong(lastSequence);
+            case FIND -> {
+                Account existing = accountDatabase.getAccountIfExists(AccountCodec.read(body));
+                reply.put((byte) (existing == null ? 0 : 1));
+                if(existing != null)
+                {
+                    AccountCodec.write(reply, existing);
+                }
+            }
+            case OPEN -> {
+                long sequence = body.getLong();
+                Account account = AccountCodec.read(body);
+                accountDatabase.open(account);
+                remember(account, sequence);
+                reply.put((byte) 1);
+            }
+            case REOPEN -> reply.put((byte) (accountDatabase.reOpen(AccountCodec.read(body)) ? 1 : 0));
+            case CLOSE -> reply.put((byte) (accountDatabase.close(AccountCodec.read(body)) ? 1 : 0));
+            case DEPOSIT -> {
+                accountDatabase.deposit(AccountCodec.read(body));
+                reply.put((byte) 1);
+            }
+            case WITHDRAW -> reply.put((byte) (accountDatabase.withdraw(AccountCodec.read(body)) ? 1 : 0));
+            case TRANSFER -> reply.put((byte) (accountDatabase.transfer(AccountCodec.read(body), AccountCodec.read(body)) ? 1 : 0));
+            case COUNT -> reply.putInt(accountDatabase.getNumAcct());
+            case UPDATE_BALANCE -> {
+                accountDatabase.updateBalance();
+                reply.put((byte) 1);
+            }
+            case SUMMARY -> accountDatabase.getSummary().writeTo(reply);
+            case COUNT_BY_BALANCE -> reply.putInt(accountDatabase.countByBalance(AccountType.fromCode(body.get()),
+                    body.getLong(), body.getLong()));
+            case IMPORT -> {
+                int count = body.getInt();
+                for(int i = 0; i < count; i++)
+                {
+                    long sequence = body.getLong();
+                    Account account = AccountCodec.read(body);
+                    accountDatabase.open(account);
+                    remember(account, sequence);
+                }
+                reply.put((byte) 1);
+            }
+            case SHUTDOWN -> {
+                running = false;
+                reply.put((byte) 1);
+            }
+            case LIST -> {
+                ListWriter list = new ListWriter(out);
+                accountDatabase.forEach(list::add);
+                list.finish();
+                return;
+            }
+            case HOLDER -> {
+                writeList(out, accountDatabase.getAccountsOf(Profile.readFrom(body)));
+                return;
+            }
+            case NAME_SEARCH -> {
+                boolean fuzzy = body.get() == 1;
+                String lastName = AccountCodec.getString(body);
+                String firstName = body.get() == 1 ? AccountCodec.getString(body) : null;
+                int holders = body.getInt();
+                writeList(out, fuzzy ? accountDatabase.searchByNameFuzzy(lastName, 0, holders)
+                        : accountDatabase.searchByName(lastName, firstName, 0, holders));
+                return;
+            }
+            case BALANCE_QUERY -> {
+                writeList(out, balanceQuery(body));
+                return;
+            }
+            case EXPORT -> {
+                HashRing ring = new HashRing(body.getInt());
+                int target = body.getInt();
+                int limit = body.getInt();
+                List<Account> exported = accountDatabase.removeAccounts(
+                        account -> ring.shardOf(account.getHolderKey().holderHash()) == target, limit);
+                writeList(out, exported);
+                for(Account account : exported)
+                {
+                    sequences.remove(account.getHolderKey());
+                }
+                return;
+            }
+            case REMOVE -> {
+                HolderKey key = AccountCodec.read(body).getHolderKey();
+                List<Account> removed = accountDatabase.removeAccounts(account -> account.getHolderKey().equals(key), 1);
+                writeList(out, removed);
+                for(Account account : removed)
+                {
+                    sequences.remove(account.getHolderKey());
+                }
+                return;
+            }
+            default -> throw new IOException("Unknown shard request " + op);
+        }
+        reply.flip();
+        writeFrame(out, reply);
+    }
+
+    /**
+     * This function runs a balance query and the fee watchlist queries of the database.
+     * @param body - request body, positioned after the operation code.
+     * @return the accounts found, in the order of the query.
+     */
+    private List<Account> balanceQuery(ByteBuffer body) throws IOException
+    {
+        byte kind = body.get();
+        AccountType type = AccountType.fromCode(body.get());
+        long first = body.getLong();
+        long second = body.getLong();
+        switch (kind)
+        {
+            case RANGE:
+                return accountDatabase.findByBalance(type, first, second);
+            case TOP:
+                return accountDatabase.topByBalance(type, (int) first);
+            case NEAR_FEE_THRESHOLD:
+                return accountDatabase.findNearFeeThreshold(type, first);
+            case AT_WITHDRAWAL_LIMIT:
+                return accountDatabase.findAtWithdrawalLimit();
+            default:
+                throw new IOException("Unknown balance query " + kind);
+        }
+    }
+
+    /**
+     * This function is a helper that records the sequence number of an account opened by the router.
+     */
+    private void remember(Account account, long sequence)
+    {
+        sequences.put(account.getHolderKey(), sequence);
+        lastSequence = Math.max(lastSequence, sequence);
+    }
+
+    /**
+     * This function is a helper that sends a list of accounts with their sequence numbers.
+     */
+    private void writeList(DataOutputStream out, List<Account> accounts) throws IOException
+    {
+        ListWriter list = new ListWriter(out);
+        for(Account account : accounts)
+        {
+            list.add(account);
+        }
+        list.finish();
+    }
+
+    /**
+     * This function writes one frame.
+     * @param out - stream to write to.
+     * @param body - frame body, between its position and limit.
+     * @throws IOException if the stream fails.
+     */
+    static void writeFrame(DataOutputStream out, ByteBuffer body) throws IOException
+    {
+        out.writeInt(body.remaining());
+        out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+    }
+
+    /**
+     * This function reads one frame into a buffer.
+     * @param in - stream to read from.
+     * @param body - buffer that receives the frame body, flipped for reading.
+     * @return false if the stream ended before the frame, true otherwise.
+     * @throws IOException if the stream fails, ends inside a frame or the frame is too long.
+     */
+    static boolean readFrame(DataInputStream in, ByteBuffer body) throws IOException
+    {
+        int length;
+        try
+        {
+            length = in.readInt();
+        }
+        catch(EOFException e)
+        {
+            return false;
+        }
+        if(length < 0 || length > body.capacity())
+        {
+            throw new IOException("Frame of " + length + " bytes is too long");
+        }
+        body.clear();
+        in.readFully(body.array(), 0, length);
+        body.limit(length);
+        return true;
+    }
+
+    /**
+     * ListWriter sends accounts and their sequence numbers in frames, starting a new frame when the current
+     * one cannot hold another record.
+     */
+    private class ListWriter {
+        private final DataOutputStream out;
+        private int count;
+
+        ListWriter(DataOutputStream out)
+        {
+            this.out = out;
+            reply.clear();
+            reply.putInt(0);
+        }
+
+        void add(Account account)
+        {
+            if(reply.remaining() < MaxRecordSize)
+            {
+                sendFrame();
+            }
+            reply.putLong(sequences.getOrDefault(account.getHolderKey(), NoSequence));
+            AccountCodec.write(reply, account);
+            count++;
+        }
+
+        void finish() throws IOException
+        {
+            if(count > 0)
+            {
+                sendFrame();
+            }
+            reply.flip();
+            writeFrame(out, reply);
+        }
+
+        private void sendFrame()
+        {
+            reply.putInt(0, count).flip();
+            try
+            {
+                writeFrame(out, reply);
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            reply.clear();
+            reply.putInt(0);
+            count = 0;
+        }
+    }
+}
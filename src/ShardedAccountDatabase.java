@@ -0,0 +1,776 @@
+/**
+ * ShardedAccountDatabase class is the router of a book split across several ShardServer processes on the
+ * same machine. It keeps no accounts: a consistent hash ring on the holder picks the shard of each account,
+ * so all the accounts of a holder are on one shard, and each command is sent to that shard over a loopback
+ * socket. P, PT, PI, UB and the other book-wide commands are sent to every shard and the lists are merged
+ * by the sequence number the router gives each account when it is opened, so they come out in the same
+ * order as from one AccountDatabase: open order for P, PI and UB, account type then open order for PT, and
+ * balance then open order for the balance queries.
+ * addShard() connects a new shard and moves the holders it now owns from the other shards in batches, one
+ * batch after each command that changes an account, so the book stays available while it rebalances.
+ * Until a shard has given up all of its holders, an account of a holder that moves is looked up on the new
+ * shard first and then on the old one. A batch is taken out of the old shard before it is put into the new
+ * one, so a router that dies in between loses the batch.
+ * A transfer is sent to the shard of both accounts, which always holds both for the accounts of one holder;
+ * while holders move, rebalancing is finished first if the two accounts are on different shards.
+ * The listeners of the router are told about opens, deposits and UBs before they are sent, like those of the
+ * other stores, but about the changes that can fail only after the shard made them, since only the shard
+ * can check them; a journal that must be written ahead of every change is registered on each shard.
+ * The router is not thread-safe. It has none of the modes of AccountDatabase: lazy accrual, parallel month-end,
+ * closed-account tiering and journals are configured on each shard.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class ShardedAccountDatabase extends AbstractAccountDatabase implements Closeable {
+    public static final int DefaultRebalanceBatch = 1024;
+
+    private static final Comparator<Listed> OpenOrder = Comparator.comparingLong(listed -> listed.sequence);
+    private static final Comparator<Listed> TypeOrder =
+            Comparator.<Listed, String>comparing(listed -> listed.account.getType()).thenComparing(OpenOrder);
+    private static final Comparator<Listed> BalanceOrder =
+            Comparator.<Listed>comparingLong(listed -> listed.account.getBalanceCents()).thenComparing(OpenOrder);
+
+    private final List<Shard> shards;
+    private final BitSet draining;
+    private HashRing ring;
+    private HashRing previousRing;
+    private int rebalanceBatch;
+    private long lastSequence;
+
+    /**
+     * Constructor of this class. Connects to the shards, which must already be running.
+     * @param addresses - addresses of the shards, in shard number order.
+     * @throws IOException if a shard cannot be reached.
+     */
+    public ShardedAccountDatabase(List<InetSocketAddress> addresses) throws IOException
+    {
+        if(addresses.isEmpty())
+        {
+            throw new IllegalArgumentException("A sharded database needs at least one shard.");
+        }
+        this.shards = new ArrayList<>();
+        this.draining = new BitSet();
+        this.rebalanceBatch = DefaultRebalanceBatch;
+        for(InetSocketAddress address : addresses)
+        {
+            connect(address);
+        }
+        this.ring = new HashRing(shards.size());
+    }
+
+    /**
+     * This function connects a new shard and starts moving to it the holders it owns on the new ring.
+     * A rebalance that is still running is finished first.
+     * @param address - address of the new shard, which should be empty.
+     * @throws IOException if the shard cannot be reached.
+     */
+    public void addShard(InetSocketAddress address) throws IOException
+    {
+        finishRebalancing();
+        connect(address);
+        previousRing = ring;
+        ring = new HashRing(shards.size());
+        draining.set(0, shards.size() - 1);
+    }
+
+    /**
+     * This function is a helper that opens the connection to a shard and catches up with its sequence numbers.
+     */
+    private void connect(InetSocketAddress address) throws IOException
+    {
+        Shard shard = new Shard(address);
+        shards.add(shard);
+        lastSequence = Math.max(lastSequence, shard.send(shard.start(ShardServer.HELLO)).getLong());
+    }
+
+    /**
+     * @return the number of shards.
+     */
+    public int getShardCount()
+    {
+        return shards.size();
+    }
+
+    /**
+     * @param shard - shard number.
+     * @return the number of accounts on the shard.
+     */
+    public int getNumAcct(int shard)
+    {
+        Shard target = shards.get(shard);
+        return target.send(target.start(ShardServer.COUNT)).getInt();
+    }
+
+    /**
+     * @param batch - number of accounts moved from one shard at a time while rebalancing.
+     */
+    public void setRebalanceBatch(int batch)
+    {
+        this.rebalanceBatch = Math.max(batch, 1);
+    }
+
+    /**
+     * @return true while accounts are still moving to the last shard added.
+     */
+    public boolean isRebalancing()
+    {
+        return previousRing != null;
+    }
+
+    /**
+     * This function moves one batch of accounts from the first shard that still has holders of the new shard.
+     * @return true if accounts are still moving afterwards.
+     */
+    public boolean rebalanceStep()
+    {
+        if(previousRing == null)
+        {
+            return false;
+        }
+        int source = draining.nextSetBit(0);
+        Shard from = shards.get(source);
+        Shard to = shards.get(shards.size() - 1);
+        ByteBuffer request = from.start(ShardServer.EXPORT);
+        request.putInt(ring.size()).putInt(shards.size() - 1).putInt(rebalanceBatch);
+        List<Listed> moved = from.sendForList(request);
+        to.importAccounts(moved);
+        if(moved.size() < rebalanceBatch)
+        {
+            draining.clear(source);
+            if(draining.isEmpty())
+            {
+                previousRing = null;
+            }
+        }
+        return previousRing != null;
+    }
+
+    /**
+     * This function moves every account that is still waiting to move.
+     */
+    public void finishRebalancing()
+    {
+        while(rebalanceStep())
+        {
+        }
+    }
+
+    /**
+     * This function tells every shard process to stop and closes the connections.
+     */
+    public void shutdownShards()
+    {
+        for(Shard shard : shards)
+        {
+            shard.send(shard.start(ShardServer.SHUTDOWN));
+        }
+        close();
+    }
+
+    /**
+     * This function closes the connections to the shards, which keep running.
+     */
+    @Override
+    public void close()
+    {
+        for(Shard shard : shards)
+        {
+            shard.disconnect();
+        }
+    }
+
+    /**
+     * @return number of accounts on all shards.
+     */
+    @Override
+    public int getNumAcct()
+    {
+        int total = 0;
+        for(int i = 0; i < shards.size(); i++)
+        {
+            total += getNumAcct(i);
+        }
+        return total;
+    }
+
+    /**
+     * This function finds an account on the shard that holds it.
+     * @param account - account holding the profile and type to look for.
+     * @return a copy of the account if found, null if not found.
+     */
+    @Override
+    public Account getAccountIfExists(Account account)
+    {
+        int holderHash = account.getHolderKey().holderHash();
+        Account existing = find(shards.get(ring.shardOf(holderHash)), account);
+        if(existing == null && isMoving(holderHash))
+        {
+            existing = find(shards.get(previousRing.shardOf(holderHash)), account);
+        }
+        return existing;
+    }
+
+    /**
+     * This function does nothing: each shard grows its own store as accounts are opened on it.
+     * @param minCapacity - number of accounts the database must be able to hold.
+     */
+    @Override
+    public void ensureCapacity(int minCapacity)
+    {
+    }
+
+    /**
+     * This function opens an account on the shard that owns its holder.
+     * @param account - The account object that needs to be added.
+     * @return true.
+     */
+    @Override
+    public boolean open(Account account)
+    {
+        fireOpened(account);
+        Shard shard = shards.get(ring.shardOf(account.getHolderKey().holderHash()));
+        ByteBuffer request = shard.start(ShardServer.OPEN).putLong(++lastSequence);
+        AccountCodec.write(request, account);
+        shard.send(request);
+        rebalanceStep();
+        return true;
+    }
+
+    @Override
+    public boolean reOpen(Account account)
+    {
+        boolean done = sendAccount(ShardServer.REOPEN, account);
+        if(done)
+        {
+            fireReopened(account);
+        }
+        return done;
+    }
+
+    @Override
+    public boolean close(Account account)
+    {
+        boolean done = sendAccount(ShardServer.CLOSE, account);
+        if(done)
+        {
+            fireClosed(account);
+        }
+        return done;
+    }
+
+    @Override
+    public void deposit(Account account)
+    {
+        fireDeposited(account);
+        sendAccount(ShardServer.DEPOSIT, account);
+    }
+
+    @Override
+    public boolean withdraw(Account account)
+    {
+        boolean done = sendAccount(ShardServer.WITHDRAW, account);
+        if(done)
+        {
+            fireWithdrew(account);
+        }
+        return done;
+    }
+
+    /**
+     * This function moves an amount between two accounts on the shard that holds both of them.
+     * @param from - account object that holds the profile of the source and the amount to move.
+     * @param to - account object that holds the profile of the target.
+     * @return true if the shard moved the amount, false if either account does not exist or is closed, both
+     *         are the same account or the source has insufficient funds.
+     * @throws UnsupportedOperationException if the accounts are on two shards, which cannot be changed as one step.
+     */
+    @Override
+    public boolean transfer(Account from, Account to)
+    {
+        Shard shard = shardOf(from);
+        if(shard != shardOf(to) && isRebalancing())
+        {
+            finishRebalancing();
+            shard = shardOf(from);
+        }
+        if(shard != shardOf(to))
+        {
+            throw new UnsupportedOperationException("A transfer between accounts on two shards is not supported.");
+        }
+        ByteBuffer request = shard.start(ShardServer.TRANSFER);
+        AccountCodec.write(request, from);
+        AccountCodec.write(request, to);
+        boolean done = shard.send(request).get() == 1;
+        if(done)
+        {
+            fireTransferred(from, to);
+        }
+        rebalanceStep();
+        return done;
+    }
+
+    /**
+     * This function takes accounts out of the shards that hold them. The accounts of every shard are listed
+     * in the order they were opened, and each one that matches the filter is taken out of its shard.
+     * @param filter - filter that selects the accounts to take.
+     * @param limit - largest number of accounts to take.
+     * @return the accounts taken, which are no longer on any shard.
+     */
+    @Override
+    protected List<Account> removeAccounts(Predicate<Account> filter, int limit)
+    {
+        List<Account> removed = new ArrayList<>();
+        for(Listed listed : listAll(OpenOrder))
+        {
+            if(removed.size() >= limit)
+            {
+                break;
+            }
+            if(filter.test(listed.account))
+            {
+                Shard shard = shardOf(listed.account);
+                ByteBuffer request = shard.start(ShardServer.REMOVE);
+                AccountCodec.write(request, listed.account);
+                for(Listed taken : shard.sendForList(request))
+                {
+                    removed.add(taken.account);
+                    fireRemoved(taken.account);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * This function prints the accounts of every shard in the order they were opened.
+     */
+    @Override
+    public void print(ReportWriter report)
+    {
+        for(Listed listed : listAll(OpenOrder))
+        {
+            report.account(listed.account);
+        }
+        report.flush();
+    }
+
+    /**
+     * This function prints the accounts of every shard by account type, then in the order they were opened.
+     */
+    @Override
+    public void printByAccountType(ReportWriter report)
+    {
+        for(Listed listed : listAll(TypeOrder))
+        {
+            report.account(listed.account);
+        }
+        report.flush();
+    }
+
+    /**
+     * This function prints the fees and interests of the accounts of every shard in the order they were opened.
+     */
+    @Override
+    public void printFeeAndInterest(ReportWriter report)
+    {
+        for(Listed listed : listAll(OpenOrder))
+        {
+            report.feeAndInterest(listed.account);
+        }
+        report.flush();
+    }
+
+    /**
+     * This function runs UB on every shard. Each shard fires its own listeners, and the router fires its own.
+     */
+    @Override
+    protected void updateBalance()
+    {
+        fireBalancesUpdated();
+        for(Shard shard : shards)
+        {
+            shard.send(shard.start(ShardServer.UPDATE_BALANCE));
+        }
+    }
+
+    /**
+     * This function calls the action with a copy of every account of every shard, in the order they were opened.
+     * @param action - action to call with each account.
+     */
+    @Override
+    public void forEach(Consumer<Account> action)
+    {
+        for(Listed listed : listAll(OpenOrder))
+        {
+            action.accept(listed.account);
+        }
+    }
+
+    /**
+     * This function finds the accounts of a holder on the shard of the holder, and on the shard the holder
+     * is moving from while rebalancing.
+     * @param holder - profile of the account holder; names are matched ignoring case.
+     * @return copies of the accounts of the holder in the order they were opened, or an empty list.
+     */
+    @Override
+    public List<Account> getAccountsOf(Profile holder)
+    {
+        int holderHash = holder.getHolderKey(Checking.class).holderHash();
+        List<Listed> found = holderOf(shards.get(ring.shardOf(holderHash)), holder);
+        if(isMoving(holderHash))
+        {
+            found.addAll(holderOf(shards.get(previousRing.shardOf(holderHash)), holder));
+            found.sort(OpenOrder);
+        }
+        return accounts(found);
+    }
+
+    /**
+     * @return the totals of every shard added together.
+     */
+    @Override
+    public BookSummary getSummary()
+    {
+        BookSummary total = new BookSummary();
+        for(Shard shard : shards)
+        {
+            total.merge(BookSummary.readFrom(shard.send(shard.start(ShardServer.SUMMARY))));
+        }
+        return total;
+    }
+
+    @Override
+    public List<Account> findByBalance(AccountType type, long fromCents, long toCents)
+    {
+        List<Listed> found = balanceQuery(ShardServer.RANGE, type, fromCents, toCents);
+        found.sort(BalanceOrder);
+        return accounts(found);
+    }
+
+    /**
+     * This function takes the n largest balances of each shard and keeps the n largest of all of them.
+     */
+    @Override
+    public List<Account> topByBalance(AccountType type, int n)
+    {
+        List<Listed> found = balanceQuery(ShardServer.TOP, type, n, 0);
+        found.sort(BalanceOrder.reversed());
+        return accounts(found.subList(0, Math.min(n, found.size())));
+    }
+
+    @Override
+    public int countByBalance(AccountType type, long fromCents, long toCents)
+    {
+        int total = 0;
+        for(Shard shard : shards)
+        {
+            ByteBuffer request = shard.start(ShardServer.COUNT_BY_BALANCE).put(type.code());
+            total += shard.send(request.putLong(fromCents).putLong(toCents)).getInt();
+        }
+        return total;
+    }
+
+    @Override
+    public List<Account> findNearFeeThreshold(AccountType type, long withinCents)
+    {
+        List<Listed> found = balanceQuery(ShardServer.NEAR_FEE_THRESHOLD, type, withinCents, 0);
+        found.sort(BalanceOrder);
+        return accounts(found);
+    }
+
+    @Override
+    public List<Account> findAtWithdrawalLimit()
+    {
+        List<Listed> found = balanceQuery(ShardServer.AT_WITHDRAWAL_LIMIT, AccountType.MONEY_MARKET, 0, 0);
+        found.sort(BalanceOrder);
+        return accounts(found);
+    }
+
+    /**
+     * This function asks each shard for the holders of pages 0 to page, merges them by name and keeps the
+     * holders of the page.
+     */
+    @Override
+    public List<Account> searchByName(String lastName, String firstName, int page, int pageSize)
+    {
+        return searchByName(lastName, firstName, false, page, pageSize);
+    }
+
+    @Override
+    public List<Account> searchByNameFuzzy(String lastName, int page, int pageSize)
+    {
+        return searchByName(lastName, null, true, page, pageSize);
+    }
+
+    /**
+     * @return true if the holder belongs to the new shard and its old shard has not given up all its holders.
+     */
+    private boolean isMoving(int holderHash)
+    {
+        return previousRing != null && ring.shardOf(holderHash) == shards.size() - 1
+                && draining.get(previousRing.shardOf(holderHash));
+    }
+
+    /**
+     * This function is a helper that finds the shard that holds an account, trying the old shard of a
+     * holder that moves if the new one does not have it yet.
+     */
+    private Shard shardOf(Account account)
+    {
+        int holderHash = account.getHolderKey().holderHash();
+        Shard shard = shards.get(ring.shardOf(holderHash));
+        if(isMoving(holderHash) && find(shard, account) == null)
+        {
+            shard = shards.get(previousRing.shardOf(holderHash));
+        }
+        return shard;
+    }
+
+    /**
+     * This function is a helper that sends a change of one account to the shard that holds it.
+     * @return true if the shard made the change.
+     */
+    private boolean sendAccount(byte op, Account account)
+    {
+        Shard shard = shardOf(account);
+        ByteBuffer request = shard.start(op);
+        AccountCodec.write(request, account);
+        boolean done = shard.send(request).get() == 1;
+        rebalanceStep();
+        return done;
+    }
+
+    /**
+     * This function is a helper that looks an account up on one shard.
+     */
+    private static Account find(Shard shard, Account account)
+    {
+        ByteBuffer request = shard.start(ShardServer.FIND);
+        AccountCodec.write(request, account);
+        ByteBuffer reply = shard.send(request);
+        return reply.get() == 1 ? AccountCodec.read(reply) : null;
+    }
+
+    /**
+     * This function is a helper that asks one shard for the accounts of a holder.
+     */
+    private static List<Listed> holderOf(Shard shard, Profile holder)
+    {
+        ByteBuffer request = shard.start(ShardServer.HOLDER);
+        holder.writeTo(request);
+        return shard.sendForList(request);
+    }
+
+    /**
+     * This function is a helper that lists the accounts of every shard in the given order.
+     */
+    private List<Listed> listAll(Comparator<Listed> order)
+    {
+        List<Listed> all = new ArrayList<>();
+        for(Shard shard : shards)
+        {
+            all.addAll(shard.sendForList(shard.start(ShardServer.LIST)));
+        }
+        all.sort(order);
+        return all;
+    }
+
+    /**
+     * This function is a helper that runs a balance query on every shard.
+     */
+    private List<Listed> balanceQuery(byte kind, AccountType type, long first, long second)
+    {
+        List<Listed> found = new ArrayList<>();
+        for(Shard shard : shards)
+        {
+            ByteBuffer request = shard.start(ShardServer.BALANCE_QUERY).put(kind).put(type.code());
+            found.addAll(shard.sendForList(request.putLong(first).putLong(second)));
+        }
+        return found;
+    }
+
+    /**
+     * This function is a helper that runs a name search on every shard. The accounts of each holder are
+     * grouped, since a moving holder can be on two shards, and the groups are ordered like NameIndex.
+     */
+    private List<Account> searchByName(String lastName, String firstName, boolean fuzzy, int page, int pageSize)
+    {
+        int holders = (int) Math.min(Integer.MAX_VALUE, ((long) Math.max(page, 0) + 1) * pageSize);
+        LinkedHashMap<String, List<Listed>> byHolder = new LinkedHashMap<>();
+        for(Shard shard : shards)
+        {
+            ByteBuffer request = shard.start(ShardServer.NAME_SEARCH).put((byte) (fuzzy ? 1 : 0));
+            AccountCodec.putString(request, lastName);
+            request.put((byte) (firstName == null ? 0 : 1));
+            if(firstName != null)
+            {
+                AccountCodec.putString(request, firstName);
+            }
+            for(Listed listed : shard.sendForList(request.putInt(holders)))
+            {
+                byHolder.computeIfAbsent(NameIndex.keyOf(listed.account.getHolder()), key -> new ArrayList<>()).add(listed);
+            }
+        }
+        List<String> keys = new ArrayList<>(byHolder.keySet());
+        keys.sort(null);
+        List<Listed> found = new ArrayList<>();
+        for(int i = holders - pageSize; i < Math.min(holders, keys.size()); i++)
+        {
+            List<Listed> accounts = byHolder.get(keys.get(i));
+            accounts.sort(OpenOrder);
+            found.addAll(accounts);
+        }
+        return accounts(found);
+    }
+
+    /**
+     * This function is a helper that drops the sequence numbers of a merged list.
+     */
+    private static List<Account> accounts(List<Listed> listed)
+    {
+        List<Account> accounts = new ArrayList<>(listed.size());
+        for(Listed entry : listed)
+        {
+            accounts.add(entry.account);
+        }
+        return accounts;
+    }
+
+    /**
+     * Listed is an account received from a shard with the sequence number it was opened with.
+     */
+    private static final class Listed {
+        private final long sequence;
+        private final Account account;
+
+        Listed(long sequence, Account account)
+        {
+            this.sequence = sequence;
+            this.account = account;
+        }
+    }
+
+    /**
+     * Shard is the connection to one shard. Requests are built in a reusable buffer returned by start() and
+     * sent with send() or sendForList(), which wait for the reply. I/O failures are thrown as
+     * UncheckedIOException, since the AccountDatabase functions do not declare IOException.
+     */
+    private static final class Shard {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final ByteBuffer request;
+        private final ByteBuffer reply;
+
+        Shard(InetSocketAddress address) throws IOException
+        {
+            this.socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.request = ByteBuffer.allocate(ShardServer.MaxFrameSize);
+            this.reply = ByteBuffer.allocate(ShardServer.MaxFrameSize);
+        }
+
+        ByteBuffer start(byte op)
+        {
+            request.clear();
+            return request.put(op);
+        }
+
+        ByteBuffer send(ByteBuffer request)
+        {
+            try
+            {
+                request.flip();
+                ShardServer.writeFrame(out, request);
+                out.flush();
+                if(!ShardServer.readFrame(in, reply))
+                {
+                    throw new IOException("Shard " + socket.getRemoteSocketAddress() + " closed the connection");
+                }
+                return reply;
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        List<Listed> sendForList(ByteBuffer request)
+        {
+            List<Listed> listed = new ArrayList<>();
+            ByteBuffer frame = send(request);
+            for(int count = frame.getInt(); count > 0; count = frame.getInt())
+            {
+                for(int i = 0; i < count; i++)
+                {
+                    long sequence = frame.getLong();
+                    listed.add(new Listed(sequence, AccountCodec.read(frame)));
+                }
+                try
+                {
+                    if(!ShardServer.readFrame(in, frame))
+                    {
+                        throw new IOException("Shard " + socket.getRemoteSocketAddress() + " closed the connection");
+                    }
+                }
+                catch(IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return listed;
+        }
+
+        void importAccounts(List<Listed> accounts)
+        {
+            int next = 0;
+            while(next < accounts.size())
+            {
+                ByteBuffer request = start(ShardServer.IMPORT);
+                int countAt = request.position();
+                request.putInt(0);
+                int count = 0;
+                while(next < accounts.size() && request.remaining() >= ShardServer.MaxRecordSize)
+                {
+                    Listed listed = accounts.get(next++);
+                    request.putLong(listed.sequence);
+                    AccountCodec.write(request, listed.account);
+                    count++;
+                }
+                request.putInt(countAt, count);
+                send(request);
+            }
+        }
+
+        void disconnect()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch(IOException e)
+            {
+                System.err.println("Closing shard connection failed: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Test class to check that a ShardedAccountDatabase over several shards gives the same results as one
+ * AccountDatabase, while shards are added, and with shards running in their own processes.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+public class ShardedAccountDatabaseTest {
+
+    /**
+     * This is a helper that starts a shard on a new thread of this process.
+     */
+    private static InetSocketAddress startShard() throws IOException {
+        ShardServer server = new ShardServer(new AccountDatabase(), 0);
+        Thread thread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    /**
+     * This is a helper that applies the same random opens, deposits, withdrawals, closes and reopens to
+     * both databases.
+     */
+    private static void randomChanges(Random random, AbstractAccountDatabase expected, AbstractAccountDatabase sharded, int count) {
+        Date dob = new Date("3/9/1990");
+        for(int i = 0; i < count; i++) {
+            int holder = random.nextInt(200);
+            AccountType type = AccountType.values()[random.nextInt(4)];
+            long amount = 1 + random.nextInt(300000);
+            int op = random.nextInt(4);
+            for(AbstractAccountDatabase accountDatabase : List.of(expected, sharded)) {
+                Account account = type.newAccount(College.NEWARK);
+                account.setHolder("First" + holder, "Last" + holder % 7, dob);
+                account.setBalanceCents(amount);
+                Account existing = accountDatabase.getAccountIfExists(account);
+                if(existing == null) {
+                    accountDatabase.open(account);
+                }
+                else if(existing.isClosed()) {
+                    if(existing.getType().equals(account.getType())) {
+                        accountDatabase.reOpen(account);
+                    }
+                }
+                else if(op == 0) {
+                    accountDatabase.close(account);
+                }
+                else if(op == 1) {
+                    accountDatabase.withdraw(account);
+                }
+                else if(existing.getType().equals(account.getType())) {
+                    accountDatabase.deposit(account);
+                }
+            }
+        }
+    }
+
+    /**
+     * This is a helper that renders the reports and queries of a database for comparison.
+     */
+    private static String report(AbstractAccountDatabase accountDatabase) {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        ReportWriter writer = new ReportWriter(new PrintStream(captured));
+        accountDatabase.print(writer);
+        accountDatabase.printByAccountType(writer);
+        accountDatabase.printFeeAndInterest(writer);
+        StringBuilder report = new StringBuilder(captured.toString());
+        report.append(accountDatabase.getNumAcct()).append('\n');
+        report.append(accountDatabase.getSummary()).append('\n');
+        for(AccountType type : AccountType.values()) {
+            report.append(accountDatabase.findByBalance(type, 100000, 400000)).append('\n');
+            report.append(accountDatabase.topByBalance(type, 5)).append('\n');
+            report.append(accountDatabase.countByBalance(type, 0, 200000)).append('\n');
+            report.append(accountDatabase.findNearFeeThreshold(type, 100000)).append('\n');
+        }
+        report.append(accountDatabase.findAtWithdrawalLimit()).append('\n');
+        report.append(accountDatabase.getAccountsOf(new Profile("First3", "Last3", new Date("3/9/1990")))).append('\n');
+        report.append(accountDatabase.searchByName("last", null, 1, 10)).append('\n');
+        report.append(accountDatabase.searchByName("LAST2", "first1", 0, 10)).append('\n');
+        report.append(accountDatabase.searchByNameFuzzy("lest4", 0, 100)).append('\n');
+        return report.toString();
+    }
+
+    /**
+     * This Test method checks that three shards print, update and answer queries like one database.
+     */
+    @Test
+    public void matchesOneDatabase_Test() throws IOException {
+        AccountDatabase expected = new AccountDatabase();
+        ShardedAccountDatabase sharded = new ShardedAccountDatabase(List.of(startShard(), startShard(), startShard()));
+        Random random = new Random(7);
+        for(int step = 0; step < 3; step++) {
+            randomChanges(random, expected, sharded, 300);
+            assertEquals(report(expected), report(sharded));
+            expected.updateBalance();
+            sharded.updateBalance();
+            assertEquals(report(expected), report(sharded));
+        }
+        for(int i = 0; i < 3; i++) {
+            assertTrue(sharded.getNumAcct(i) > 0);
+        }
+        sharded.shutdownShards();
+    }
+
+    /**
+     * This Test method checks that the teller sees the two sides of a transfer on a sharded database as the
+     * same account by their holder keys, although each lookup returns a new copy, and that a transfer to a
+     * closed account is refused by the shard.
+     */
+    @Test
+    public void tellerTransfer_Test() throws IOException {
+        ShardedAccountDatabase sharded = new ShardedAccountDatabase(List.of(startShard(), startShard()));
+        BankTeller teller = new BankTeller(sharded);
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        ReportWriter out = new ReportWriter(new PrintStream(captured));
+        for(String line : new String[] {"O C Ann Lee 1/2/1990 500", "T C C Ann Lee 1/2/1990 100",
+                "O MM Ann Lee 1/2/1990 3000", "C MM Ann Lee 1/2/1990", "T C MM Ann Lee 1/2/1990 100"}) {
+            assertTrue(teller.apply(teller.prepare(BankTeller.tokenize(line)), out));
+        }
+        out.flush();
+        String n = System.lineSeparator();
+        assertEquals("Account opened." + n + "Transfer - source and target are the same account." + n
+                + "Account opened." + n + "Account closed." + n + "Account is closed already." + n, captured.toString());
+        Checking checking = new Checking();
+        checking.setHolder("Ann", "Lee", new Date("1/2/1990"));
+        assertEquals(50000, sharded.getAccountIfExists(checking).getBalanceCents());
+        sharded.shutdownShards();
+    }
+
+    /**
+     * This Test method checks that removeAccounts() takes the same accounts out of the shards as out of one
+     * database, in the order they were opened and up to the limit.
+     */
+    @Test
+    public void removeAccounts_Test() throws IOException {
+        AccountDatabase expected = new AccountDatabase();
+        ShardedAccountDatabase sharded = new ShardedAccountDatabase(List.of(startShard(), startShard()));
+        randomChanges(new Random(5), expected, sharded, 300);
+        Predicate<Account> filter = account -> account.getHolder().getLname().equals("Last3");
+        for(int limit : new int[] {3, Integer.MAX_VALUE}) {
+            assertEquals(expected.removeAccounts(filter, limit).toString(), sharded.removeAccounts(filter, limit).toString());
+            assertEquals(report(expected), report(sharded));
+        }
+        assertEquals(0, sharded.removeAccounts(filter, 1).size());
+        sharded.shutdownShards();
+    }
+
+    /**
+     * This Test method adds a shard in the middle of the changes and checks the results while the accounts
+     * move in small batches, and after they have all moved.
+     */
+    @Test
+    public void addShard_Test() throws IOException {
+        AccountDatabase expected = new AccountDatabase();
+        ShardedAccountDatabase sharded = new ShardedAccountDatabase(List.of(startShard(), startShard()));
+        Random random = new Random(11);
+        randomChanges(random, expected, sharded, 400);
+        int before = sharded.getNumAcct();
+
+        sharded.setRebalanceBatch(5);
+        sharded.addShard(startShard());
+        assertTrue(sharded.isRebalancing());
+        assertEquals(0, sharded.getNumAcct(2));
+        randomChanges(random, expected, sharded, 10);
+        assertTrue(sharded.isRebalancing());
+        assertTrue(sharded.getNumAcct(2) > 0);
+        assertEquals(report(expected), report(sharded));
+        expected.updateBalance();
+        sharded.updateBalance();
+        assertEquals(report(expected), report(sharded));
+
+        sharded.finishRebalancing();
+        assertFalse(sharded.isRebalancing());
+        assertEquals(report(expected), report(sharded));
+        randomChanges(random, expected, sharded, 200);
+        assertEquals(report(expected), report(sharded));
+        assertTrue(sharded.getNumAcct(2) > before / 5);
+        sharded.shutdownShards();
+    }
+
+    /**
+     * This Test method runs two shards as separate java processes, started like RunProject2 -shard 0,
+     * and checks the router against one database.
+     */
+    @Test
+    public void separateProcesses_Test() throws Exception {
+        List<Process> processes = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        try {
+            for(int i = 0; i < 2; i++) {
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "RunProject2", "-shard", "0").redirectErrorStream(true).start();
+                processes.add(process);
+                String line = new BufferedReader(new InputStreamReader(process.getInputStream())).readLine();
+                assertNotNull(line);
+                int port = Integer.parseInt(line.replaceAll("[^0-9]", ""));
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            }
+            AccountDatabase expected = new AccountDatabase();
+            ShardedAccountDatabase sharded = new ShardedAccountDatabase(addresses);
+            Random random = new Random(3);
+            randomChanges(random, expected, sharded, 200);
+            expected.updateBalance();
+            sharded.updateBalance();
+            assertEquals(report(expected), report(sharded));
+            sharded.shutdownShards();
+            for(Process process : processes) {
+                assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+                assertEquals(0, process.exitValue());
+            }
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+}
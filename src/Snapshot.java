@@ -0,0 +1,205 @@
+/**
+ * Snapshot class writes the contents of an AccountDatabase to a compact binary file and loads it back
+ * through a memory-mapped FileChannel, so a large book comes up without replaying its history.
+ * The file starts with a header: magic number, format version, number of accounts and the number of
+ * journal records the snapshot already contains. The accounts follow in blocks of up to 8 MB, each with
+ * its record count, byte length and CRC32 checksum, written with AccountCodec in the order they were opened.
+ * A snapshot is written to a temporary file and moved into place, so a crash never leaves half a snapshot.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class Snapshot {
+    public static final int MAGIC = 0x42545350;
+    public static final int VERSION = 1;
+
+    private static final int HeaderSize = 24;
+    private static final int BlockHeaderSize = 12;
+    private static final int BlockSize = 8 << 20;
+    private static final int MaxRecordSize = 1 << 17;
+
+    /**
+     * This function writes a snapshot of every account in the database.
+     * @param file - snapshot file, replaced if it exists.
+     * @param accountDatabase - database to write.
+     * @param journalRecords - number of journal records already reflected in the database.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path file, AbstractAccountDatabase accountDatabase, long journalRecords) throws IOException
+    {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            BlockWriter writer = new BlockWriter(channel);
+            accountDatabase.forEach(writer::add);
+            writer.finishBlock();
+
+            ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+            header.putInt(MAGIC).putInt(VERSION).putLong(writer.accountCount).putLong(journalRecords).flip();
+            while(header.hasRemaining())
+            {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * This function loads a snapshot into the database, which should be empty and have no listeners. The
+     * database is sized for the accounts in the header, and the accounts of every block are decoded first
+     * and added with one call to loadAccounts(), so the store appends them in bulk and builds its indexes and
+     * summary once.
+     * @param file - snapshot file.
+     * @param accountDatabase - database to load into.
+     * @return the number of journal records already reflected in the snapshot.
+     * @throws IOException if the file cannot be read, has the wrong version or fails its checksum.
+     */
+    public static long load(Path file, AbstractAccountDatabase accountDatabase) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            ByteBuffer header = readFully(channel, 0, HeaderSize);
+            if(header.getInt() != MAGIC)
+            {
+                throw new IOException(file + " is not an account snapshot");
+            }
+            int version = header.getInt();
+            if(version != VERSION)
+            {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            long accountCount = header.getLong();
+            long journalRecords = header.getLong();
+            int capacity = (int) Math.min(accountCount, Integer.MAX_VALUE - 8);
+            accountDatabase.ensureCapacity(capacity);
+            List<Account> accounts = new ArrayList<>(capacity);
+
+            CRC32 crc = new CRC32();
+            long position = HeaderSize;
+            long loaded = 0;
+            while(position < channel.size())
+            {
+                ByteBuffer blockHeader = readFully(channel, position, BlockHeaderSize);
+                int records = blockHeader.getInt();
+                int length = blockHeader.getInt();
+                int checksum = blockHeader.getInt();
+                if(length < 0 || position + BlockHeaderSize + length > channel.size())
+                {
+                    throw new IOException("Snapshot block at " + position + " is truncated");
+                }
+                MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position + BlockHeaderSize, length);
+                crc.reset();
+                crc.update(block);
+                if((int) crc.getValue() != checksum)
+                {
+                    throw new IOException("Snapshot block at " + position + " fails its checksum");
+                }
+                block.rewind();
+                for(int i = 0; i < records; i++)
+                {
+                    accounts.add(AccountCodec.read(block));
+                }
+                loaded += records;
+                position += BlockHeaderSize + length;
+            }
+            if(loaded != accountCount)
+            {
+                throw new IOException("Snapshot holds " + loaded + " accounts, header says " + accountCount);
+            }
+            accountDatabase.loadAccounts(accounts);
+            return journalRecords;
+        }
+    }
+
+    /**
+     * This function reads exactly length bytes at a position of a channel.
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining())
+        {
+            if(channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Snapshot ends early at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * BlockWriter collects encoded accounts into a block buffer and writes each full block with its
+     * header and checksum after the file header.
+     */
+    private static class BlockWriter {
+        private final FileChannel channel;
+        private final ByteBuffer block;
+        private final CRC32 crc;
+        private long position;
+        private int blockRecords;
+        private long accountCount;
+
+        BlockWriter(FileChannel channel)
+        {
+            this.channel = channel;
+            this.block = ByteBuffer.allocateDirect(BlockHeaderSize + BlockSize);
+            this.crc = new CRC32();
+            this.position = HeaderSize;
+            block.position(BlockHeaderSize);
+        }
+
+        void add(Account account)
+        {
+            if(block.remaining() < MaxRecordSize)
+            {
+                finishBlock();
+            }
+            AccountCodec.write(block, account);
+            blockRecords++;
+            accountCount++;
+        }
+
+        void finishBlock()
+        {
+            if(blockRecords == 0)
+            {
+                return;
+            }
+            int length = block.position() - BlockHeaderSize;
+            ByteBuffer body = block.duplicate();
+            body.position(BlockHeaderSize).limit(BlockHeaderSize + length);
+            crc.reset();
+            crc.update(body);
+            block.putInt(0, blockRecords).putInt(4, length).putInt(8, (int) crc.getValue());
+            block.flip();
+            try
+            {
+                while(block.hasRemaining())
+                {
+                    position += channel.write(block, position);
+                }
+            }
+            catch(IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            block.clear();
+            block.position(BlockHeaderSize);
+            blockRecords = 0;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Test class to test that a database loaded from a Snapshot matches the database that was written, including
+ * its summary and indexes.
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class SnapshotTest {
+
+    /**
+     * This is a helper that returns what P prints for a database.
+     */
+    private String printed(AbstractAccountDatabase accountDatabase) {
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        ReportWriter report = new ReportWriter(new PrintStream(captured));
+        accountDatabase.print(report);
+        accountDatabase.printFeeAndInterest(report);
+        return captured.toString();
+    }
+
+    /**
+     * This is a helper that opens one account of every type, with closed, loyal and withdrawal state set.
+     */
+    private void openAccounts(AbstractAccountDatabase accountDatabase) {
+        Date dob = new Date("7/4/1976");
+        Checking checking = new Checking();
+        checking.setHolder("Ann", "Lee", dob);
+        checking.setBalanceCents(99999);
+        accountDatabase.open(checking);
+        CollegeChecking collegeChecking = new CollegeChecking(College.NEWARK);
+        collegeChecking.setHolder("Ann", "Lee", new Date("1/2/2001"));
+        collegeChecking.setBalanceCents(12345);
+        accountDatabase.open(collegeChecking);
+        Savings savings = new Savings();
+        savings.setHolder("Bob", "Ray", dob);
+        savings.setBalanceCents(50000);
+        savings.setLoyalty(true);
+        accountDatabase.open(savings);
+        accountDatabase.close(savings);
+        MoneyMarket moneyMarket = new MoneyMarket();
+        moneyMarket.setHolder("Cy", "Day", dob);
+        moneyMarket.setBalanceCents(400000);
+        accountDatabase.open(moneyMarket);
+        MoneyMarket withdrawal = new MoneyMarket();
+        withdrawal.setHolder("Cy", "Day", dob);
+        withdrawal.setBalanceCents(1000);
+        for(int i = 0; i < 4; i++) {
+            accountDatabase.withdraw(withdrawal);
+        }
+    }
+
+    /**
+     * This Test method checks that a loaded snapshot holds the same accounts and the journal record count.
+     */
+    @Test
+    public void writeAndLoad_Test() throws Exception {
+        Path file = Files.createTempFile("snapshot", ".bin");
+        AccountDatabase original = new AccountDatabase();
+        openAccounts(original);
+        Snapshot.write(file, original, 42);
+
+        AccountDatabase loaded = new AccountDatabase();
+        assertEquals(42, Snapshot.load(file, loaded));
+        assertEquals(original.getNumAcct(), loaded.getNumAcct());
+        assertEquals(printed(original), printed(loaded));
+        assertEquals(original.getSummary().toString(), loaded.getSummary().toString());
+        Profile ann = new Profile("Ann", "Lee", new Date("7/4/1976"));
+        assertEquals(original.getAccountsOf(ann), loaded.getAccountsOf(ann));
+        assertEquals(original.findByBalance(AccountType.MONEY_MARKET, 0, Long.MAX_VALUE),
+                loaded.findByBalance(AccountType.MONEY_MARKET, 0, Long.MAX_VALUE));
+        assertEquals(original.searchByName("L", null, 0, 10), loaded.searchByName("L", null, 0, 10));
+
+        ConcurrentAccountDatabase concurrent = new ConcurrentAccountDatabase();
+        Snapshot.load(file, concurrent);
+        assertEquals(printed(original), printed(concurrent));
+
+        ColumnarAccountDatabase columnar = new ColumnarAccountDatabase();
+        Snapshot.load(file, columnar);
+        assertEquals(printed(original), printed(columnar));
+        Files.delete(file);
+    }
+
+    /**
+     * This Test method checks that lazy accounts are settled before they are written.
+     */
+    @Test
+    public void lazyAccrual_Test() throws Exception {
+        Path file = Files.createTempFile("snapshot", ".bin");
+        AccountDatabase eager = new AccountDatabase();
+        AccountDatabase lazy = new AccountDatabase();
+        lazy.setLazyAccrual(true);
+        openAccounts(eager);
+        openAccounts(lazy);
+        eager.updateBalance();
+        lazy.updateBalance();
+        Snapshot.write(file, lazy, 0);
+
+        AccountDatabase loaded = new AccountDatabase();
+        Snapshot.load(file, loaded);
+        assertEquals(printed(eager), printed(loaded));
+        Files.delete(file);
+    }
+
+    /**
+     * This Test method checks that a damaged snapshot is rejected instead of loaded.
+     */
+    @Test
+    public void corrupt_Test() throws Exception {
+        Path file = Files.createTempFile("snapshot", ".bin");
+        AccountDatabase original = new AccountDatabase();
+        openAccounts(original);
+        Snapshot.write(file, original, 0);
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), channel.size() - 3);
+        }
+        try {
+            Snapshot.load(file, new AccountDatabase());
+            fail("corrupt snapshot was loaded");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("checksum"));
+        }
+        Files.delete(file);
+    }
+}
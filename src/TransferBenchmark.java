@@ -0,0 +1,95 @@
+/**
+ * TransferBenchmark class measures the throughput of transfers in ConcurrentAccountDatabase under contention.
+ * It loads a book of Checking accounts and moves $1 between random pairs of accounts from 1, 4, 16 and 64
+ * threads, printing transfers per second for each thread count. Each pair locks two stripes, lower number
+ * first, so opposite transfers do not deadlock; after each run it checks that the total of the balances has
+ * not changed.
+ * Usage: java TransferBenchmark [accounts] [millisPerRun]
+ * @author Sumanth Rajkumar, Shantanu Jain
+ */
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TransferBenchmark {
+    private static final int[] ThreadCounts = {1, 4, 16, 64};
+    private static final int DefaultAccounts = 100000;
+    private static final int DefaultMillisPerRun = 2000;
+    private static final long OpeningBalanceCents = 100000000L;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int numAccounts = args.length > 0 ? Integer.parseInt(args[0]) : DefaultAccounts;
+        int millis = args.length > 1 ? Integer.parseInt(args[1]) : DefaultMillisPerRun;
+
+        ConcurrentAccountDatabase accountDatabase = new ConcurrentAccountDatabase(numAccounts,
+                ConcurrentAccountDatabase.DefaultStripes);
+        Date dob = new Date("1/1/1990");
+        Checking[] probes = new Checking[numAccounts];
+        for(int i = 0; i < numAccounts; i++)
+        {
+            Checking checking = new Checking();
+            checking.setHolder("First" + i, "Last" + i, dob);
+            checking.setBalanceCents(OpeningBalanceCents);
+            accountDatabase.open(checking);
+            probes[i] = new Checking();
+            probes[i].setHolder("first" + i, "LAST" + i, dob);
+            probes[i].setBalanceCents(100);
+        }
+
+        System.out.println("accounts=" + numAccounts + " millisPerRun=" + millis);
+        for(int threads : ThreadCounts)
+        {
+            run(accountDatabase, probes, threads, millis);
+            long total = 0;
+            for(Checking probe : probes)
+            {
+                total += accountDatabase.getAccountIfExists(probe).getBalanceCents();
+            }
+            if(total != OpeningBalanceCents * numAccounts)
+            {
+                throw new IllegalStateException("Transfers changed the total to " + total + " cents.");
+            }
+        }
+    }
+
+    /**
+     * This function runs transfers between random pairs from the given number of threads for a fixed time
+     * and prints the throughput.
+     */
+    private static void run(ConcurrentAccountDatabase accountDatabase, Checking[] probes, int threads, int millis)
+            throws InterruptedException
+    {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder transfers = new LongAdder();
+        Thread[] workers = new Thread[threads];
+        for(int t = 0; t < threads; t++)
+        {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while(running.get())
+                {
+                    Checking from = probes[random.nextInt(probes.length)];
+                    Checking to = probes[random.nextInt(probes.length)];
+                    accountDatabase.transfer(from, to);
+                    done++;
+                }
+                transfers.add(done);
+            });
+        }
+        long start = System.nanoTime();
+        for(Thread worker : workers)
+        {
+            worker.start();
+        }
+        Thread.sleep(millis);
+        running.set(false);
+        for(Thread worker : workers)
+        {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("threads=%d transfers/sec=%.0f%n", threads, transfers.sum() / seconds);
+    }
+}